@@ -0,0 +1,65 @@
+package roboy.benchmarks;
+
+import edu.stanford.nlp.sempre.roboy.lexicons.word2vec.Word2vec;
+import org.openjdk.jmh.annotations.*;
+import roboy.dialog.ConversationManager;
+import roboy.linguistics.sentenceanalysis.AnalyzerScheduler;
+import roboy.linguistics.sentenceanalysis.Interpretation;
+import roboy.linguistics.sentenceanalysis.InterpretationCache;
+import roboy.util.ConfigManager;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of running an utterance through every analyzer a conversation uses, which is the
+ * time a user waits for the dialog system to understand a turn. Independent analyzers run
+ * concurrently as in a conversation, set ANALYZER_THREADS to 1 to measure the sequential chain.
+ * With cached set, analyses are shared through an InterpretationCache holding all utterances,
+ * so after the first round every utterance is a repeat.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AnalyzerChainBenchmark {
+
+    private LocalEndpoints endpoints;
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private ExecutorService pool;
+    private AnalyzerScheduler analyzers;
+    private List<String> utterances;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        endpoints = LocalEndpoints.install();
+        Word2vec.getInstance().awaitModel();
+        utterances = Utterances.load();
+        pool = ConfigManager.ANALYZER_THREADS > 1 ? Executors.newFixedThreadPool(ConfigManager.ANALYZER_THREADS) : null;
+        analyzers = new AnalyzerScheduler(ConversationManager.createAnalyzers(), pool,
+                cached ? new InterpretationCache(utterances.size()) : null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+        endpoints.close();
+    }
+
+    @Benchmark
+    public Interpretation analyze() {
+        Interpretation interpretation = analyzers.analyze(new Interpretation(utterances.get(next++ % utterances.size())));
+        interpretation.getParsingOutcome();
+        return interpretation;
+    }
+}
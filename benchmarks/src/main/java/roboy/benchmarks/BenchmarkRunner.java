@@ -0,0 +1,32 @@
+package roboy.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results as JSON, so runs can be compared to find latency regressions.
+ *
+ * Accepts the usual JMH command line, e.g. "SemanticParser -prof gc". Must be started from the
+ * project root, the dialog system resolves its configuration and resources relative to it.
+ */
+public class BenchmarkRunner {
+
+    public static final String RESULT_FILE = "benchmarks/target/jmh-result.json";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(RESULT_FILE);
+        }
+        new Runner(options.build()).run();
+    }
+}
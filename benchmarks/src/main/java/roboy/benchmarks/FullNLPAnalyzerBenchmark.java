@@ -0,0 +1,53 @@
+package roboy.benchmarks;
+
+import edu.stanford.nlp.sempre.InfoAnalyzer.CoreNLPInfo;
+import edu.stanford.nlp.sempre.corenlp.FullNLPAnalyzer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the CoreNLP analysis of a single utterance by FullNLPAnalyzer.
+ *
+ * The relation extraction, the constituency parse and the sentiment analysis only run when their
+ * results are first read, so analyze() alone measures just the cheap annotators. With stages set to
+ * "parse", the parse is forced through ensureParsed(), which is the cost of a turn reading parse trees
+ * for OpenNLPParser. With "all", every deferred stage is forced through ensureAnnotated(), which is the
+ * cost of a turn reading relations and sentiment.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FullNLPAnalyzerBenchmark {
+
+    @Param({"language", "parse", "all"})
+    public String stages;
+
+    private FullNLPAnalyzer analyzer;
+    private List<String> utterances;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        FullNLPAnalyzer.initModels();
+        analyzer = new FullNLPAnalyzer();
+        utterances = Utterances.load();
+    }
+
+    @Benchmark
+    public CoreNLPInfo analyze() {
+        CoreNLPInfo info = analyzer.analyze(utterances.get(next++ % utterances.size()));
+        if ("parse".equals(stages)) {
+            info.senInfo.ensureParsed();
+        } else if ("all".equals(stages)) {
+            info.relInfo.ensureAnnotated();
+            info.senInfo.ensureAnnotated();
+        }
+        return info;
+    }
+}
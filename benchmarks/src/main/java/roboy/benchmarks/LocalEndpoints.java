@@ -0,0 +1,70 @@
+package roboy.benchmarks;
+
+import com.sun.net.httpserver.HttpServer;
+import edu.stanford.nlp.sempre.roboy.config.ConfigManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stands in for DBpedia SPARQL, DBpedia Lookup and the Microsoft Concept Graph during benchmarks.
+ *
+ * Every endpoint answers immediately with an empty result, so the measured latency is
+ * the one of the dialog system itself and not of the network or the remote services.
+ */
+public class LocalEndpoints implements AutoCloseable {
+
+    private static final String EMPTY_SPARQL_RESULT =
+            "<?xml version=\"1.0\"?>\n<sparql xmlns=\"http://www.w3.org/2005/sparql-results#\">"
+                    + "<head></head><results></results></sparql>";
+    private static final String EMPTY_LOOKUP_RESULT =
+            "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<ArrayOfResult xmlns=\"http://lookup.dbpedia.org/\"></ArrayOfResult>";
+    private static final String EMPTY_CONCEPT_RESULT = "{}";
+
+    private final HttpServer server;
+
+    private LocalEndpoints(HttpServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Starts the local endpoints and points the parser configuration at them.
+     * Must be called before the parser is built, the executors read the endpoints on construction.
+     * @return running endpoints, close them after the benchmark
+     * @throws IOException if no local port is available
+     */
+    public static LocalEndpoints install() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        respond(server, "/sparql", "application/sparql-results+xml", EMPTY_SPARQL_RESULT);
+        respond(server, "/lookup", "application/xml", EMPTY_LOOKUP_RESULT);
+        respond(server, "/mcg", "application/json", EMPTY_CONCEPT_RESULT);
+        server.start();
+
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        ConfigManager.DB_SPARQL = base + "/sparql";
+        ConfigManager.DB_SEARCH = base + "/lookup?QueryString=";
+        ConfigManager.MCG_SEARCH = base + "/mcg?instance=";
+        // Answers must not come from the results of earlier runs
+        ConfigManager.SPARQL_CACHE = "";
+        return new LocalEndpoints(server);
+    }
+
+    private static void respond(HttpServer server, String path, String contentType, String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        server.createContext(path, exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
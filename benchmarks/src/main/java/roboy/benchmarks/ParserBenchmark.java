@@ -0,0 +1,69 @@
+package roboy.benchmarks;
+
+import edu.stanford.nlp.sempre.Builder;
+import edu.stanford.nlp.sempre.Example;
+import edu.stanford.nlp.sempre.Params;
+import edu.stanford.nlp.sempre.Parser;
+import edu.stanford.nlp.sempre.ParserState;
+import org.openjdk.jmh.annotations.*;
+import roboy.linguistics.sentenceanalysis.SemanticParserAnalyzer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of parsing the RPQA questions with the roboy grammar and the trained parameters,
+ * without the language analysis and the error retrieval around it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"BeamParser", "FloatingParser"})
+    public String parserName;
+
+    private LocalEndpoints endpoints;
+    private Parser parser;
+    private Params params;
+    private List<Example> examples;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        endpoints = LocalEndpoints.install();
+        // Reuse grammar, executors and parameters of the analyzer, only the parser is replaced
+        Builder builder = new SemanticParserAnalyzer(1).builder;
+        Builder.opts.parser = parserName;
+        builder.parser = null;
+        builder.buildUnspecified();
+        parser = builder.parser;
+        params = builder.params;
+
+        examples = new ArrayList<>();
+        List<String> utterances = Utterances.load();
+        for (int i = 0; i < utterances.size(); i++) {
+            Example ex = new Example.Builder()
+                    .setId("rpqa:" + i)
+                    .setUtterance(utterances.get(i))
+                    .createExample();
+            ex.preprocess();
+            examples.add(ex);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        endpoints.close();
+    }
+
+    @Benchmark
+    public ParserState parse() {
+        return parser.parse(params, examples.get(next++ % examples.size()), false);
+    }
+}
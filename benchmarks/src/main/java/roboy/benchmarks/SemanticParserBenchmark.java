@@ -0,0 +1,54 @@
+package roboy.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import roboy.linguistics.sentenceanalysis.Interpretation;
+import roboy.linguistics.sentenceanalysis.Preprocessor;
+import roboy.linguistics.sentenceanalysis.SemanticParserAnalyzer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the full NLP analysis of a single utterance: CoreNLP annotation, parsing,
+ * execution of the predicted formulas and error retrieval.
+ *
+ * Only the CoreNLP stages the parse reads are annotated, the relation and sentiment stages stay
+ * deferred. FullNLPAnalyzerBenchmark measures the annotation with all stages forced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SemanticParserBenchmark {
+
+    private LocalEndpoints endpoints;
+    private Preprocessor preprocessor;
+    private SemanticParserAnalyzer analyzer;
+    private List<String> utterances;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        endpoints = LocalEndpoints.install();
+        preprocessor = new Preprocessor();
+        analyzer = new SemanticParserAnalyzer(1);
+        utterances = Utterances.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        endpoints.close();
+    }
+
+    @Benchmark
+    public Interpretation analyze() {
+        Interpretation interpretation = preprocessor.analyze(new Interpretation(utterances.get(next++ % utterances.size())));
+        interpretation = analyzer.analyze(interpretation);
+        // The semantic analysis runs lazily, wait for it as the dialog states would
+        interpretation.getParsingOutcome();
+        return interpretation;
+    }
+}
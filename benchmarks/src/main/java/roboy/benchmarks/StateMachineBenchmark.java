@@ -0,0 +1,54 @@
+package roboy.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import roboy.context.Context;
+import roboy.dialog.DialogStateMachine;
+import roboy.logic.Inference;
+import roboy.util.ConfigManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of loading the personality when a conversation starts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StateMachineBenchmark {
+
+    private File personalityFile;
+    private String personality;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        personalityFile = new File(ConfigManager.PERSONALITY_FILE);
+        personality = new String(Files.readAllBytes(personalityFile.toPath()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Loads the personality file the way every new conversation does, using the compiled personality.
+     */
+    @Benchmark
+    public DialogStateMachine loadFromFile() throws IOException {
+        DialogStateMachine stateMachine = new DialogStateMachine(new Inference(), new Context());
+        stateMachine.loadFromFile(personalityFile);
+        return stateMachine;
+    }
+
+    /**
+     * Parses and compiles the personality on every load, for comparison with loadFromFile.
+     */
+    @Benchmark
+    public DialogStateMachine loadFromString() {
+        DialogStateMachine stateMachine = new DialogStateMachine(new Inference(), new Context());
+        stateMachine.loadFromString(personality);
+        return stateMachine;
+    }
+}
@@ -0,0 +1,50 @@
+package roboy.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utterances the benchmarks feed to the dialog system, taken from the RPQA question set.
+ */
+public final class Utterances {
+    private Utterances() { }
+
+    public static final String RPQA_QUESTIONS = "resources_nlu/rpqa/rpqa-test-q.json";
+
+    /**
+     * Reads the utterances of an RPQA question file.
+     * @param path JSON array of objects with an "utterance" field
+     * @return utterances in file order
+     * @throws IOException if the file cannot be read
+     */
+    public static List<String> load(String path) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8)) {
+            List<Map<String, String>> questions =
+                    new Gson().fromJson(reader, new TypeToken<List<Map<String, String>>>(){}.getType());
+            List<String> utterances = new ArrayList<>();
+            for (Map<String, String> question : questions) {
+                String utterance = question.get("utterance");
+                if (utterance != null && !utterance.isEmpty()) {
+                    utterances.add(utterance);
+                }
+            }
+            return utterances;
+        }
+    }
+
+    /**
+     * Reads the utterances of the RPQA test questions.
+     */
+    public static List<String> load() throws IOException {
+        return load(RPQA_QUESTIONS);
+    }
+}
@@ -0,0 +1,38 @@
+package roboy.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import roboy.dialog.action.Action;
+import roboy.linguistics.Linguistics.SentenceType;
+import roboy.linguistics.sentenceanalysis.Interpretation;
+import roboy.talk.Verbalizer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of turning what Roboy intends to say into an action.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VerbalizerBenchmark {
+
+    @Param({"STATEMENT", "GREETING", "SEGUE", "ANECDOTE"})
+    public SentenceType sentenceType;
+
+    private Verbalizer verbalizer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        verbalizer = new Verbalizer();
+    }
+
+    @Benchmark
+    public Action verbalize() {
+        Interpretation interpretation = new Interpretation("I was built in 2016-12-03 at the TUM in Munich.");
+        interpretation.setSentenceType(sentenceType);
+        return verbalizer.verbalize(interpretation);
+    }
+}
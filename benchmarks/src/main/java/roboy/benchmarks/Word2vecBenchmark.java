@@ -0,0 +1,59 @@
+package roboy.benchmarks;
+
+import edu.stanford.nlp.sempre.roboy.lexicons.word2vec.VectorStore;
+import edu.stanford.nlp.sempre.roboy.lexicons.word2vec.Word2vec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the word vector lookups done for every utterance.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class Word2vecBenchmark {
+
+    private Word2vec word2vec;
+    private VectorStore store;
+    private List<List<String>> sentences;
+    private float[] mean;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        word2vec = Word2vec.getInstance();
+        store = word2vec.awaitModel();
+        mean = new float[store.dimension()];
+        sentences = new ArrayList<>();
+        for (String utterance : Utterances.load()) {
+            List<String> words = Arrays.asList(utterance.toLowerCase().replaceAll("[^a-z ]", " ").trim().split("\\s+"));
+            if (words.size() > 1) {
+                sentences.add(words);
+            }
+        }
+    }
+
+    private List<String> nextSentence() {
+        return sentences.get(next++ % sentences.size());
+    }
+
+    @Benchmark
+    public double similarity() {
+        List<String> words = nextSentence();
+        return word2vec.getSimilarity(words.get(0), words.get(words.size() - 1));
+    }
+
+    @Benchmark
+    public float[] mean() {
+        store.mean(nextSentence(), mean);
+        return mean;
+    }
+}
@@ -1,5 +1,6 @@
 package roboy.dialog;
 
+import edu.stanford.nlp.sempre.roboy.utils.tracing.Tracer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import roboy.dialog.action.Action;
@@ -9,6 +10,7 @@ import roboy.io.Input;
 import roboy.io.MultiInputDevice;
 import roboy.io.MultiOutputDevice;
 import roboy.linguistics.sentenceanalysis.Analyzer;
+import roboy.linguistics.sentenceanalysis.AnalyzerScheduler;
 import roboy.linguistics.sentenceanalysis.Interpretation;
 import roboy.util.ConfigManager;
 
@@ -16,7 +18,11 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -24,38 +30,60 @@ import java.util.concurrent.TimeUnit;
  * Its behaviour is defined through the StateBasedPersonality.
  * It communicates with the interlocutor via a MultiInputDevice and a MultiOutputDevice.
  * The List of analyzers is used to make the input string machine understandable.
+ *
+ * Conversations run on a shared thread pool. A conversation whose input has been idle for
+ * CONVERSATION_PARK_TIMEOUT seconds is parked: it keeps its state but gives its thread back
+ * until resume() is called for the next input. Only inputs that return null from listen(timeout)
+ * when nothing arrived, like TelegramInput, can be parked.
  */
-public class Conversation extends Thread {
+public class Conversation implements Runnable {
 
-    private final Logger logger = LogManager.getLogger("Conversation" + this.getId());
+    private final static AtomicLong ids = new AtomicLong();
+    private final static ExecutorService runtime = Executors.newCachedThreadPool((Runnable r) -> {
+        Thread thread = new Thread(r, "roboy-conversation");
+        thread.setDaemon(true);
+        return thread;
+    });
 
+    private final Logger logger = LogManager.getLogger("Conversation" + ids.incrementAndGet());
+
+    private final String uuid;
     private final MultiInputDevice multiIn;
     private final MultiOutputDevice multiOut;
-    private final List<Analyzer> analyzers;
+    private final AnalyzerScheduler analyzers;
     private final File personalityFile;
     private final StateBasedPersonality personality;
-    /* isRunning specifies that the thread is running, paused specifies if the conversation has been terminated or paused:
-    isRunning: Thread (therefore conversation) is running
-    !isRunning && paused: Conversation paused, thread not running
-    !isRunning && !paused: Conversation and thread ended
+    /* isRunning specifies that the conversation has not ended, paused specifies if the conversation has been parked:
+    isRunning && !paused: Conversation is running on a thread of the pool
+    isRunning && paused: Conversation parked, waiting for resume() without a thread
+    !isRunning: Conversation ended
      */
     private volatile boolean isRunning = true;
     private volatile boolean paused = false;
+    private volatile boolean started = false;
+    private boolean wakeup = false; // input arrived while the conversation was about to park
+    private boolean finished = false;
+    private volatile long lastActive = System.currentTimeMillis();
+    private Thread worker; // thread currently running the conversation, null while parked
+    private final Object runLock = new Object(); // a resumed run waits until the parking run has returned
+    private final CountDownLatch ended = new CountDownLatch(1);
     private List<Action> actions;
 
     /**
      *
+     * @param uuid The uuid of the interlocutor, formed like "[world-interface-name]-[uuid]" or "local".
      * @param personality roboy.dialog.personality.StateBasedPersonality object.
      * @param personalityFile File that the personality shall be initialized from.
      * @param multiIn Inputs for this conversation to act on.
      * @param multiOut Outputs for this conversation to act to.
-     * @param analyzers All analyzers necessary for analyzing the inputs from multiIn. Please provide these in correct order.
+     * @param analyzers All analyzers necessary for analyzing the inputs from multiIn. Please provide these in correct order,
+     *                  independent analyzers are run concurrently.
      */
-    public Conversation( StateBasedPersonality personality, File personalityFile, MultiInputDevice multiIn, MultiOutputDevice multiOut, List<Analyzer> analyzers){
-        super("roboy-conversation");
+    public Conversation(String uuid, StateBasedPersonality personality, File personalityFile, MultiInputDevice multiIn, MultiOutputDevice multiOut, List<Analyzer> analyzers){
+        this.uuid = uuid;
         this.multiIn = multiIn;
         this.multiOut = multiOut;
-        this.analyzers = analyzers;
+        this.analyzers = new AnalyzerScheduler(analyzers);
         this.personalityFile = personalityFile;
         this.personality = personality;
         try {
@@ -65,13 +93,78 @@ public class Conversation extends Thread {
         }
     }
 
+    /**
+     * @return The uuid of the interlocutor this conversation is held with.
+     */
+    public String getUuid() {
+        return uuid;
+    }
+
+    /**
+     * @return true if the conversation is parked and holds no thread
+     */
+    public boolean isParked() {
+        return paused;
+    }
+
+    /**
+     * @return time of the last input or start of the conversation in milliseconds
+     */
+    public long getLastActive() {
+        return lastActive;
+    }
+
+    /**
+     * @return the thread currently running this conversation, null if it is parked or not running
+     */
+    public synchronized Thread getWorker() {
+        return worker;
+    }
+
+    /**
+     * Starts the conversation on the shared thread pool.
+     */
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("Conversation already started");
+        }
+        started = true;
+        runtime.execute(this);
+    }
+
+    /**
+     * Continues a parked conversation on the shared thread pool because new input arrived.
+     * If the conversation is still running, it will not park before listening once more.
+     */
+    public synchronized void resume() {
+        if (!isRunning) {
+            return;
+        }
+        if (paused) {
+            paused = false;
+            runtime.execute(this);
+        } else {
+            wakeup = true;
+        }
+    }
+
+    /**
+     * Waits until the conversation has ended.
+     */
+    public void join() throws InterruptedException {
+        ended.await();
+    }
+
     /**
      * Ends conversation and resets state to initial. Does not reset gathered information.
      */
     synchronized void endConversation(boolean hardStop){//Ends conversation including
+        if (!isRunning) return;
         isRunning = false;
         personality.reset();
-        this.interrupt();//to wake conversations that wait for input
+        if (worker != null) {
+            worker.interrupt();//to wake conversations that wait for input
+        }
 
         if(!hardStop) {
             //Say bye
@@ -82,68 +175,145 @@ public class Conversation extends Thread {
 
         logger.info("############# Conversation forcibly ended ############");
 
+        if (paused || !started) {//nobody runs this conversation anymore, so clean up here
+            finish();
+        }
+    }
+
+    /**
+     * Parks the conversation unless it has been ended or resumed in the meantime.
+     * @return true if the running thread shall return
+     */
+    private synchronized boolean park() {
+        if (!isRunning || wakeup) {
+            wakeup = false;
+            return false;
+        }
+        worker = null;
+        paused = true;
+        logger.info("############# Conversation parked ############");
+        return true;
     }
 
+    private void finish() {
+        synchronized (this) {
+            if (finished) return;
+            finished = true;
+        }
+        personality.flushMemory();
+        multiIn.cleanup();
+        multiOut.cleanup();
+        ConversationManager.deregisterConversation(this);
+        ended.countDown();
+    }
 
     @Override
     public void run(){
+        synchronized (runLock) {
+            boolean running;
+            synchronized (this) {
+                running = isRunning;
+                worker = running ? Thread.currentThread() : null;
+            }
+            if (!running) {//ended while waiting for a thread
+                finish();
+                return;
+            }
+            converse();
+            Thread.interrupted();//do not pass an interrupt from endConversation on to the next task of the pool
+        }
+    }
+
+    private void converse(){
+        long parkTimeout = TimeUnit.SECONDS.toMillis(ConfigManager.CONVERSATION_PARK_TIMEOUT);
+        long timeout = TimeUnit.SECONDS.toMillis(ConfigManager.CONVERSATION_TIMEOUT);
 
         //start conversation
-        if(paused){//if this is a restart
-            paused = false;
+        boolean restarted = actions != null;
+        if(restarted){//if this is a restart, the last actions have already been done
             logger.info("############# Conversation restarted ############");
         } else {//if this is an initial start
             actions = personality.startConversation();
+            personality.flushMemory();
             logger.info("############# Conversation started ############");
         }
 
+        Tracer.Turn turn = null;//turn of the last input, it ends when its answer has been acted out
         while (isRunning) {
-            // do all actions defined in startConversation() or answer()
-            multiOut.act(actions);
+            if (!restarted) {
+                // do all actions defined in startConversation() or answer()
+                try (Tracer.Span span = Tracer.start("act")) {
+                    multiOut.act(actions);
+                }
+                if (turn != null) {
+                    turn.close();
+                    turn = null;
+                }
 
-            // now stop if conversation ended
-            if (personality.conversationEnded()) {
-                isRunning = false;
-                break;
+                // now stop if conversation ended
+                if (personality.conversationEnded()) {
+                    isRunning = false;
+                    break;
+                }
             }
+            restarted = false;
 
             // listen to interlocutor if conversation didn't end
             Input raw;
+            long listenStart = System.nanoTime();
             try {
-                raw = multiIn.listen(TimeUnit.SECONDS.toMillis(ConfigManager.CONVERSATION_TIMEOUT));
+                long wait = parkTimeout > 0 && (timeout == 0 || parkTimeout < timeout) ? parkTimeout : timeout;
+                raw = multiIn.listen(wait);
             } catch (Exception e) {
                 if(isRunning) {
                     logger.error("Exception in input: " + e.getMessage());
-                    return;
-                } else {
+                    isRunning = false;
+                }
+                break;
+            }
+
+            if (raw == null) {//nothing arrived in time
+                if (timeout > 0 && System.currentTimeMillis() - lastActive >= timeout) {
+                    logger.info("Conversation for " + uuid + " timed out!");
+                    isRunning = false;
+                    personality.reset();
                     break;
                 }
+                if (parkTimeout > 0 && park()) {
+                    return;
+                }
+                restarted = true;//listen again without repeating the last actions
+                continue;
             }
+            lastActive = System.currentTimeMillis();
+            Tracer.record("listen", System.nanoTime() - listenStart);
+            turn = Tracer.beginTurn(uuid);
 
             // analyze
             Interpretation interpretation = new Interpretation(raw.getSentence(), raw.getAttributes());
-            for (Analyzer a : analyzers) {
-                try {
-                    interpretation = a.analyze(interpretation);
-                } catch (Exception e) {
-                    logger.error("Exception in analyzer " + a.getClass().getName() + ": " + e.getMessage());
-                    e.printStackTrace();
-                }
-            }
+            interpretation.setConversationId(uuid);
+            interpretation = analyzers.analyze(interpretation);
             logger.debug(interpretation.toString());
 
             // answer
-            try {
+            try (Tracer.Span span = Tracer.start("answer")) {
                 actions = personality.answer(interpretation);
             } catch (Exception e) {
                 logger.error("Error in personality.answer: " + e.getMessage());
                 e.printStackTrace();
             }
+            // write what was learned during this turn
+            try (Tracer.Span span = Tracer.start("flushMemory")) {
+                personality.flushMemory();
+            }
+        }
+        if (turn != null) {//ended before the answer was acted out
+            turn.close();
         }
-        if(!paused){//if this thread is about to die
-            multiIn.cleanup();
-            multiOut.cleanup();
-            ConversationManager.deregisterConversation(this);
+        synchronized (this) {
+            worker = null;
         }
+        //the conversation is about to end
+        finish();
     }
 }
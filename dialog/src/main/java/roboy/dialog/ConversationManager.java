@@ -1,5 +1,6 @@
 package roboy.dialog;
 
+import edu.stanford.nlp.sempre.roboy.lexicons.word2vec.Word2vec;
 import edu.stanford.nlp.sempre.roboy.utils.logging.ParserLogController;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -16,10 +17,14 @@ import roboy.io.MultiOutputDevice;
 import roboy.linguistics.sentenceanalysis.*;
 import roboy.logic.Inference;
 import roboy.logic.InferenceEngine;
+import roboy.memory.EmbeddedMemory;
+import roboy.memory.MemoryUnitOfWork;
 import roboy.memory.Neo4jLabel;
 import roboy.memory.Neo4jMemory;
+import roboy.memory.Neo4jMemoryCache;
 import roboy.memory.Neo4jMemoryInterface;
 import roboy.memory.Neo4jProperty;
+import roboy.memory.TracedMemory;
 import roboy.memory.nodes.Interlocutor;
 import roboy.ros.RosMainNode;
 import roboy.talk.Verbalizer;
@@ -28,9 +33,13 @@ import roboy.util.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -41,7 +50,8 @@ import java.util.Scanner;
 public class ConversationManager {
 
     private final static Logger logger = LogManager.getLogger();
-    private final static HashMap<String, Conversation> conversations = new HashMap<>();
+    private final static Map<String, Conversation> conversations = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService sweeper;
     private static RosMainNode rosMainNode;
     private static List<Analyzer> analyzers;
     private static Neo4jMemoryInterface memory;
@@ -57,35 +67,31 @@ public class ConversationManager {
             rosMainNode = null;
         }
 
-        memory = new Neo4jMemory();
+        if ("embedded".equalsIgnoreCase(ConfigManager.MEMORY_BACKEND)) {
+            memory = ConfigManager.MEMORY_JOURNAL.isEmpty() ? new EmbeddedMemory()
+                    : new EmbeddedMemory(new File(ConfigManager.MEMORY_JOURNAL), ConfigManager.MEMORY_JOURNAL_SYNC);
+        } else {
+            memory = new Neo4jMemory();
+        }
+        if (ConfigManager.MEMORY_CACHE_SIZE > 0) {
+            memory = new Neo4jMemoryCache(memory, ConfigManager.MEMORY_CACHE_SIZE);
+        }
+        memory = new TracedMemory(memory);
+
+        //Serve the latencies of the dialog stages
+        if (ConfigManager.METRICS_PORT > 0) {
+            MetricsEndpoint.start(ConfigManager.METRICS_PORT);
+        }
 
 
         //Compose the analyzer chain.
 
         logger.info("Initializing analyzers...");
 
-        analyzers = new ArrayList<>();
+        // Load the word vectors in the background while the parser starts up
+        Word2vec.warmUp();
 
-
-        // Do not disable the Preprocessor!
-        analyzers.add(new Preprocessor());
-
-        //Disabled because Semantic Parser Analyzer is on anyways and will overwrite the Tokens generated by SimpleTokenizer
-        // If you want Simple States to run w/o SemanticParserAnalyzer, please uncomment SimpleTokenizer
-//        analyzers.add(new SimpleTokenizer());
-
-        analyzers.add(new SemanticParserAnalyzer());
-        //analyzers.add(new OpenNLPPPOSTagger());
-        analyzers.add(new DictionaryBasedSentenceTypeDetector());
-        //analyzers.add(new SentenceAnalyzer());
-        analyzers.add(new OpenNLPParser());
-        //analyzers.add(new OntologyNERAnalyzer());
-        analyzers.add(new AnswerAnalyzer());
-
-
-        analyzers.add(new EmotionAnalyzer());
-        analyzers.add(new ProfanityAnalyzer());
-        analyzers.add(new Postprocessor());
+        analyzers = createAnalyzers();
 
 
         //I/O specific core behaviour
@@ -135,6 +141,36 @@ public class ConversationManager {
             }
     }
 
+    /**
+     * Composes the analyzer chain every conversation runs its input through.
+     * @return analyzers in the order they are applied
+     */
+    public static List<Analyzer> createAnalyzers() {
+        List<Analyzer> analyzers = new ArrayList<>();
+
+
+        // Do not disable the Preprocessor!
+        analyzers.add(new Preprocessor());
+
+        //Disabled because Semantic Parser Analyzer is on anyways and will overwrite the Tokens generated by SimpleTokenizer
+        // If you want Simple States to run w/o SemanticParserAnalyzer, please uncomment SimpleTokenizer
+//        analyzers.add(new SimpleTokenizer());
+
+        analyzers.add(new SemanticParserAnalyzer());
+        //analyzers.add(new OpenNLPPPOSTagger());
+        analyzers.add(new DictionaryBasedSentenceTypeDetector());
+        //analyzers.add(new SentenceAnalyzer());
+        analyzers.add(new OpenNLPParser());
+        //analyzers.add(new OntologyNERAnalyzer());
+        analyzers.add(new AnswerAnalyzer());
+
+
+        analyzers.add(new EmotionAnalyzer());
+        analyzers.add(new ProfanityAnalyzer());
+        analyzers.add(new Postprocessor());
+        return analyzers;
+    }
+
     /**
      * Creates and spawns a conversation for a chatuser.
      * @param uuid should consist of "[world-interface-name]-[uuid]", if input allows only a single user, set to "local"
@@ -149,10 +185,80 @@ public class ConversationManager {
      * @param name the name of the Interlocutor. Necessary for unique adressing by name (local nodes)
      * @throws IOException If conversation could not created.
      */
-    public static void spawnConversation(String uuid, String name) throws IOException{
+    public static synchronized void spawnConversation(String uuid, String name) throws IOException{
+        if (conversations.containsKey(uuid)) {
+            return;
+        }
+        if (ConfigManager.MAX_CONVERSATIONS > 0 && conversations.size() >= ConfigManager.MAX_CONVERSATIONS && !evictIdleConversation()) {
+            throw new IOException("Maximum number of " + ConfigManager.MAX_CONVERSATIONS + " conversations reached");
+        }
         Conversation conversation = createConversation(rosMainNode, analyzers, new Inference(), memory, uuid, name);
         conversations.put(uuid, conversation);
         conversation.start();
+        startSweeper();
+    }
+
+    /**
+     * Continues the conversation for uuid on the shared thread pool if it is parked. Called when new input arrives.
+     * @param uuid should consist of "[world-interface-name]-[uuid]", if input allows only a single user, set to "local"
+     */
+    public static void resumeConversation(String uuid){
+        Conversation c = conversations.get(uuid);
+        if (c != null) {
+            c.resume();
+        }
+    }
+
+    /**
+     * @return number of registered conversations, including parked ones
+     */
+    public static int getConversationCount(){
+        return conversations.size();
+    }
+
+    /**
+     * Ends the parked conversation that has been idle the longest, to make room for a new one.
+     * @return false if no conversation is parked
+     */
+    private static boolean evictIdleConversation(){
+        Conversation oldest = null;
+        for (Conversation c : conversations.values()) {
+            if (c.isParked() && (oldest == null || c.getLastActive() < oldest.getLastActive())) {
+                oldest = c;
+            }
+        }
+        if (oldest == null) {
+            return false;
+        }
+        logger.info("Evicting idle conversation for " + oldest.getUuid());
+        oldest.endConversation(true);//deregisters the parked conversation right away
+        return true;
+    }
+
+    /**
+     * Periodically ends parked conversations that have been idle for longer than CONVERSATION_TIMEOUT.
+     * Running conversations time out by themselves while listening.
+     */
+    private static void startSweeper(){
+        if (sweeper != null || ConfigManager.CONVERSATION_TIMEOUT <= 0) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+            Thread thread = new Thread(r, "conversation-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long timeout = TimeUnit.SECONDS.toMillis(ConfigManager.CONVERSATION_TIMEOUT);
+        long period = Math.max(1, Math.min(ConfigManager.CONVERSATION_TIMEOUT, 60));
+        sweeper.scheduleWithFixedDelay(() -> {
+            long now = System.currentTimeMillis();
+            for (Conversation c : conversations.values()) {
+                if (c.isParked() && now - c.getLastActive() >= timeout) {
+                    logger.info("Conversation for " + c.getUuid() + " timed out!");
+                    c.endConversation(true);
+                }
+            }
+        }, period, period, TimeUnit.SECONDS);
     }
 
     /**
@@ -161,6 +267,13 @@ public class ConversationManager {
      */
     protected static void deregisterConversation(Conversation conversation){
         conversations.values().remove(conversation);
+        //free per-conversation analyzer state
+        if (analyzers == null) return;
+        for (Analyzer a : analyzers) {
+            if (a instanceof SemanticParserAnalyzer) {
+                ((SemanticParserAnalyzer) a).releaseSession(conversation.getUuid());
+            }
+        }
     }
 
     public static void stopConversation(String uuid){
@@ -168,7 +281,7 @@ public class ConversationManager {
     }
 
     /**
-     * Stops conversation thread for uuid.
+     * Stops conversation for uuid.
      * @param uuid should consist of "[world-interface-name]-[uuid]", if input allows only a single user, set to "local"
      * @param hardStop Roboy doesn't say bye on hardstop. Default = false
      */
@@ -184,16 +297,17 @@ public class ConversationManager {
     /**
      * returns the threadID of the conversation with interlocutor uuid
      * @param uuid should consist of "[world-interface-name]-[uuid]", if input allows only a single user, set to "local"
-     * @return null if thread does not exist, threadID otherwise
+     * @return null if conversation does not exist or is parked, threadID otherwise
      */
     public static Long getConversationThreadID(String uuid){
-        Thread conv = conversations.get(uuid);
+        Conversation conv = conversations.get(uuid);
+        Thread worker = (conv == null) ? null : conv.getWorker();
 
-        return (conv == null) ? null : (Long)conv.getId();
+        return (worker == null) ? null : (Long)worker.getId();
     }
 
     /**
-     * Creates and initializes a new conversation thread. Only use for local threads that don't have uuids (uuid=local). Does not start the thread.
+     * Creates and initializes a new conversation. Only use for local conversations that don't have uuids (uuid=local). Does not start the conversation.
      * @param rosMainNode ROS node. Set null if ROS_ENABLED=false
      * @param analyzers   All analyzers necessary for analyzing the inputs from multiIn. Please provide these in correct order.
      * @param inference Inference engine. The better, the smarter roboy gets.
@@ -214,7 +328,7 @@ public class ConversationManager {
 
 
         /**
-         * Creates and initializes a new conversation thread. Does not start the thread.
+         * Creates and initializes a new conversation. Does not start the conversation.
          * @param rosMainNode ROS node. Set null if ROS_ENABLED=false
          * @param analyzers   All analyzers necessary for analyzing the inputs from multiIn. Please provide these in correct order.
          * @param inference Inference engine. The better, the smarter roboy gets.
@@ -243,15 +357,18 @@ public class ConversationManager {
             context.initializeROS(rosMainNode);
         }
 
+        //Collect the memory updates of every dialog turn, so they are written at once.
+        Neo4jMemoryInterface conversationMemory = (memory == null) ? null : new MemoryUnitOfWork(memory);
+
         //Create this conversations statemachine.
-        StateBasedPersonality personality = new StateBasedPersonality(inference, rosMainNode, memory, context, new Verbalizer());
+        StateBasedPersonality personality = new StateBasedPersonality(inference, rosMainNode, conversationMemory, context, new Verbalizer());
         File personalityFile = new File(ConfigManager.PERSONALITY_FILE);
 
         //Set the interlocutor.
         if(memory == null){
             logger.error("Memory is null while starting a conversation");
         }
-        Interlocutor person = new Interlocutor(memory);
+        Interlocutor person = new Interlocutor(conversationMemory);
 
         //memory uuid handling
         if(name != null) {
@@ -271,7 +388,7 @@ public class ConversationManager {
         context.ACTIVE_INTERLOCUTOR_UPDATER.updateValue(person);
 
 
-        return new Conversation(personality, personalityFile, multiIn, multiOut, analyzers);
+        return new Conversation(uuid, personality, personalityFile, multiIn, multiOut, analyzers);
     }
 
     /**
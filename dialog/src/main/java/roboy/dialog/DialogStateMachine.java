@@ -13,7 +13,7 @@ import roboy.ros.RosMainNode;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.HashMap;
 import java.util.Map;
@@ -26,8 +26,9 @@ import java.util.Map;
  *
  * Personality files are JSON files that define a set of dialog states and transitions between them
  * (see examples in resources/personalityFiles/tutorial/). Every state definition in the file has an identifier
- * and specifies the implementation (class name) for the state. During parsing of the personality file
- * this class will take the class name and create a Java State object using Java reflection.
+ * and specifies the implementation (class name) for the state. A personality file is compiled once into a
+ * StateMachineBlueprint, which resolves the constructor of every class name using Java reflection.
+ * Every state machine loaded from it only creates its own State objects with these constructors.
  */
 public class DialogStateMachine {
 
@@ -129,6 +130,20 @@ public class DialogStateMachine {
 
     public Context getContext() { return context; }
 
+    /**
+     * Writes the memory updates that were deferred during the last dialog turn.
+     */
+    public void flushMemory() {
+        if (memory == null) {
+            return;
+        }
+        try {
+            memory.flush();
+        } catch (InterruptedException | IOException e) {
+            logger.error("Could not write memory updates: " + e.getMessage());
+        }
+    }
+
     /**
      * Returns the initial state for this state machine.
      * @return initial state for this state machine
@@ -248,71 +263,49 @@ public class DialogStateMachine {
     public void loadFromString(String s) {
         JsonParser parser = new JsonParser();
         JsonElement json = parser.parse(s);
-        loadFromJSON(json);
+        loadFromBlueprint(StateMachineBlueprint.compile(json));
     }
 
     /**
      * Loads state machine from a personality file. File must contain a valid personality definition.
+     * The file is compiled only once and shared by all state machines loaded from it.
      * @param f file with the personality definition
      * @throws FileNotFoundException if file is not found
      */
     public void loadFromFile(File f) throws FileNotFoundException {
-        JsonParser parser = new JsonParser();
-        JsonElement json = parser.parse(new FileReader(f));
-        loadFromJSON(json);
+        loadFromBlueprint(StateMachineBlueprint.compile(f));
     }
 
 
     /**
-     * Main function that parses a JSON personality object and creates a state machine.
-     * Required properties:
-     * - initialState (string identifier)
-     * - states (array of state definitions)
-     * Optional properties:
-     * - comment (personality file comment)
-     * @param json json object with the personality definition
+     * Main function that creates the states of a compiled personality and connects them.
+     * @param blueprint compiled personality, null leaves the state machine empty
      */
-    private void loadFromJSON(JsonElement json) {
+    public void loadFromBlueprint(StateMachineBlueprint blueprint) {
         identifierToState.clear();
         optionalPersFileInfo.clear();
         activeState = null;
         initialState = null;
 
-        if (!json.isJsonObject()) {
-            logger.error("loadFromJSON(): State machine must be a JSON object!");
-            return;
-        }
-        JsonObject personalityJson = json.getAsJsonObject();
-
-        JsonElement commentJson = personalityJson.get("comment");
-        if (commentJson != null) {
-            optionalPersFileInfo.put("comment", commentJson.getAsString());
-        }
-
-        JsonElement initialStateJson = personalityJson.get("initialState");
-        if (initialStateJson == null) {
-            logger.error("loadFromJSON(): Initial state not defined!");
+        if (blueprint == null) {
+            logger.error("loadFromBlueprint(): No valid personality to load!");
             return;
         }
-        String initialStateIdentifier = initialStateJson.getAsString();
 
-        JsonElement statesJson = personalityJson.get("states");
-        if (statesJson == null) {
-            logger.error("loadFromJSON(): states not defined!");
-            return;
+        if (blueprint.getComment() != null) {
+            optionalPersFileInfo.put("comment", blueprint.getComment());
         }
-        JsonArray statesJsA = statesJson.getAsJsonArray();
 
         // for each state: create an object of the correct type and add it to the hash map
-        parseAndCreateStates(statesJsA);
+        createStates(blueprint);
 
         // now all states were converted into objects
         // set initial state
-        setInitialState(initialStateIdentifier);  // actually also sets the active state in this case
-        setActiveState(initialStateIdentifier);
+        setInitialState(blueprint.getInitialState());  // actually also sets the active state in this case
+        setActiveState(blueprint.getInitialState());
 
         // set fallbacks and transitions (if defined)
-        parseAndSetTransitionsAndFallbacks(statesJsA, identifierToState);
+        setTransitionsAndFallbacks(blueprint, identifierToState);
 
         // check if all states have all required transitions initialized correctly
         checkSuccessfulInitialization(identifierToState);
@@ -320,54 +313,41 @@ public class DialogStateMachine {
 
     //endregion
 
-    //region parsing & init checks
+    //region state creation & init checks
 
     /**
-     * Parses parameters from the state json object. A new instance of StateParameters is created.
-     * @param stateJsO json object representing a state
-     * @return StateParameters instance with all parameters defined in json object
+     * Creates the parameters of a state. A new instance of StateParameters is created.
+     * @param definition state definition
+     * @return StateParameters instance with all parameters of the definition
      */
-    private StateParameters parseStateParameters(JsonObject stateJsO) {
+    private StateParameters createStateParameters(StateMachineBlueprint.StateDefinition definition) {
         StateParameters params = new StateParameters(this, rosMainNode, memory);
-
-        // set the transitions
-        JsonObject paramsJsO = stateJsO.getAsJsonObject("parameters");
-        if (paramsJsO != null && !paramsJsO.isJsonNull()) {
-
-            for (Map.Entry<String,JsonElement> entry : paramsJsO.entrySet()) {
-                String paramName = entry.getKey();
-                String paramValue = entry.getValue().getAsString();
-                params.setParameter(paramName, paramValue);
-            }
+        for (Map.Entry<String, String> entry : definition.getParameters().entrySet()) {
+            params.setParameter(entry.getKey(), entry.getValue());
         }
-
         return params;
     }
 
     /**
-     * Parses every element of the json array and creates a state java object.
-     * State parameters are parsed before the object is created.
-     * @param statesJsA json array containing states
+     * Creates a state java object for every state definition with its resolved constructor.
+     * @param blueprint compiled personality
      */
-    private void parseAndCreateStates(JsonArray statesJsA) {
-        for (JsonElement stateJsE : statesJsA) {
-            JsonObject stateJsO = stateJsE.getAsJsonObject();
-            StateParameters params = parseStateParameters(stateJsO);
+    private void createStates(StateMachineBlueprint blueprint) {
+        for (StateMachineBlueprint.StateDefinition definition : blueprint.getStates()) {
+            String identifier = definition.getIdentifier();
 
-            String identifier = stateJsO.get("identifier").getAsString();
-            String implClassName = stateJsO.get("implementation").getAsString();
-
-            // create state object by class name with java reflection
-            State state = StateFactory.createStateByClassName(implClassName, identifier, params);
+            State state = null;
+            if (definition.getConstructor() != null) {
+                state = StateFactory.createState(definition.getConstructor(), identifier, createStateParameters(definition));
+            }
             if (state == null) {
-                logger.error("parseAndCreateStates(): state " + identifier + " was not created!");
+                logger.error("createStates(): state " + identifier + " was not created!");
                 continue;
             }
 
             // set optional values
-            JsonElement commentJson = stateJsO.get("comment");
-            if (commentJson != null) {
-                state.setOptionalPersFileInfo("comment", commentJson.getAsString());
+            if (definition.getComment() != null) {
+                state.setOptionalPersFileInfo("comment", definition.getComment());
             }
 
             addState(state);
@@ -376,16 +356,14 @@ public class DialogStateMachine {
     }
 
     /**
-     * Parses every element of the json array (containing states). For every state, finds and sets the fallback if
-     * defined. State transitions are also initialized.
-     * @param statesJsA json array containing states
+     * For every state definition, finds and sets the fallback if defined. State transitions are also initialized.
+     * @param blueprint compiled personality
      * @param idToState initialized hash map that resolves state IDs to state java objects
      */
-    private void parseAndSetTransitionsAndFallbacks(JsonArray statesJsA, HashMap<String, State> idToState) {
-        for (JsonElement stateJsE : statesJsA) {
-            JsonObject stateJsO = stateJsE.getAsJsonObject();
+    private void setTransitionsAndFallbacks(StateMachineBlueprint blueprint, HashMap<String, State> idToState) {
+        for (StateMachineBlueprint.StateDefinition definition : blueprint.getStates()) {
 
-            String identifier = stateJsO.get("identifier").getAsString();
+            String identifier = definition.getIdentifier();
             State thisState = idToState.get(identifier);
 
             if (thisState == null) {
@@ -393,36 +371,29 @@ public class DialogStateMachine {
             }
 
             // check if fallback is defined
-            JsonElement fallbackJsE = stateJsO.get("fallback");
-            if (fallbackJsE != null && !fallbackJsE.isJsonNull()) {
-                String fallbackIdentifier = fallbackJsE.getAsString();
-                if (fallbackIdentifier != null) {
-                    State fallbackState = idToState.get(fallbackIdentifier);
-                    if (fallbackState == null) {
-                        logger.error("parseAndSetTransitionsAndFallbacks(): fallback "
-                                + fallbackIdentifier + " missing!");
-                    } else {
-                        thisState.setFallback(fallbackState);
-                    }
+            String fallbackIdentifier = definition.getFallback();
+            if (fallbackIdentifier != null) {
+                State fallbackState = idToState.get(fallbackIdentifier);
+                if (fallbackState == null) {
+                    logger.error("setTransitionsAndFallbacks(): fallback "
+                            + fallbackIdentifier + " missing!");
+                } else {
+                    thisState.setFallback(fallbackState);
                 }
             }
 
 
             // set the transitions
-            JsonObject transitions = stateJsO.getAsJsonObject("transitions");
-            if (transitions != null && !transitions.isJsonNull()) {
-
-                for (Map.Entry<String,JsonElement> entry : transitions.entrySet()) {
-                    String tranName = entry.getKey();
-                    String transTargetID = entry.getValue().getAsString();
-                    State transTargetState = idToState.get(transTargetID);
-                    if (transTargetState == null) {
-                        logger.error("parseAndSetTransitionsAndFallbacks(): transition with name "
-                                + transTargetID + " has no target!");
-
-                    } else {
-                        thisState.setTransition(tranName, transTargetState);
-                    }
+            for (Map.Entry<String, String> entry : definition.getTransitions().entrySet()) {
+                String tranName = entry.getKey();
+                String transTargetID = entry.getValue();
+                State transTargetState = idToState.get(transTargetID);
+                if (transTargetState == null) {
+                    logger.error("setTransitionsAndFallbacks(): transition with name "
+                            + transTargetID + " has no target!");
+
+                } else {
+                    thisState.setTransition(tranName, transTargetState);
                 }
             }
         }
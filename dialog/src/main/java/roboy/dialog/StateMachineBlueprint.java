@@ -0,0 +1,216 @@
+package roboy.dialog;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import roboy.dialog.states.definitions.State;
+import roboy.dialog.states.definitions.StateFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled, immutable form of a personality file.
+ *
+ * The personality JSON is parsed once, state classes are looked up and their constructors resolved once.
+ * A DialogStateMachine then only has to call the constructors and connect the new states, which makes
+ * creating a state machine for every new conversation cheap. Blueprints of personality files are cached
+ * and shared between all conversations until the file changes.
+ */
+public final class StateMachineBlueprint {
+
+    private final static Logger logger = LogManager.getLogger();
+
+    /** maps canonical file paths to compiled personality files */
+    private final static Map<String, StateMachineBlueprint> compiled = new ConcurrentHashMap<>();
+
+    /**
+     * Definition of a single state from the personality file.
+     */
+    public static final class StateDefinition {
+        private final String identifier;
+        private final String implementation;
+        private final Constructor<? extends State> constructor;
+        private final Map<String, String> parameters;
+        private final Map<String, String> transitions;
+        private final String fallback;
+        private final String comment;
+
+        private StateDefinition(JsonObject stateJsO) {
+            identifier = stateJsO.get("identifier").getAsString();
+            implementation = stateJsO.get("implementation").getAsString();
+            constructor = StateFactory.getStateConstructor(implementation);
+            parameters = readStringMap(stateJsO.getAsJsonObject("parameters"));
+            transitions = readStringMap(stateJsO.getAsJsonObject("transitions"));
+
+            JsonElement fallbackJsE = stateJsO.get("fallback");
+            fallback = (fallbackJsE == null || fallbackJsE.isJsonNull()) ? null : fallbackJsE.getAsString();
+            JsonElement commentJson = stateJsO.get("comment");
+            comment = (commentJson == null) ? null : commentJson.getAsString();
+        }
+
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        public String getImplementation() {
+            return implementation;
+        }
+
+        /**
+         * @return constructor (String id, StateParameters params) of the implementation or null if it could not be resolved
+         */
+        public Constructor<? extends State> getConstructor() {
+            return constructor;
+        }
+
+        public Map<String, String> getParameters() {
+            return parameters;
+        }
+
+        public Map<String, String> getTransitions() {
+            return transitions;
+        }
+
+        public String getFallback() {
+            return fallback;
+        }
+
+        public String getComment() {
+            return comment;
+        }
+    }
+
+    private final String initialState;
+    private final String comment;
+    private final List<StateDefinition> states;
+    private final long lastModified;
+
+    private StateMachineBlueprint(String initialState, String comment, List<StateDefinition> states, long lastModified) {
+        this.initialState = initialState;
+        this.comment = comment;
+        this.states = Collections.unmodifiableList(states);
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Returns the compiled personality file. The file is only parsed again if it has been modified.
+     * @param f file with the personality definition
+     * @return blueprint or null if the file does not contain a valid personality
+     * @throws FileNotFoundException if file is not found
+     */
+    public static StateMachineBlueprint compile(File f) throws FileNotFoundException {
+        String key;
+        try {
+            key = f.getCanonicalPath();
+        } catch (IOException e) {
+            key = f.getAbsolutePath();
+        }
+        long lastModified = f.lastModified();
+        StateMachineBlueprint blueprint = compiled.get(key);
+        if (blueprint != null && blueprint.lastModified == lastModified) {
+            return blueprint;
+        }
+
+        try (Reader reader = new FileReader(f)) {
+            blueprint = compile(new JsonParser().parse(reader), lastModified);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            logger.error("compile(): Could not read " + f + ": " + e.getMessage());
+            return null;
+        }
+        if (blueprint != null) {
+            compiled.put(key, blueprint);
+        }
+        return blueprint;
+    }
+
+    /**
+     * Compiles a JSON personality object. The result is not cached.
+     * @param json json object with the personality definition
+     * @return blueprint or null if json is not a valid personality
+     */
+    public static StateMachineBlueprint compile(JsonElement json) {
+        return compile(json, 0);
+    }
+
+    /**
+     * Required properties:
+     * - initialState (string identifier)
+     * - states (array of state definitions)
+     * Optional properties:
+     * - comment (personality file comment)
+     */
+    private static StateMachineBlueprint compile(JsonElement json, long lastModified) {
+        if (!json.isJsonObject()) {
+            logger.error("compile(): State machine must be a JSON object!");
+            return null;
+        }
+        JsonObject personalityJson = json.getAsJsonObject();
+
+        JsonElement commentJson = personalityJson.get("comment");
+        String comment = (commentJson == null) ? null : commentJson.getAsString();
+
+        JsonElement initialStateJson = personalityJson.get("initialState");
+        if (initialStateJson == null) {
+            logger.error("compile(): Initial state not defined!");
+            return null;
+        }
+
+        JsonElement statesJson = personalityJson.get("states");
+        if (statesJson == null) {
+            logger.error("compile(): states not defined!");
+            return null;
+        }
+        JsonArray statesJsA = statesJson.getAsJsonArray();
+
+        List<StateDefinition> states = new ArrayList<>(statesJsA.size());
+        for (JsonElement stateJsE : statesJsA) {
+            states.add(new StateDefinition(stateJsE.getAsJsonObject()));
+        }
+        return new StateMachineBlueprint(initialStateJson.getAsString(), comment, states, lastModified);
+    }
+
+    private static Map<String, String> readStringMap(JsonObject jsO) {
+        if (jsO == null || jsO.isJsonNull()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> map = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonElement> entry : jsO.entrySet()) {
+            map.put(entry.getKey(), entry.getValue().getAsString());
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    public String getInitialState() {
+        return initialState;
+    }
+
+    /**
+     * @return personality file comment or null
+     */
+    public String getComment() {
+        return comment;
+    }
+
+    /**
+     * @return all state definitions in the order of the personality file
+     */
+    public List<StateDefinition> getStates() {
+        return states;
+    }
+}
@@ -54,7 +54,7 @@ public class BotBoyIntroductionState extends State {
         super(stateIdentifier, params);
         String infoListPath = params.getParameter(INFO_FILE_PARAMETER_ID);
         LOGGER.info(" -> The infoList path: " + infoListPath);
-        infoValues = new QAJsonParser(infoListPath);
+        infoValues = QAJsonParser.getShared(infoListPath);
     }
 
     @Override
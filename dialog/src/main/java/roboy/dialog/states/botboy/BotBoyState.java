@@ -57,7 +57,7 @@ public class BotBoyState extends State {
         next = this;
         String infoListPath = params.getParameter(INFO_FILE_PARAMETER_ID);
         LOGGER.info(" -> The infoList path: " + infoListPath);
-        infoValues = new QAJsonParser(infoListPath);
+        infoValues = QAJsonParser.getShared(infoListPath);
     }
 
     // first we wait for conversation to start
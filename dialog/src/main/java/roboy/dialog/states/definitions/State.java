@@ -228,6 +228,7 @@ public abstract class State {
     //region variables & constructor
 
     private final Logger logger = LogManager.getLogger();
+    private final static Gson gson = new Gson();
 
     // State name/identifier
     private String stateIdentifier;
@@ -696,9 +697,7 @@ public abstract class State {
 
         if (ids != null && !ids.isEmpty()) {
             try {
-                Gson gson = new Gson();
-                for (Integer id : ids) {
-                    String requestedObject = getMemory().getById(id);
+                for (String requestedObject : getMemory().getByIds(ids)) {
                     retrievedNodes.add(gson.fromJson(requestedObject, MemoryNodeModel.class));
                 }
             } catch (InterruptedException | IOException e) {
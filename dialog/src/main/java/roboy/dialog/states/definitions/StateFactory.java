@@ -45,6 +45,23 @@ public class StateFactory {
      * @return a new instance of a State object of specified class OR null if something goes wrong
      */
     public static State createStateByClassName(String className, String stateIdentifier, StateParameters parameters) {
+        Constructor<? extends State> ctor = getStateConstructor(className);
+        if (ctor == null) {
+            return null;
+        }
+        return createState(ctor, stateIdentifier, parameters);
+    }
+
+    /**
+     * Looks up the constructor (String id, StateParameters params) of a State class.
+     * The constructor can be kept and used with createState(...) to create many states without repeating the lookup.
+     *
+     * This function doesn't throw Exceptions and will return null if something goes wrong.
+     *
+     * @param className full class name of the State
+     * @return constructor OR null if something goes wrong
+     */
+    public static Constructor<? extends State> getStateConstructor(String className) {
 
         if (className == null) {
             logger.warn("null was passed as className! This is not going to work");
@@ -69,20 +86,32 @@ public class StateFactory {
         }
 
         // get correct constructor (String id, StateParameters params)
-        Constructor ctor;
         try {
-            ctor = cls.getConstructor(String.class, StateParameters.class);
+            return cls.asSubclass(State.class).getConstructor(String.class, StateParameters.class);
         } catch (NoSuchMethodException e) {
             logger.warn("NoSuchMethodException for " + className + "! Make sure that the class has a constructor " +
                     "that takes exactly two parameters: ClassName(String id, StateParameters params).");
             logger.warn("Exception message: " + e.getMessage());
             return null;
         }
+    }
+
+    /**
+     * Create a Java State object with a constructor obtained from getStateConstructor(...).
+     *
+     * This function doesn't throw Exceptions and will return null if something goes wrong.
+     *
+     * @param ctor constructor (String id, StateParameters params) of the State class
+     * @param stateIdentifier state identifier/name (this is NOT the class name!)
+     * @param parameters state parameters
+     * @return a new instance of a State object OR null if something goes wrong
+     */
+    public static State createState(Constructor<? extends State> ctor, String stateIdentifier, StateParameters parameters) {
+        String className = ctor.getDeclaringClass().getName();
 
         // create an object of that class
-        Object stateObj;
         try {
-            stateObj = ctor.newInstance(stateIdentifier, parameters);
+            return ctor.newInstance(stateIdentifier, parameters);
         }catch (InstantiationException  e){
             logger.warn("[InstantiationException]Could not create an instance of " + className);
             return null;
@@ -95,20 +124,6 @@ public class StateFactory {
             logger.warn("[IllegalAccessException]Could not create an instance of " + className);
             return null;
         }
-//        catch (InstantiationException | InvocationTargetException | IllegalAccessException e) {
-//            logger.warn("Could not create an instance of " + className);
-//            logger.warn("Exception message: " + e.getMessage());
-//            return null;
-//        }
-
-        // additional check if the created instance is really a subclass of State
-        // this should be always the case
-        if ( ! (stateObj instanceof State)) {
-            logger.warn("Created instance of class " + className + " is not a sub class of State! Weird!");
-            return null;
-        }
-
-        return (State) stateObj;
     }
 
 
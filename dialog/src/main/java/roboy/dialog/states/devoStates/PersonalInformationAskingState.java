@@ -53,7 +53,7 @@ public class PersonalInformationAskingState extends State {
         super(stateIdentifier, params);
         String qaListPath = params.getParameter(QA_FILE_PARAMETER_ID);
         LOGGER.info(" -> The QAList path: " + qaListPath);
-        qaValues = new QAJsonParser(qaListPath);
+        qaValues = QAJsonParser.getShared(qaListPath);
     }
 
     @Override
@@ -79,7 +79,7 @@ public class QuestionRoboyQAState extends ExpoState {
         super(stateIdentifier, params);
         String infoListPath = params.getParameter(INFO_FILE_PARAMETER_ID);
         LOGGER.info("The infoList path: " + infoListPath);
-        infoValues = new QAJsonParser(infoListPath);
+        infoValues = QAJsonParser.getShared(infoListPath);
     }
 
     @Override
@@ -44,7 +44,7 @@ public class UzupisState extends State {
         super(stateIdentifier, params);
         String qaListPath = params.getParameter(QAFILEPATH);
         logger.info(" -> The qa list path: " + qaListPath);
-        QAJsonParser parser = new QAJsonParser(qaListPath);
+        QAJsonParser parser = QAJsonParser.getShared(qaListPath);
 
         CertificatesGeneratorScript = params.getParameter(CERTIFICATESGENERATOR);
 
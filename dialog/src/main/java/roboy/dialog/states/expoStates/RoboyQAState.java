@@ -61,7 +61,7 @@ public class RoboyQAState extends ExpoState {
         super(stateIdentifier, params);
         String infoListPath = params.getParameter(INFO_FILE_PARAMETER_ID);
         LOGGER.info(" -> The infoList path: " + infoListPath);
-        infoValues = new QAJsonParser(infoListPath);
+        infoValues = QAJsonParser.getShared(infoListPath);
     }
 
     @Override
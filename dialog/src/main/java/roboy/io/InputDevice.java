@@ -8,6 +8,10 @@ import java.io.IOException;
 public interface InputDevice {
 	public Input listen() throws InterruptedException, IOException;
 
+	/**
+	 * Devices that can wait with a timeout return null if no input arrived in time,
+	 * which lets the conversation park. By default, the timeout is ignored.
+	 */
 	default public Input listen(long timeout) throws InterruptedException, IOException {
 		return this.listen();
 	}
@@ -28,6 +28,9 @@ public class MultiInputDevice implements InputDevice, CleanUp{
 	@Override
 	public Input listen(long timeout) throws InterruptedException, IOException {
 		Input result = mainInput.listen(timeout);
+		if(result == null){//timed out
+			return null;
+		}
 		for(InputDevice device : additionalInputs){
 			Input i = device.listen(timeout);
 			result.setAttributes(i.getAttributes());
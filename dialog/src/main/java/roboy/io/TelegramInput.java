@@ -7,7 +7,7 @@ import roboy.dialog.ConversationManager;
 import roboy.util.Pair;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles telegram API and hands threads their respective messages.
@@ -19,7 +19,7 @@ import java.util.HashMap;
 public class TelegramInput implements InputDevice, CleanUp {
     //static part since there is only one API handle
     private static final Logger logger = LogManager.getLogger();
-    private static final HashMap<String, TelegramInput> inputDevices = new HashMap<>(); //maps uuid to InputDevices so we can sort messages into them
+    private static final ConcurrentHashMap<String, TelegramInput> inputDevices = new ConcurrentHashMap<>(); //maps uuid to InputDevices so we can sort messages into them
 
     private volatile String message; //one input message per thread; is volatile since the TelegramAPI thread calls onUpdate and writes into it while the Conversation thread reads it in listen()
 
@@ -30,9 +30,7 @@ public class TelegramInput implements InputDevice, CleanUp {
      */
     public TelegramInput(String uuid){//since this is half-static, the constructor is empty
         this.message = "";
-        synchronized (inputDevices){//place this in hashmap so we can find it when we want to deliver a new message
-            inputDevices.put(uuid, this);
-        }
+        inputDevices.put(uuid, this);//place this in the map so we can find it when we want to deliver a new message
     }
 
     /**
@@ -63,6 +61,8 @@ public class TelegramInput implements InputDevice, CleanUp {
             //make thread do work!
             input.notify();
         }
+        //continue the conversation if it has been parked
+        ConversationManager.resumeConversation(uuid);
     }
 
     @Override
@@ -72,8 +72,9 @@ public class TelegramInput implements InputDevice, CleanUp {
 
     /**
      * Thread waits in listen() until a new input is provided and the thread is interrupted, then returns with said input.
-     * If the thread is interrupted without Input waiting to be consumed, listen() throws an IOException
+     * If the thread is interrupted without Input waiting to be consumed, listen() throws an InterruptedException
      * @param timeout timeout in ms, no timeout if timeout = 0
+     * @return the input, or null if no input arrived before the timeout
      * @throws InterruptedException: InterruptedException thrown by the thread when interrupted while wait()ing
      * @throws IllegalArgumentException if timeout is negative (should be prevented via ConfigManager)
      */
@@ -81,21 +82,19 @@ public class TelegramInput implements InputDevice, CleanUp {
     public Input listen(long timeout) throws InterruptedException {
         Input newInput;
         synchronized (this) {
+            long deadline = System.currentTimeMillis() + timeout;
             while(message.equals("")){//while no new messages for this thread exist: wait
+                long remaining = deadline - System.currentTimeMillis();
+                if(timeout > 0 && remaining <= 0){//timeout triggered, the conversation decides whether to park or end
+                    return null;
+                }
                 try {
-                    this.wait(timeout);
+                    this.wait(timeout > 0 ? remaining : 0);
                 }catch (InterruptedException e) {//Thread woke up! Process new information!
                     if(message == null || message.equals("")){//if this interrupt was not triggered because new messages arrived, throw exception to be handled
                         throw e;
                     }
                 }
-                if(message == null || message.equals("")){//timeout triggered
-                    String uuid = "";
-                    for(String id : inputDevices.keySet()) if(inputDevices.get(id) == this) uuid = id;
-
-                    logger.info("Conversation for " + uuid + "timed out!");
-                    ConversationManager.stopConversation(uuid, true);
-                }
             }
             newInput = new Input(message);
             message = ""; //consume message
@@ -0,0 +1,49 @@
+package roboy.linguistics;
+
+import roboy.logic.Inference;
+import roboy.talk.PhraseCollection;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Phrase lists analyzers and the inference look for in utterances. All lists are compiled into
+ * one shared PhraseMatcher, so finding all of them takes a single pass over the tokens.
+ */
+public enum KeyPhrase {
+    PROFANITY,
+    /** Agreement, e.g. "yes" or "go ahead" */
+    POSITIVE,
+    /** Refusal, e.g. "no" or "later" */
+    NEGATIVE,
+    /** Uncertainty, e.g. "maybe" or "not sure" */
+    UNCERTAIN;
+
+    private static PhraseMatcher<KeyPhrase> matcher;
+
+    /**
+     * @return matcher of all phrase lists, compiled on first use
+     */
+    public static synchronized PhraseMatcher<KeyPhrase> getMatcher() {
+        if (matcher == null) {
+            Map<KeyPhrase, Collection<String>> phrases = new EnumMap<>(KeyPhrase.class);
+            phrases.put(PROFANITY, PhraseCollection.PROFANITY_CHECK_WORDS);
+            phrases.put(POSITIVE, Inference.positiveTokens);
+            phrases.put(NEGATIVE, Inference.negativeTokens);
+            phrases.put(UNCERTAIN, Inference.uncertaintyTokens);
+            matcher = new PhraseMatcher<>(phrases);
+        }
+        return matcher;
+    }
+
+    /**
+     * @param tokens tokens of an utterance, may be null
+     * @return the phrase lists occurring in the tokens
+     */
+    public static Set<KeyPhrase> find(List<String> tokens) {
+        return getMatcher().find(tokens);
+    }
+}
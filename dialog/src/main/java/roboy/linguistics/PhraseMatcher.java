@@ -0,0 +1,108 @@
+package roboy.linguistics;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Finds the phrases of several lists in the tokens of an utterance in a single pass.
+ *
+ * The phrases are compiled into an Aho-Corasick automaton over tokens, so matching takes time linear
+ * in the number of tokens, independent of the number and length of the phrases. Phrases are split into
+ * tokens at whitespace and can consist of several words like "go ahead". Tokens are compared ignoring case.
+ *
+ * @param <L> labels of the phrase lists
+ */
+public class PhraseMatcher<L> {
+
+    private static class Node<L> {
+        private final Map<String, Node<L>> children = new HashMap<>();
+        private Node<L> failure;
+        // Labels of the phrases ending in this node, including phrases that are suffixes of them
+        private final Set<L> labels = new HashSet<>();
+    }
+
+    private final Node<L> root = new Node<>();
+
+    /**
+     * Compiles the phrase lists, this should be done once and the matcher shared.
+     *
+     * @param phrases phrase lists by their label
+     */
+    public PhraseMatcher(Map<L, ? extends Collection<String>> phrases) {
+        for (Map.Entry<L, ? extends Collection<String>> list : phrases.entrySet()) {
+            for (String phrase : list.getValue()) {
+                add(list.getKey(), phrase);
+            }
+        }
+        link();
+    }
+
+    private void add(L label, String phrase) {
+        String[] tokens = phrase.trim().toLowerCase().split("\\s+");
+        if (tokens[0].isEmpty()) {
+            return;
+        }
+        Node<L> node = root;
+        for (String token : tokens) {
+            node = node.children.computeIfAbsent(token, t -> new Node<>());
+        }
+        node.labels.add(label);
+    }
+
+    /**
+     * Links every node to the node of its longest proper suffix in breadth first order.
+     */
+    private void link() {
+        root.failure = root;
+        Queue<Node<L>> queue = new ArrayDeque<>();
+        for (Node<L> child : root.children.values()) {
+            child.failure = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node<L> node = queue.remove();
+            for (Map.Entry<String, Node<L>> child : node.children.entrySet()) {
+                Node<L> failure = node.failure;
+                while (failure != root && !failure.children.containsKey(child.getKey())) {
+                    failure = failure.failure;
+                }
+                Node<L> suffix = failure.children.get(child.getKey());
+                child.getValue().failure = (suffix == null) ? root : suffix;
+                child.getValue().labels.addAll(child.getValue().failure.labels);
+                queue.add(child.getValue());
+            }
+        }
+    }
+
+    /**
+     * @param tokens tokens of an utterance, may be null
+     * @return labels of all lists with a phrase occurring in the tokens
+     */
+    public Set<L> find(List<String> tokens) {
+        if (tokens == null) {
+            return Collections.emptySet();
+        }
+        Set<L> found = new HashSet<>();
+        Node<L> node = root;
+        for (String token : tokens) {
+            if (token == null) {
+                node = root;
+                continue;
+            }
+            String word = token.toLowerCase();
+            while (node != root && !node.children.containsKey(word)) {
+                node = node.failure;
+            }
+            node = node.children.getOrDefault(word, root);
+            found.addAll(node.labels);
+        }
+        return found;
+    }
+}
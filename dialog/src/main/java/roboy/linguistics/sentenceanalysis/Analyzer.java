@@ -1,5 +1,7 @@
 package roboy.linguistics.sentenceanalysis;
 
+import java.util.Set;
+
 /**
  * All linguistic analyses implement the Analyzer interface. An analyzer always takes an
  * existing interpretation of a sentence and returns one including its own analysis results 
@@ -8,5 +10,31 @@ package roboy.linguistics.sentenceanalysis;
 public interface Analyzer {
 
 	public Interpretation analyze(Interpretation sentence);
-	
+
+	/**
+	 * Fields of the interpretation the analysis depends on. Analyzers that declare their fields
+	 * must enrich the interpretation they are given instead of returning a new one.
+	 * @return read fields, all fields by default, so the analyzer is not run concurrently to any other
+	 */
+	default Set<InterpretationField> reads() {
+		return InterpretationField.ALL;
+	}
+
+	/**
+	 * Fields of the interpretation the analysis sets or changes.
+	 * @return written fields, all fields by default, so the analyzer is not run concurrently to any other
+	 */
+	default Set<InterpretationField> writes() {
+		return InterpretationField.ALL;
+	}
+
+	/**
+	 * State besides the read fields the analysis depends on, e.g. the discourse context of the conversation.
+	 * Cached analyses are only shared between interpretations with equal fingerprints.
+	 * @return fingerprint of the state, null if the analysis only depends on the read fields
+	 */
+	default Object contextFingerprint(Interpretation interpretation) {
+		return null;
+	}
+
 }
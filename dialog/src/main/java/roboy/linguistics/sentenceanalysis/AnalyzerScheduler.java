@@ -0,0 +1,212 @@
+package roboy.linguistics.sentenceanalysis;
+
+import edu.stanford.nlp.sempre.roboy.utils.tracing.Tracer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import roboy.util.ConfigManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a chain of analyzers on an interpretation, running independent analyzers concurrently.
+ *
+ * An analyzer depends on every earlier analyzer in the chain that writes a field it reads or writes,
+ * or that reads a field it writes. Analyzers only start after the ones they depend on have finished,
+ * all others run in parallel on a thread pool shared by all conversations. Since concurrent analyzers
+ * never access the same fields, the result is the same as running the chain one analyzer after another.
+ * A turn then takes as long as the slowest path through the dependencies instead of the sum of all analyzers.
+ *
+ * Analyzers that do not declare the fields they access depend on all analyzers before them and all
+ * analyzers after them depend on them. Only those may return another interpretation than the one they
+ * were given, it replaces the interpretation for the rest of the chain.
+ *
+ * With an InterpretationCache, the results of the cacheable analyzers at the start of the chain are
+ * shared between utterances with the same key. On a hit these analyzers are skipped.
+ */
+public class AnalyzerScheduler {
+
+    private final static Logger logger = LogManager.getLogger();
+
+    private static ExecutorService pool;
+
+    private final List<Analyzer> analyzers;
+    // Indices of the earlier analyzers every analyzer depends on
+    private final List<int[]> dependencies;
+    private final ExecutorService executor;
+    private final InterpretationCache cache;
+    // Number of cacheable analyzers at the start of the chain
+    private final int cached;
+
+    /**
+     * Creates a scheduler running on the pool shared by all conversations, which has ANALYZER_THREADS threads,
+     * and sharing analyses in the cache of all conversations.
+     * @param analyzers analyzers in the order they would run one after another
+     */
+    public AnalyzerScheduler(List<Analyzer> analyzers) {
+        this(analyzers, ConfigManager.ANALYZER_THREADS > 1 ? getPool() : null, InterpretationCache.getShared());
+    }
+
+    /**
+     * @param analyzers analyzers in the order they would run one after another
+     * @param executor executor running the analyzers, null to run them one after another on the calling thread
+     */
+    public AnalyzerScheduler(List<Analyzer> analyzers, ExecutorService executor) {
+        this(analyzers, executor, null);
+    }
+
+    /**
+     * @param analyzers analyzers in the order they would run one after another
+     * @param executor executor running the analyzers, null to run them one after another on the calling thread
+     * @param cache cache of analyses, null to analyze every utterance
+     */
+    public AnalyzerScheduler(List<Analyzer> analyzers, ExecutorService executor, InterpretationCache cache) {
+        this.analyzers = Collections.unmodifiableList(new ArrayList<>(analyzers));
+        this.dependencies = new ArrayList<>(analyzers.size());
+        for (int i = 0; i < analyzers.size(); i++) {
+            Analyzer later = analyzers.get(i);
+            List<Integer> dependsOn = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                Analyzer earlier = analyzers.get(j);
+                if (intersect(earlier.writes(), later.reads())
+                        || intersect(earlier.writes(), later.writes())
+                        || intersect(earlier.reads(), later.writes())) {
+                    dependsOn.add(j);
+                }
+            }
+            dependencies.add(dependsOn.stream().mapToInt(Integer::intValue).toArray());
+        }
+        this.executor = executor;
+        this.cache = cache;
+        int cacheable = 0;
+        while (cacheable < analyzers.size() && InterpretationCache.isCacheable(analyzers.get(cacheable))) {
+            cacheable++;
+        }
+        this.cached = cacheable;
+    }
+
+    private static boolean intersect(Set<InterpretationField> a, Set<InterpretationField> b) {
+        for (InterpretationField field : a) {
+            if (b.contains(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(ConfigManager.ANALYZER_THREADS, (Runnable r) -> {
+                Thread thread = new Thread(r, "analyzer-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return pool;
+    }
+
+    /**
+     * @return the analyzers in chain order
+     */
+    public List<Analyzer> getAnalyzers() {
+        return analyzers;
+    }
+
+    /**
+     * @param index position of an analyzer in the chain
+     * @return positions of the earlier analyzers it has to wait for
+     */
+    public int[] getDependencies(int index) {
+        return dependencies.get(index).clone();
+    }
+
+    /**
+     * @return number of analyzers at the start of the chain whose results are cached
+     */
+    public int getCachedAnalyzers() {
+        return cache == null ? 0 : cached;
+    }
+
+    /**
+     * Runs all analyzers on the interpretation. Exceptions of an analyzer are logged
+     * and the analyzers depending on it run nevertheless.
+     *
+     * @param interpretation interpretation of the current input
+     * @return the analyzed interpretation
+     */
+    public Interpretation analyze(Interpretation interpretation) {
+        AtomicReference<Interpretation> current = new AtomicReference<>(interpretation);
+        int from = 0;
+        List<Object> key = (getCachedAnalyzers() == 0) ? null
+                : InterpretationCache.key(analyzers.subList(0, cached), interpretation);
+        if (key != null) {
+            Interpretation analysis = cache.get(key);
+            if (analysis != null) {
+                interpretation.attachAnalysis(analysis);
+            } else if (analyze(current, 0, cached)) {
+                // Cacheable analyzers never replace the interpretation. Failed analyses are not cached.
+                cache.put(key, interpretation.detachAnalysis());
+            }
+            from = cached;
+        }
+        analyze(current, from, analyzers.size());
+        return current.get();
+    }
+
+    /**
+     * Runs the analyzers from index from up to index to, the analyzers before have already run.
+     * @return false if an analyzer failed
+     */
+    private boolean analyze(AtomicReference<Interpretation> current, int from, int to) {
+        Tracer.Turn turn = Tracer.currentTurn();
+        AtomicBoolean succeeded = new AtomicBoolean(true);
+        if (executor == null) {
+            for (Analyzer analyzer : analyzers.subList(from, to)) {
+                run(analyzer, current, turn, succeeded);
+            }
+            return succeeded.get();
+        }
+
+        List<CompletableFuture<Void>> done = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            Analyzer analyzer = analyzers.get(i);
+            List<CompletableFuture<Void>> ready = new ArrayList<>();
+            for (int j : dependencies.get(i)) {
+                if (j >= from) {
+                    ready.add(done.get(j - from));
+                }
+            }
+            done.add(CompletableFuture.allOf(ready.toArray(new CompletableFuture<?>[0]))
+                    .thenRunAsync(() -> run(analyzer, current, turn, succeeded), executor));
+        }
+        // Completing the futures makes the changes of every analyzer visible to the caller
+        CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[0])).join();
+        return succeeded.get();
+    }
+
+    private void run(Analyzer analyzer, AtomicReference<Interpretation> current, Tracer.Turn turn, AtomicBoolean succeeded) {
+        Interpretation interpretation = current.get();
+        try (Tracer.Span span = Tracer.start("analyzer." + analyzer.getClass().getSimpleName(), turn)) {
+            Interpretation result = analyzer.analyze(interpretation);
+            if (result != null && result != interpretation) {
+                if (analyzer.writes().equals(InterpretationField.ALL)) {
+                    current.set(result);
+                } else {
+                    logger.error("Analyzer " + analyzer.getClass().getName()
+                            + " declares its fields but returned a new interpretation, the result is dropped");
+                }
+            }
+        } catch (Exception e) {
+            succeeded.set(false);
+            logger.error("Exception in analyzer " + analyzer.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
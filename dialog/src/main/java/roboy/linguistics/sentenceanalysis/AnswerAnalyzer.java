@@ -7,6 +7,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import roboy.linguistics.Linguistics;
 import roboy.linguistics.Linguistics.SemanticRole;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Checks the predicate argument structures produced by the OpenNLPParser analyzer
@@ -107,4 +109,14 @@ public class AnswerAnalyzer implements Analyzer {
 
 		return interpretation;
 	}
+
+	@Override
+	public Set<InterpretationField> reads() {
+		return EnumSet.of(InterpretationField.PAS, InterpretationField.TOKENS, InterpretationField.POS_TAGS);
+	}
+
+	@Override
+	public Set<InterpretationField> writes() {
+		return EnumSet.of(InterpretationField.ANSWERS);
+	}
 }
@@ -3,6 +3,8 @@ package roboy.linguistics.sentenceanalysis;
 import roboy.linguistics.Linguistics.SentenceType;
 
 import java.util.List;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Checks the sentence type by stupidly looking at the first word of the sentence
@@ -25,6 +27,17 @@ public class DictionaryBasedSentenceTypeDetector implements Analyzer{
 		return interpretation;
 	}
 
+	@Override
+	public Set<InterpretationField> reads() {
+		return EnumSet.of(InterpretationField.TOKENS, InterpretationField.POS_TAGS,
+				InterpretationField.SENTENCE_TYPE);
+	}
+
+	@Override
+	public Set<InterpretationField> writes() {
+		return EnumSet.of(InterpretationField.SENTENCE_TYPE);
+	}
+
     /**
      * Fallback Sentence Type Detection, main Detector now in {@link SemanticParserAnalyzer}
      */
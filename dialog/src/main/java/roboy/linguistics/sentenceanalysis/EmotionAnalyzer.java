@@ -1,10 +1,9 @@
 package roboy.linguistics.sentenceanalysis;
 
+import edu.stanford.nlp.sempre.roboy.lexicons.word2vec.VectorStore;
 import edu.stanford.nlp.sempre.roboy.lexicons.word2vec.Word2vec;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.deeplearning4j.models.word2vec.Word2Vec;
-import org.nd4j.linalg.api.ndarray.INDArray;
 import roboy.emotions.RoboyEmotion;
 import roboy.linguistics.Keyword;
 import roboy.linguistics.Entity;
@@ -13,6 +12,8 @@ import roboy.linguistics.Linguistics;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Checks for a handfull of keywords and stores more or less fitting emotions
@@ -24,21 +25,14 @@ public class EmotionAnalyzer implements Analyzer {
     private final double threshold = 0.5;
     private final Logger LOGGER = LogManager.getLogger();
 
-    private final double[] beerVec;
-    private final double[] sadVec;
-    private final double[] happyVec;
-    private final double[] shyVec;
+    private float[] beerVec;
+    private float[] sadVec;
+    private float[] happyVec;
+    private float[] shyVec;
     private final List<String> dropout;
     public EmotionAnalyzer(){
-        Word2Vec vec = Word2vec.getInstance().getModel();
-        beerVec = vec.getWordVector("beer");
-        happyVec = vec.getWordVector("happy");
-        sadVec = vec.getWordVector("sad");
-
-        List<String> shyList = new ArrayList<>();
-        shyList.add("love");
-        shyList.add("kiss");
-        shyVec = vec.getWordVectorsMean(shyList).data().asDouble();
+        // The word vectors load in the background, until then every emotion is neutral
+        Word2vec.warmUp();
 
         String[] dropList = new String[]{
                 "TO","CC", "CD", "DT", "EX", "PRP", "WDT","WP", "PDT"
@@ -69,21 +63,34 @@ public class EmotionAnalyzer implements Analyzer {
 
         }
 
-        Word2Vec vec = Word2vec.getInstance().getModel();
-        INDArray mean;
-        try{
-            mean = vec.getWordVectorsMean(labels);
-        }catch(Exception e){
+        VectorStore vec = Word2vec.getInstance().getModel();
+        if(vec == null){
+            LOGGER.debug("Word vectors are not loaded yet, emotion stays neutral");
+            interpretation.setEmotion(RoboyEmotion.NEUTRAL);
+            return interpretation;
+        }
+        initEmotionVectors(vec);
+
+        float[] mean = new float[vec.dimension()];
+        if(vec.mean(labels, mean) == 0){
+            //if no word has a vector just return without emotion
             interpretation.setEmotion(RoboyEmotion.NEUTRAL);
             return interpretation;
         }
-        if(!mean.isVector()){
-            //if mean is not a vector just return without emotion
+
+        double beerSimilarity = VectorStore.cosine(mean, beerVec);
+        double sadSimilarity = VectorStore.cosine(mean, sadVec);
+        double happySimilarity = VectorStore.cosine(mean, happyVec);
+        double shySimilarity = VectorStore.cosine(mean, shyVec);
+
+
+        if(beerSimilarity < threshold && sadSimilarity < threshold
+                && happySimilarity < threshold && shySimilarity < threshold){
+            // no emotion candidate, the sentiment annotation is not needed
             interpretation.setEmotion(RoboyEmotion.NEUTRAL);
             return interpretation;
         }
 
-        double[] dMean = mean.data().asDouble();
         boolean sentencePositive = false;
         boolean sentenceNotNegative = false; // not the same with positive
         if(interpretation.getSentiment() != null){
@@ -91,23 +98,6 @@ public class EmotionAnalyzer implements Analyzer {
             sentenceNotNegative = !interpretation.getSentiment().equals(Linguistics.UtteranceSentiment.NEGATIVE);
         }
 
-
-        double beerSimilarity = cosineSimilarity(dMean, beerVec);
-        double sadSimilarity = cosineSimilarity(dMean, sadVec);
-        double happySimilarity = cosineSimilarity(dMean, happyVec);
-        double shySimilarity = cosineSimilarity(dMean, shyVec);
-
-
-        mean = vec.getWordVectorsMean(tokens);
-        dMean = mean.data().asDouble();
-      
-        //Calculated similarities without dropout
-        double _beerSimilarity = cosineSimilarity(dMean, beerVec);
-        double _sadSimilarity = cosineSimilarity(dMean, sadVec);
-        double _happySimilarity = cosineSimilarity(dMean, happyVec);
-        double _shySimilarity = cosineSimilarity(dMean, shyVec);
-
-
         if(beerSimilarity >= threshold){
             if(sentenceNotNegative){
                 interpretation.setEmotion(RoboyEmotion.BEER_THIRSTY);
@@ -135,6 +125,34 @@ public class EmotionAnalyzer implements Analyzer {
         return interpretation;
     }
 
+    @Override
+    public Set<InterpretationField> reads() {
+        return EnumSet.of(InterpretationField.TOKENS, InterpretationField.POS_TAGS, InterpretationField.SENTIMENT);
+    }
+
+    @Override
+    public Set<InterpretationField> writes() {
+        return EnumSet.of(InterpretationField.EMOTION);
+    }
+
+    private synchronized void initEmotionVectors(VectorStore vec){
+        if(beerVec != null){
+            return;
+        }
+        beerVec = new float[vec.dimension()];
+        happyVec = new float[vec.dimension()];
+        sadVec = new float[vec.dimension()];
+        vec.vector("beer", beerVec);
+        vec.vector("happy", happyVec);
+        vec.vector("sad", sadVec);
+
+        List<String> shyList = new ArrayList<>();
+        shyList.add("love");
+        shyList.add("kiss");
+        shyVec = new float[vec.dimension()];
+        vec.mean(shyList, shyVec);
+    }
+
     public static double cosineSimilarity(double[] vectorA, double[] vectorB) {
         double dotProduct = 0.0;
         double normA = 0.0;
@@ -32,6 +32,7 @@ public class Interpretation implements Cloneable {
     private List<Keyword> keywords = null;
     private String association = null;
     private Map<SemanticRole, String> pas = null;
+    private List<String> parseTrees = null;
     private String name = null;
     private String celebrity = null;
     private boolean isRoboy = false;
@@ -43,6 +44,10 @@ public class Interpretation implements Cloneable {
     private String intentDistance = null;
     private UtteranceSentiment sentiment = null;
 
+    // Uuid of the conversation the sentence was uttered in. Used by analyzers
+    // that keep per-conversation state, not part of the interpretation itself.
+    private String conversationId = null;
+
     // Sempre-based features. These are expensive
     // to compute, and will only be processed on demand
     // by calling the semanticAnalyserLambda.
@@ -59,6 +64,14 @@ public class Interpretation implements Cloneable {
     }
     private SemanticAnalysisLambda semanticAnalysisLambda = null;
 
+    // CoreNLP-derived features which need a full constituency or dependency parse.
+    // Relation triples, keywords/parse trees and sentiment are annotated on demand by these callbacks.
+    // Analyzers may run concurrently, so each callback runs once under the lock of the interpretation.
+    private SemanticAnalysisLambda relationAnalysisLambda = null;
+    private SemanticAnalysisLambda constituencyAnalysisLambda = null;
+    private SemanticAnalysisLambda sentimentAnalysisLambda = null;
+    private boolean lowerCased = false;
+
 	public Interpretation() {
 	    LOGGER.debug("Empty Interpretation initialized");
     }
@@ -110,10 +123,12 @@ public class Interpretation implements Cloneable {
 
     @Nullable
     public List<Triple> getTriples() {
+        makeSureRelationsAreAnnotated();
         return triples;
     }
 
     public void setTriples(List<Triple> triple) {
+        this.relationAnalysisLambda = null;
         this.triples = triple;
     }
 
@@ -147,6 +162,7 @@ public class Interpretation implements Cloneable {
 
     @Nullable
     public List<Keyword> getKeywords() {
+        makeSureConstituencyIsAnnotated();
         return keywords;
     }
 
@@ -155,6 +171,7 @@ public class Interpretation implements Cloneable {
     }
 
     public void addKeyword(Keyword keyword) {
+        makeSureConstituencyIsAnnotated();
 	    if (keywords == null) {
             keywords = new ArrayList<>();
         }
@@ -179,6 +196,22 @@ public class Interpretation implements Cloneable {
         this.pas = pas;
     }
 
+    /**
+     * Constituency parse of each sentence in bracketed Penn Treebank notation.
+     * Analyzers needing a syntax tree should read it from here instead of parsing again.
+     *
+     * @return parse trees, or null if no analyzer produced them
+     */
+    @Nullable
+    public List<String> getParseTrees() {
+        makeSureConstituencyIsAnnotated();
+        return parseTrees;
+    }
+
+    public void setParseTrees(List<String> parseTrees) {
+        this.parseTrees = parseTrees;
+    }
+
     @Nullable
     public String getName() {
         return name;
@@ -256,6 +289,7 @@ public class Interpretation implements Cloneable {
 
     @Nullable
     public UtteranceSentiment getSentiment() {
+        makeSureSentimentIsAnnotated();
         return sentiment;
     }
 
@@ -263,13 +297,84 @@ public class Interpretation implements Cloneable {
         this.sentiment = sentiment;
     }
 
+    ///////////////// On-Demand CoreNLP Features ////////////////
+
+    public void setRelationAnalysisLambda(SemanticAnalysisLambda lambda) {
+        this.relationAnalysisLambda = lambda;
+    }
+
+    public void setConstituencyAnalysisLambda(SemanticAnalysisLambda lambda) {
+        this.constituencyAnalysisLambda = lambda;
+    }
+
+    public void setSentimentAnalysisLambda(SemanticAnalysisLambda lambda) {
+        this.sentimentAnalysisLambda = lambda;
+    }
+
+    private synchronized void makeSureRelationsAreAnnotated()
+    {
+        if (relationAnalysisLambda == null)
+            return;
+
+        SemanticAnalysisLambda lambda = relationAnalysisLambda;
+        relationAnalysisLambda = null;
+        lambda.run(this);
+        // Triples arriving after the Postprocessor are lowercased like the eager features
+        if (lowerCased && triples != null) {
+            for (int i = 0; i < triples.size(); i++) {
+                if (triples.get(i) != null) {
+                    triples.set(i, triples.get(i).toLowerCase());
+                }
+            }
+        }
+    }
+
+    private synchronized void makeSureConstituencyIsAnnotated()
+    {
+        if (constituencyAnalysisLambda == null)
+            return;
+
+        SemanticAnalysisLambda lambda = constituencyAnalysisLambda;
+        constituencyAnalysisLambda = null;
+        // Values set by analyzers before the annotation ran are kept instead of the annotated ones
+        List<Keyword> keywordsSet = keywords;
+        List<String> parseTreesSet = parseTrees;
+        lambda.run(this);
+        if (keywordsSet != null)
+            keywords = keywordsSet;
+        if (parseTreesSet != null)
+            parseTrees = parseTreesSet;
+    }
+
+    private synchronized void makeSureSentimentIsAnnotated()
+    {
+        if (sentimentAnalysisLambda == null)
+            return;
+
+        SemanticAnalysisLambda lambda = sentimentAnalysisLambda;
+        sentimentAnalysisLambda = null;
+        UtteranceSentiment sentimentSet = sentiment;
+        lambda.run(this);
+        if (sentimentSet != null)
+            sentiment = sentimentSet;
+    }
+
+    @Nullable
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
     ///////////////// Semantic-Parser-Derived Features ////////////////
 
     public void setSemanticAnalysisLambda(SemanticAnalysisLambda lambda) {
         this.semanticAnalysisLambda = lambda;
     }
 
-    private void makeSureSemanticParserIsExecuted()
+    private synchronized void makeSureSemanticParserIsExecuted()
     {
         if (parsingOutcome != null)
             return;
@@ -343,6 +448,88 @@ public class Interpretation implements Cloneable {
         this.answer = answer;
     }
 
+    ///////////////// Cached Analyses ////////////////
+
+    /**
+     * Moves the results analyzers derived from the utterance into a new interpretation, which the
+     * InterpretationCache shares between conversations. Fields set by inputs or depending on the
+     * conversation are not moved. Features not annotated yet are annotated once on the shared
+     * analysis, when the first interpretation attached to it asks for them.
+     *
+     * @return the analysis this interpretation is attached to
+     */
+    synchronized Interpretation detachAnalysis() {
+        Interpretation analysis = new Interpretation();
+        analysis.sentence = sentence;
+        analysis.sentenceType = sentenceType;
+        analysis.tokens = copyOf(tokens);
+        analysis.posTags = (posTags == null) ? null : posTags.clone();
+        analysis.lemmas = (lemmas == null) ? null : lemmas.clone();
+        analysis.pas = (pas == null) ? null : new HashMap<>(pas);
+        analysis.objAnswer = objAnswer;
+        analysis.predAnswer = predAnswer;
+        analysis.emotion = emotion;
+        analysis.profanity = profanity;
+
+        analysis.triples = copyOf(triples);
+        analysis.relationAnalysisLambda = relationAnalysisLambda;
+        analysis.keywords = copyOf(keywords);
+        analysis.parseTrees = copyOf(parseTrees);
+        analysis.sentiment = sentiment;
+        analysis.constituencyAnalysisLambda = constituencyAnalysisLambda;
+        analysis.sentimentAnalysisLambda = sentimentAnalysisLambda;
+        analysis.parsingOutcome = parsingOutcome;
+        analysis.parse = parse;
+        analysis.answer = answer;
+        analysis.underspecifiedQuestion = underspecifiedQuestion;
+        analysis.underspecifiedAnswer = underspecifiedAnswer;
+        analysis.semTriples = copyOf(semTriples);
+        analysis.semanticAnalysisLambda = semanticAnalysisLambda;
+
+        attachAnalysis(analysis);
+        return analysis;
+    }
+
+    /**
+     * Fills this interpretation with a copy of an analysis created by detachAnalysis.
+     * Features annotated on demand are copied when they are first asked for.
+     *
+     * @param analysis shared analysis of the utterance, never changed by this interpretation
+     */
+    synchronized void attachAnalysis(Interpretation analysis) {
+        sentence = analysis.sentence;
+        sentenceType = analysis.sentenceType;
+        tokens = copyOf(analysis.tokens);
+        posTags = (analysis.posTags == null) ? null : analysis.posTags.clone();
+        lemmas = (analysis.lemmas == null) ? null : analysis.lemmas.clone();
+        pas = (analysis.pas == null) ? null : new HashMap<>(analysis.pas);
+        objAnswer = analysis.objAnswer;
+        predAnswer = analysis.predAnswer;
+        emotion = analysis.emotion;
+        profanity = analysis.profanity;
+
+        relationAnalysisLambda = (Interpretation i) -> i.triples = copyOf(analysis.getTriples());
+        constituencyAnalysisLambda = (Interpretation i) -> {
+            i.keywords = copyOf(analysis.getKeywords());
+            i.parseTrees = copyOf(analysis.getParseTrees());
+        };
+        sentimentAnalysisLambda = (Interpretation i) -> i.sentiment = analysis.getSentiment();
+        parsingOutcome = null;
+        semanticAnalysisLambda = (Interpretation i) -> {
+            i.parsingOutcome = analysis.getParsingOutcome();
+            i.parse = analysis.getParse();
+            i.answer = analysis.getAnswer();
+            i.underspecifiedQuestion = analysis.getUnderspecifiedQuestion();
+            i.underspecifiedAnswer = analysis.getUnderspecifiedAnswer();
+            i.semTriples = copyOf(analysis.getSemTriples());
+        };
+    }
+
+    // Lists of interpretations are changed in place, e.g. by toLowerCase, so shared analyses hand out copies
+    private static <T> List<T> copyOf(List<T> list) {
+        return (list == null) ? null : new ArrayList<>(list);
+    }
+
     // TODO the method copies the fields from the
     public void copy(Interpretation interpretation) {
         if (interpretation != null) {
@@ -356,6 +543,7 @@ public class Interpretation implements Cloneable {
             this.keywords = interpretation.getKeywords();
             this.association = interpretation.getAssociation();
             this.pas = interpretation.getPas();
+            this.parseTrees = interpretation.getParseTrees();
             this.name = interpretation.getName();
             this.celebrity = interpretation.getCelebrity();
             this.isRoboy = interpretation.isRoboy();
@@ -369,6 +557,7 @@ public class Interpretation implements Cloneable {
             this.underspecifiedAnswer = interpretation.getUnderspecifiedAnswer();
             this.sentiment = interpretation.getSentiment();
             this.parsingOutcome = interpretation.getParsingOutcome();
+            this.conversationId = interpretation.getConversationId();
         }
     }
 
@@ -404,6 +593,9 @@ public class Interpretation implements Cloneable {
             if (interpretation.getPas() != null) {
                 this.pas = interpretation.getPas();
             }
+            if (interpretation.getParseTrees() != null) {
+                this.parseTrees = interpretation.getParseTrees();
+            }
             if (interpretation.getName() != null) {
                 this.name = interpretation.getName();
             }
@@ -440,6 +632,9 @@ public class Interpretation implements Cloneable {
             if (interpretation.getParsingOutcome() != null) {
                 this.parsingOutcome = interpretation.getParsingOutcome();
             }
+            if (interpretation.getConversationId() != null) {
+                this.conversationId = interpretation.getConversationId();
+            }
             this.isRoboy = interpretation.isRoboy();
         }
     }
@@ -476,6 +671,7 @@ public class Interpretation implements Cloneable {
     }
 
     public void toLowerCase() {
+        lowerCased = true;
         if (sentence != null) {
             sentence = sentence.toLowerCase();
         }
@@ -0,0 +1,155 @@
+package roboy.linguistics.sentenceanalysis;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import roboy.util.ConfigManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares the analysis of utterances between all conversations, so that frequent short utterances
+ * like "hi", "yes" or "what is your name" are only analyzed once.
+ *
+ * Analyses are cached by the utterance with normalized whitespace, the analyzers that produced them
+ * and the context fingerprints of these analyzers, in LRU order. Only the fields analyzers derive from
+ * the utterance are cached, i.e. all but the CONTEXT_SENSITIVE ones. These are set by inputs or depend on
+ * the conversation, analyzers accessing them run for every utterance. Features annotated on demand,
+ * like the semantic parse, are computed once for the cached analysis.
+ */
+public class InterpretationCache {
+
+    private final static Logger logger = LogManager.getLogger();
+
+    /** Fields that are never cached: intents depend on the memory, entities are set by inputs. */
+    public static final Set<InterpretationField> CONTEXT_SENSITIVE = Collections.unmodifiableSet(
+            EnumSet.of(InterpretationField.INTENT, InterpretationField.ENTITIES));
+
+    private static InterpretationCache shared;
+
+    private final LruMap<List<Object>, Interpretation> analyses;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+        private final int capacity;
+
+        LruMap(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * @param capacity maximal number of cached analyses
+     */
+    public InterpretationCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid cache capacity: " + capacity);
+        }
+        this.analyses = new LruMap<>(capacity);
+        logger.info("Caching up to " + capacity + " utterance analyses");
+    }
+
+    /**
+     * @return the cache shared by all conversations, null if NLU_CACHE_SIZE disables caching
+     */
+    public static synchronized InterpretationCache getShared() {
+        if (shared == null && ConfigManager.NLU_CACHE_SIZE > 0) {
+            shared = new InterpretationCache(ConfigManager.NLU_CACHE_SIZE);
+        }
+        return shared;
+    }
+
+    /**
+     * @param analyzer an analyzer
+     * @return whether the results of the analyzer may be cached
+     */
+    public static boolean isCacheable(Analyzer analyzer) {
+        if (analyzer.writes().equals(InterpretationField.ALL)) {
+            return false;
+        }
+        for (InterpretationField field : CONTEXT_SENSITIVE) {
+            if (analyzer.reads().contains(field) || analyzer.writes().contains(field)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param analyzers cacheable analyzers about to analyze the interpretation
+     * @param interpretation interpretation of an utterance, before it is analyzed
+     * @return key of the analysis, null if there is no utterance
+     */
+    static List<Object> key(List<Analyzer> analyzers, Interpretation interpretation) {
+        String sentence = interpretation.getSentence();
+        if (sentence == null) {
+            return null;
+        }
+        List<Object> key = new ArrayList<>(2 * analyzers.size() + 1);
+        key.add(sentence.trim().replaceAll("\\s+", " "));
+        for (Analyzer analyzer : analyzers) {
+            // Analyzers are compared by identity, so chains of different analyzers do not share analyses
+            key.add(analyzer);
+            key.add(analyzer.contextFingerprint(interpretation));
+        }
+        return key;
+    }
+
+    /**
+     * @return the cached analysis, null if there is none
+     */
+    Interpretation get(List<Object> key) {
+        Interpretation analysis;
+        synchronized (analyses) {
+            analysis = analyses.get(key);
+        }
+        if (analysis == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return analysis;
+    }
+
+    void put(List<Object> key, Interpretation analysis) {
+        synchronized (analyses) {
+            analyses.put(key, analysis);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return share of lookups answered from the cache, 0 if there were none
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public int size() {
+        synchronized (analyses) {
+            return analyses.size();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package roboy.linguistics.sentenceanalysis;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Groups of Interpretation fields that analyzers read and write. The AnalyzerScheduler runs
+ * analyzers concurrently if the fields they access do not conflict.
+ */
+public enum InterpretationField {
+    SENTENCE,
+    SENTENCE_TYPE,
+    TOKENS,
+    POS_TAGS,
+    LEMMAS,
+    /** Relation triples */
+    TRIPLES,
+    KEYWORDS,
+    PARSE_TREES,
+    SENTIMENT,
+    /** Predicate argument structure */
+    PAS,
+    /** Object and predicate answer */
+    ANSWERS,
+    EMOTION,
+    PROFANITY,
+    INTENT,
+    /** Name, celebrity, association and whether Roboy is meant */
+    ENTITIES,
+    /** Results of the semantic parser: outcome, parse, answers and semantic triples */
+    SEMANTIC_PARSE;
+
+    /** Every field, accessed by analyzers that do not declare what they access. */
+    public static final Set<InterpretationField> ALL = Collections.unmodifiableSet(EnumSet.allOf(InterpretationField.class));
+}
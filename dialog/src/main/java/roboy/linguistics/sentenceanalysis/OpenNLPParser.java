@@ -4,8 +4,8 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Semaphore;
 
 import opennlp.tools.cmdline.parser.ParserTool;
 import opennlp.tools.parser.Parse;
@@ -14,22 +14,40 @@ import opennlp.tools.parser.ParserFactory;
 import opennlp.tools.parser.ParserModel;
 import roboy.linguistics.Linguistics;
 import roboy.linguistics.Linguistics.SemanticRole;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Performs a sentence analysis using the Open NLP constituency parser, then interprets the
  * output for predicate argument structures (who did what to whom?) and stores them in the 
  * Linguistics.PAS attribute of the interpretation.
+ *
+ * If an earlier analyzer already attached a constituency parse to the interpretation
+ * (see Interpretation.getParseTrees), that parse is reused and the sentence is not parsed again.
+ * Reading it runs the CoreNLP parse of the sentence, but not the sentiment analysis on top of it.
+ * The Open NLP model is then only loaded once a sentence without such a parse comes in.
  */
 public class OpenNLPParser implements Analyzer{
 	
-	private Parser parser;
-	
-	public OpenNLPParser(){
+	private volatile Parser parser;
+
+	private Parser getParser(){
+		if (parser == null) {
+			synchronized (this) {
+				if (parser == null) {
+					parser = loadParser();
+				}
+			}
+		}
+		return parser;
+	}
+
+	private static Parser loadParser(){
 		InputStream modelIn=null;
 		try {
 			modelIn = new FileInputStream("resources/en-parser-chunking.bin");
 			ParserModel model = new ParserModel(modelIn);
-			parser = ParserFactory.create(model);
+			return ParserFactory.create(model);
 		}catch (IOException e) {
 		  e.printStackTrace();
 		}
@@ -41,12 +59,19 @@ public class OpenNLPParser implements Analyzer{
 		    }
 		  }
 		}
+		return null;
 	}
 
 	@Override
 	public Interpretation analyze(Interpretation interpretation) {
 		String sentence = interpretation.getSentence();
 		if (sentence != null) {
+			List<String> parseTrees = interpretation.getParseTrees();
+			if (parseTrees != null && parseTrees.size() == 1) {
+				// Reuse the shared parse of the sentence
+				Parse parse = Parse.parseParse(parseTrees.get(0));
+				return extractPAS(interpretation, parse);
+			}
 			sentence = sentence.trim();
 			if (!sentence.endsWith(".")
 					&& !sentence.endsWith("?")
@@ -56,11 +81,25 @@ public class OpenNLPParser implements Analyzer{
 			if (sentence.length() > 0 && Character.isLowerCase(sentence.charAt(0))) {
 				sentence = Character.toUpperCase(sentence.charAt(0)) + sentence.substring(1, sentence.length());
 			}
+			Parser parser = getParser();
+			if (parser == null) {
+				return interpretation;
+			}
 			Parse parse = ParserTool.parseLine(sentence, parser, 1)[0];
 			interpretation = extractPAS(interpretation, parse);
 		}
 		return interpretation;
 	}
+
+	@Override
+	public Set<InterpretationField> reads() {
+		return EnumSet.of(InterpretationField.SENTENCE, InterpretationField.PARSE_TREES);
+	}
+
+	@Override
+	public Set<InterpretationField> writes() {
+		return EnumSet.of(InterpretationField.PAS);
+	}
 	
 	private Interpretation extractPAS(Interpretation interpretation, Parse parse){
 //		System.out.println(parseToString(parse,0));
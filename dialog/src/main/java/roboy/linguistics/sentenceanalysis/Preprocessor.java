@@ -1,6 +1,8 @@
 package roboy.linguistics.sentenceanalysis;
 
 import roboy.linguistics.Linguistics;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Corrects abbreviated forms like "I'm" to complete forms like "I am"
@@ -17,4 +19,14 @@ public class Preprocessor implements Analyzer{
         interpretation.setSentence(sentence);
         return interpretation;
     }
+
+    @Override
+    public Set<InterpretationField> reads() {
+        return EnumSet.of(InterpretationField.SENTENCE);
+    }
+
+    @Override
+    public Set<InterpretationField> writes() {
+        return EnumSet.of(InterpretationField.SENTENCE);
+    }
 }
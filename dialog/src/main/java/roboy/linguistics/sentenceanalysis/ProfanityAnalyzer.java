@@ -1,8 +1,8 @@
 package roboy.linguistics.sentenceanalysis;
 
-import roboy.talk.PhraseCollection;
-import roboy.util.RandomList;
-import java.util.List;
+import roboy.linguistics.KeyPhrase;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Checks for words and stores if the sentence has profanity
@@ -14,18 +14,17 @@ public class ProfanityAnalyzer implements Analyzer{
 
     @Override
     public Interpretation analyze(Interpretation sentence) {
-        
-        RandomList<String> checkList = PhraseCollection.PROFANITY_CHECK_WORDS;
-        List<String> tokens = sentence.getTokens();
+        sentence.setProfanity(KeyPhrase.find(sentence.getTokens()).contains(KeyPhrase.PROFANITY));
+        return sentence;
+    }
 
-        for (int i = 0; i < checkList.size(); i++) {
-            if (tokens.contains(checkList.get(i))) {
-                sentence.setProfanity(true);
-                return sentence;
-            }
-        }
-        sentence.setProfanity(false);
+    @Override
+    public Set<InterpretationField> reads() {
+        return EnumSet.of(InterpretationField.TOKENS);
+    }
 
-        return sentence;
+    @Override
+    public Set<InterpretationField> writes() {
+        return EnumSet.of(InterpretationField.PROFANITY);
     }
 }
\ No newline at end of file
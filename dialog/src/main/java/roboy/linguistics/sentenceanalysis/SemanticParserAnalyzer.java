@@ -17,38 +17,122 @@ import java.util.regex.Pattern;
 import roboy.linguistics.Triple;
 
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 import edu.stanford.nlp.sempre.roboy.config.ConfigManager;
 import edu.stanford.nlp.sempre.roboy.SparqlExecutor;
 import edu.stanford.nlp.sempre.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import edu.stanford.nlp.sempre.roboy.ErrorRetrieval;
+import edu.stanford.nlp.sempre.roboy.utils.tracing.Tracer;
 import fig.basic.*;
 
 /**
  * Semantic parser class. Connects DM to Sempre and adds its result to interpretation class.
+ *
+ * Grammar, lexicon and parameters are built once and shared read-only between all conversations.
+ * Each conversation gets its own Session, and the mutable error retrieval state is handed out
+ * from a pool of workers, so several conversations can be parsed at the same time.
+ *
+ * In speculative mode the parse starts on a background thread as soon as the utterance is preprocessed,
+ * overlapping with the remaining analyzers and the state logic. Asking the interpretation for a parser
+ * result then waits for the running parse. A parse nobody asked for is cancelled when the next utterance
+ * of the conversation arrives or the conversation ends.
  */
 public class SemanticParserAnalyzer implements Analyzer
 {
 
     private final static Logger logger = LogManager.getLogger();
 
-    public Session session;
+    /** Session id used for interpretations that do not belong to a known conversation. */
+    public final static String DEFAULT_SESSION = "roboy";
+
     public Builder builder;
 
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final BlockingQueue<ErrorRetrieval> errorRetrievalPool;
+    private final SpeculativeParser<Example> speculativeParser;
+
     /**
      * A constructor.
-     * Creates ParserAnalyzer class and connects the parser to DM using a socket.
+     * Creates ParserAnalyzer class with one parser worker per configured core.
      */
     public SemanticParserAnalyzer() {
+        this(roboy.util.ConfigManager.PARSER_WORKERS);
+    }
+
+    /**
+     * A constructor.
+     * Creates ParserAnalyzer class, parsing speculatively if PARSER_SPECULATIVE is set.
+     *
+     * @param workers maximal number of utterances that may be parsed in parallel
+     */
+    public SemanticParserAnalyzer(int workers) {
+        this(workers, roboy.util.ConfigManager.PARSER_SPECULATIVE);
+    }
+
+    /**
+     * A constructor.
+     * Creates ParserAnalyzer class and connects the parser to DM.
+     *
+     * @param workers maximal number of utterances that may be parsed in parallel
+     * @param speculative whether to start parsing in the background right after preprocessing
+     */
+    public SemanticParserAnalyzer(int workers, boolean speculative) {
         initOptions();  // Used instead of the OptionsParser from SEMPRE standalone client
 
         builder = new Builder();
-        builder.build();
-        Dataset dataset = new Dataset();
-        dataset.read();
-        Learner learner = new Learner(builder.parser, builder.params, dataset);
-        learner.learn();
-        session = new Session("roboy");
+        String snapshot = ConfigManager.PARAMS_SNAPSHOT_FILE;
+        long fingerprint = modelFingerprint();
+        if (snapshot != null && Params.isSnapshot(snapshot, fingerprint)) {
+            // Load the trained weights. Features the training never saw keep the default
+            // weight instead of a fresh random one, so the loaded model scores deterministically.
+            Params.opts.initWeightsRandomly = false;
+            Builder.opts.inParamsPath = snapshot;
+            builder.build();
+        } else {
+            logger.warn("No parser snapshot matching the current grammar, lexicon and examples found at "
+                    + snapshot + ". Training the parser, run SemanticParserTrainer to avoid this at startup.");
+            builder.build();
+            train(builder);
+            if (snapshot != null) {
+                try {
+                    builder.params.writeSnapshot(snapshot, fingerprint);
+                } catch (RuntimeException e) {
+                    logger.error("Could not write parser snapshot to " + snapshot + ": " + e.getMessage());
+                }
+            }
+        }
+
+        // ErrorRetrieval keeps the currently processed utterance in its fields, so each
+        // parallel parse needs an instance of its own.
+        workers = Math.max(1, workers);
+        errorRetrievalPool = new ArrayBlockingQueue<>(workers);
+        errorRetrievalPool.add(builder.error_retrieval);
+        for (int i = 1; i < workers; i++) {
+            errorRetrievalPool.add(new ErrorRetrieval());
+        }
+        ExecutorService speculationPool = null;
+        if (speculative) {
+            speculationPool = Executors.newFixedThreadPool(workers, (Runnable r) -> {
+                Thread thread = new Thread(r, "speculative-parser");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        speculativeParser = new SpeculativeParser<>(this::parse, speculationPool);
+        logger.info("Semantic parser initialized with " + workers + " parser workers"
+                + (speculative ? ", parsing speculatively" : ""));
 
         // Run initial getSingleton to trigger instantiation of CoreNLP
         InfoAnalyzer.getSingleton();
@@ -57,20 +141,72 @@ public class SemanticParserAnalyzer implements Analyzer
     /**
      * @brief initOptions
      */
-    private void initOptions() {
+    static void initOptions() {
         Builder.opts.executor = "roboy.SparqlExecutor";
         Builder.opts.simple_executor = "JavaExecutor";
         FeatureExtractor.opts.featureDomains = Sets.newHashSet("rule");
         LanguageAnalyzer.opts.languageAnalyzer = "corenlp.CoreNLPAnalyzer";
         Learner.opts.maxTrainIters = 10;
         Params.opts.initWeightsRandomly = true;
+        Parser.opts.executionThreads = ConfigManager.PARSER_EXECUTION_THREADS;
+        Parser.opts.executionQueueSize = ConfigManager.PARSER_EXECUTION_QUEUE;
+        Parser.opts.executionTimeoutMs = ConfigManager.PARSER_EXECUTION_TIMEOUT;
+        Parser.opts.executeTopK = ConfigManager.PARSER_EXECUTION_TOP_K;
+        // A request outliving the execution deadline would only keep an execution thread busy
+        int httpTimeout = ConfigManager.PARSER_EXECUTION_TIMEOUT > 0
+                ? Math.min(ConfigManager.HTTP_TIMEOUT, ConfigManager.PARSER_EXECUTION_TIMEOUT) : ConfigManager.HTTP_TIMEOUT;
+        SparqlExecutor.opts.connectTimeoutMs = httpTimeout;
+        SparqlExecutor.opts.readTimeoutMs = httpTimeout;
 
         SimpleLexicon.opts.inPaths = Arrays.asList(ConfigManager.LEXICON_FILE);
         SparqlExecutor.opts.endpointUrl = ConfigManager.DB_SPARQL;
         Grammar.opts.inPaths = Arrays.asList(ConfigManager.GRAMMAR_FILE);
+        // Options are static, only register the training examples once
+        for (Pair<String, String> path : Dataset.opts.inPaths)
+            if (ConfigManager.RPQA_TRAINING_EXAMPLES.equals(path.getSecond()))
+                return;
         Dataset.opts.inPaths.add(new Pair<String, String>("train", ConfigManager.RPQA_TRAINING_EXAMPLES));
     }
 
+    /**
+     * Trains the parameters of a built parser on the configured RPQA examples.
+     *
+     * @param builder builder holding the parser and the parameters to train
+     */
+    static void train(Builder builder) {
+        Dataset dataset = new Dataset();
+        dataset.read();
+        Learner learner = new Learner(builder.parser, builder.params, dataset);
+        learner.learn();
+    }
+
+    /**
+     * Fingerprint of everything the trained parameters depend on: grammar, lexicon,
+     * training examples and training options. A snapshot is only reused if it matches.
+     *
+     * @return hash identifying the current model configuration
+     */
+    static long modelFingerprint() {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        hasher.putInt(Params.SNAPSHOT_VERSION);
+        hasher.putInt(Learner.opts.maxTrainIters);
+        hasher.putString(new TreeSet<>(FeatureExtractor.opts.featureDomains).toString(), StandardCharsets.UTF_8);
+        List<String> files = new ArrayList<>();
+        files.addAll(Grammar.opts.inPaths);
+        files.addAll(SimpleLexicon.opts.inPaths);
+        for (Pair<String, String> path : Dataset.opts.inPaths)
+            files.add(path.getSecond());
+        for (String file : files) {
+            hasher.putString(file, StandardCharsets.UTF_8);
+            try {
+                hasher.putBytes(Files.readAllBytes(Paths.get(file)));
+            } catch (IOException e) {
+                logger.warn("Could not read " + file + " for the parser fingerprint: " + e.getMessage());
+            }
+        }
+        return hasher.hash().asLong();
+    }
+
     /**
      * An analyzer function.
      * Sends input sentence to the parser and saves its response in output interpretation.
@@ -82,6 +218,8 @@ public class SemanticParserAnalyzer implements Analyzer
     @Override
     public Interpretation analyze(Interpretation interpretation)
     {
+        Session session = getSession(interpretation.getConversationId());
+
         // Run parser analysis
         Example.Builder b = new Example.Builder();
         b.setId("session:" + session.id);
@@ -92,35 +230,110 @@ public class SemanticParserAnalyzer implements Analyzer
         ex.preprocess();
 
         interpretation.setTokens(ex.getTokens());
-        interpretation.setTriples(extract_relations(ex.getRelation()));
         interpretation.setPosTags(ex.getPosTag().toArray(new String[0]));
         interpretation.setLemmas(ex.getLemmaTokens().toArray(new String[0]));
 
-        for (String k: ex.getGenInfo().keywords) {
-            Keyword keyword = new Keyword(1.0, k);
-            interpretation.addKeyword(keyword);
-        }
-
-        // Read extracted sentiment
-        try {
-            interpretation.setSentiment(Linguistics.UtteranceSentiment.valueOf(ex.getGenInfo().sentiment.toUpperCase()));
-        } catch (Exception e) {
-            interpretation.setSentiment(Linguistics.UtteranceSentiment.NEUTRAL);
-            logger.error("Sentiment is illegal: " + e.getMessage());
-        }
+        // Relation triples, sentiment and parse trees need the expensive CoreNLP stages,
+        // these are only annotated when an analyzer or state asks for them.
+        interpretation.setRelationAnalysisLambda(
+            (Interpretation i) -> i.setTriples(extract_relations(ex.getRelation()))
+        );
+        interpretation.setConstituencyAnalysisLambda(
+            (Interpretation i) -> this.readConstituency(i, ex)
+        );
+        interpretation.setSentimentAnalysisLambda(
+            (Interpretation i) -> this.readSentiment(i, ex)
+        );
 
         // Set callback to interpretation, such that expensive
         // semantic features will only be calculated on demand.
-        interpretation.setSemanticAnalysisLambda(
-            (Interpretation i) -> this.executeSemanticAnalysis(i, ex)
-        );
+        Future<Boolean> speculation = speculativeParser.speculate(session.id, ex);
+        interpretation.setSemanticAnalysisLambda((Interpretation i) -> {
+            try (Tracer.Span span = Tracer.start("semanticParse")) {
+                this.executeSemanticAnalysis(i, ex, speculation);
+            }
+        });
 
         return interpretation;
     }
 
-    private synchronized void executeSemanticAnalysis(Interpretation result, Example ex)
+    @Override
+    public Set<InterpretationField> reads() {
+        return EnumSet.of(InterpretationField.SENTENCE);
+    }
+
+    @Override
+    public Set<InterpretationField> writes() {
+        return EnumSet.of(InterpretationField.TOKENS, InterpretationField.POS_TAGS, InterpretationField.LEMMAS,
+                InterpretationField.TRIPLES, InterpretationField.KEYWORDS, InterpretationField.PARSE_TREES,
+                InterpretationField.SENTIMENT, InterpretationField.SEMANTIC_PARSE);
+    }
+
+    /**
+     * Parses depend on the earlier exchanges of the session.
+     */
+    @Override
+    public Object contextFingerprint(Interpretation interpretation) {
+        List<String> utterances = new ArrayList<>();
+        for (ContextValue.Exchange exchange : getSession(interpretation.getConversationId()).context.exchanges) {
+            utterances.add(exchange.utterance);
+        }
+        return utterances;
+    }
+
+    /**
+     * Returns the parser session of a conversation, creating it on first use.
+     *
+     * @param conversationId uuid of the conversation, DEFAULT_SESSION is used if null
+     * @return session holding the discourse context of the conversation
+     */
+    public Session getSession(String conversationId) {
+        String id = (conversationId == null) ? DEFAULT_SESSION : conversationId;
+        return sessions.computeIfAbsent(id, Session::new);
+    }
+
+    /**
+     * Drops the parser session of a conversation. Should be called when the conversation ends.
+     *
+     * @param conversationId uuid of the conversation
+     */
+    public void releaseSession(String conversationId) {
+        if (conversationId != null) {
+            sessions.remove(conversationId);
+            speculativeParser.cancel(conversationId);
+        }
+    }
+
+    /**
+     * Parses the example with one of the parser workers.
+     *
+     * @param ex preprocessed example, its predicted derivations are set
+     * @return false if interrupted while waiting for a worker
+     */
+    private boolean parse(Example ex) {
+        ErrorRetrieval errorRetrieval;
+        try {
+            errorRetrieval = errorRetrievalPool.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while waiting for a parser worker: " + e.getMessage());
+            return false;
+        }
+        try {
+            builder.parser.parse(builder.params, ex, false, errorRetrieval);
+        } finally {
+            errorRetrievalPool.add(errorRetrieval);
+        }
+        return true;
+    }
+
+    private void executeSemanticAnalysis(Interpretation result, Example ex, Future<Boolean> speculation)
     {
-        builder.parser.parse(builder.params, ex, false, builder.error_retrieval);
+        boolean parsed = speculativeParser.join(ex, speculation);
+        if (!parsed) {
+            result.setParsingOutcome(Linguistics.ParsingOutcome.FAILURE);
+            return;
+        }
         ex.logWithoutContext();
         
         parsingResultProcessing:
@@ -167,6 +380,39 @@ public class SemanticParserAnalyzer implements Analyzer
         }
     }
 
+    /**
+     * Copies keywords and parse trees annotated by the parse stage of CoreNLP.
+     *
+     * @param interpretation interpretation to fill
+     * @param ex preprocessed example of the utterance
+     */
+    private void readConstituency(Interpretation interpretation, Example ex) {
+        interpretation.setParseTrees(ex.getGenInfo().getParseTrees());
+
+        List<Keyword> keywords = new ArrayList<>();
+        for (String k: ex.getGenInfo().getKeywords()) {
+            Keyword keyword = new Keyword(1.0, k);
+            keywords.add(keyword);
+        }
+        interpretation.setKeywords(keywords);
+    }
+
+    /**
+     * Copies the sentiment annotated by the sentiment stage of CoreNLP.
+     *
+     * @param interpretation interpretation to fill
+     * @param ex preprocessed example of the utterance
+     */
+    private void readSentiment(Interpretation interpretation, Example ex) {
+        // Read extracted sentiment
+        try {
+            interpretation.setSentiment(Linguistics.UtteranceSentiment.valueOf(ex.getGenInfo().getSentiment().toUpperCase()));
+        } catch (Exception e) {
+            interpretation.setSentiment(Linguistics.UtteranceSentiment.NEUTRAL);
+            logger.error("Sentiment is illegal: " + e.getMessage());
+        }
+    }
+
     /**
      * Function reading extracted relations in returned JSON string.
      *
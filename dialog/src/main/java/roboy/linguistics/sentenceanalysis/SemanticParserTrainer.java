@@ -0,0 +1,35 @@
+package roboy.linguistics.sentenceanalysis;
+
+import edu.stanford.nlp.sempre.Builder;
+import edu.stanford.nlp.sempre.roboy.config.ConfigManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Build-time training step for the semantic parser.
+ *
+ * Trains the parser with the same options as SemanticParserAnalyzer and writes the resulting
+ * parameters to the binary snapshot configured as PARAMS_SNAPSHOT_FILE in parser.properties.
+ * SemanticParserAnalyzer loads this snapshot at startup instead of training again.
+ */
+public class SemanticParserTrainer {
+
+    private final static Logger logger = LogManager.getLogger();
+
+    /**
+     * Trains the parser and writes the parameter snapshot.
+     *
+     * @param args optional path of the snapshot, overrides PARAMS_SNAPSHOT_FILE
+     */
+    public static void main(String[] args) {
+        String snapshot = (args.length > 0) ? args[0] : ConfigManager.PARAMS_SNAPSHOT_FILE;
+
+        SemanticParserAnalyzer.initOptions();
+        Builder builder = new Builder();
+        builder.build();
+        SemanticParserAnalyzer.train(builder);
+
+        builder.params.writeSnapshot(snapshot, SemanticParserAnalyzer.modelFingerprint());
+        logger.info("Parser snapshot written to " + snapshot);
+    }
+}
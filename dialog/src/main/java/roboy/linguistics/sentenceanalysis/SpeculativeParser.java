@@ -0,0 +1,121 @@
+package roboy.linguistics.sentenceanalysis;
+
+import edu.stanford.nlp.sempre.roboy.utils.tracing.Tracer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Starts the parse of an utterance in the background, before anybody asked for its result.
+ *
+ * Every session has at most one speculative parse. It is cancelled when the next utterance of the
+ * session is speculated on or the session is cancelled. Asking for the result of a cancelled parse
+ * parses the example again. Parses of the same example are synchronized on it, so a re-parse only
+ * starts once the cancelled parse has stopped.
+ *
+ * @param <T> example being parsed, holds the result of the parse
+ */
+class SpeculativeParser<T> {
+
+    private final static Logger logger = LogManager.getLogger();
+
+    /**
+     * Parses an example, leaving the result in it.
+     */
+    interface ParseFunction<T> {
+        /**
+         * @param example example to parse
+         * @return false if the parse failed or was interrupted
+         */
+        boolean parse(T example);
+    }
+
+    private final ParseFunction<T> parser;
+    // Threads running speculative parses, null if parses only run when their result is needed
+    private final ExecutorService pool;
+    // Speculative parse of the latest example of every session
+    private final Map<String, Future<Boolean>> speculations = new ConcurrentHashMap<>();
+
+    /**
+     * @param parser function parsing an example
+     * @param pool threads running the speculative parses, null to parse only in join
+     */
+    SpeculativeParser(ParseFunction<T> parser, ExecutorService pool) {
+        this.parser = parser;
+        this.pool = pool;
+    }
+
+    /**
+     * Starts parsing the example in the background if speculative parsing is enabled.
+     * The speculative parse of the previous example of the session is cancelled, if it is still running
+     * nobody asked for its result during the last turn.
+     *
+     * @param sessionId id of the session the example belongs to
+     * @param example example to parse
+     * @return the running parse, null if parsing is not speculative
+     */
+    Future<Boolean> speculate(String sessionId, T example) {
+        if (pool == null) {
+            return null;
+        }
+        Tracer.Turn turn = Tracer.currentTurn();
+        Future<Boolean> speculation = pool.submit(() -> {
+            try (Tracer.Span span = Tracer.start("semanticParse.speculative", turn)) {
+                synchronized (example) {
+                    return parser.parse(example);
+                }
+            }
+        });
+        Future<Boolean> previous = speculations.put(sessionId, speculation);
+        if (previous != null) {
+            previous.cancel(true);
+        }
+        return speculation;
+    }
+
+    /**
+     * Cancels the speculative parse of a session, if there is one.
+     *
+     * @param sessionId id of the session
+     */
+    void cancel(String sessionId) {
+        Future<Boolean> speculation = speculations.remove(sessionId);
+        if (speculation != null) {
+            speculation.cancel(true);
+        }
+    }
+
+    /**
+     * Waits for the speculative parse of an example. If it was cancelled before anybody asked for it,
+     * the example is parsed again once the cancelled parse has stopped.
+     *
+     * @param example example being parsed
+     * @param speculation speculative parse of the example, null to parse it now
+     * @return false if the parse failed or was interrupted
+     */
+    boolean join(T example, Future<Boolean> speculation) {
+        if (speculation == null) {
+            return parser.parse(example);
+        }
+        try {
+            return speculation.get();
+        } catch (CancellationException e) {
+            synchronized (example) {
+                return parser.parse(example);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while waiting for the speculative parse: " + e.getMessage());
+            return false;
+        } catch (ExecutionException e) {
+            logger.error("Speculative parse failed: " + e.getCause());
+            return false;
+        }
+    }
+}
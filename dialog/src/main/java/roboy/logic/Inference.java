@@ -4,6 +4,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.bytedeco.javacpp.presets.opencv_core;
 import org.json.JSONObject;
+import roboy.linguistics.KeyPhrase;
 import roboy.linguistics.Linguistics;
 import roboy.linguistics.Triple;
 import roboy.linguistics.sentenceanalysis.Interpretation;
@@ -17,9 +18,10 @@ import java.util.*;
 public class Inference implements InferenceEngine {
     final Logger LOGGER = LogManager.getLogger();
 
-    final static List<String> positiveTokens = Arrays.asList("yes", "yep", "yeah", "ok", "sure", "course", "go ahead", "okay", "totally", "surely", "positive", "ready");
-    final static List<String> negativeTokens = Arrays.asList("no", "nope", "later", "not", "dont", "negative");
-    final static List<String> uncertaintyTokens = Arrays.asList("guess", "probably", "could", "likely", "know", "not sure", "idea", "perhaps", "depends", "maybe", "think", "might");
+    // Compiled into the matcher of KeyPhrase, which looks for all of them in one pass
+    public final static List<String> positiveTokens = Arrays.asList("yes", "yep", "yeah", "ok", "sure", "course", "go ahead", "okay", "totally", "surely", "positive", "ready");
+    public final static List<String> negativeTokens = Arrays.asList("no", "nope", "later", "not", "dont", "negative");
+    public final static List<String> uncertaintyTokens = Arrays.asList("guess", "probably", "could", "likely", "know", "not sure", "idea", "perhaps", "depends", "maybe", "think", "might");
 
 
     private String inferName(Interpretation input) {
@@ -137,34 +139,13 @@ public class Inference implements InferenceEngine {
 
     @Override
     public Linguistics.UtteranceSentiment inferSentiment(Interpretation input) {
-        // Brute-force implementation
-        boolean positive = false;
-        boolean negative = false;
-        boolean uncertain = false;
         if(input.getSentence().contains("no idea") || input.getSentence().contains("do not know") || input.getSentence().contains("maybe")){
             return Linguistics.UtteranceSentiment.MAYBE;
         }
-        List<String> tokens = input.getTokens();
-        if (tokens != null && !tokens.isEmpty()) {
-            for (String token : positiveTokens) {
-                if (tokens.contains(token)) {
-                    positive = true;
-                    break;
-                }
-            }
-            for (String token : negativeTokens) {
-                if (tokens.contains(token)) {
-                    negative = true;
-                    break;
-                }
-            }
-            for(String token : uncertaintyTokens){
-                if(tokens.contains(token)){
-                    uncertain = true;
-                    break;
-                }
-            }
-        }
+        Set<KeyPhrase> phrases = KeyPhrase.find(input.getTokens());
+        boolean positive = phrases.contains(KeyPhrase.POSITIVE);
+        boolean negative = phrases.contains(KeyPhrase.NEGATIVE);
+        boolean uncertain = phrases.contains(KeyPhrase.UNCERTAIN);
         if (positive && !negative && uncertain) {
             return Linguistics.UtteranceSentiment.UNCERTAIN_POS;
         } else if (!positive && negative && uncertain) {
@@ -0,0 +1,551 @@
+package roboy.memory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.reflect.TypeToken;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import roboy.memory.nodes.MemoryNodeModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process graph memory for single-robot deployments and load tests.
+ *
+ * Answers the same JSON requests as the roboy_memory MemoryOperations (get, create, update, remove),
+ * but keeps the graph in this process:
+ * - nodes are stored in an array indexed by their ID,
+ * - labels and property values are indexed by bit sets of node IDs,
+ * - relationships are kept as ID arrays per Neo4jRelationship on the source node.
+ *
+ * Every change is appended to a journal file, which is replayed when the memory is opened again.
+ * By default each entry is forced to disk before the change is acknowledged, so it survives a crash.
+ * Without a journal file, the memory only lives as long as the process.
+ */
+public class EmbeddedMemory implements Neo4jMemoryInterface {
+
+    private final static Logger logger = LogManager.getLogger();
+    private final static String OK = "{\"status\":\"OK\"}";
+    private final static String FAIL = "{\"status\":\"FAIL\"}";
+
+    private static class Node {
+        final int id;
+        final List<String> labels = new ArrayList<>(1);
+        final Map<String, JsonElement> properties = new LinkedHashMap<>();
+        final EnumMap<Neo4jRelationship, int[]> relationships = new EnumMap<>(Neo4jRelationship.class);
+
+        Node(int id) {
+            this.id = id;
+        }
+    }
+
+    private final Gson gson = new Gson();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Node[] nodes = new Node[64];
+    private int nextId = 1;
+    private final BitSet live = new BitSet();
+    private final Map<String, BitSet> labelIndex = new HashMap<>();
+    private final Map<String, Map<JsonElement, BitSet>> propertyIndex = new HashMap<>();
+
+    private final File journal;
+    private final boolean sync;
+    private FileChannel journalOut;
+
+    /**
+     * Creates a memory that is not saved to disk.
+     */
+    public EmbeddedMemory() {
+        this.journal = null;
+        this.sync = false;
+        logger.info("Using embedded memory without journal");
+    }
+
+    /**
+     * Opens a memory and replays its journal, if it exists. Every change is forced to disk.
+     * @param journal file that all changes are appended to
+     * @throws IOException if the journal cannot be read or opened for writing
+     */
+    public EmbeddedMemory(File journal) throws IOException {
+        this(journal, true);
+    }
+
+    /**
+     * Opens a memory and replays its journal, if it exists.
+     * @param journal file that all changes are appended to
+     * @param sync whether to force every change to disk before acknowledging it, otherwise
+     *             changes written shortly before a crash of the machine may be lost
+     * @throws IOException if the journal cannot be read or opened for writing
+     */
+    public EmbeddedMemory(File journal, boolean sync) throws IOException {
+        this.journal = journal;
+        this.sync = sync;
+        int replayed = replay();
+        journalOut = FileChannel.open(journal.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        logger.info("Using embedded memory with " + live.cardinality() + " nodes from " + replayed + " journal entries");
+    }
+
+    // #####################################################
+    // #        Neo4jMemoryInterface (as Neo4jMemory)      #
+    // #####################################################
+
+    @Override
+    public boolean save(MemoryNodeModel node) throws InterruptedException, IOException {
+        return update(node.toJSON()).contains("OK");
+    }
+
+    @Override
+    public String getById(int id) throws InterruptedException, IOException {
+        String result = get("{'id':" + id + "}");
+        return result.contains("FAIL") ? null : result;
+    }
+
+    /**
+     * Looks all nodes up under a single lock, without building a query for each of them.
+     */
+    @Override
+    public ArrayList<String> getByIds(List<Integer> ids) throws InterruptedException, IOException {
+        ArrayList<String> result = new ArrayList<>(ids.size());
+        lock.readLock().lock();
+        try {
+            for (Integer id : ids) {
+                Node node = id == null ? null : node(id);
+                result.add(node == null ? null : toJson(node).toString());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    @Override
+    public ArrayList<Integer> getByQuery(MemoryNodeModel query) throws InterruptedException, IOException {
+        String result = get(query.toJSON());
+        if (result.contains("FAIL")) return null;
+        Type type = new TypeToken<HashMap<String, ArrayList<Integer>>>() {}.getType();
+        HashMap<String, ArrayList<Integer>> list = gson.fromJson(result, type);
+        return list.get("id");
+    }
+
+    @Override
+    public int create(MemoryNodeModel query) throws InterruptedException, IOException {
+        String result = create(query.toJSON());
+        if (result.contains("FAIL")) return 0;
+        return new JsonParser().parse(result).getAsJsonObject().get("id").getAsInt();
+    }
+
+    @Override
+    public boolean remove(MemoryNodeModel query) throws InterruptedException, IOException {
+        query.setStripQuery(true);
+        return remove(query.toJSON()).contains("OK");
+    }
+
+    // #####################################################
+    // #         JSON requests (as MemoryOperations)       #
+    // #####################################################
+
+    /**
+     * Returns the node with the ID of the query, or the IDs of all nodes matching the query.
+     * @param query Ex: {"labels":["Person"],"label":"Person","properties":{"name":"davis"}}
+     * @return node JSON if the query has an ID, {"id":[...]} otherwise
+     */
+    public String get(String query) {
+        JsonObject request = parse(query);
+        if (request == null) return FAIL;
+        lock.readLock().lock();
+        try {
+            if (request.has("id")) {
+                Node node = node(request.get("id").getAsInt());
+                return node == null ? FAIL : toJson(node).toString();
+            }
+            JsonArray ids = new JsonArray();
+            BitSet matching = match(request);
+            for (int id = matching.nextSetBit(0); id >= 0; id = matching.nextSetBit(id + 1)) {
+                ids.add(new JsonPrimitive(id));
+            }
+            JsonObject result = new JsonObject();
+            result.add("id", ids);
+            return result.toString();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Creates a node.
+     * @param query Ex: {"labels":["Organization"],"label":"Organization","properties":{"name":"korn"}}
+     * @return {"id":...} of the new node
+     */
+    public String create(String query) {
+        JsonObject request = parse(query);
+        if (request == null) return FAIL;
+        lock.writeLock().lock();
+        try {
+            Node node = new Node(nextId);
+            request.addProperty("id", node.id);
+            apply(node, request);
+            journal('C', request);
+            JsonObject result = new JsonObject();
+            result.addProperty("id", node.id);
+            return result.toString();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the properties, labels and relationships of an existing node. Existing relationships are kept.
+     * @param query Ex: {"labels":["Person"],"label":"Person","properties":{"name":"davis"},"relationships":{"FROM":[369]},"id":368}
+     */
+    public String update(String query) {
+        JsonObject request = parse(query);
+        if (request == null || !request.has("id")) return FAIL;
+        lock.writeLock().lock();
+        try {
+            Node node = node(request.get("id").getAsInt());
+            if (node == null) return FAIL;
+            apply(node, request);
+            journal('U', request);
+            return OK;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes a node if only its ID is given, otherwise the given properties and relationships of the node.
+     * @param query Ex: {"id":361,"properties":{"sex":""},"relationships":{"FRIEND_OF":[426]}}
+     */
+    public String remove(String query) {
+        JsonObject request = parse(query);
+        if (request == null || !request.has("id")) return FAIL;
+        lock.writeLock().lock();
+        try {
+            Node node = node(request.get("id").getAsInt());
+            if (node == null) return FAIL;
+            delete(node, request);
+            journal('R', request);
+            return OK;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of nodes
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Closes the journal. The memory must not be changed afterwards.
+     */
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (journalOut != null) {
+                journalOut.close();
+                journalOut = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // #####################################################
+    // #                 Graph operations                  #
+    // #####################################################
+
+    private static JsonObject parse(String json) {
+        try {
+            JsonElement element = new JsonParser().parse(json);
+            return element.isJsonObject() ? element.getAsJsonObject() : null;
+        } catch (JsonParseException | IllegalStateException e) {
+            logger.error("Invalid memory request: " + json);
+            return null;
+        }
+    }
+
+    private Node node(int id) {
+        return (id > 0 && id < nodes.length) ? nodes[id] : null;
+    }
+
+    private static List<String> labels(JsonObject request) {
+        List<String> labels = new ArrayList<>(1);
+        JsonElement labelsJson = request.get("labels");
+        if (labelsJson != null && labelsJson.isJsonArray()) {
+            for (JsonElement label : labelsJson.getAsJsonArray()) {
+                labels.add(label.getAsString());
+            }
+        }
+        JsonElement label = request.get("label");
+        if (label != null && label.isJsonPrimitive() && !labels.contains(label.getAsString())) {
+            labels.add(label.getAsString());
+        }
+        return labels;
+    }
+
+    private static JsonObject object(JsonObject request, String member) {
+        JsonElement element = request.get(member);
+        return (element != null && element.isJsonObject()) ? element.getAsJsonObject() : new JsonObject();
+    }
+
+    /**
+     * Intersects the label and property indexes, then checks relationships of the remaining nodes.
+     */
+    private BitSet match(JsonObject request) {
+        BitSet result = (BitSet) live.clone();
+        for (String label : labels(request)) {
+            result.and(labelIndex.getOrDefault(label, new BitSet()));
+        }
+        for (Map.Entry<String, JsonElement> property : object(request, "properties").entrySet()) {
+            BitSet withValue = propertyIndex.getOrDefault(property.getKey(), new HashMap<>()).get(property.getValue());
+            result.and(withValue == null ? new BitSet() : withValue);
+        }
+        for (Map.Entry<String, JsonElement> relationship : object(request, "relationships").entrySet()) {
+            Neo4jRelationship type = Neo4jRelationship.lookupByType(relationship.getKey());
+            for (int id = result.nextSetBit(0); id >= 0; id = result.nextSetBit(id + 1)) {
+                int[] targets = type == null ? null : nodes[id].relationships.get(type);
+                for (JsonElement target : relationship.getValue().getAsJsonArray()) {
+                    if (targets == null || indexOf(targets, target.getAsInt()) < 0) {
+                        result.clear(id);
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the labels, properties and relationships of the request to a node, creating it if necessary.
+     */
+    private void apply(Node node, JsonObject request) {
+        if (node(node.id) == null) {
+            if (node.id >= nodes.length) {
+                nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, node.id + 1));
+            }
+            nodes[node.id] = node;
+            live.set(node.id);
+            nextId = Math.max(nextId, node.id + 1);
+        }
+        for (String label : labels(request)) {
+            if (!node.labels.contains(label)) {
+                node.labels.add(label);
+                labelIndex.computeIfAbsent(label, l -> new BitSet()).set(node.id);
+            }
+        }
+        for (Map.Entry<String, JsonElement> property : object(request, "properties").entrySet()) {
+            unindex(node, property.getKey());
+            node.properties.put(property.getKey(), property.getValue());
+            propertyIndex.computeIfAbsent(property.getKey(), k -> new HashMap<>())
+                    .computeIfAbsent(property.getValue(), v -> new BitSet()).set(node.id);
+        }
+        for (Map.Entry<String, JsonElement> relationship : object(request, "relationships").entrySet()) {
+            Neo4jRelationship type = Neo4jRelationship.lookupByType(relationship.getKey());
+            if (type == null) {
+                logger.warn("Unknown relationship " + relationship.getKey() + " ignored");
+                continue;
+            }
+            int[] targets = node.relationships.getOrDefault(type, new int[0]);
+            for (JsonElement target : relationship.getValue().getAsJsonArray()) {
+                int id = target.getAsInt();
+                if (indexOf(targets, id) < 0) {
+                    targets = Arrays.copyOf(targets, targets.length + 1);
+                    targets[targets.length - 1] = id;
+                }
+            }
+            node.relationships.put(type, targets);
+        }
+    }
+
+    private void delete(Node node, JsonObject request) {
+        JsonObject properties = object(request, "properties");
+        JsonObject relationships = object(request, "relationships");
+        if (properties.size() == 0 && relationships.size() == 0) {
+            // delete the whole node including relationships pointing to it
+            for (String property : new ArrayList<>(node.properties.keySet())) {
+                unindex(node, property);
+            }
+            for (String label : node.labels) {
+                labelIndex.get(label).clear(node.id);
+            }
+            nodes[node.id] = null;
+            live.clear(node.id);
+            for (int id = live.nextSetBit(0); id >= 0; id = live.nextSetBit(id + 1)) {
+                for (Map.Entry<Neo4jRelationship, int[]> targets : nodes[id].relationships.entrySet()) {
+                    targets.setValue(without(targets.getValue(), node.id));
+                }
+            }
+            return;
+        }
+        for (String property : properties.keySet()) {
+            unindex(node, property);
+            node.properties.remove(property);
+        }
+        for (Map.Entry<String, JsonElement> relationship : relationships.entrySet()) {
+            Neo4jRelationship type = Neo4jRelationship.lookupByType(relationship.getKey());
+            int[] targets = type == null ? null : node.relationships.get(type);
+            if (targets == null) continue;
+            for (JsonElement target : relationship.getValue().getAsJsonArray()) {
+                targets = without(targets, target.getAsInt());
+            }
+            node.relationships.put(type, targets);
+        }
+    }
+
+    private void unindex(Node node, String property) {
+        JsonElement old = node.properties.get(property);
+        if (old != null) {
+            BitSet withValue = propertyIndex.get(property).get(old);
+            withValue.clear(node.id);
+            if (withValue.isEmpty()) {
+                propertyIndex.get(property).remove(old);
+            }
+        }
+    }
+
+    private static int indexOf(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) return i;
+        }
+        return -1;
+    }
+
+    private static int[] without(int[] values, int value) {
+        int i = indexOf(values, value);
+        if (i < 0) return values;
+        int[] result = new int[values.length - 1];
+        System.arraycopy(values, 0, result, 0, i);
+        System.arraycopy(values, i + 1, result, i, result.length - i);
+        return result;
+    }
+
+    private static JsonObject toJson(Node node) {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", node.id);
+        JsonArray labels = new JsonArray();
+        for (String label : node.labels) {
+            labels.add(new JsonPrimitive(label));
+        }
+        json.add("labels", labels);
+        JsonObject properties = new JsonObject();
+        for (Map.Entry<String, JsonElement> property : node.properties.entrySet()) {
+            properties.add(property.getKey(), property.getValue());
+        }
+        json.add("properties", properties);
+        JsonObject relationships = new JsonObject();
+        for (Map.Entry<Neo4jRelationship, int[]> relationship : node.relationships.entrySet()) {
+            if (relationship.getValue().length == 0) continue;
+            JsonArray targets = new JsonArray();
+            for (int id : relationship.getValue()) {
+                targets.add(new JsonPrimitive(id));
+            }
+            relationships.add(relationship.getKey().type, targets);
+        }
+        json.add("relationships", relationships);
+        return json;
+    }
+
+    // #####################################################
+    // #                     Journal                       #
+    // #####################################################
+
+    /**
+     * Appends a change as a line "[C|U|R] {json}". Called with the write lock held.
+     */
+    private void journal(char operation, JsonObject request) {
+        if (journalOut == null) return;
+        try {
+            ByteBuffer entry = ByteBuffer.wrap((operation + " " + request.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+            while (entry.hasRemaining()) {
+                journalOut.write(entry);
+            }
+            if (sync) {
+                journalOut.force(false);
+            }
+        } catch (IOException e) {
+            logger.error("Could not write memory journal " + journal + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies all complete entries of the journal and cuts off a torn last entry, i.e. the bytes after
+     * the last line break. Complete but invalid entries are logged and skipped, the entries after them
+     * are still applied.
+     * @return number of applied entries
+     */
+    private int replay() throws IOException {
+        if (!journal.exists()) return 0;
+        byte[] bytes = Files.readAllBytes(journal.toPath());
+        int applied = 0;
+        int start = 0;
+        for (int end = 0; end < bytes.length; end++) {
+            if (bytes[end] != '\n') continue;
+            String line = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+            start = end + 1;
+            JsonObject request = line.length() > 2 ? parse(line.substring(2)) : null;
+            if (request == null || !request.has("id")) {
+                logger.error("Skipping invalid entry in memory journal " + journal + ": " + line);
+                continue;
+            }
+            try {
+                Node node = node(request.get("id").getAsInt());
+                switch (line.charAt(0)) {
+                    case 'C':
+                        apply(new Node(request.get("id").getAsInt()), request);
+                        break;
+                    case 'U':
+                        if (node != null) apply(node, request);
+                        break;
+                    case 'R':
+                        if (node != null) delete(node, request);
+                        break;
+                    default:
+                        logger.error("Skipping unknown entry in memory journal " + journal + ": " + line);
+                        continue;
+                }
+            } catch (RuntimeException e) {
+                logger.error("Skipping invalid entry in memory journal " + journal + ": " + line + " (" + e + ")");
+                continue;
+            }
+            applied++;
+        }
+        if (start < bytes.length) {
+            logger.warn("Dropping incomplete entry at the end of memory journal " + journal);
+            try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+                file.setLength(start);
+            }
+        }
+        return applied;
+    }
+}
@@ -0,0 +1,185 @@
+package roboy.memory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import roboy.memory.nodes.MemoryNodeModel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the updates of one conversation between two calls of flush().
+ *
+ * A node saved several times during a dialog turn, like the interlocutor learning several facts,
+ * is written only once when the turn ends. Creating and removing nodes is not deferred.
+ * Reading a node with a deferred update writes it first, and so does a query its updated properties match.
+ *
+ * Deferred updates are only sent to the memory later, so save() can merely report that an update was queued.
+ * Updates that fail when they are finally written are reported by flush(), or logged if a read wrote them.
+ */
+public class MemoryUnitOfWork implements Neo4jMemoryInterface {
+
+    private final static Logger logger = LogManager.getLogger();
+
+    private final Neo4jMemoryInterface memory;
+    /** nodes to save, by id */
+    private final Map<Integer, MemoryNodeModel> pending = new LinkedHashMap<>();
+
+    /**
+     * @param memory memory that receives the updates
+     */
+    public MemoryUnitOfWork(Neo4jMemoryInterface memory) {
+        this.memory = memory;
+    }
+
+    /**
+     * Defers the update of an existing node until flush(). Nodes without ID are saved right away.
+     * @return true if the update was queued, whether it succeeds is only known when it is written;
+     *         for nodes without ID the result of saving them
+     */
+    @Override
+    public boolean save(MemoryNodeModel node) throws InterruptedException, IOException {
+        if (node.getId() == 0) {
+            return memory.save(node);
+        }
+        synchronized (pending) {
+            pending.put(node.getId(), node);
+        }
+        return true;
+    }
+
+    @Override
+    public String getById(int id) throws InterruptedException, IOException {
+        flush(id);
+        return memory.getById(id);
+    }
+
+    @Override
+    public ArrayList<String> getByIds(List<Integer> ids) throws InterruptedException, IOException {
+        List<MemoryNodeModel> updated = new ArrayList<>();
+        synchronized (pending) {
+            for (Integer id : ids) {
+                MemoryNodeModel node = pending.remove(id);
+                if (node != null) {
+                    updated.add(node);
+                }
+            }
+        }
+        logFailures(write(updated));
+        return memory.getByIds(ids);
+    }
+
+    @Override
+    public ArrayList<Integer> getByQuery(MemoryNodeModel query) throws InterruptedException, IOException {
+        List<MemoryNodeModel> matching = new ArrayList<>();
+        synchronized (pending) {
+            for (Iterator<MemoryNodeModel> it = pending.values().iterator(); it.hasNext(); ) {
+                MemoryNodeModel node = it.next();
+                if (matches(node, query)) {
+                    matching.add(node);
+                    it.remove();
+                }
+            }
+        }
+        logFailures(write(matching));
+        return memory.getByQuery(query);
+    }
+
+    @Override
+    public int create(MemoryNodeModel query) throws InterruptedException, IOException {
+        return memory.create(query);
+    }
+
+    @Override
+    public boolean remove(MemoryNodeModel query) throws InterruptedException, IOException {
+        flush(query.getId());
+        return memory.remove(query);
+    }
+
+    /**
+     * Saves all deferred nodes.
+     * @throws IOException if some updates could not be written, after all others were written
+     */
+    @Override
+    public void flush() throws InterruptedException, IOException {
+        List<MemoryNodeModel> nodes;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            nodes = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        List<Integer> failed = write(nodes);
+        memory.flush();
+        if (!failed.isEmpty()) {
+            throw new IOException("Updating nodes " + failed + " failed");
+        }
+    }
+
+    /**
+     * @return number of nodes waiting to be saved
+     */
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    private void flush(int id) throws InterruptedException, IOException {
+        MemoryNodeModel node;
+        synchronized (pending) {
+            node = pending.remove(id);
+        }
+        if (node != null) {
+            logFailures(write(Collections.singletonList(node)));
+        }
+    }
+
+    /**
+     * Saves the nodes, going on after failures so that one failed update does not lose the others.
+     * @return IDs of the nodes that could not be saved
+     */
+    private List<Integer> write(List<MemoryNodeModel> nodes) throws InterruptedException {
+        List<Integer> failed = new ArrayList<>();
+        for (MemoryNodeModel node : nodes) {
+            try {
+                if (!memory.save(node)) {
+                    failed.add(node.getId());
+                }
+            } catch (IOException e) {
+                logger.error("Updating node " + node.getId() + " failed: " + e.getMessage());
+                failed.add(node.getId());
+            }
+        }
+        return failed;
+    }
+
+    private static void logFailures(List<Integer> failed) {
+        if (!failed.isEmpty()) {
+            logger.error("Unexpected memory error: updating nodes " + failed + " failed.");
+        }
+    }
+
+    /**
+     * @return true if the node has all properties of the query with equal values
+     */
+    private static boolean matches(MemoryNodeModel node, MemoryNodeModel query) {
+        Map<Neo4jProperty, Object> properties = query.getProperties();
+        if (properties == null || properties.isEmpty()) {
+            return true;
+        }
+        for (Map.Entry<Neo4jProperty, Object> property : properties.entrySet()) {
+            Object value = node.getProperty(property.getKey());
+            if (value == null || !value.equals(property.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
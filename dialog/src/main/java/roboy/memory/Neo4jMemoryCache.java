@@ -0,0 +1,273 @@
+package roboy.memory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import roboy.memory.nodes.MemoryNodeModel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache in front of another Neo4jMemoryInterface.
+ *
+ * Nodes are cached by id, query results by their normalized query JSON, both in LRU order.
+ * Writes go straight to the wrapped memory. A node that is saved, created or removed is dropped
+ * from the cache together with the nodes it is related to, and all cached query results are dropped.
+ * Failed lookups are not cached.
+ */
+public class Neo4jMemoryCache implements Neo4jMemoryInterface {
+
+    private final static Logger logger = LogManager.getLogger();
+
+    private final Neo4jMemoryInterface memory;
+    private final LruMap<Integer, String> nodes;
+    private final LruMap<String, ArrayList<Integer>> queries;
+
+    // Incremented by every write, so a lookup that raced with a write does not cache the old result
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+        private final int capacity;
+
+        LruMap(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * @param memory memory that is queried on cache misses and receives all writes
+     * @param capacity maximal number of cached nodes and, separately, of cached query results
+     */
+    public Neo4jMemoryCache(Neo4jMemoryInterface memory, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid cache capacity: " + capacity);
+        }
+        this.memory = memory;
+        this.nodes = new LruMap<>(capacity);
+        this.queries = new LruMap<>(capacity);
+        logger.info("Caching up to " + capacity + " memory nodes");
+    }
+
+    @Override
+    public boolean save(MemoryNodeModel node) throws InterruptedException, IOException {
+        try {
+            return memory.save(node);
+        } finally {
+            invalidate(node);
+        }
+    }
+
+    @Override
+    public String getById(int id) throws InterruptedException, IOException {
+        synchronized (nodes) {
+            String node = nodes.get(id);
+            if (node != null) {
+                hits.incrementAndGet();
+                return node;
+            }
+        }
+        misses.incrementAndGet();
+        long current = generation.get();
+        String node = memory.getById(id);
+        if (node != null) {
+            synchronized (nodes) {
+                if (generation.get() == current) {
+                    nodes.put(id, node);
+                }
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Answers cached nodes right away and fetches all others with a single getByIds call.
+     */
+    @Override
+    public ArrayList<String> getByIds(List<Integer> ids) throws InterruptedException, IOException {
+        ArrayList<String> result = new ArrayList<>(ids.size());
+        List<Integer> missing = new ArrayList<>();
+        synchronized (nodes) {
+            for (Integer id : ids) {
+                String node = nodes.get(id);
+                result.add(node);
+                if (node == null) {
+                    missing.add(id);
+                }
+            }
+        }
+        hits.addAndGet(ids.size() - missing.size());
+        if (missing.isEmpty()) {
+            return result;
+        }
+        misses.addAndGet(missing.size());
+
+        long current = generation.get();
+        ArrayList<String> fetched = memory.getByIds(missing);
+        synchronized (nodes) {
+            boolean valid = generation.get() == current;
+            for (int i = 0, j = 0; i < result.size(); i++) {
+                if (result.get(i) == null) {
+                    String node = fetched.get(j++);
+                    result.set(i, node);
+                    if (valid && node != null) {
+                        nodes.put(ids.get(i), node);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public ArrayList<Integer> getByQuery(MemoryNodeModel query) throws InterruptedException, IOException {
+        String key = normalize(query.toJSON());
+        synchronized (nodes) {
+            ArrayList<Integer> ids = queries.get(key);
+            if (ids != null) {
+                hits.incrementAndGet();
+                return new ArrayList<>(ids);
+            }
+        }
+        misses.incrementAndGet();
+        long current = generation.get();
+        ArrayList<Integer> ids = memory.getByQuery(query);
+        if (ids != null) {
+            synchronized (nodes) {
+                if (generation.get() == current) {
+                    queries.put(key, new ArrayList<>(ids));
+                }
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public int create(MemoryNodeModel query) throws InterruptedException, IOException {
+        try {
+            return memory.create(query);
+        } finally {
+            invalidate(query);
+        }
+    }
+
+    @Override
+    public boolean remove(MemoryNodeModel query) throws InterruptedException, IOException {
+        try {
+            return memory.remove(query);
+        } finally {
+            invalidate(query);
+        }
+    }
+
+    @Override
+    public void flush() throws InterruptedException, IOException {
+        memory.flush();
+    }
+
+    /**
+     * Drops a written node, the nodes it is related to and all query results.
+     * Related nodes are dropped because relationships are visible from both ends.
+     */
+    private void invalidate(MemoryNodeModel node) {
+        synchronized (nodes) {
+            generation.incrementAndGet();
+            nodes.remove(node.getId());
+            Map<Neo4jRelationship, ArrayList<Integer>> relationships = node.getRelationships();
+            if (relationships != null) {
+                for (Collection<Integer> ids : relationships.values()) {
+                    if (ids != null) {
+                        for (Integer id : ids) {
+                            nodes.remove(id);
+                        }
+                    }
+                }
+            }
+            queries.clear();
+        }
+    }
+
+    /**
+     * Sorts the keys of all objects, so equal queries give equal cache keys.
+     */
+    static String normalize(String json) {
+        try {
+            return sorted(new JsonParser().parse(json)).toString();
+        } catch (JsonSyntaxException e) {
+            return json;
+        }
+    }
+
+    private static JsonElement sorted(JsonElement element) {
+        if (element.isJsonObject()) {
+            TreeMap<String, JsonElement> members = new TreeMap<>();
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                members.put(entry.getKey(), sorted(entry.getValue()));
+            }
+            JsonObject result = new JsonObject();
+            for (Map.Entry<String, JsonElement> entry : members.entrySet()) {
+                result.add(entry.getKey(), entry.getValue());
+            }
+            return result;
+        }
+        if (element.isJsonArray()) {
+            JsonArray result = new JsonArray();
+            for (JsonElement e : element.getAsJsonArray()) {
+                result.add(sorted(e));
+            }
+            return result;
+        }
+        return element;
+    }
+
+    /**
+     * Drops all cached nodes and query results.
+     */
+    public void clear() {
+        synchronized (nodes) {
+            generation.incrementAndGet();
+            nodes.clear();
+            queries.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return share of lookups answered from the cache, 0 if there were none
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return "Neo4jMemoryCache{hits=" + getHits() + ", misses=" + getMisses() + ", hitRate=" + getHitRate() + "}";
+    }
+}
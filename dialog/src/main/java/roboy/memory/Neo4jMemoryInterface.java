@@ -4,6 +4,7 @@ import roboy.memory.nodes.MemoryNodeModel;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Implements the high-level-querying tasks to the Memory services.
@@ -29,6 +30,20 @@ public interface Neo4jMemoryInterface extends Memory<MemoryNodeModel>
      */
     String getById(int id) throws InterruptedException, IOException;
 
+    /**
+     * Retrieves several nodes by their IDs.
+     *
+     * @param  ids the IDs of requested nodes
+     * @return node representations in the order of the IDs, null for nodes that were not found
+     */
+    default ArrayList<String> getByIds(List<Integer> ids) throws InterruptedException, IOException {
+        ArrayList<String> nodes = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            nodes.add(getById(id));
+        }
+        return nodes;
+    }
+
     /**
      * This is a classical database query which finds all matching nodes.
      *
@@ -46,4 +61,10 @@ public interface Neo4jMemoryInterface extends Memory<MemoryNodeModel>
      * @param query StrippedQuery avoids accidentally deleting other fields than intended.
      */
     boolean remove(MemoryNodeModel query) throws InterruptedException, IOException;
+
+    /**
+     * Writes all updates that have been deferred. Memories that write immediately do nothing.
+     */
+    default void flush() throws InterruptedException, IOException {
+    }
 }
@@ -0,0 +1,72 @@
+package roboy.memory;
+
+import edu.stanford.nlp.sempre.roboy.utils.tracing.Tracer;
+import roboy.memory.nodes.MemoryNodeModel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures every call to another Neo4jMemoryInterface as a stage "memory.[method]" of the current dialog turn.
+ */
+public class TracedMemory implements Neo4jMemoryInterface {
+
+    private final Neo4jMemoryInterface memory;
+
+    /**
+     * @param memory memory receiving all calls
+     */
+    public TracedMemory(Neo4jMemoryInterface memory) {
+        this.memory = memory;
+    }
+
+    @Override
+    public boolean save(MemoryNodeModel node) throws InterruptedException, IOException {
+        try (Tracer.Span span = Tracer.start("memory.save")) {
+            return memory.save(node);
+        }
+    }
+
+    @Override
+    public String getById(int id) throws InterruptedException, IOException {
+        try (Tracer.Span span = Tracer.start("memory.getById")) {
+            return memory.getById(id);
+        }
+    }
+
+    @Override
+    public ArrayList<String> getByIds(List<Integer> ids) throws InterruptedException, IOException {
+        try (Tracer.Span span = Tracer.start("memory.getByIds")) {
+            return memory.getByIds(ids);
+        }
+    }
+
+    @Override
+    public ArrayList<Integer> getByQuery(MemoryNodeModel query) throws InterruptedException, IOException {
+        try (Tracer.Span span = Tracer.start("memory.getByQuery")) {
+            return memory.getByQuery(query);
+        }
+    }
+
+    @Override
+    public int create(MemoryNodeModel query) throws InterruptedException, IOException {
+        try (Tracer.Span span = Tracer.start("memory.create")) {
+            return memory.create(query);
+        }
+    }
+
+    @Override
+    public boolean remove(MemoryNodeModel query) throws InterruptedException, IOException {
+        try (Tracer.Span span = Tracer.start("memory.remove")) {
+            return memory.remove(query);
+        }
+    }
+
+    @Override
+    public void flush() throws InterruptedException, IOException {
+        try (Tracer.Span span = Tracer.start("memory.flush")) {
+            memory.flush();
+        }
+    }
+}
@@ -35,6 +35,10 @@ public class ConfigManager {
 
 
     public static int PARSER_PORT = -1;
+    public static int PARSER_WORKERS = Runtime.getRuntime().availableProcessors();
+    public static boolean PARSER_SPECULATIVE = false;
+    public static int ANALYZER_THREADS = Runtime.getRuntime().availableProcessors();
+    public static int NLU_CACHE_SIZE = 1000;
 
     public static String PERSONALITY_FILE = "resources/personalityFiles/tutorial/ToyStateMachine.json";
 
@@ -44,8 +48,19 @@ public class ConfigManager {
     public static boolean CONTEXT_GUI_ENABLED = false;
 
     public static long CONVERSATION_TIMEOUT = 0;
+    public static long CONVERSATION_PARK_TIMEOUT = 60;
+    public static int MAX_CONVERSATIONS = 0;
 
     public static String TELEGRAM_API_TOKENS_FILE = "";
+    public static double TELEGRAM_SEND_RATE = 30;
+    public static int TELEGRAM_SENDER_THREADS = 4;
+
+    public static String MEMORY_BACKEND = "neo4j";
+    public static String MEMORY_JOURNAL = "";
+    public static boolean MEMORY_JOURNAL_SYNC = true;
+    public static int MEMORY_CACHE_SIZE = 1000;
+
+    public static int METRICS_PORT = 0;
 
     public static String MEMORY_LOG_MODE = "INFO";
     public static String DIALOG_LOG_MODE = "INFO";
@@ -115,6 +130,10 @@ public class ConfigManager {
             }
 
             PARSER_PORT = yamlConfig.getInt("PARSER_PORT");
+            PARSER_WORKERS = yamlConfig.getInt("PARSER_WORKERS", PARSER_WORKERS);
+            PARSER_SPECULATIVE = yamlConfig.getBoolean("PARSER_SPECULATIVE", PARSER_SPECULATIVE);
+            ANALYZER_THREADS = yamlConfig.getInt("ANALYZER_THREADS", ANALYZER_THREADS);
+            NLU_CACHE_SIZE = yamlConfig.getInt("NLU_CACHE_SIZE", NLU_CACHE_SIZE);
 
             PERSONALITY_FILE = yamlConfig.getString("PERSONALITY_FILE");
 
@@ -131,8 +150,19 @@ public class ConfigManager {
             } else {
                 CONVERSATION_TIMEOUT = timeout;
             }
+            CONVERSATION_PARK_TIMEOUT = Math.max(0, yamlConfig.getLong("CONVERSATION_PARK_TIMEOUT", CONVERSATION_PARK_TIMEOUT));
+            MAX_CONVERSATIONS = yamlConfig.getInt("MAX_CONVERSATIONS", MAX_CONVERSATIONS);
 
             TELEGRAM_API_TOKENS_FILE = yamlConfig.getString("TELEGRAM_API_TOKENS_FILE");
+            TELEGRAM_SEND_RATE = yamlConfig.getDouble("TELEGRAM_SEND_RATE", TELEGRAM_SEND_RATE);
+            TELEGRAM_SENDER_THREADS = yamlConfig.getInt("TELEGRAM_SENDER_THREADS", TELEGRAM_SENDER_THREADS);
+
+            MEMORY_BACKEND = yamlConfig.getString("MEMORY_BACKEND", MEMORY_BACKEND);
+            MEMORY_JOURNAL = yamlConfig.getString("MEMORY_JOURNAL", MEMORY_JOURNAL);
+            MEMORY_JOURNAL_SYNC = yamlConfig.getBoolean("MEMORY_JOURNAL_SYNC", MEMORY_JOURNAL_SYNC);
+            MEMORY_CACHE_SIZE = yamlConfig.getInt("MEMORY_CACHE_SIZE", MEMORY_CACHE_SIZE);
+
+            METRICS_PORT = yamlConfig.getInt("METRICS_PORT", METRICS_PORT);
 
             MEMORY_LOG_MODE = (yamlConfig.getString("MEMORY_LOG_MODE"));
             PARSER_LOG_MODE = (yamlConfig.getString("PARSER_LOG_MODE"));
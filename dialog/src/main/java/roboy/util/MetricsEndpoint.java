@@ -0,0 +1,100 @@
+package roboy.util;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import edu.stanford.nlp.sempre.roboy.utils.tracing.LatencyHistogram;
+import edu.stanford.nlp.sempre.roboy.utils.tracing.Tracer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import roboy.linguistics.sentenceanalysis.InterpretationCache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local HTTP endpoint serving the latencies of the dialog stages recorded by the Tracer.
+ *
+ * GET /metrics returns a JSON object with count, mean, p50, p90, p99 and max in milliseconds per stage,
+ * e.g. {"stages":{"analyzer.EmotionAnalyzer":{"count":12,"mean_ms":0.4,...}}}, and the hits and
+ * misses of the cache of utterance analyses.
+ * The endpoint only listens on the loopback interface.
+ */
+public class MetricsEndpoint {
+
+    private final static Logger logger = LogManager.getLogger();
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private MetricsEndpoint() { }
+
+    /**
+     * Starts serving the metrics in the background.
+     * @param port local port to listen on
+     * @return the running server, null if it could not be started
+     */
+    public static HttpServer start(int port) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", MetricsEndpoint::serve);
+            server.start();
+            logger.info("Serving dialog metrics on http://127.0.0.1:" + port + "/metrics");
+            return server;
+        } catch (IOException e) {
+            logger.error("Could not start the metrics endpoint on port " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return latencies of all stages recorded so far and the statistics of the analysis cache as JSON
+     */
+    public static String toJson() {
+        JsonObject stages = new JsonObject();
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : Tracer.snapshot().entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue();
+            JsonObject stage = new JsonObject();
+            stage.addProperty("count", snapshot.getCount());
+            stage.addProperty("mean_ms", snapshot.getMean() / NANOS_PER_MILLI);
+            stage.addProperty("p50_ms", snapshot.getPercentile(50) / NANOS_PER_MILLI);
+            stage.addProperty("p90_ms", snapshot.getPercentile(90) / NANOS_PER_MILLI);
+            stage.addProperty("p99_ms", snapshot.getPercentile(99) / NANOS_PER_MILLI);
+            stage.addProperty("max_ms", snapshot.getMax(TimeUnit.NANOSECONDS) / NANOS_PER_MILLI);
+            stages.add(entry.getKey(), stage);
+        }
+        JsonObject metrics = new JsonObject();
+        metrics.add("stages", stages);
+        InterpretationCache cache = InterpretationCache.getShared();
+        if (cache != null) {
+            JsonObject nluCache = new JsonObject();
+            nluCache.addProperty("size", cache.size());
+            nluCache.addProperty("hits", cache.getHits());
+            nluCache.addProperty("misses", cache.getMisses());
+            nluCache.addProperty("hit_rate", cache.getHitRate());
+            metrics.add("nlu_cache", nluCache);
+        }
+        return new GsonBuilder().setPrettyPrinting().create().toJson(metrics);
+    }
+
+    private static void serve(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = toJson().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
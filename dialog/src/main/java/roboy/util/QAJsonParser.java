@@ -19,6 +19,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Getting values for personalStates and follow-up questions
@@ -66,10 +67,23 @@ public class QAJsonParser {
 
     private Gson gson;
 
+    /** parsed files shared by all states, maps file path to parser */
+    private final static Map<String, QAJsonParser> shared = new ConcurrentHashMap<>();
+
     public QAJsonParser(String file) {
         parse(file);
     }
 
+    /**
+     * Returns the parsed file, which is parsed only once and shared by all states that use it.
+     * The returned parser and its lists must not be modified.
+     * @param file path of the QA json file
+     * @return shared parser of the file
+     */
+    public static QAJsonParser getShared(String file) {
+        return shared.computeIfAbsent(file, QAJsonParser::new);
+    }
+
     public boolean parse(String file) {
         gson = new Gson();
 
@@ -0,0 +1,42 @@
+package roboy.util;
+
+/**
+ * Token bucket that never blocks.
+ * A caller reserves a permit and is told how long to wait before using it,
+ * so it can schedule the work instead of parking a thread.
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private final int burst;
+    private long next; // time at which the next permit becomes free
+
+    /**
+     * @param permitsPerSecond sustained rate
+     * @param burst number of permits that may be used at once after an idle period
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Invalid rate: " + permitsPerSecond + " per second, burst " + burst);
+        }
+        this.intervalNanos = (long) (1e9 / permitsPerSecond);
+        this.burst = burst;
+        this.next = System.nanoTime() - burst * intervalNanos;
+    }
+
+    /**
+     * Reserves the next free permit.
+     * @return nanoseconds to wait until the permit may be used, 0 if it is free right away
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        // Permits unused while idle pile up to the burst size
+        long earliest = now - (burst - 1) * intervalNanos;
+        if (next - earliest < 0) {
+            next = earliest;
+        }
+        long delay = Math.max(0, next - now);
+        next += intervalNanos;
+        return delay;
+    }
+}
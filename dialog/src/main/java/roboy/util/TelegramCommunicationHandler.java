@@ -21,27 +21,57 @@ import roboy.io.TelegramInput;
 
 import java.io.*;
 import java.security.InvalidParameterException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.*;
 
 /** Singleton Class For Telegram Bot */
-public class TelegramCommunicationHandler extends TelegramLongPollingBot implements Timeout.TimeoutObserver{
+public class TelegramCommunicationHandler extends TelegramLongPollingBot {
     private final static Logger logger = LogManager.getLogger();
 
     private static final String tokensPath = ConfigManager.TELEGRAM_API_TOKENS_FILE;//place path to your token file here
     private static final int TYPING_TIME_LIMIT = 3; //SECONDS
     private static final int INPUT_TIME_LIMIT = 5; //SECONDS
+    private static final int INBOX_THREADS = 2; //threads delivering incoming messages, shared by all chats
+
+    // Messages of one chat that are not delivered yet
+    private static class Inbox {
+        String name; //latest name of the sender
+        final StringBuilder text = new StringBuilder();
+        long generation; //number of messages, identifies the latest timeout
+        ScheduledFuture<?> timeout;
+    }
 
-    // CHAT ID ----- ITS MESSAGE
-    private volatile List<Pair<String,Pair<String, String>>> pairs = new ArrayList<>();//[UserName, [UserID, Message]]
-    private List<Timeout> telegramTimeouts; //Timeouts
+    // CHAT ID ----- ITS MESSAGES
+    private final ConcurrentHashMap<String, Inbox> inboxes = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor debouncer; //Timeouts of all chats
     private final static int initTime = (int) (System.currentTimeMillis() / 1000L); //in order to discard messages older than launch
 
+    private final TelegramDispatcher dispatcher; //Outgoing messages
+
     private TelegramCommunicationHandler(){
         super();
-        telegramTimeouts = new ArrayList<>();
         if(tokensPath.equals("")) throw new InvalidParameterException("Telegram tokens are not provided. Please provide them via config.properties!");
+        debouncer = new ScheduledThreadPoolExecutor(INBOX_THREADS, (Runnable r) -> {
+            Thread thread = new Thread(r, "telegram-inbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+        debouncer.setRemoveOnCancelPolicy(true);
+        dispatcher = new TelegramDispatcher(new TelegramDispatcher.Sender() {
+            @Override
+            public void typing(String chatID) {
+                sendTypingFromChatID(chatID);
+            }
+
+            @Override
+            public void message(String chatID, String text) {
+                executeSendMessage(text, chatID);
+            }
+
+            @Override
+            public void sticker(String chatID, String stickerId) {
+                executeSendSticker(chatID, stickerId);
+            }
+        }, TimeUnit.SECONDS.toMillis(TYPING_TIME_LIMIT), ConfigManager.TELEGRAM_SEND_RATE, ConfigManager.TELEGRAM_SENDER_THREADS);
     }
 
     // Instance for singleton
@@ -58,36 +88,30 @@ public class TelegramCommunicationHandler extends TelegramLongPollingBot impleme
     }
 
     /**
-     * Waits until specified time passed after the last message w.r.t. given chatId.
+     * Adds a message to the inbox of its chat and (re)starts the chat's timeout,
+     * so that the inbox is delivered once specified time passed after the last message.
      * @param chatID unique identifier for a chat.
+     * @param name the name of the sender.
+     * @param text the message.
      */
-    private void handleTimeout(String chatID){
-        int millisecond = 1000;
-
-        // if the list is empty create the first timeout and set it
-        if(telegramTimeouts.isEmpty()){
-            Timeout t  = new Timeout(millisecond * INPUT_TIME_LIMIT);
-            t.setUnique(chatID);
-
-            telegramTimeouts.add(t);
-        }
-
-        boolean hasStarted = false;
-        for(Timeout t: telegramTimeouts){
-            if(t.getUnique().equals(chatID)){
-                hasStarted = true;
-                t.start(this);
+    private void handleTimeout(String chatID, String name, String text){
+        inboxes.compute(chatID, (id, inbox) -> {
+            if(inbox == null){
+                inbox = new Inbox();
             }
-        }
-
-        if(!hasStarted){
-            // there is no timeout for given chatID so start one
-            Timeout t  = new Timeout(millisecond * INPUT_TIME_LIMIT);
-            t.setUnique(chatID);
-            t.start(this);
+            if(inbox.text.length() > 0){
+                inbox.text.append(' ');
+            }
+            inbox.text.append(text);
+            inbox.name = name;
 
-            telegramTimeouts.add(t);
-        }
+            if(inbox.timeout != null){
+                inbox.timeout.cancel(false);
+            }
+            long generation = ++inbox.generation;
+            inbox.timeout = debouncer.schedule(() -> onTimeout(chatID, generation), INPUT_TIME_LIMIT, TimeUnit.SECONDS);
+            return inbox;
+        });
     }
 
     /**
@@ -127,11 +151,8 @@ public class TelegramCommunicationHandler extends TelegramLongPollingBot impleme
                 name = "telegram user " + message.getFrom().getId().toString();
             }
             try {
-                //get message, add it to containers
-                pairs.add(new Pair<>(name, new Pair<>(chatID, text)));
-
-                //wait for certain seconds, start the timer
-                handleTimeout(chatID);
+                //add message to the chat's inbox, wait for certain seconds
+                handleTimeout(chatID, name, text);
             } catch (Exception e) {
                 Log.error(this, "Message receiving has been interrupted.");
                 e.printStackTrace();
@@ -141,53 +162,25 @@ public class TelegramCommunicationHandler extends TelegramLongPollingBot impleme
 
     /**
      * Called when specified time passed w.r.t. unique chatID.
-     * Concatenate all the messages that is not processed.
+     * Takes the concatenated messages out of the chat's inbox.
      * Calls the InputDevice for telegram
      * @param chatID unique identifier for a chat.
+     * @param generation the message that started this timeout.
      */
-    @Override
-    public void onTimeout(String chatID) {
-
-        // timeout method for getting all the messages
-        //telegramTimeout.stop();
-        for(Timeout t: telegramTimeouts){
-            if(t.getUnique().equals(chatID)){
-                t.stop();
+    private void onTimeout(String chatID, long generation) {
+        Inbox[] result = new Inbox[1];
+        inboxes.computeIfPresent(chatID, (id, inbox) -> {
+            // a newer message has restarted the timeout
+            if(inbox.generation != generation){
+                return inbox;
             }
-        }
-
-        List<Pair<String,Pair<String, String>>> removedObjects = new ArrayList<>();
-
-        // get the all messages
-        Pair<String,Pair<String, String>> result = null;
-        for(Pair<String,Pair<String,String>> pa : pairs){//iterate over triples: [Username, [ChatID, Text]]
-            Pair<String,String> p = pa.getValue();//get [ChatID,Text]
-            String name = pa.getKey();//get Username
-            //Map a = new HashMap<String, String>();
-            if(!chatID.equals(p.getKey())){
-                continue;
-            }
-
-            removedObjects.add(pa);
-            String message = p.getValue();
-
-            // check if the result initialized
-            if(result == null) {
-                result = new Pair<>(name,new Pair<>(chatID, message));
-            } else {
-                // sum all of the messages
-                String newMessage = result.getValue()+ " " + message;
+            result[0] = inbox;
+            return null;
+        });
 
-                //equal chat id
-                result = new Pair<>(name,new Pair<>(chatID, newMessage));
-            }
-        }
-
-
-        if(result != null) {
+        if(result[0] != null) {
             // notify the input device
-            pairs.removeAll(removedObjects);
-            TelegramInput.onUpdate(result.getValue(), result.getKey());
+            TelegramInput.onUpdate(new Pair<>(chatID, result[0].text.toString()), result[0].name);
         }
     }
 
@@ -195,39 +188,46 @@ public class TelegramCommunicationHandler extends TelegramLongPollingBot impleme
 
     /**
      * Called from the OutputDevice when a message desired to send
-     * Initiates the "typing status" and waits for a specified time
-     * Sends the message afterwards
+     * Queues the message and returns right away. The dispatcher initiates the "typing status"
+     * and sends the message after a specified time, after the earlier messages of the chat
      * @param chatID unique identifier for a chat.
      */
     public void sendMessage(String message, String chatID){
-        try {
-            sendTypingFromChatID(chatID);
-
-            TimeUnit.SECONDS.sleep(TYPING_TIME_LIMIT);
+        dispatcher.sendMessage(chatID, message);
+    }
 
-            SendMessage sendMessageRequest = new SendMessage();
-            sendMessageRequest.setChatId(chatID);//who should get the message? the sender from which we got the message...
-            sendMessageRequest.setText(message);
-            try {
-                execute(sendMessageRequest);
-            } catch (TelegramApiException e) {
-                Log.error(this, "Unable to send a message to telegram: "+e.getMessage());
-                e.printStackTrace();
-            }
+    /**
+     * Called from the OutputDevice when a message desired to send with stickers
+     * Queues the sticker, which is sent after the earlier messages of the chat without typing
+     * @param chatID unique identifier for a chat.
+     * @param stickerId unique identifier for a sticker.
+     */
+    public void sendSticker(String chatID, String stickerId){
+        dispatcher.sendSticker(chatID, stickerId);
+    }
 
-        } catch (InterruptedException e) {
+    /**
+     * Sends a text message right away
+     * @param chatID unique identifier for a chat.
+     */
+    private void executeSendMessage(String message, String chatID){
+        SendMessage sendMessageRequest = new SendMessage();
+        sendMessageRequest.setChatId(chatID);//who should get the message? the sender from which we got the message...
+        sendMessageRequest.setText(message);
+        try {
+            execute(sendMessageRequest);
+        } catch (TelegramApiException e) {
             Log.error(this, "Unable to send a message to telegram: "+e.getMessage());
             e.printStackTrace();
         }
     }
 
     /**
-     * Called from the OutputDevice when a message desired to send with stickers
-     * Directly sends the sticker, without waiting for a specified time!
+     * Sends a sticker right away
      * @param chatID unique identifier for a chat.
      * @param stickerId unique identifier for a sticker.
      */
-    public void sendSticker(String chatID, String stickerId){
+    private void executeSendSticker(String chatID, String stickerId){
         SendSticker sendStickerRequest = new SendSticker();
         try {
             sendStickerRequest.setChatId(chatID);
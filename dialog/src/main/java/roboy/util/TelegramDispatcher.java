@@ -0,0 +1,183 @@
+package roboy.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends outgoing Telegram messages without blocking the conversations.
+ *
+ * Every chat has its own queue, so messages arrive in the order they were sent.
+ * A text message is announced by the typing indicator and sent after the typing
+ * time, which is scheduled instead of slept. All API calls share one rate limiter
+ * and a fixed number of threads, however many chats are active.
+ */
+public class TelegramDispatcher {
+
+    /**
+     * Performs the actual, blocking API calls.
+     */
+    public interface Sender {
+        void typing(String chatID);
+        void message(String chatID, String text);
+        void sticker(String chatID, String stickerId);
+    }
+
+    private final static Logger logger = LogManager.getLogger();
+
+    private static class Outbound {
+        final String text;
+        final String sticker;
+
+        Outbound(String text, String sticker) {
+            this.text = text;
+            this.sticker = sticker;
+        }
+    }
+
+    private static class ChatQueue {
+        final Deque<Outbound> items = new ArrayDeque<>();
+        boolean busy; // an item of this chat is being sent
+    }
+
+    private final Sender sender;
+    private final long typingMillis;
+    private final RateLimiter limiter;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService senders;
+    private final ConcurrentHashMap<String, ChatQueue> chats = new ConcurrentHashMap<>();
+
+    /**
+     * @param sender performs the API calls
+     * @param typingMillis how long the typing indicator is shown before a text message
+     * @param sendsPerSecond maximal number of API calls per second over all chats
+     * @param threads number of threads performing API calls
+     */
+    public TelegramDispatcher(Sender sender, long typingMillis, double sendsPerSecond, int threads) {
+        this.sender = sender;
+        this.typingMillis = typingMillis;
+        this.limiter = new RateLimiter(sendsPerSecond, Math.max(1, (int) sendsPerSecond));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemon("telegram-scheduler"));
+        this.senders = Executors.newFixedThreadPool(threads, daemon("telegram-sender"));
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return (Runnable r) -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Queues a text message, preceded by the typing indicator.
+     * @param chatID unique identifier for a chat.
+     */
+    public void sendMessage(String chatID, String text) {
+        enqueue(chatID, new Outbound(text, null));
+    }
+
+    /**
+     * Queues a sticker, sent without typing.
+     * @param chatID unique identifier for a chat.
+     */
+    public void sendSticker(String chatID, String stickerId) {
+        enqueue(chatID, new Outbound(null, stickerId));
+    }
+
+    /**
+     * @return number of chats with messages that are not sent yet
+     */
+    public int activeChats() {
+        return chats.size();
+    }
+
+    /**
+     * Stops all threads, dropping messages that are not sent yet.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    private void enqueue(String chatID, Outbound item) {
+        boolean[] start = new boolean[1];
+        // The map entry stays locked, so a chat is never started twice
+        chats.compute(chatID, (id, q) -> {
+            if (q == null) {
+                q = new ChatQueue();
+            }
+            synchronized (q) {
+                q.items.add(item);
+                start[0] = !q.busy;
+                q.busy = true;
+            }
+            return q;
+        });
+        if (start[0]) {
+            next(chatID);
+        }
+    }
+
+    /**
+     * Starts sending the oldest item of a chat, or forgets the chat once its queue is empty.
+     */
+    private void next(String chatID) {
+        Outbound[] item = new Outbound[1];
+        chats.computeIfPresent(chatID, (id, q) -> {
+            synchronized (q) {
+                item[0] = q.items.poll();
+                if (item[0] == null) {
+                    q.busy = false;
+                    return null;
+                }
+            }
+            return q;
+        });
+        if (item[0] == null) {
+            return;
+        }
+
+        Runnable done = () -> next(chatID);
+        if (item[0].text != null) {
+            String text = item[0].text;
+            call(() -> sender.typing(chatID), null);
+            scheduler.schedule(() -> call(() -> sender.message(chatID, text), done), typingMillis, TimeUnit.MILLISECONDS);
+        } else {
+            String sticker = item[0].sticker;
+            call(() -> sender.sticker(chatID, sticker), done);
+        }
+    }
+
+    /**
+     * Performs an API call as soon as the rate limiter allows it.
+     * @param then continuation run after the call, may be null
+     */
+    private void call(Runnable apiCall, Runnable then) {
+        Runnable task = () -> {
+            try {
+                apiCall.run();
+            } catch (RuntimeException e) {
+                logger.error("Unable to send to telegram: " + e.getMessage());
+            } finally {
+                if (then != null) {
+                    then.run();
+                }
+            }
+        };
+        long delay = limiter.reserve();
+        if (delay == 0) {
+            senders.execute(task);
+        } else {
+            scheduler.schedule(() -> senders.execute(task), delay, TimeUnit.NANOSECONDS);
+        }
+    }
+}
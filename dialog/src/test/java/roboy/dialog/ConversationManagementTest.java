@@ -24,8 +24,8 @@ import roboy.util.UuidType;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.powermock.api.mockito.PowerMockito.*;
 
@@ -66,8 +66,8 @@ public class ConversationManagementTest extends TestCase {
     public void testLocalSpawning() throws Exception {
 
         ConversationManager.spawnConversation("local", "veryLocal");
-        verifyNew(Conversation.class).withArguments(Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject());
-        HashMap<String, Conversation> registeredConversations = Whitebox.getInternalState(ConversationManager.class, "conversations");
+        verifyNew(Conversation.class).withArguments(Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject());
+        Map<String, Conversation> registeredConversations = Whitebox.getInternalState(ConversationManager.class, "conversations");
         assertTrue(registeredConversations.size() == 1);
         assertTrue(registeredConversations.containsKey("local"));
         Mockito.verify(mockInterlocutor, Mockito.times(1)).addName("veryLocal");
@@ -86,11 +86,11 @@ public class ConversationManagementTest extends TestCase {
 
     @Test
     public void testSocialMediaSpawning() throws Exception {
-        HashMap<String, Conversation> registeredConversations = Whitebox.getInternalState(ConversationManager.class, "conversations");
+        Map<String, Conversation> registeredConversations = Whitebox.getInternalState(ConversationManager.class, "conversations");
 
         //Telegram
         ConversationManager.spawnConversation("telegram-IamATestFragment","IamATestFragment");
-        verifyNew(Conversation.class).withArguments(Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject());
+        verifyNew(Conversation.class).withArguments(Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject());
         assertTrue(registeredConversations.size() == 1);
         assertTrue(registeredConversations.containsKey("telegram-IamATestFragment"));
         Mockito.verify(mockConversation, Mockito.times(1)).start();
@@ -98,7 +98,7 @@ public class ConversationManagementTest extends TestCase {
 
         //Facebook
         ConversationManager.spawnConversation("facebook-IamATestFragment","IamATestFragment");
-        verifyNew(Conversation.class, Mockito.times(2)).withArguments(Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject());
+        verifyNew(Conversation.class, Mockito.times(2)).withArguments(Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject());
         assertTrue(registeredConversations.size() == 2);
         assertTrue(registeredConversations.containsKey("facebook-IamATestFragment"));
         Mockito.verify(mockConversation, Mockito.times(2)).start();
@@ -106,7 +106,7 @@ public class ConversationManagementTest extends TestCase {
 
         //Slack
         ConversationManager.spawnConversation("slack-IamATestFragment","IamATestFragment");
-        verifyNew(Conversation.class, Mockito.times(3)).withArguments(Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject());
+        verifyNew(Conversation.class, Mockito.times(3)).withArguments(Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject(), Matchers.anyObject());
         assertTrue(registeredConversations.size() == 3);
         assertTrue(registeredConversations.containsKey("slack-IamATestFragment"));
         Mockito.verify(mockConversation, Mockito.times(3)).start();
@@ -116,8 +116,35 @@ public class ConversationManagementTest extends TestCase {
         Mockito.reset(mockInterlocutor, mockConversation);
     }
 
+    @Test
+    public void testConversationLimit() throws Exception {
+        Map<String, Conversation> registeredConversations = Whitebox.getInternalState(ConversationManager.class, "conversations");
+        ConfigManager.MAX_CONVERSATIONS = 1;
+
+        ConversationManager.spawnConversation("telegram-first", "first");
+        assertTrue(registeredConversations.containsKey("telegram-first"));
+
+        //the only conversation is running, so there is no room for another one
+        try {
+            ConversationManager.spawnConversation("telegram-second", "second");
+            fail("Conversation limit was not enforced");
+        } catch (IOException e) {
+            assertFalse(registeredConversations.containsKey("telegram-second"));
+        }
+
+        //a parked conversation is evicted to make room
+        when(mockConversation.isParked()).thenReturn(true);
+        ConversationManager.spawnConversation("telegram-second", "second");
+        Mockito.verify(mockConversation, Mockito.times(1)).endConversation(true);
+        assertTrue(registeredConversations.containsKey("telegram-second"));
+
+        registeredConversations.clear();
+        Mockito.reset(mockInterlocutor, mockConversation);
+    }
+
     @After
     public void clean(){
+        ConfigManager.MAX_CONVERSATIONS = 0;
         Configurator.setAllLevels(LogManager.getRootLogger().getName(), Level.toLevel(ConfigManager.DIALOG_LOG_MODE, Level.INFO));
         ConfigManager.OUTPUTS = out;
         ConfigManager.INPUT = in;
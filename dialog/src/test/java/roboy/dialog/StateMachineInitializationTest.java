@@ -5,6 +5,10 @@ import roboy.context.Context;
 import roboy.dialog.states.definitions.State;
 import roboy.logic.Inference;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
 import static org.junit.Assert.*;
 
 /**
@@ -73,4 +77,27 @@ public class StateMachineInitializationTest {
     }
 
 
+    // every machine loaded from the same blueprint gets its own states
+    @Test
+    public void blueprintIsShared() throws IOException {
+        File file = File.createTempFile("personality", ".json");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println(MiniTestStateMachineCreator.getMiniStateMachineString());
+        }
+        StateMachineBlueprint blueprint = StateMachineBlueprint.compile(file);
+        assertSame(blueprint, StateMachineBlueprint.compile(file));
+
+        DialogStateMachine first = new DialogStateMachine(new Inference(), new Context());
+        DialogStateMachine second = new DialogStateMachine(new Inference(), new Context());
+        first.loadFromFile(file);
+        second.loadFromBlueprint(blueprint);
+
+        assertEquals(first, second);
+        assertNotSame(first.getStateByIdentifier("Greetings"), second.getStateByIdentifier("Greetings"));
+        assertNotSame(first.getStateByIdentifier("Farewell").getParameters(), second.getStateByIdentifier("Farewell").getParameters());
+        assertTrue( second.getStateByIdentifier("Greetings").getFallback() == second.getStateByIdentifier("Farewell"));
+    }
+
+
 }
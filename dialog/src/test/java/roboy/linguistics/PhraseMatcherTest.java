@@ -0,0 +1,52 @@
+package roboy.linguistics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests finding phrases of several lists in tokens.
+ */
+public class PhraseMatcherTest {
+
+    private static final PhraseMatcher<String> matcher;
+
+    static {
+        Map<String, List<String>> phrases = new HashMap<>();
+        phrases.put("positive", Arrays.asList("yes", "go ahead", " of course"));
+        phrases.put("negative", Arrays.asList("no", "not"));
+        phrases.put("uncertain", Arrays.asList("not sure", "i do not know", "know", ""));
+        matcher = new PhraseMatcher<>(phrases);
+    }
+
+    private static List<String> tokens(String sentence) {
+        return Arrays.asList(sentence.split(" "));
+    }
+
+    @Test
+    public void testSingleWords() {
+        assertEquals(Collections.singleton("positive"), matcher.find(tokens("Yes please")));
+        assertEquals(Collections.singleton("negative"), matcher.find(tokens("no")));
+        assertEquals(Collections.emptySet(), matcher.find(tokens("nothing to say")));
+        assertEquals(Collections.emptySet(), matcher.find(null));
+    }
+
+    @Test
+    public void testPhrases() {
+        assertEquals(Collections.singleton("positive"), matcher.find(tokens("sure go ahead")));
+        assertEquals(Collections.emptySet(), matcher.find(tokens("go on ahead")));
+        assertEquals(Collections.singleton("positive"), matcher.find(tokens("well of course")));
+        // Overlapping phrases of different lists are all found
+        assertEquals(new HashSet<>(Arrays.asList("negative", "uncertain")), matcher.find(tokens("I am not sure")));
+        // A failed phrase continues with its longest suffix
+        assertEquals(new HashSet<>(Arrays.asList("negative", "uncertain")), matcher.find(tokens("I do not know")));
+        assertEquals(new HashSet<>(Arrays.asList("negative", "uncertain")), matcher.find(tokens("i do i do not know")));
+    }
+}
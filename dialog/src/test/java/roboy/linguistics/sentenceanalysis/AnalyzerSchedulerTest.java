@@ -0,0 +1,177 @@
+package roboy.linguistics.sentenceanalysis;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import roboy.linguistics.Linguistics.SentenceType;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the dependencies and the concurrent execution of analyzers.
+ */
+public class AnalyzerSchedulerTest {
+
+    private static ExecutorService pool;
+
+    @BeforeClass
+    public static void startPool() {
+        pool = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterClass
+    public static void stopPool() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Sets the tokens of the sentence.
+     */
+    private static class Tokenizer implements Analyzer {
+        @Override
+        public Interpretation analyze(Interpretation interpretation) {
+            interpretation.setTokens(Arrays.asList(interpretation.getSentence().split(" ")));
+            return interpretation;
+        }
+
+        @Override
+        public Set<InterpretationField> reads() {
+            return EnumSet.of(InterpretationField.SENTENCE);
+        }
+
+        @Override
+        public Set<InterpretationField> writes() {
+            return EnumSet.of(InterpretationField.TOKENS);
+        }
+    }
+
+    /**
+     * Sets the number of tokens as intent.
+     */
+    private static class TokenCounter implements Analyzer {
+        @Override
+        public Interpretation analyze(Interpretation interpretation) {
+            interpretation.setIntent(String.valueOf(interpretation.getTokens().size()));
+            return interpretation;
+        }
+
+        @Override
+        public Set<InterpretationField> reads() {
+            return EnumSet.of(InterpretationField.TOKENS);
+        }
+
+        @Override
+        public Set<InterpretationField> writes() {
+            return EnumSet.of(InterpretationField.INTENT);
+        }
+    }
+
+    /**
+     * Runs another analyzer once all analyzers sharing the latch are running.
+     */
+    private static class Rendezvous implements Analyzer {
+        private final CountDownLatch running;
+        private final Analyzer analyzer;
+        private volatile boolean met = false;
+
+        Rendezvous(CountDownLatch running, Analyzer analyzer) {
+            this.running = running;
+            this.analyzer = analyzer;
+        }
+
+        @Override
+        public Interpretation analyze(Interpretation interpretation) {
+            running.countDown();
+            try {
+                met = running.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return analyzer.analyze(interpretation);
+        }
+
+        @Override
+        public Set<InterpretationField> reads() {
+            return analyzer.reads();
+        }
+
+        @Override
+        public Set<InterpretationField> writes() {
+            return analyzer.writes();
+        }
+    }
+
+    @Test
+    public void testDependencies() {
+        AnalyzerScheduler scheduler = new AnalyzerScheduler(Arrays.asList(
+                new Preprocessor(),
+                new Tokenizer(),
+                new DictionaryBasedSentenceTypeDetector(),
+                new TokenCounter(),
+                new Postprocessor()), pool);
+
+        assertArrayEquals(new int[0], scheduler.getDependencies(0));
+        // Reads the sentence the preprocessor writes
+        assertArrayEquals(new int[]{0}, scheduler.getDependencies(1));
+        // Both only depend on the tokens and not on each other
+        assertArrayEquals(new int[]{1}, scheduler.getDependencies(2));
+        assertArrayEquals(new int[]{1}, scheduler.getDependencies(3));
+        // Analyzers without declared fields wait for all others
+        assertArrayEquals(new int[]{0, 1, 2, 3}, scheduler.getDependencies(4));
+    }
+
+    @Test
+    public void testConcurrentAnalysis() {
+        // Both analyzers only finish once the other one has started as well
+        CountDownLatch running = new CountDownLatch(2);
+        Rendezvous detector = new Rendezvous(running, new DictionaryBasedSentenceTypeDetector());
+        Rendezvous counter = new Rendezvous(running, new TokenCounter());
+        AnalyzerScheduler scheduler = new AnalyzerScheduler(Arrays.asList(
+                new Tokenizer(),
+                detector,
+                counter,
+                new Postprocessor()), pool);
+
+        Interpretation interpretation = scheduler.analyze(new Interpretation("Who Is Roboy"));
+        assertTrue(detector.met);
+        assertTrue(counter.met);
+        assertEquals(Arrays.asList("who", "is", "roboy"), interpretation.getTokens());
+        assertEquals(SentenceType.WHO, interpretation.getSentenceType());
+        assertEquals("3", interpretation.getIntent());
+    }
+
+    @Test
+    public void testSameResultAsSequential() {
+        List<Analyzer> analyzers = Arrays.asList(
+                new Preprocessor(),
+                new Tokenizer(),
+                new DictionaryBasedSentenceTypeDetector(),
+                new TokenCounter(),
+                new Postprocessor());
+        Interpretation concurrent = new AnalyzerScheduler(analyzers, pool).analyze(new Interpretation("What's up"));
+        Interpretation sequential = new AnalyzerScheduler(analyzers, null).analyze(new Interpretation("What's up"));
+        assertEquals(sequential, concurrent);
+    }
+
+    @Test
+    public void testFailingAnalyzer() {
+        Analyzer failing = (Interpretation interpretation) -> {
+            throw new IllegalStateException("failing analyzer");
+        };
+        AnalyzerScheduler scheduler = new AnalyzerScheduler(Arrays.asList(failing, new Tokenizer()), pool);
+        Interpretation interpretation = scheduler.analyze(new Interpretation("hello roboy"));
+        assertEquals(Arrays.asList("hello", "roboy"), interpretation.getTokens());
+
+        assertEquals(Collections.emptyList(), new AnalyzerScheduler(Collections.emptyList(), pool).getAnalyzers());
+    }
+}
@@ -0,0 +1,152 @@
+package roboy.linguistics.sentenceanalysis;
+
+import org.junit.Test;
+import roboy.linguistics.Linguistics.ParsingOutcome;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests sharing analyses of utterances between interpretations.
+ */
+public class InterpretationCacheTest {
+
+    /**
+     * Sets the tokens of the sentence and a semantic parse computed on demand, counting both.
+     */
+    private static class CountingAnalyzer implements Analyzer {
+        private final AtomicInteger analyses = new AtomicInteger();
+        private final AtomicInteger parses = new AtomicInteger();
+        private volatile boolean failing = false;
+        private volatile String context = null;
+
+        @Override
+        public Interpretation analyze(Interpretation interpretation) {
+            if (failing) {
+                throw new IllegalStateException("failing analyzer");
+            }
+            analyses.incrementAndGet();
+            interpretation.setTokens(Arrays.asList(interpretation.getSentence().split(" ")));
+            interpretation.setSemanticAnalysisLambda((Interpretation i) -> {
+                parses.incrementAndGet();
+                i.setParse("(parse " + i.getTokens().size() + ")");
+                i.setParsingOutcome(ParsingOutcome.SUCCESS);
+            });
+            return interpretation;
+        }
+
+        @Override
+        public Set<InterpretationField> reads() {
+            return EnumSet.of(InterpretationField.SENTENCE);
+        }
+
+        @Override
+        public Set<InterpretationField> writes() {
+            return EnumSet.of(InterpretationField.TOKENS, InterpretationField.SEMANTIC_PARSE);
+        }
+
+        @Override
+        public Object contextFingerprint(Interpretation interpretation) {
+            return context;
+        }
+    }
+
+    /**
+     * Marks the interpretation as addressing Roboy, which depends on the conversation.
+     */
+    private static class EntityAnalyzer implements Analyzer {
+        @Override
+        public Interpretation analyze(Interpretation interpretation) {
+            interpretation.setRoboy(interpretation.getTokens().contains("Roboy"));
+            return interpretation;
+        }
+
+        @Override
+        public Set<InterpretationField> reads() {
+            return EnumSet.of(InterpretationField.TOKENS);
+        }
+
+        @Override
+        public Set<InterpretationField> writes() {
+            return EnumSet.of(InterpretationField.ENTITIES);
+        }
+    }
+
+    @Test
+    public void testHit() {
+        CountingAnalyzer counter = new CountingAnalyzer();
+        InterpretationCache cache = new InterpretationCache(10);
+        AnalyzerScheduler scheduler = new AnalyzerScheduler(
+                Arrays.asList(counter, new EntityAnalyzer(), new Postprocessor()), null, cache);
+        // Analyzers accessing context sensitive fields and all after them run for every utterance
+        assertEquals(1, scheduler.getCachedAnalyzers());
+
+        Interpretation first = scheduler.analyze(new Interpretation("Hi Roboy"));
+        Interpretation second = scheduler.analyze(new Interpretation(" Hi  Roboy "));
+        assertEquals(1, counter.analyses.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate(), 1e-9);
+
+        assertEquals(Arrays.asList("hi", "roboy"), first.getTokens());
+        assertEquals(Arrays.asList("hi", "roboy"), second.getTokens());
+        assertTrue(first.isRoboy());
+        assertTrue(second.isRoboy());
+        // Lowercasing the first interpretation did not change the cached analysis
+        assertNotSame(first.getTokens(), scheduler.analyze(new Interpretation("Hi Roboy")).getTokens());
+    }
+
+    @Test
+    public void testParseOnDemandOnce() {
+        CountingAnalyzer counter = new CountingAnalyzer();
+        AnalyzerScheduler scheduler = new AnalyzerScheduler(Arrays.asList(counter), null, new InterpretationCache(10));
+
+        Interpretation first = scheduler.analyze(new Interpretation("what is your name"));
+        Interpretation second = scheduler.analyze(new Interpretation("what is your name"));
+        assertEquals(0, counter.parses.get());
+        assertEquals(ParsingOutcome.SUCCESS, second.getParsingOutcome());
+        assertEquals("(parse 4)", first.getParse());
+        assertEquals(ParsingOutcome.SUCCESS, first.getParsingOutcome());
+        assertEquals(1, counter.parses.get());
+    }
+
+    @Test
+    public void testContextAndFailures() {
+        CountingAnalyzer counter = new CountingAnalyzer();
+        InterpretationCache cache = new InterpretationCache(10);
+        AnalyzerScheduler scheduler = new AnalyzerScheduler(Arrays.asList(counter), null, cache);
+
+        scheduler.analyze(new Interpretation("yes"));
+        counter.context = "after a question";
+        scheduler.analyze(new Interpretation("yes"));
+        assertEquals(2, counter.analyses.get());
+        assertEquals(2, cache.size());
+
+        counter.failing = true;
+        scheduler.analyze(new Interpretation("no"));
+        counter.failing = false;
+        scheduler.analyze(new Interpretation("no"));
+        assertEquals(3, counter.analyses.get());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testEviction() {
+        CountingAnalyzer counter = new CountingAnalyzer();
+        AnalyzerScheduler scheduler = new AnalyzerScheduler(Arrays.asList(counter), null, new InterpretationCache(2));
+
+        scheduler.analyze(new Interpretation("a"));
+        scheduler.analyze(new Interpretation("b"));
+        scheduler.analyze(new Interpretation("a"));
+        scheduler.analyze(new Interpretation("c"));
+        // b was used least recently
+        scheduler.analyze(new Interpretation("a"));
+        assertEquals(3, counter.analyses.get());
+        scheduler.analyze(new Interpretation("b"));
+        assertEquals(4, counter.analyses.get());
+    }
+}
@@ -9,6 +9,7 @@ import roboy.linguistics.Linguistics;
 import roboy.linguistics.Triple;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -260,6 +261,34 @@ public class InterpretationTest {
         assertEquals(defaultInterpretation.getAnswer(), analyzedInterpretation.getAnswer());
     }
 
+    @Test
+    public void setValuesOverrideConstituencyAnnotation() {
+        Interpretation interpretation = new Interpretation();
+        interpretation.setConstituencyAnalysisLambda((Interpretation i) -> {
+            List<Keyword> annotatedKeywords = new ArrayList<>();
+            annotatedKeywords.add(new Keyword(1.0, "annotated"));
+            i.setKeywords(annotatedKeywords);
+            i.setParseTrees(Collections.singletonList("(S (NN annotated))"));
+        });
+        interpretation.setSentimentAnalysisLambda((Interpretation i) -> i.setSentiment(Linguistics.UtteranceSentiment.NEGATIVE));
+        interpretation.setSentiment(sentiment);
+        interpretation.addKeyword(keyword);
+
+        assertEquals(sentiment, interpretation.getSentiment());
+        assertEquals(2, interpretation.getKeywords().size());
+        assertEquals(keyword, interpretation.getKeywords().get(1));
+        assertEquals(Collections.singletonList("(S (NN annotated))"), interpretation.getParseTrees());
+    }
+
+    @Test
+    public void parseTreesDoNotAnnotateSentiment() {
+        Interpretation interpretation = new Interpretation();
+        interpretation.setConstituencyAnalysisLambda((Interpretation i) -> i.setParseTrees(Collections.singletonList("(S (NN annotated))")));
+        interpretation.setSentimentAnalysisLambda((Interpretation i) -> fail("sentiment annotated for the parse trees"));
+
+        assertEquals(Collections.singletonList("(S (NN annotated))"), interpretation.getParseTrees());
+    }
+
     @Test
     public void copy() {
         Interpretation interpretation = new Interpretation();
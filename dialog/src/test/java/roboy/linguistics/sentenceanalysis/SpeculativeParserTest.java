@@ -0,0 +1,198 @@
+package roboy.linguistics.sentenceanalysis;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests cancelling speculative parses and parsing the cancelled examples again.
+ */
+public class SpeculativeParserTest {
+
+    private ExecutorService pool;
+
+    @Before
+    public void startPool() {
+        pool = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void stopPool() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Example counting its parses and how many of them ran at the same time.
+     */
+    private static class CountingExample {
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+        private final AtomicInteger parses = new AtomicInteger();
+        private volatile boolean parsed = false;
+    }
+
+    /**
+     * Parse which blocks until released, like a parse waiting for a worker or still running
+     * when it is cancelled. It either ignores interrupts like SEMPRE, or gives up on them.
+     */
+    private static class BlockingParse implements SpeculativeParser.ParseFunction<CountingExample> {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final boolean interruptible;
+
+        BlockingParse(boolean interruptible) {
+            this.interruptible = interruptible;
+        }
+
+        @Override
+        public boolean parse(CountingExample example) {
+            int running = example.running.incrementAndGet();
+            example.maxRunning.accumulateAndGet(running, Math::max);
+            try {
+                started.countDown();
+                if (!await()) {
+                    return false;
+                }
+                example.parses.incrementAndGet();
+                example.parsed = true;
+                return true;
+            } finally {
+                example.running.decrementAndGet();
+            }
+        }
+
+        private boolean await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    release.await();
+                    break;
+                } catch (InterruptedException e) {
+                    if (interruptible) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }
+    }
+
+    @Test
+    public void testSpeculation() throws Exception {
+        BlockingParse parse = new BlockingParse(false);
+        parse.release.countDown();
+        SpeculativeParser<CountingExample> parser = new SpeculativeParser<>(parse, pool);
+        CountingExample example = new CountingExample();
+
+        Future<Boolean> speculation = parser.speculate("session", example);
+        assertTrue(parser.join(example, speculation));
+        assertTrue(example.parsed);
+        assertEquals(1, example.parses.get());
+    }
+
+    @Test
+    public void testWithoutPool() {
+        BlockingParse parse = new BlockingParse(false);
+        parse.release.countDown();
+        SpeculativeParser<CountingExample> parser = new SpeculativeParser<>(parse, null);
+        CountingExample example = new CountingExample();
+
+        Future<Boolean> speculation = parser.speculate("session", example);
+        assertNull(speculation);
+        assertTrue(parser.join(example, speculation));
+        assertEquals(1, example.parses.get());
+    }
+
+    @Test
+    public void testCancelledByNextUtterance() throws Exception {
+        BlockingParse parse = new BlockingParse(false);
+        SpeculativeParser<CountingExample> parser = new SpeculativeParser<>(parse, pool);
+        CountingExample first = new CountingExample();
+        CountingExample second = new CountingExample();
+
+        Future<Boolean> speculation = parser.speculate("session", first);
+        assertTrue(parse.started.await(5, TimeUnit.SECONDS));
+        Future<Boolean> next = parser.speculate("session", second);
+        assertTrue(speculation.isCancelled());
+
+        // The cancelled parse is still running, the re-parse has to wait for it
+        Thread release = new Thread(() -> {
+            sleep(100);
+            parse.release.countDown();
+        });
+        release.start();
+        assertTrue(parser.join(first, speculation));
+        release.join();
+
+        assertTrue(first.parsed);
+        assertEquals(1, first.maxRunning.get());
+        assertTrue(parser.join(second, next));
+        assertTrue(second.parsed);
+    }
+
+    @Test
+    public void testCancelledByReleasedSession() throws Exception {
+        BlockingParse parse = new BlockingParse(true);
+        SpeculativeParser<CountingExample> parser = new SpeculativeParser<>(parse, pool);
+        CountingExample example = new CountingExample();
+
+        Future<Boolean> speculation = parser.speculate("session", example);
+        assertTrue(parse.started.await(5, TimeUnit.SECONDS));
+        parser.cancel("session");
+        assertTrue(speculation.isCancelled());
+
+        // The interrupted worker gave up without a result, the example is parsed again
+        parse.release.countDown();
+        assertTrue(parser.join(example, speculation));
+        assertTrue(example.parsed);
+        assertEquals(1, example.parses.get());
+        assertEquals(1, example.maxRunning.get());
+    }
+
+    @Test
+    public void testCancelledBeforeStart() throws Exception {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch busy = new CountDownLatch(1);
+            single.submit(() -> {
+                busy.await();
+                return null;
+            });
+            BlockingParse parse = new BlockingParse(false);
+            parse.release.countDown();
+            SpeculativeParser<CountingExample> parser = new SpeculativeParser<>(parse, single);
+            CountingExample example = new CountingExample();
+
+            Future<Boolean> speculation = parser.speculate("session", example);
+            parser.cancel("session");
+            busy.countDown();
+
+            assertTrue(parser.join(example, speculation));
+            assertEquals(1, example.parses.get());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package roboy.memory;
+
+import com.google.gson.Gson;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import roboy.memory.nodes.MemoryNodeModel;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests queries, updates and the journal of the embedded memory.
+ */
+public class EmbeddedMemoryTest {
+
+    private File journal;
+    private EmbeddedMemory memory;
+
+    @Before
+    public void openMemory() throws IOException {
+        journal = File.createTempFile("memory", ".journal");
+        journal.delete();
+        memory = new EmbeddedMemory(journal);
+    }
+
+    @After
+    public void deleteJournal() throws IOException {
+        memory.close();
+        journal.delete();
+    }
+
+    private MemoryNodeModel person(String name) {
+        MemoryNodeModel node = new MemoryNodeModel(true, memory);
+        node.setLabel(Neo4jLabel.Person);
+        node.setProperty(Neo4jProperty.name, name);
+        return node;
+    }
+
+    @Test
+    public void testCreateAndQuery() throws IOException, InterruptedException {
+        int roboy = memory.create(person("roboy"));
+        int davis = memory.create(person("davis"));
+        assertTrue(roboy > 0);
+        assertNotEquals(roboy, davis);
+
+        assertEquals(Collections.singletonList(davis), memory.getByQuery(person("davis")));
+        assertEquals(Collections.emptyList(), memory.getByQuery(person("nobody")));
+        assertTrue(memory.getById(roboy).contains("roboy"));
+        assertNull(memory.getById(42));
+        assertEquals(Arrays.asList(memory.getById(davis), null, memory.getById(roboy)),
+                memory.getByIds(Arrays.asList(davis, 42, roboy)));
+    }
+
+    @Test
+    public void testUpdateAndRelationships() throws IOException, InterruptedException {
+        int roboy = memory.create(person("roboy"));
+        int davis = memory.create(person("davis"));
+
+        MemoryNodeModel update = new MemoryNodeModel(memory);
+        update.setId(roboy);
+        update.setProperty(Neo4jProperty.name, "roboy2");
+        update.setRelationship(Neo4jRelationship.FRIEND_OF, davis);
+        assertTrue(memory.save(update));
+
+        assertEquals(Collections.emptyList(), memory.getByQuery(person("roboy")));
+        MemoryNodeModel friends = person("roboy2");
+        friends.setRelationship(Neo4jRelationship.FRIEND_OF, davis);
+        assertEquals(Collections.singletonList(roboy), memory.getByQuery(friends));
+
+        MemoryNodeModel node = new MemoryNodeModel(memory).fromJSON(memory.getById(roboy), new Gson());
+        assertEquals(Arrays.asList(davis), node.getRelationship(Neo4jRelationship.FRIEND_OF));
+    }
+
+    @Test
+    public void testRemove() throws IOException, InterruptedException {
+        int roboy = memory.create(person("roboy"));
+        int davis = memory.create(person("davis"));
+        assertEquals("{\"status\":\"OK\"}",
+                memory.update("{\"id\":" + roboy + ",\"relationships\":{\"FRIEND_OF\":[" + davis + "]}}"));
+
+        MemoryNodeModel removal = new MemoryNodeModel(memory);
+        removal.setId(davis);
+        assertTrue(memory.remove(removal));
+
+        assertNull(memory.getById(davis));
+        assertEquals(1, memory.size());
+        assertFalse(memory.getById(roboy).contains("FRIEND_OF"));
+    }
+
+    @Test
+    public void testJournalReplay() throws IOException, InterruptedException {
+        int roboy = memory.create(person("roboy"));
+        int davis = memory.create(person("davis"));
+        memory.update("{\"id\":" + roboy + ",\"relationships\":{\"FRIEND_OF\":[" + davis + "]}}");
+        memory.remove("{\"id\":" + davis + ",\"properties\":{\"name\":\"\"}}");
+        String node = memory.getById(roboy);
+        memory.close();
+
+        // A torn entry at the end is dropped
+        try (FileOutputStream out = new FileOutputStream(journal, true)) {
+            out.write("U {\"id\":1,\"prop".getBytes("UTF-8"));
+        }
+        memory = new EmbeddedMemory(journal);
+        assertEquals(node, memory.getById(roboy));
+        assertEquals(Collections.emptyList(), memory.getByQuery(person("davis")));
+        assertEquals(2, memory.size());
+
+        // New IDs continue after the replayed ones
+        assertEquals(davis + 1, memory.create(person("lucy")));
+        memory.close();
+        memory = new EmbeddedMemory(journal);
+        assertEquals(new ArrayList<>(Collections.singletonList(davis + 1)), memory.getByQuery(person("lucy")));
+    }
+
+    @Test
+    public void testCorruptEntryInJournal() throws IOException, InterruptedException {
+        int roboy = memory.create(person("roboy"));
+        memory.close();
+
+        // An invalid entry in the middle is skipped, the entries after it are still replayed
+        try (FileOutputStream out = new FileOutputStream(journal, true)) {
+            out.write("U {\"id\":1,\"prop\nX garbage\n".getBytes("UTF-8"));
+        }
+        memory = new EmbeddedMemory(journal, false);
+        int davis = memory.create(person("davis"));
+        memory.close();
+
+        memory = new EmbeddedMemory(journal, false);
+        assertTrue(memory.getById(roboy).contains("roboy"));
+        assertEquals(Collections.singletonList(davis), memory.getByQuery(person("davis")));
+        assertEquals(2, memory.size());
+    }
+}
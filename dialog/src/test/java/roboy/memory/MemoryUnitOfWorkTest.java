@@ -0,0 +1,113 @@
+package roboy.memory;
+
+import org.junit.Before;
+import org.junit.Test;
+import roboy.memory.nodes.MemoryNodeModel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that updates of a dialog turn are coalesced.
+ */
+public class MemoryUnitOfWorkTest {
+
+    private final List<String> saved = new ArrayList<>();
+    private final List<List<Integer>> batches = new ArrayList<>();
+    private MemoryUnitOfWork work;
+
+    @Before
+    public void createUnitOfWork() {
+        work = new MemoryUnitOfWork(new DummyMemory() {
+            @Override
+            public boolean save(MemoryNodeModel node) {
+                saved.add(node.toJSON());
+                return !node.toJSON().contains("broken");
+            }
+
+            @Override
+            public ArrayList<String> getByIds(List<Integer> ids) {
+                batches.add(ids);
+                return new ArrayList<>(Collections.nCopies(ids.size(), "{}"));
+            }
+        });
+    }
+
+    private MemoryNodeModel createPerson(int id, String name) {
+        MemoryNodeModel person = new MemoryNodeModel(work);
+        person.setId(id);
+        person.setLabel(Neo4jLabel.Person);
+        person.setProperty(Neo4jProperty.name, name);
+        return person;
+    }
+
+    @Test
+    public void testSavesAreCoalesced() throws Exception {
+        MemoryNodeModel person = createPerson(1, "roboy");
+        person.setRelationship(Neo4jRelationship.FROM, 2);
+        work.save(person);
+        person.setRelationship(Neo4jRelationship.HAS_HOBBY, 3);
+        work.save(person);
+        assertTrue(saved.isEmpty());
+        assertEquals(1, work.getPendingCount());
+
+        work.flush();
+        assertEquals(1, saved.size());
+        assertTrue(saved.get(0).contains("HAS_HOBBY"));
+        work.flush();
+        assertEquals(1, saved.size());
+    }
+
+    @Test
+    public void testReadsSeeUpdates() throws Exception {
+        work.save(createPerson(1, "roboy"));
+        work.save(createPerson(2, "lucas"));
+
+        // Reading a node writes its update first
+        work.getById(1);
+        assertEquals(1, saved.size());
+
+        // A query for another name does not need the update of node 2
+        MemoryNodeModel query = new MemoryNodeModel(true, work);
+        query.setProperty(Neo4jProperty.name, "laura");
+        work.getByQuery(query);
+        assertEquals(1, saved.size());
+
+        query.setProperty(Neo4jProperty.name, "lucas");
+        work.getByQuery(query);
+        assertEquals(2, saved.size());
+        assertEquals(0, work.getPendingCount());
+    }
+
+    @Test
+    public void testBatchReadSeesUpdates() throws Exception {
+        work.save(createPerson(1, "roboy"));
+        work.save(createPerson(2, "lucas"));
+        work.save(createPerson(3, "laura"));
+
+        assertEquals(2, work.getByIds(Arrays.asList(1, 3)).size());
+        assertEquals(Collections.singletonList(Arrays.asList(1, 3)), batches);
+        assertEquals(2, saved.size());
+        assertEquals(1, work.getPendingCount());
+    }
+
+    @Test
+    public void testFailedUpdatesAreReported() throws Exception {
+        assertTrue(work.save(createPerson(1, "broken")));
+        work.save(createPerson(2, "lucas"));
+        try {
+            work.flush();
+            fail("failed update was not reported");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("[1]"));
+        }
+        // The other update was still written
+        assertEquals(2, saved.size());
+        assertEquals(0, work.getPendingCount());
+    }
+}
@@ -0,0 +1,99 @@
+package roboy.memory;
+
+import org.junit.Before;
+import org.junit.Test;
+import roboy.memory.nodes.MemoryNodeModel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests lookups and invalidation of the memory cache.
+ */
+public class Neo4jMemoryCacheTest {
+
+    private int lookups;
+    private Neo4jMemoryCache cache;
+
+    @Before
+    public void createCache() {
+        lookups = 0;
+        cache = new Neo4jMemoryCache(new DummyMemory() {
+            @Override
+            public String getById(int id) {
+                lookups++;
+                return "{\"id\":" + id + ",\"lookup\":" + lookups + "}";
+            }
+
+            @Override
+            public ArrayList<Integer> getByQuery(MemoryNodeModel query) {
+                lookups++;
+                return new ArrayList<>(Arrays.asList(1, 2));
+            }
+        }, 2);
+    }
+
+    @Test
+    public void testNodeLookup() throws IOException, InterruptedException {
+        String node = cache.getById(1);
+        assertEquals(node, cache.getById(1));
+        cache.getById(2);
+        cache.getById(3);
+        // Node 1 was evicted
+        assertNotEquals(node, cache.getById(1));
+        assertEquals(4, lookups);
+        assertEquals(1, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void testBatchLookup() throws IOException, InterruptedException {
+        String node = cache.getById(1);
+        ArrayList<String> nodes = cache.getByIds(Arrays.asList(2, 1));
+        assertEquals(node, nodes.get(1));
+        assertEquals(nodes.get(0), cache.getById(2));
+        assertEquals(2, lookups);
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void testQueryLookup() throws IOException, InterruptedException {
+        MemoryNodeModel query = new MemoryNodeModel(true, cache);
+        query.setProperty(Neo4jProperty.name, "roboy");
+        query.setLabel(Neo4jLabel.Person);
+        cache.getByQuery(query).add(3);
+        assertEquals(Arrays.asList(1, 2), cache.getByQuery(query));
+
+        // The same query with properties added in another order
+        MemoryNodeModel same = new MemoryNodeModel(true, cache);
+        same.setLabel(Neo4jLabel.Person);
+        same.setProperty(Neo4jProperty.name, "roboy");
+        cache.getByQuery(same);
+        assertEquals(1, lookups);
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void testInvalidation() throws IOException, InterruptedException {
+        cache.getById(1);
+        cache.getById(2);
+        MemoryNodeModel query = new MemoryNodeModel(true, cache);
+        query.setLabel(Neo4jLabel.Person);
+        cache.getByQuery(query);
+
+        // Saving node 1 with a relationship to node 2 drops both nodes and the query
+        MemoryNodeModel node = new MemoryNodeModel(cache);
+        node.setId(1);
+        node.setRelationship(Neo4jRelationship.FRIEND_OF, 2);
+        cache.save(node);
+
+        cache.getById(1);
+        cache.getById(2);
+        cache.getByQuery(query);
+        assertEquals(6, lookups);
+        assertEquals(0, cache.getHits());
+    }
+}
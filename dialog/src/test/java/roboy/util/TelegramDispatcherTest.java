@@ -0,0 +1,102 @@
+package roboy.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests ordering and pacing of outgoing telegram messages
+ */
+public class TelegramDispatcherTest {
+
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private CountDownLatch remaining;
+    private TelegramDispatcher dispatcher;
+
+    private TelegramDispatcher createDispatcher(int expected, double sendsPerSecond) {
+        remaining = new CountDownLatch(expected);
+        dispatcher = new TelegramDispatcher(new TelegramDispatcher.Sender() {
+            @Override
+            public void typing(String chatID) {
+                sent.add(chatID + ":typing");
+            }
+
+            @Override
+            public void message(String chatID, String text) {
+                sent.add(chatID + ":" + text);
+                remaining.countDown();
+            }
+
+            @Override
+            public void sticker(String chatID, String stickerId) {
+                sent.add(chatID + ":sticker " + stickerId);
+                remaining.countDown();
+            }
+        }, 50, sendsPerSecond, 2);
+        return dispatcher;
+    }
+
+    @After
+    public void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testOrderPerChat() throws InterruptedException {
+        createDispatcher(5, 1000);
+        long start = System.nanoTime();
+        dispatcher.sendMessage("1", "hello");
+        dispatcher.sendSticker("1", "smile");
+        dispatcher.sendMessage("2", "hi");
+        dispatcher.sendMessage("1", "bye");
+        dispatcher.sendMessage("2", "ciao");
+        // Queuing does not wait for the typing time
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50));
+
+        assertTrue(remaining.await(5, TimeUnit.SECONDS));
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        synchronized (sent) {
+            for (String s : sent) {
+                (s.startsWith("1:") ? first : second).add(s);
+            }
+        }
+        assertEquals(Arrays.asList("1:typing", "1:hello", "1:sticker smile", "1:typing", "1:bye"), first);
+        assertEquals(Arrays.asList("2:typing", "2:hi", "2:typing", "2:ciao"), second);
+        // Both chats were typing at the same time
+        assertTrue(sent.indexOf("2:typing") < sent.indexOf("1:hello"));
+    }
+
+    @Test
+    public void testRateLimit() throws InterruptedException {
+        // Five calls at once, then one every 200ms
+        createDispatcher(10, 5);
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            dispatcher.sendSticker(String.valueOf(i), "smile");
+        }
+        assertTrue(remaining.await(5, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+        assertEquals(10, sent.size());
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    @Test
+    public void testRateLimiter() {
+        RateLimiter limiter = new RateLimiter(10, 2);
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        long delay = limiter.reserve();
+        assertTrue(delay > TimeUnit.MILLISECONDS.toNanos(50) && delay <= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+}
@@ -182,7 +182,7 @@ public class Example {
   public List<String> getPosTag() { return languageInfo.posTags; }
   public String phrase(int start, int end) { return languageInfo.phrase(start, end); }
   public String lemmaPhrase(int start, int end) { return languageInfo.lemmaPhrase(start, end); }
-  public Map<String,Double> getRelation() { return relationInfo.relations; }
+  public Map<String,Double> getRelation() { return relationInfo.getRelations(); }
   public String getType(){return formulaType;}
 
   public String toJson() { return Json.writeValueAsStringHard(this); }
@@ -287,10 +287,10 @@ public class Example {
         LogInfoToggle.logs("targetFormula: %s", targetFormula);
       if (targetValue != null)
         LogInfoToggle.logs("targetValue: %s", targetValue);
-      LogInfoToggle.logs("Sentiment: %s", genInfo.sentiment);
-      LogInfoToggle.logs("Keywords: %s", genInfo.keywords.toString());
+      LogInfoToggle.logs("Sentiment: %s", genInfo.getSentiment());
+      LogInfoToggle.logs("Keywords: %s", genInfo.getKeywords().toString());
       LogInfoToggle.logs("Dependency children: %s", languageInfo.dependencyChildren);
-      LogInfoToggle.logs("Extracted relations: %s", relationInfo.relations.toString());
+      LogInfoToggle.logs("Extracted relations: %s", relationInfo.getRelations().toString());
       LogInfoToggle.end_track();
     }
   }
@@ -307,10 +307,10 @@ public class Example {
         LogInfoToggle.logs("targetFormula: %s", targetFormula);
       if (targetValue != null)
         LogInfoToggle.logs("targetValue: %s", targetValue);
-      LogInfoToggle.logs("Sentiment: %s", genInfo.sentiment);
-      LogInfoToggle.logs("Keywords: %s", genInfo.keywords.toString());
+      LogInfoToggle.logs("Sentiment: %s", genInfo.getSentiment());
+      LogInfoToggle.logs("Keywords: %s", genInfo.getKeywords().toString());
       LogInfoToggle.logs("Dependency children: %s", languageInfo.dependencyChildren);
-      LogInfoToggle.logs("Extracted relations: %s", relationInfo.relations.toString());
+      LogInfoToggle.logs("Extracted relations: %s", relationInfo.getRelations().toString());
       LogInfoToggle.end_track();
     }
   }
@@ -349,8 +349,8 @@ public class Example {
     }
 
     if (relationInfo != null) {
-      if (relationInfo.relations != null)
-        tree.addChild(LispTree.proto.newList("relations", LispTree.proto.newList(relationInfo.relations)));
+      if (relationInfo.getRelations() != null)
+        tree.addChild(LispTree.proto.newList("relations", LispTree.proto.newList(relationInfo.getRelations())));
     }
 
     if (evaluation != null)
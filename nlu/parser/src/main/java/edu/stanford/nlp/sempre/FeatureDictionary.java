@@ -0,0 +1,63 @@
+package edu.stanford.nlp.sempre;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns features ("domain :: name") to dense int ids, so that FeatureVector
+ * and Params can work with primitive arrays instead of string maps.
+ *
+ * The dictionary is shared by all parsers and never forgets a feature, so an
+ * id stays valid for the lifetime of the process and arrays indexed by ids
+ * only ever grow.  The feature space is bounded by the grammar and the
+ * enabled feature domains.
+ */
+public final class FeatureDictionary {
+  private FeatureDictionary() { }
+
+  private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+  // Ids of features by domain and name, so that looking up a feature does not concatenate strings
+  private static final Map<String, Map<String, Integer>> idsByDomain = new ConcurrentHashMap<>();
+  // Grown by copying, so every array a reader sees holds all ids published before
+  private static volatile String[] features = new String[1024];
+  private static int size;  // guarded by FeatureDictionary.class
+
+  public static String toFeature(String domain, String name) { return domain + " :: " + name; }
+
+  // Return the id of |feature|, adding it if it is new.
+  public static int indexOf(String feature) {
+    Integer id = ids.get(feature);
+    if (id != null) return id;
+    synchronized (FeatureDictionary.class) {
+      id = ids.get(feature);
+      if (id != null) return id;
+      if (size == features.length)
+        features = Arrays.copyOf(features, 2 * size);
+      features[size] = feature;
+      ids.put(feature, size);  // publishes the id after the feature is stored
+      return size++;
+    }
+  }
+
+  // Return the id of the feature (|domain|, |name|), adding it if it is new.
+  public static int indexOf(String domain, String name) {
+    Map<String, Integer> byName = idsByDomain.computeIfAbsent(domain, d -> new ConcurrentHashMap<>());
+    Integer id = byName.get(name);
+    if (id == null) {
+      id = indexOf(toFeature(domain, name));
+      byName.put(name, id);
+    }
+    return id;
+  }
+
+  // Return the id of |feature|, or -1 if it was never added.
+  public static int lookup(String feature) {
+    Integer id = ids.get(feature);
+    return id == null ? -1 : id;
+  }
+
+  public static String get(int id) { return features[id]; }
+
+  public static synchronized int size() { return size; }
+}
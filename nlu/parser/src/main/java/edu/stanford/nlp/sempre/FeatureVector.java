@@ -14,6 +14,9 @@ import java.util.*;
  * We enforce the convention that each feature is (domain, name),
  * so that the key space isn't a free-for-all.
  *
+ * Features are stored as their ids in the FeatureDictionary, so scoring
+ * against Params neither hashes strings nor boxes values.
+ *
  * @author Percy Liang
  * @author Jonathan Berant
  */
@@ -26,13 +29,18 @@ public class FeatureVector {
   }
   public static Options opts = new Options();
 
-  // These features map to the value 1 (most common case in NLP).
-  private ArrayList<String> indicatorFeatures;
-  // General features
-  private ArrayList<Pair<String, Double>> generalFeatures;
+  // Ids of the features that map to the value 1 (most common case in NLP).
+  private int[] indicatorFeatures;
+  private int numIndicatorFeatures;
+  // Ids and values of general features
+  private int[] generalFeatures;
+  private double[] generalValues;
+  private int numGeneralFeatures;
   // A dense array of features to save memory
   private double[] denseFeatures;
   private static final String DENSE_NAME = "Dns";
+  // Ids of the dense feature names, by index
+  private static volatile int[] denseFeatureIds = new int[0];
 
   public FeatureVector() { } // constructor that does nothing
 
@@ -41,22 +49,51 @@ public class FeatureVector {
     Arrays.fill(denseFeatures, 0d);
   }
 
-  private static String toFeature(String domain, String name) { return domain + " :: " + name; }
+  private static int denseFeatureId(int index) {
+    int[] ids = denseFeatureIds;
+    if (index < ids.length) return ids[index];
+    synchronized (FeatureVector.class) {
+      ids = denseFeatureIds;
+      if (index >= ids.length) {
+        int oldLength = ids.length;
+        ids = Arrays.copyOf(ids, Math.max(index + 1, 2 * oldLength));
+        for (int i = oldLength; i < ids.length; i++)
+          ids[i] = FeatureDictionary.indexOf(DENSE_NAME + "_" + i);
+        denseFeatureIds = ids;
+      }
+      return ids[index];
+    }
+  }
 
   public void add(String domain, String name) {
-    add(toFeature(domain, name));
+    addIndicator(FeatureDictionary.indexOf(domain, name));
   }
   private void add(String feature) {
-    if (indicatorFeatures == null) indicatorFeatures = new ArrayList<>();
-    indicatorFeatures.add(feature);
+    addIndicator(FeatureDictionary.indexOf(feature));
+  }
+  private void addIndicator(int id) {
+    if (indicatorFeatures == null) indicatorFeatures = new int[4];
+    else if (numIndicatorFeatures == indicatorFeatures.length)
+      indicatorFeatures = Arrays.copyOf(indicatorFeatures, 2 * numIndicatorFeatures);
+    indicatorFeatures[numIndicatorFeatures++] = id;
   }
 
   public void add(String domain, String name, double value) {
-    add(toFeature(domain, name), value);
+    addGeneral(FeatureDictionary.indexOf(domain, name), value);
   }
   private void add(String feature, double value) {
-    if (generalFeatures == null) generalFeatures = new ArrayList<>();
-    generalFeatures.add(Pair.newPair(feature, value));
+    addGeneral(FeatureDictionary.indexOf(feature), value);
+  }
+  private void addGeneral(int id, double value) {
+    if (generalFeatures == null) {
+      generalFeatures = new int[4];
+      generalValues = new double[4];
+    } else if (numGeneralFeatures == generalFeatures.length) {
+      generalFeatures = Arrays.copyOf(generalFeatures, 2 * numGeneralFeatures);
+      generalValues = Arrays.copyOf(generalValues, 2 * numGeneralFeatures);
+    }
+    generalFeatures[numGeneralFeatures] = id;
+    generalValues[numGeneralFeatures++] = value;
   }
 
   public void addWithBias(String domain, String name, double value) {
@@ -102,19 +139,20 @@ public class FeatureVector {
   public void add(double scale, FeatureVector that) { add(scale, that, AllFeatureMatcher.matcher); }
   public void add(FeatureVector that, FeatureMatcher matcher) { add(1, that, matcher); }
   public void add(double scale, FeatureVector that, FeatureMatcher matcher) {
-    if (that.indicatorFeatures != null) {
-      for (String f : that.indicatorFeatures)
-        if (matcher.matches(f)) {
-          if (scale == 1)
-            add(f);
-          else
-            add(f, scale);
-        }
+    boolean all = matcher == AllFeatureMatcher.matcher;
+    for (int i = 0; i < that.numIndicatorFeatures; i++) {
+      int f = that.indicatorFeatures[i];
+      if (all || matcher.matches(FeatureDictionary.get(f))) {
+        if (scale == 1)
+          addIndicator(f);
+        else
+          addGeneral(f, scale);
+      }
     }
-    if (that.generalFeatures != null) {
-      for (Pair<String, Double> pair : that.generalFeatures)
-        if (matcher.matches(pair.getFirst()))
-          add(pair.getFirst(), scale * pair.getSecond());
+    for (int i = 0; i < that.numGeneralFeatures; i++) {
+      int f = that.generalFeatures[i];
+      if (all || matcher.matches(FeatureDictionary.get(f)))
+        addGeneral(f, scale * that.generalValues[i]);
     }
     // dense features are always added
     if (that.denseFeatures != null) {
@@ -126,17 +164,13 @@ public class FeatureVector {
   // Return the dot product between this feature vector and the weight vector (parameters).
   public double dotProduct(Params params) {
     double sum = 0;
-    if (indicatorFeatures != null) {
-      for (String f : indicatorFeatures)
-        sum += params.getWeight(f);
-    }
-    if (generalFeatures != null) {
-      for (Pair<String, Double> pair : generalFeatures)
-        sum += params.getWeight(pair.getFirst()) * pair.getSecond();
-    }
+    for (int i = 0; i < numIndicatorFeatures; i++)
+      sum += params.getWeight(indicatorFeatures[i]);
+    for (int i = 0; i < numGeneralFeatures; i++)
+      sum += params.getWeight(generalFeatures[i]) * generalValues[i];
     if (denseFeatures != null) {
       for (int i = 0; i < denseFeatures.length; ++i)
-        sum += params.getWeight(DENSE_NAME + "_" + i) * denseFeatures[i];
+        sum += params.getWeight(denseFeatureId(i)) * denseFeatures[i];
     }
     return sum;
   }
@@ -147,15 +181,15 @@ public class FeatureVector {
     increment(factor, map, AllFeatureMatcher.matcher);
   }
   public void increment(double factor, Map<String, Double> map, FeatureMatcher matcher) {
-    if (indicatorFeatures != null) {
-      for (String feature : indicatorFeatures)
-        if (matcher.matches(feature))
-          MapUtils.incr(map, feature, factor);
+    for (int i = 0; i < numIndicatorFeatures; i++) {
+      String feature = FeatureDictionary.get(indicatorFeatures[i]);
+      if (matcher.matches(feature))
+        MapUtils.incr(map, feature, factor);
     }
-    if (generalFeatures != null) {
-      for (Pair<String, Double> pair : generalFeatures)
-        if (matcher.matches(pair.getFirst()))
-          MapUtils.incr(map, pair.getFirst(), factor * pair.getSecond());
+    for (int i = 0; i < numGeneralFeatures; i++) {
+      String feature = FeatureDictionary.get(generalFeatures[i]);
+      if (matcher.matches(feature))
+        MapUtils.incr(map, feature, factor * generalValues[i]);
     }
     if (denseFeatures != null) {
       for (int i = 0; i < denseFeatures.length; ++i)
@@ -166,15 +200,10 @@ public class FeatureVector {
   // returns a feature vector where all features are prefixed
   public FeatureVector addPrefix(String prefix) {
     FeatureVector res = new FeatureVector();
-    if (indicatorFeatures != null) {
-      for (String feature : indicatorFeatures)
-        res.add(prefix + feature);
-    }
-    if (generalFeatures != null) {
-      for (Pair<String, Double> pair : generalFeatures) {
-        res.add(prefix + pair.getFirst(), pair.getSecond());
-      }
-    }
+    for (int i = 0; i < numIndicatorFeatures; i++)
+      res.add(prefix + FeatureDictionary.get(indicatorFeatures[i]));
+    for (int i = 0; i < numGeneralFeatures; i++)
+      res.add(prefix + FeatureDictionary.get(generalFeatures[i]), generalValues[i]);
     return res;
   }
 
@@ -282,10 +311,8 @@ public class FeatureVector {
   }
 
   public void clear() {
-    if (indicatorFeatures != null)
-      indicatorFeatures.clear();
-    if (generalFeatures != null)
-      generalFeatures.clear();
+    numIndicatorFeatures = 0;
+    numGeneralFeatures = 0;
     denseFeatures = null;
   }
 }
@@ -7,6 +7,9 @@ import java.util.*;
 
 /**
  * Represents result of general feature extraction.
+ * The analysis can be deferred by setting annotators, which fill in the
+ * fields the first time they are read through the getters. Keywords and parse
+ * trees only need the parse, so reading them does not run the sentiment annotator.
  *
  * @author emlozin
  */
@@ -15,25 +18,92 @@ public class GeneralInfo implements MemUsage.Instrumented {
     public String sentiment;          /**< Utterance sentiment */
     public int sentiment_type;        /**< Utterance sentiment type */
     public List<String> keywords;     /**< Keywords - topics of utterance */
+    public List<String> parseTrees;   /**< Constituency parse of each sentence, bracketed, without ROOT */
+
+    private Runnable parseAnnotator = null;     /**< Deferred parse filling in keywords and parse trees */
+    private Runnable sentimentAnnotator = null; /**< Deferred analysis filling in sentiment and sentiment type */
 
     public GeneralInfo() {
         this.sentiment = new String();
         this.keywords = new ArrayList<>();
+        this.parseTrees = new ArrayList<>();
         this.sentiment_type = 0;
     }
 
     public GeneralInfo(String text) {
         this.sentiment = text.substring(0,text.indexOf(":"));
         this.keywords = Arrays.asList(text.substring(text.indexOf(":")+1).split(","));
+        this.parseTrees = new ArrayList<>();
+    }
+
+    /**
+     * Defers the parse until keywords, parse trees or sentiment are read.
+     * @param annotator callback filling in keywords and parse trees
+     */
+    public synchronized void setParseAnnotator(Runnable annotator) {
+        this.parseAnnotator = annotator;
+    }
+
+    /**
+     * Defers the sentiment analysis until sentiment is read. It runs after the parse.
+     * @param annotator callback filling in sentiment and sentiment type
+     */
+    public synchronized void setSentimentAnnotator(Runnable annotator) {
+        this.sentimentAnnotator = annotator;
+    }
+
+    /**
+     * Runs the deferred parse, if there is one pending.
+     */
+    public synchronized void ensureParsed() {
+        if (parseAnnotator != null) {
+            Runnable pending = parseAnnotator;
+            parseAnnotator = null;
+            pending.run();
+        }
+    }
+
+    /**
+     * Runs the deferred parse and sentiment analysis, if there are any pending.
+     */
+    public synchronized void ensureAnnotated() {
+        ensureParsed();
+        if (sentimentAnnotator != null) {
+            Runnable pending = sentimentAnnotator;
+            sentimentAnnotator = null;
+            pending.run();
+        }
+    }
+
+    public String getSentiment() {
+        ensureAnnotated();
+        return sentiment;
+    }
+
+    public int getSentimentType() {
+        ensureAnnotated();
+        return sentiment_type;
+    }
+
+    public List<String> getKeywords() {
+        ensureParsed();
+        return keywords;
+    }
+
+    public List<String> getParseTrees() {
+        ensureParsed();
+        return parseTrees;
     }
 
     public String toString() {
+        ensureAnnotated();
         String result = this.sentiment.concat(":");
         result = result.concat(String.join(",", this.keywords));
         return result;
     }
 
     public LispTree toLispTree() {
+        ensureAnnotated();
         LispTree tree = LispTree.proto.newList();
         tree.addChild("generalInfo");
         tree.addChild(this.sentiment);
@@ -43,9 +113,10 @@ public class GeneralInfo implements MemUsage.Instrumented {
 
     @Override
     public long getBytes() {
-        return MemUsage.objectSize(MemUsage.pointerSize * 2)
+        return MemUsage.objectSize(MemUsage.pointerSize * 3)
                 + MemUsage.getBytes(sentiment)
                 + MemUsage.getBytes(sentiment_type)
-                + MemUsage.getBytes(keywords) ;
+                + MemUsage.getBytes(keywords)
+                + MemUsage.getBytes(parseTrees);
     }
 }
@@ -37,12 +37,12 @@ public abstract class InfoAnalyzer {
     // We keep a singleton RelationAnalyzer because for any given run we
     // generally will be working with one.
     private static InfoAnalyzer singleton;
-    public static InfoAnalyzer getSingleton() {
+    public static synchronized InfoAnalyzer getSingleton() {
         if (singleton == null)
             singleton = (InfoAnalyzer) Utils.newInstanceHard(SempreUtils.resolveClassName(opts.infoAnalyzer));
         return singleton;
     }
-    public static void setSingleton(InfoAnalyzer analyzer) { singleton = analyzer; }
+    public static synchronized void setSingleton(InfoAnalyzer analyzer) { singleton = analyzer; }
 
     public abstract CoreNLPInfo analyze(String utterance);
 
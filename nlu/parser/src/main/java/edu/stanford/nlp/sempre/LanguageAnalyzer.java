@@ -20,12 +20,12 @@ public abstract class LanguageAnalyzer {
   // We keep a singleton LanguageAnalyzer because for any given run we
   // generally will be working with one.
   private static LanguageAnalyzer singleton;
-  public static LanguageAnalyzer getSingleton() {
+  public static synchronized LanguageAnalyzer getSingleton() {
     if (singleton == null)
       singleton = (LanguageAnalyzer) Utils.newInstanceHard(SempreUtils.resolveClassName(opts.languageAnalyzer));
     return singleton;
   }
-  public static void setSingleton(LanguageAnalyzer analyzer) { singleton = analyzer; }
+  public static synchronized void setSingleton(LanguageAnalyzer analyzer) { singleton = analyzer; }
 
   public abstract LanguageInfo analyze(String utterance);
 }
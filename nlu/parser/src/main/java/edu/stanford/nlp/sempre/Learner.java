@@ -262,7 +262,7 @@ public class Learner {
       LogInfoToggle.begin_track("feature=%s", feature);
       double computedGradient = state.expectedCounts.get(feature);
       Params perturbedParams = this.params.copyParams();
-      perturbedParams.getWeights().put(feature, perturbedParams.getWeight(feature) + eps);
+      perturbedParams.setWeight(feature, perturbedParams.getWeight(feature) + eps);
       ParserState perturbedState = parseExample(perturbedParams, ex, true);
       double checkedGradient = (perturbedState.objectiveValue - state.objectiveValue) / eps;
       LogInfoToggle.logs("Learner.checkGradient(): weight=%s, pertWeight=%s, obj=%s, pertObj=%s, feature=%s, computed=%s, checked=%s, diff=%s",
@@ -88,7 +88,7 @@ public class Master {
       interpretation.put("lemma_tokens",ex.getLemmaTokens());
       interpretation.put("postags",ex.getPosTag());
       interpretation.put("relations",ex.getRelation());
-      interpretation.put("sentiment",ex.getGenInfo().sentiment);
+      interpretation.put("sentiment",ex.getGenInfo().getSentiment());
 
     /* // Convert JSON string back to Map.
       Type type = new TypeToken<Map<String, String>>(){}.getType();
@@ -5,14 +5,17 @@ import com.google.common.collect.Lists;
 
 import fig.basic.*; import edu.stanford.nlp.sempre.roboy.utils.logging.*;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 /**
- * Params contains the parameters of the model. Currently consists of a map from
- * features to weights.
+ * Params contains the parameters of the model. Currently consists of an array of
+ * weights indexed by feature id (see FeatureDictionary).
  *
  * @author Percy Liang
  */
@@ -52,44 +55,97 @@ public class Params {
   }
   private L1Reg l1Reg = parseReg(opts.l1Reg);
 
-  // Discriminative weights
-  private Map<String, Double> weights = new HashMap<>();
+  // Discriminative weights by feature id, NaN for features without a weight.
+  // Only written while holding the lock; grown by replacing the array, so that
+  // parses running on several threads can read weights without locking.
+  private volatile double[] weights = new double[0];
+  private int numWeights;
 
-  // For AdaGrad
-  Map<String, Double> sumSquaredGradients = new HashMap<>();
+  // For AdaGrad, NaN for features without a gradient yet
+  double[] sumSquaredGradients = new double[0];
 
   // For dual averaging
-  Map<String, Double> sumGradients = new HashMap<>();
+  double[] sumGradients = new double[0];
 
   // Number of stochastic updates we've made so far (for determining step size).
   int numUpdates;
 
-  // for lazy l1-reg update
-  Map<String, Integer> l1UpdateTimeMap = new HashMap<>();
+  // for lazy l1-reg update, -1 for features without an update time
+  int[] l1UpdateTimes = new int[0];
+
+  // Grow all arrays so that they can hold feature |id|.
+  private void ensureCapacity(int id) {
+    int oldLength = weights.length;
+    if (id < oldLength) return;
+    int length = Math.max(id + 1, Math.max(1024, 2 * oldLength));
+    double[] newWeights = Arrays.copyOf(weights, length);
+    Arrays.fill(newWeights, oldLength, length, Double.NaN);
+    sumSquaredGradients = Arrays.copyOf(sumSquaredGradients, length);
+    Arrays.fill(sumSquaredGradients, oldLength, length, Double.NaN);
+    sumGradients = Arrays.copyOf(sumGradients, length);
+    l1UpdateTimes = Arrays.copyOf(l1UpdateTimes, length);
+    Arrays.fill(l1UpdateTimes, oldLength, length, -1);
+    weights = newWeights;
+  }
+
+  // Weight of feature |id|, NaN if it has none.
+  private double storedWeight(int id) {
+    double[] w = weights;
+    return id < w.length ? w[id] : Double.NaN;
+  }
+
+  private boolean hasWeight(int id) { return !Double.isNaN(storedWeight(id)); }
+
+  private void putWeight(int id, double value) {
+    ensureCapacity(id);
+    if (Double.isNaN(weights[id])) numWeights++;
+    weights[id] = value;
+  }
+
+  private void removeWeight(int id) {
+    if (!hasWeight(id)) return;
+    weights[id] = Double.NaN;
+    numWeights--;
+  }
+
+  // Set the weight of |feature|.
+  public synchronized void setWeight(String feature, double value) {
+    putWeight(FeatureDictionary.indexOf(feature), value);
+  }
 
   // Initialize the weights
-  public void init(List<Pair<String, Double>> initialization) {
-    if (!weights.isEmpty())
+  public synchronized void init(List<Pair<String, Double>> initialization) {
+    if (numWeights > 0)
       throw new RuntimeException("Initialization is not legal when there are non-zero weights");
     for (Pair<String, Double> pair: initialization)
-      weights.put(pair.getFirst(), pair.getSecond());
+      setWeight(pair.getFirst(), pair.getSecond());
   }
 
-  // Read parameters from |path|.
+  // Binary snapshot layout: magic, format version, model fingerprint, number of weights,
+  // followed by (feature length, UTF-8 feature, weight) records. Big endian throughout.
+  public static final int SNAPSHOT_MAGIC = 0x5350524d;  // "SPRM"
+  public static final int SNAPSHOT_VERSION = 1;
+  private static final int SNAPSHOT_HEADER_BYTES = 4 + 4 + 8 + 4;
+
+  // Read parameters from |path|. Binary snapshots are detected by their magic number.
   public void read(String path) {
+    if (isSnapshot(path)) {
+      readSnapshot(path);
+      return;
+    }
     LogInfoToggle.begin_track("Reading parameters from %s", path);
     try {
       BufferedReader in = IOUtils.openIn(path);
       String line;
       while ((line = in.readLine()) != null) {
         String[] pair = Lists.newArrayList(Splitter.on('\t').split(line)).toArray(new String[2]);
-        weights.put(pair[0], Double.parseDouble(pair[1]));
+        setWeight(pair[0], Double.parseDouble(pair[1]));
       }
       in.close();
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
-    LogInfoToggle.logs("Read %s weights", weights.size());
+    LogInfoToggle.logs("Read %s weights", numWeights);
     LogInfoToggle.end_track();
   }
 
@@ -101,23 +157,98 @@ public class Params {
       String line;
       while ((line = in.readLine()) != null) {
         String[] pair = Lists.newArrayList(Splitter.on('\t').split(line)).toArray(new String[2]);
-        weights.put(pair[0], Double.parseDouble(pair[1]));
-        weights.put(prefix + pair[0], Double.parseDouble(pair[1]));
+        setWeight(pair[0], Double.parseDouble(pair[1]));
+        setWeight(prefix + pair[0], Double.parseDouble(pair[1]));
       }
       in.close();
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
-    LogInfoToggle.logs("Read %s weights", weights.size());
+    LogInfoToggle.logs("Read %s weights", numWeights);
+    LogInfoToggle.end_track();
+  }
+
+  // Whether |path| is a binary snapshot of any fingerprint, written with the current format version.
+  public static boolean isSnapshot(String path) {
+    return readSnapshotFingerprint(path) != null;
+  }
+
+  // Whether |path| is a binary snapshot of the model identified by |fingerprint|.
+  public static boolean isSnapshot(String path, long fingerprint) {
+    Long stored = readSnapshotFingerprint(path);
+    return stored != null && stored == fingerprint;
+  }
+
+  private static Long readSnapshotFingerprint(String path) {
+    File file = new File(path);
+    if (!file.isFile() || file.length() < SNAPSHOT_HEADER_BYTES)
+      return null;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION)
+        return null;
+      return in.readLong();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  // Read parameters from the binary snapshot at |path|. The file is memory-mapped,
+  // so only the pages holding weights are touched while decoding.
+  public void readSnapshot(String path) {
+    LogInfoToggle.begin_track("Reading parameter snapshot from %s", path);
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != SNAPSHOT_MAGIC)
+        throw new RuntimeException("Not a parameter snapshot: " + path);
+      int version = buffer.getInt();
+      if (version != SNAPSHOT_VERSION)
+        throw new RuntimeException("Unsupported parameter snapshot version " + version + " in " + path);
+      buffer.getLong();  // fingerprint, checked by isSnapshot(path, fingerprint)
+      int size = buffer.getInt();
+      byte[] bytes = new byte[64];
+      for (int i = 0; i < size; i++) {
+        int length = buffer.getInt();
+        if (length > bytes.length)
+          bytes = new byte[Math.max(length, 2 * bytes.length)];
+        buffer.get(bytes, 0, length);
+        setWeight(new String(bytes, 0, length, StandardCharsets.UTF_8), buffer.getDouble());
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    LogInfoToggle.logs("Read %s weights", numWeights);
+    LogInfoToggle.end_track();
+  }
+
+  // Write the current weights to |path| as a binary snapshot tagged with |fingerprint|.
+  public void writeSnapshot(String path, long fingerprint) {
+    LogInfoToggle.begin_track("Params.writeSnapshot(%s)", path);
+    Map<String, Double> snapshot = new TreeMap<>(getWeights());  // sorted, so equal models give equal files
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeInt(SNAPSHOT_VERSION);
+      out.writeLong(fingerprint);
+      out.writeInt(snapshot.size());
+      for (Map.Entry<String, Double> entry : snapshot.entrySet()) {
+        byte[] feature = entry.getKey().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(feature.length);
+        out.write(feature);
+        out.writeDouble(entry.getValue());
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    LogInfoToggle.logs("Wrote %s weights", snapshot.size());
     LogInfoToggle.end_track();
   }
 
   // Update weights by adding |gradient| (modified appropriately with step size).
   public synchronized void update(Map<String, Double> gradient) {
     for (Map.Entry<String, Double> entry : gradient.entrySet()) {
-      String f = entry.getKey();
       double g = entry.getValue();
       if (g * g == 0) continue;  // In order to not divide by zero
+      int f = FeatureDictionary.indexOf(entry.getKey());
+      ensureCapacity(f);
 
       if (l1Reg == L1Reg.LAZY) lazyL1Update(f);
       double stepSize = computeStepSize(f, g);
@@ -127,23 +258,24 @@ public class Params {
           throw new RuntimeException("Dual averaging not supported when " +
                   "step-size changes across iterations for " +
                   "features for which the gradient is zero");
-        MapUtils.incr(sumGradients, f, g);
-        MapUtils.set(weights, f, stepSize * sumGradients.get(f));
+        sumGradients[f] += g;
+        putWeight(f, stepSize * sumGradients[f]);
       } else {
         if (stepSize * g == Double.POSITIVE_INFINITY || stepSize * g == Double.NEGATIVE_INFINITY) {
-          LogInfoToggle.logs("WEIRD FEATURE UPDATE: feature=%s, currentWeight=%s, stepSize=%s, gradient=%s", f, getWeight(f), stepSize, g);
+          LogInfoToggle.logs("WEIRD FEATURE UPDATE: feature=%s, currentWeight=%s, stepSize=%s, gradient=%s", entry.getKey(), lookupWeight(f), stepSize, g);
           throw new RuntimeException("Gradient absolute value is too large or too small");
         }
-        MapUtils.incr(weights, f, stepSize * g);
-        if (l1Reg == L1Reg.LAZY) l1UpdateTimeMap.put(f, numUpdates);
+        putWeight(f, weightOrZero(f) + stepSize * g);
+        if (l1Reg == L1Reg.LAZY) l1UpdateTimes[f] = numUpdates;
       }
     }
     // non lazy implementation goes over all weights
     if (l1Reg == L1Reg.NONLAZY) {
-      Set<String> features = new HashSet<String>(weights.keySet());
-      for (String f : features) {
+      double[] w = weights;
+      for (int f = 0; f < w.length; f++) {
+        if (Double.isNaN(w[f])) continue;
         double stepSize = computeStepSize(f, 0d); // no update for gradient here
-        double update = opts.l1RegCoeff * -Math.signum(MapUtils.getDouble(weights, f, opts.defaultWeight));
+        double update = opts.l1RegCoeff * -Math.signum(w[f]);
         clipUpdate(f, stepSize * update);
       }
     }
@@ -156,14 +288,21 @@ public class Params {
     }
   }
 
-  private double computeStepSize(String feature, double gradient) {
+  private double weightOrZero(int f) {
+    double w = storedWeight(f);
+    return Double.isNaN(w) ? 0 : w;
+  }
+
+  private double computeStepSize(int feature, double gradient) {
     if (opts.adaptiveStepSize) {
-      MapUtils.incr(sumSquaredGradients, feature, gradient * gradient);
+      double sum = sumSquaredGradients[feature];
+      sum = (Double.isNaN(sum) ? 0 : sum) + gradient * gradient;
+      sumSquaredGradients[feature] = sum;
       // ugly - adding one to the denominator when using l1 reg.
       if (l1Reg != L1Reg.NONE)
-        return opts.initStepSize / (Math.sqrt(sumSquaredGradients.get(feature) + 1));
+        return opts.initStepSize / (Math.sqrt(sum + 1));
       else
-        return opts.initStepSize / Math.sqrt(sumSquaredGradients.get(feature));
+        return opts.initStepSize / Math.sqrt(sum);
     } else {
       return opts.initStepSize / Math.pow(numUpdates, opts.stepSizeReduction);
     }
@@ -172,57 +311,82 @@ public class Params {
   /*
    * If the update changes the sign, remove the feature
    */
-  private void clipUpdate(String f, double update) {
-    double currWeight = MapUtils.getDouble(weights, f, 0);
+  private void clipUpdate(int f, double update) {
+    double currWeight = weightOrZero(f);
     if (currWeight == 0)
       return;
 
     if (currWeight * (currWeight + update) < 0.0)  {
-      weights.remove(f);
+      removeWeight(f);
     } else {
-      MapUtils.incr(weights, f, update);
+      putWeight(f, currWeight + update);
     }
   }
 
-  private void lazyL1Update(String f) {
-    if (MapUtils.getDouble(weights, f, 0.0) == 0) return;
+  private void lazyL1Update(int f) {
+    if (weightOrZero(f) == 0) return;
     // For pre-initialized weights, which have no updates yet
-    if (sumSquaredGradients.get(f) == null || l1UpdateTimeMap.get(f) == null) {
-      l1UpdateTimeMap.put(f, numUpdates);
-      sumSquaredGradients.put(f, 0.0);
+    if (Double.isNaN(sumSquaredGradients[f]) || l1UpdateTimes[f] < 0) {
+      l1UpdateTimes[f] = numUpdates;
+      sumSquaredGradients[f] = 0.0;
       return;
     }
-    int numOfIter = numUpdates - MapUtils.get(l1UpdateTimeMap, f, 0);
+    int numOfIter = numUpdates - l1UpdateTimes[f];
     if (numOfIter == 0) return;
-    if (numOfIter < 0) throw new RuntimeException("l1UpdateTimeMap is out of sync.");
+    if (numOfIter < 0) throw new RuntimeException("l1UpdateTimes is out of sync.");
 
-    double stepSize = (numOfIter * opts.initStepSize) / (Math.sqrt(sumSquaredGradients.get(f) + 1));
-    double update = -opts.l1RegCoeff * Math.signum(MapUtils.getDouble(weights, f, 0.0));
+    double stepSize = (numOfIter * opts.initStepSize) / (Math.sqrt(sumSquaredGradients[f] + 1));
+    double update = -opts.l1RegCoeff * Math.signum(weightOrZero(f));
     clipUpdate(f, stepSize * update);
-    if (weights.containsKey(f))
-      l1UpdateTimeMap.put(f, numUpdates);
-    else
-      l1UpdateTimeMap.remove(f);
+    l1UpdateTimes[f] = hasWeight(f) ? numUpdates : -1;
+  }
+
+  public double getWeight(String f) {
+    int id = FeatureDictionary.lookup(f);
+    if (id < 0) return lookupWeight(id);  // never seen, so it has no weight
+    return getWeight(id);
+  }
+
+  // Weight of the feature with id |f| in the FeatureDictionary.
+  public double getWeight(int f) {
+    // Lazy L1 regularization mutates the weights on read, so only that mode needs the lock.
+    if (l1Reg == L1Reg.LAZY) {
+      synchronized (this) {
+        lazyL1Update(f);
+        return lookupWeight(f);
+      }
+    }
+    return lookupWeight(f);
   }
 
-  public synchronized double getWeight(String f) {
-    if (l1Reg == L1Reg.LAZY)
-      lazyL1Update(f);
+  private double lookupWeight(int f) {
+    double w = f < 0 ? Double.NaN : storedWeight(f);
+    if (!Double.isNaN(w))
+      return w;
     if (opts.initWeightsRandomly)
-      return MapUtils.getDouble(weights, f, 2 * opts.initRandom.nextDouble() - 1);
+      return 2 * opts.initRandom.nextDouble() - 1;
     else if (opts.initWeightsEqually)
-      return MapUtils.getDouble(weights, f, 1);
-    else {
-      return MapUtils.getDouble(weights, f, opts.defaultWeight);
-    }
+      return 1;
+    else
+      return opts.defaultWeight;
   }
 
-  public synchronized Map<String, Double> getWeights() { finalizeWeights(); return weights; }
+  // Return a copy of the weights by feature.
+  public synchronized Map<String, Double> getWeights() { finalizeWeights(); return weightMap(); }
+
+  private Map<String, Double> weightMap() {
+    double[] w = weights;
+    Map<String, Double> map = new HashMap<>();
+    for (int f = 0; f < w.length; f++)
+      if (!Double.isNaN(w[f]))
+        map.put(FeatureDictionary.get(f), w[f]);
+    return map;
+  }
 
   public void write(PrintWriter out) { write(null, out); }
 
   public void write(String prefix, PrintWriter out) {
-    List<Map.Entry<String, Double>> entries = Lists.newArrayList(weights.entrySet());
+    List<Map.Entry<String, Double>> entries = Lists.newArrayList(weightMap().entrySet());
     Collections.sort(entries, new ValueComparator<String, Double>(true));
     for (Map.Entry<String, Double> entry : entries) {
       double value = entry.getValue();
@@ -240,7 +404,7 @@ public class Params {
 
   public void log() {
     LogInfoToggle.begin_track("Params");
-    List<Map.Entry<String, Double>> entries = Lists.newArrayList(weights.entrySet());
+    List<Map.Entry<String, Double>> entries = Lists.newArrayList(weightMap().entrySet());
     Collections.sort(entries, new ValueComparator<String, Double>(true));
     for (Map.Entry<String, Double> entry : entries) {
       double value = entry.getValue();
@@ -251,16 +415,19 @@ public class Params {
 
   public synchronized void finalizeWeights() {
     if (l1Reg == L1Reg.LAZY) {
-      Set<String> features = new HashSet<>(weights.keySet());
-      for (String f : features)
+      for (int f = 0; f < weights.length; f++)
         lazyL1Update(f);
     }
   }
 
   public Params copyParams()  {
     Params result = new Params();
-    for (String feature : this.getWeights().keySet()) {
-      result.weights.put(feature, this.getWeight(feature));
+    synchronized (this) {
+      finalizeWeights();
+      double[] w = weights;
+      for (int f = 0; f < w.length; f++)
+        if (!Double.isNaN(w[f]))
+          result.putWeight(f, w[f]);
     }
     return result;
   }
@@ -271,21 +438,21 @@ public class Params {
     for (String feature : this.getWeights().keySet()) {
       if (feature.startsWith(prefix)) {
         String newFeature = feature.substring(prefix.length());
-        result.weights.put(newFeature, this.getWeight(feature));
+        result.setWeight(newFeature, this.getWeight(feature));
       }
     }
     return result;
   }
 
-  public boolean isEmpty() {
-    return weights.size() == 0;
+  public synchronized boolean isEmpty() {
+    return numWeights == 0;
   }
 
   public Params getRandomWeightParams()  {
     Random rand = new Random();
     Params result = new Params();
     for (String feature : this.getWeights().keySet()) {
-      result.weights.put(feature, 2 * rand.nextDouble() - 1); // between -1 and 1
+      result.setWeight(feature, 2 * rand.nextDouble() - 1); // between -1 and 1
     }
     return result;
   }
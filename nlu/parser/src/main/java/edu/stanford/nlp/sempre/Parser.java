@@ -1,6 +1,7 @@
 package edu.stanford.nlp.sempre;
 
 import edu.stanford.nlp.sempre.roboy.ErrorRetrieval;
+import edu.stanford.nlp.sempre.roboy.utils.tracing.Tracer;
 import fig.basic.*; import edu.stanford.nlp.sempre.roboy.utils.logging.*;
 
 import java.io.PrintWriter;
@@ -34,6 +35,18 @@ public abstract class Parser {
     @Option(gloss = "Execute only top formula to be cheap (hack at test time for fast demo)")
     public boolean executeTopFormulaOnly = false;
 
+    @Option(gloss = "Number of threads executing the predicted derivations (1 executes them one after another)")
+    public int executionThreads = 1;
+
+    @Option(gloss = "Number of executions waiting for a thread, further derivations are not executed")
+    public int executionQueueSize = 512;
+
+    @Option(gloss = "Milliseconds to wait for the executions of one example at test time (0 waits for all)")
+    public int executionTimeoutMs = 0;
+
+    @Option(gloss = "At test time, stop executing after this number of derivations with a denotation (0 executes all)")
+    public int executeTopK = 0;
+
     @Option(gloss = "Whether to output chart filling visualization (huge file!)")
     public boolean visualizeChartFilling = false;
 
@@ -231,13 +244,19 @@ public abstract class Parser {
     watch.start();
     LogInfoToggle.begin_track_printAll("Parser.parse: parse");
     ParserState state = newParserState(params, ex, computeExpectedCounts);
-    state.infer();
+    try (Tracer.Span span = Tracer.start("parser.infer")) {
+      state.infer();
+    }
 
     // Error retrieval
-    error.updateModule(ex.utterance, ex.context, state.predDerivations);
-    error.postprocess();
+    try (Tracer.Span span = Tracer.start("parser.errorRetrieval")) {
+      error.updateModule(ex.utterance, ex.context, state.predDerivations);
+      error.postprocess();
+    }
 
-    state.execute();
+    try (Tracer.Span span = Tracer.start("parser.execute")) {
+      state.execute();
+    }
     LogInfoToggle.end_track();
     watch.stop();
     state.parseTime = watch.getCurrTimeLong();
@@ -1,6 +1,15 @@
 package edu.stanford.nlp.sempre;
 
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import edu.stanford.nlp.sempre.roboy.utils.logging.EvaluationToggle;
 import fig.basic.*; import edu.stanford.nlp.sempre.roboy.utils.logging.*;
@@ -244,8 +253,37 @@ public abstract class ParserState {
     return derivs;
   }
 
+  // Threads executing derivations for all parser states, created on first use.
+  // At most Parser.opts.executionQueueSize executions wait for a thread, further ones are rejected.
+  private static ExecutorService executionPool;
+
+  // Result of an execution rejected by the full pool, treated like one that missed the deadline
+  private static final Future<Executor.Response> SKIPPED = CompletableFuture.completedFuture(null);
+
+  private static synchronized ExecutorService getExecutionPool() {
+    if (executionPool == null) {
+      executionPool = new ThreadPoolExecutor(Parser.opts.executionThreads, Parser.opts.executionThreads,
+          0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, Parser.opts.executionQueueSize)),
+          (Runnable r) -> {
+            Thread thread = new Thread(r, "derivation-execution");
+            thread.setDaemon(true);
+            return thread;
+          }, new ThreadPoolExecutor.AbortPolicy());
+    }
+    return executionPool;
+  }
+
+  private static boolean isSimpleFormula(Derivation deriv) {
+    String formula = deriv.getFormula().toString();
+    return formula.contains("string") || formula.contains("lambda") || formula.contains("triple");
+  }
+
   // Ensure that all the logical forms are executed and compatibilities are computed.
   public void ensureExecuted() {
+    if (Parser.opts.executionThreads > 1 && !Parser.opts.executeTopFormulaOnly) {
+      ensureExecutedConcurrently();
+      return;
+    }
     LogInfoToggle.begin_track("Parser.ensureExecuted");
     // Execute predicted derivations to get value.
     List<Derivation> remove = new ArrayList();
@@ -257,7 +295,7 @@ public abstract class ParserState {
         remove.add(deriv);
         continue;
       }
-      if (deriv.getFormula().toString().contains("string")||deriv.getFormula().toString().contains("lambda")||deriv.getFormula().toString().contains("triple")){
+      if (isSimpleFormula(deriv)){
         deriv.ensureExecuted(parser.simple_executor, ex.context);
       }
       else
@@ -272,6 +310,109 @@ public abstract class ParserState {
     LogInfoToggle.end_track();
   }
 
+  /**
+   * Same as ensureExecuted(), but the remote executions run on a shared pool.
+   * They are started in score order. At test time, derivations that miss Parser.opts.executionTimeoutMs
+   * are dropped, and so are all derivations after the best Parser.opts.executeTopK with a denotation.
+   * Dropped executions are cancelled with an interrupt. Derivations that do not fit in the queue of the
+   * pool are skipped rather than queued without bound.
+   */
+  private void ensureExecutedConcurrently() {
+    LogInfoToggle.begin_track("Parser.ensureExecuted");
+    Set<Derivation> remove = Collections.newSetFromMap(new IdentityHashMap<>());
+    List<String> formulas = new ArrayList();
+    List<Derivation> pending = new ArrayList<>();
+    for (Derivation deriv : predDerivations) {
+      if (!String.join(" ",formulas).contains(deriv.formula.toString()))
+        formulas.add(deriv.formula.toString());
+      else {
+        remove.add(deriv);
+        continue;
+      }
+      if (!deriv.isExecuted())
+        pending.add(deriv);
+    }
+    Derivation.sortByScore(pending);
+
+    // Learning needs all denotations, only cut off at test time
+    long deadline = !computeExpectedCounts && Parser.opts.executionTimeoutMs > 0
+        ? System.currentTimeMillis() + Parser.opts.executionTimeoutMs : Long.MAX_VALUE;
+    int topK = computeExpectedCounts ? 0 : Parser.opts.executeTopK;
+
+    List<Future<Executor.Response>> futures = new ArrayList<>();
+    for (Derivation deriv : pending) {
+      // Simple formulas are executed locally below
+      futures.add(isSimpleFormula(deriv) ? null : submit(deriv));
+    }
+    int denotations = 0;
+    for (int i = 0; i < pending.size(); i++) {
+      Derivation deriv = pending.get(i);
+      Future<Executor.Response> future = futures.get(i);
+      if (topK > 0 && denotations >= topK) {
+        if (future != null)
+          future.cancel(true);
+        remove.add(deriv);
+        continue;
+      }
+      if (future == null) {
+        deriv.ensureExecuted(parser.simple_executor, ex.context);
+      } else {
+        Executor.Response response = await(future, deadline, deriv);
+        if (response == null) {
+          deriv.value = ErrorValue.timeout;
+          remove.add(deriv);
+          continue;
+        }
+        deriv.value = response.value;
+        deriv.executorStats = response.stats;
+      }
+      if (hasDenotation(deriv.value))
+        denotations++;
+    }
+
+    for (Derivation deriv : predDerivations) {
+      if (remove.contains(deriv)) continue;
+      if (ex.targetValue != null)
+        deriv.compatibility = parser.valueEvaluator.getCompatibility(ex.targetValue, deriv.value);
+      if ((deriv.value==null || deriv.value.toString().equals("BADFORMAT")) && !deriv.formula.toString().contains("rb"))
+        remove.add(deriv);
+    }
+    predDerivations.removeAll(remove);
+    LogInfoToggle.end_track();
+  }
+
+  private Future<Executor.Response> submit(Derivation deriv) {
+    try {
+      return getExecutionPool().submit(() -> parser.executor.execute(deriv.formula, ex.context));
+    } catch (RejectedExecutionException e) {
+      LogInfoToggle.logs("Skipping execution of %s, the execution queue is full", deriv.formula);
+      return SKIPPED;
+    }
+  }
+
+  private static Executor.Response await(Future<Executor.Response> future, long deadline, Derivation deriv) {
+    try {
+      if (deadline == Long.MAX_VALUE)
+        return future.get();
+      return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      LogInfoToggle.logs("Execution of %s missed the deadline", deriv.formula);
+    } catch (ExecutionException e) {
+      LogInfoToggle.errors("Execution of %s failed: %s", deriv.formula, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return null;
+  }
+
+  // Whether the value is an answer, i.e. neither an error nor an empty list
+  private static boolean hasDenotation(Value value) {
+    if (value == null || value instanceof ErrorValue)
+      return false;
+    return !(value instanceof ListValue) || !((ListValue) value).values.isEmpty();
+  }
+
   // Add statistics to |evaluation|.
   // Override if we have more statistics.
   protected void setEvaluation() {
@@ -14,6 +14,8 @@ import java.util.*;
 /**
  * Represents result of information extraction analysis of a sentence
  * (provided by some RelationAnalyzer).
+ * The extraction can be deferred by setting an annotator, which fills in the
+ * relations the first time they are read through getRelations().
  *
  * @author emlozin
  */
@@ -21,10 +23,36 @@ public class RelationInfo implements MemUsage.Instrumented {
 
     public final Map<String, Double> relations; /**< Map of relations with probability */
 
+    private Runnable annotator = null;          /**< Deferred extraction filling in the relations */
+
     public RelationInfo() {
         this.relations = new HashMap<String,Double>();
     }
 
+    /**
+     * Defers the extraction until getRelations() is called.
+     * @param annotator callback filling in the relations
+     */
+    public synchronized void setAnnotator(Runnable annotator) {
+        this.annotator = annotator;
+    }
+
+    /**
+     * Runs the deferred extraction, if there is one pending.
+     */
+    public synchronized void ensureAnnotated() {
+        if (annotator != null) {
+            Runnable pending = annotator;
+            annotator = null;
+            pending.run();
+        }
+    }
+
+    public Map<String, Double> getRelations() {
+        ensureAnnotated();
+        return relations;
+    }
+
     @Override
     public long getBytes() {
         return MemUsage.objectSize(MemUsage.pointerSize * 2) + MemUsage.getBytes(relations);
@@ -72,6 +72,8 @@ public final class SimpleLexicon {
 
   // Mapping from phrase
   Map<String, List<Entry>> entries = new HashMap<String, List<Entry>>();
+  // Number of times entries were added, so indexes over the phrases know when to rebuild
+  private volatile int version = 0;
 
   public void read(String path) {
     LogInfoToggle.begin_track("SimpleLexicon.read(%s)", path);
@@ -131,6 +133,7 @@ public final class SimpleLexicon {
         }
       }
       LogInfoToggle.logs("Read %s lines, generated %d entries (now %d total)", numLines, entries.size() - oldNumEntries, entries.size());
+      version++;
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -182,6 +185,7 @@ public final class SimpleLexicon {
         if (!entries.containsValue(newEntry))
           MapUtils.addToList(entries, parts[parts.length - 1], newEntry);
       }
+      version++;
   }
 
   public List<Entry> lookup(String phrase) {
@@ -191,4 +195,8 @@ public final class SimpleLexicon {
   public Set<String> lookup_type(String type) {
     return entries.keySet();
   }
+
+  public int getVersion() {
+    return version;
+  }
 }
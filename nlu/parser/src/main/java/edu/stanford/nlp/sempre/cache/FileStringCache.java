@@ -123,9 +123,9 @@ public class FileStringCache implements StringCache, LruCallback<String, String>
     }
   }
 
-  public String get(String key) { return cache.get(key); }
+  public synchronized String get(String key) { return cache.get(key); }
 
-  public void put(String key, String value) {
+  public synchronized void put(String key, String value) {
     assert key.indexOf('\t') == -1 : key;
     assert key.indexOf('\n') == -1 : key;
     assert value.indexOf('\n') == -1 : value;
@@ -0,0 +1,488 @@
+package edu.stanford.nlp.sempre.cache;
+
+import edu.stanford.nlp.sempre.roboy.utils.logging.LogInfoToggle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Persistent cache backed by a memory-mapped, append-only file.
+ *
+ * Only the positions of the entries are kept on the heap, values are read from
+ * the mapped file. Entries expire a fixed time after they were stored, and the
+ * least recently used ones are evicted when the cache holds too many. Large
+ * values are stored deflated. put() only queues the entry; a background thread
+ * appends it to the file and compacts the file once it outgrows its budget.
+ *
+ * File layout: MAGIC, VERSION, then one record per put, holding
+ * key length, value length, expiry time, flags, CRC32 of key and value,
+ * the key and the value (both UTF-8).
+ */
+public class MappedStringCache implements StringCache {
+  public static final int MAGIC = 0x53505143;  // "SPQC"
+  public static final int VERSION = 1;
+
+  private static final int FILE_HEADER = 8;
+  private static final int RECORD_HEADER = 4 + 4 + 8 + 1 + 4;
+  private static final byte DEFLATED = 1;
+  private static final int MIN_DEFLATE = 256;   // Smaller values are stored as they are
+  private static final int QUEUE_SIZE = 4096;   // Writes beyond this are dropped
+
+  // Caches by absolute path, so every user of a file shares one writer
+  private static final Map<Path, MappedStringCache> caches = new HashMap<>();
+
+  private static class Slot {
+    final long offset;
+    final long expires;
+
+    Slot(long offset, long expires) {
+      this.offset = offset;
+      this.expires = expires;
+    }
+  }
+
+  private static class Write {
+    final String key;
+    final String value;
+    final long expires;
+
+    Write(String key, String value, long expires) {
+      this.key = key;
+      this.value = value;
+      this.expires = expires;
+    }
+  }
+
+  private final Path path;
+  private final long ttlMillis;
+  private final long maxBytes;
+
+  // Guarded by this
+  private final LinkedHashMap<Long, Slot> index;  // Keyed by hash of the key, in access order
+  private FileChannel channel;
+  private MappedByteBuffer map;
+  private long end;                               // End of the last complete record
+
+  // Entries waiting for the writer, so that they can be read right away
+  private final ConcurrentHashMap<String, String> pending = new ConcurrentHashMap<>();
+  private final BlockingQueue<Write> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+  private final AtomicInteger outstanding = new AtomicInteger();
+  private final Thread writer;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong writes = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Opens the cache stored at a path, or returns it if it is open already.
+   *
+   * @param path       cache file, created if missing
+   * @param capacity   maximal number of entries
+   * @param ttlSeconds time to live of an entry in seconds, 0 to keep entries forever
+   * @param maxBytes   size of the file above which it is compacted
+   */
+  public static synchronized MappedStringCache open(String path, int capacity, long ttlSeconds, long maxBytes) {
+    Path key = Paths.get(path).toAbsolutePath().normalize();
+    MappedStringCache cache = caches.get(key);
+    if (cache == null) {
+      cache = new MappedStringCache(key, capacity, ttlSeconds * 1000, maxBytes);
+      caches.put(key, cache);
+      final MappedStringCache opened = cache;
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        opened.flush();
+        opened.logStats();
+      }, "cache-flush"));
+    }
+    return cache;
+  }
+
+  private MappedStringCache(Path path, final int capacity, long ttlMillis, long maxBytes) {
+    if (maxBytes <= FILE_HEADER || maxBytes > Integer.MAX_VALUE)
+      throw new RuntimeException("Invalid cache size: " + maxBytes);
+    this.path = path;
+    this.ttlMillis = ttlMillis;
+    this.maxBytes = maxBytes;
+    this.index = new LinkedHashMap<Long, Slot>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Slot> eldest) {
+        if (size() <= capacity)
+          return false;
+        evictions.incrementAndGet();
+        return true;
+      }
+    };
+    try {
+      if (path.getParent() != null)
+        Files.createDirectories(path.getParent());
+      load();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    LogInfoToggle.logs("Using cache %s (%d entries)", path, size());
+
+    this.writer = new Thread(this::writeLoop, "cache-writer");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  // Read the index from the file, dropping a torn last record
+  private synchronized void load() throws IOException {
+    channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long size = channel.size();
+    if (size == 0) {
+      ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+      header.putInt(MAGIC).putInt(VERSION).flip();
+      channel.write(header, 0);
+      size = FILE_HEADER;
+    }
+    if (size > Integer.MAX_VALUE)
+      throw new RuntimeException("Cache file too big: " + path);
+    map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    if (size < FILE_HEADER || map.getInt(0) != MAGIC || map.getInt(4) != VERSION)
+      throw new RuntimeException("Not a cache file: " + path);
+
+    long now = System.currentTimeMillis();
+    int offset = FILE_HEADER;
+    CRC32 crc = new CRC32();
+    while (offset + RECORD_HEADER <= size) {
+      int keyLength = map.getInt(offset);
+      int valueLength = map.getInt(offset + 4);
+      long expires = map.getLong(offset + 8);
+      int checksum = map.getInt(offset + 17);
+      if (keyLength < 0 || valueLength < 0 || offset + RECORD_HEADER + (long) keyLength + valueLength > size)
+        break;
+      byte[] key = new byte[keyLength];
+      byte[] value = new byte[valueLength];
+      ByteBuffer record = map.duplicate();
+      record.position(offset + RECORD_HEADER);
+      record.get(key).get(value);
+      crc.reset();
+      crc.update(key);
+      crc.update(value);
+      if ((int) crc.getValue() != checksum)
+        break;
+      long hash = hash(new String(key, StandardCharsets.UTF_8));
+      if (expires > now)
+        index.put(hash, new Slot(offset, expires));
+      else
+        index.remove(hash);
+      offset += RECORD_HEADER + keyLength + valueLength;
+    }
+    end = offset;
+    if (end < size) {
+      LogInfoToggle.logs("Cache %s: dropping %d bytes of incomplete records", path, size - end);
+      channel.truncate(end);
+      map = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+    }
+    evictions.set(0);
+  }
+
+  public String get(String key) {
+    String value = pending.get(key);
+    if (value != null) {
+      hits.incrementAndGet();
+      return value;
+    }
+    long hash = hash(key);
+    byte[] storedKey, storedValue;
+    byte flags;
+    synchronized (this) {
+      Slot slot = index.get(hash);
+      if (slot != null && slot.expires <= System.currentTimeMillis()) {
+        index.remove(hash);
+        slot = null;
+      }
+      if (slot == null) {
+        misses.incrementAndGet();
+        return null;
+      }
+      ByteBuffer record = map.duplicate();
+      record.position((int) slot.offset);
+      storedKey = new byte[record.getInt()];
+      storedValue = new byte[record.getInt()];
+      record.getLong();
+      flags = record.get();
+      record.getInt();
+      record.get(storedKey).get(storedValue);
+    }
+    // Different keys with the same hash
+    if (!key.equals(new String(storedKey, StandardCharsets.UTF_8))) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return decode(storedValue, flags);
+  }
+
+  /**
+   * Stores an entry without waiting for the disk.
+   * The entry is dropped if the writer falls too far behind.
+   */
+  public void put(String key, String value) {
+    if (key == null || value == null)
+      return;
+    long expires = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE;
+    pending.put(key, value);
+    outstanding.incrementAndGet();
+    if (!queue.offer(new Write(key, value, expires))) {
+      pending.remove(key, value);
+      written(1);
+      dropped.incrementAndGet();
+    }
+  }
+
+  private void writeLoop() {
+    List<Write> batch = new ArrayList<>();
+    while (true) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException e) {
+        return;
+      }
+      queue.drainTo(batch);
+      try {
+        append(batch);
+        if (end > maxBytes)
+          compact();
+      } catch (IOException e) {
+        LogInfoToggle.errors("Cache %s: write failed: %s", path, e);
+      } finally {
+        for (Write write : batch)
+          pending.remove(write.key, write.value);
+        written(batch.size());
+        batch.clear();
+      }
+    }
+  }
+
+  // Only the writer thread appends, so the end of the file is stable while encoding
+  private void append(List<Write> batch) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    long[] offsets = new long[batch.size()];
+    long start = end;
+    for (int i = 0; i < batch.size(); i++) {
+      offsets[i] = start + bytes.size();
+      bytes.write(encode(batch.get(i)));
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+    long position = start;
+    while (buffer.hasRemaining())
+      position += channel.write(buffer, position);
+    synchronized (this) {
+      end = position;
+      map = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+      for (int i = 0; i < batch.size(); i++)
+        index.put(hash(batch.get(i).key), new Slot(offsets[i], batch.get(i).expires));
+    }
+    writes.addAndGet(batch.size());
+  }
+
+  /**
+   * Rewrites the file with the live entries only.
+   * Keeps the most recently used entries that fit into half of the budget.
+   */
+  private synchronized void compact() throws IOException {
+    long now = System.currentTimeMillis();
+    List<Map.Entry<Long, Slot>> live = new ArrayList<>();
+    for (Map.Entry<Long, Slot> entry : index.entrySet())
+      if (entry.getValue().expires > now)
+        live.add(entry);
+    // Most recently used entries come last
+    int first = live.size();
+    long bytes = FILE_HEADER;
+    while (first > 0 && bytes + recordLength(live.get(first - 1).getValue()) <= maxBytes / 2)
+      bytes += recordLength(live.get(--first).getValue());
+
+    Path tmp = Paths.get(path + ".tmp");
+    LinkedHashMap<Long, Slot> slots = new LinkedHashMap<>();
+    try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+      header.putInt(MAGIC).putInt(VERSION).flip();
+      long position = out.write(header, 0);
+      for (Map.Entry<Long, Slot> entry : live.subList(first, live.size())) {
+        Slot slot = entry.getValue();
+        ByteBuffer record = map.duplicate();
+        record.position((int) slot.offset);
+        record.limit((int) (slot.offset + recordLength(slot)));
+        slots.put(entry.getKey(), new Slot(position, slot.expires));
+        while (record.hasRemaining())
+          position += out.write(record, position);
+      }
+      out.force(true);
+    }
+    channel.close();
+    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    end = channel.size();
+    map = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+    evictions.addAndGet(index.size() - slots.size());
+    index.clear();
+    index.putAll(slots);
+    LogInfoToggle.logs("Cache %s: compacted to %d entries (%d bytes)", path, index.size(), end);
+  }
+
+  private long recordLength(Slot slot) {
+    int offset = (int) slot.offset;
+    return RECORD_HEADER + (long) map.getInt(offset) + map.getInt(offset + 4);
+  }
+
+  private static byte[] encode(Write write) {
+    byte[] key = write.key.getBytes(StandardCharsets.UTF_8);
+    byte[] value = write.value.getBytes(StandardCharsets.UTF_8);
+    byte flags = 0;
+    if (value.length >= MIN_DEFLATE) {
+      byte[] deflated = deflate(value);
+      if (deflated.length < value.length) {
+        value = deflated;
+        flags = DEFLATED;
+      }
+    }
+    CRC32 crc = new CRC32();
+    crc.update(key);
+    crc.update(value);
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + key.length + value.length);
+    record.putInt(key.length).putInt(value.length).putLong(write.expires).put(flags).putInt((int) crc.getValue());
+    record.put(key).put(value);
+    return record.array();
+  }
+
+  private static String decode(byte[] value, byte flags) {
+    if ((flags & DEFLATED) != 0)
+      value = inflate(value);
+    return new String(value, StandardCharsets.UTF_8);
+  }
+
+  private static byte[] deflate(byte[] data) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    deflater.setInput(data);
+    deflater.finish();
+    ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+    byte[] buffer = new byte[4096];
+    while (!deflater.finished())
+      out.write(buffer, 0, deflater.deflate(buffer));
+    deflater.end();
+    return out.toByteArray();
+  }
+
+  private static byte[] inflate(byte[] data) {
+    Inflater inflater = new Inflater();
+    inflater.setInput(data);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+    byte[] buffer = new byte[4096];
+    try {
+      while (!inflater.finished()) {
+        int n = inflater.inflate(buffer);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+          throw new RuntimeException("Corrupt cache entry");
+        out.write(buffer, 0, n);
+      }
+    } catch (DataFormatException e) {
+      throw new RuntimeException(e);
+    } finally {
+      inflater.end();
+    }
+    return out.toByteArray();
+  }
+
+  // 64-bit FNV-1a
+  private static long hash(String key) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < key.length(); i++) {
+      hash ^= key.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  private void written(int count) {
+    if (outstanding.addAndGet(-count) == 0) {
+      synchronized (outstanding) {
+        outstanding.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Waits until all queued entries are written.
+   */
+  public void flush() {
+    synchronized (outstanding) {
+      while (outstanding.get() > 0) {
+        try {
+          outstanding.wait(100);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes all queued entries and closes the file.
+   * Opening the path again reads the entries back.
+   */
+  public void close() {
+    flush();
+    writer.interrupt();
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (MappedStringCache.class) {
+      caches.remove(path);
+    }
+    synchronized (this) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  public synchronized int size() { return index.size(); }
+  public synchronized long getBytes() { return end; }
+  public long getHits() { return hits.get(); }
+  public long getMisses() { return misses.get(); }
+  public long getWrites() { return writes.get(); }
+  public long getDropped() { return dropped.get(); }
+  public long getEvictions() { return evictions.get(); }
+
+  public double getHitRate() {
+    long total = getHits() + getMisses();
+    return total == 0 ? 0 : (double) getHits() / total;
+  }
+
+  public void logStats() {
+    LogInfoToggle.logs("Cache %s: %d entries (%d bytes), hit rate %.3f (%d hits, %d misses), %d writes, %d dropped, %d evicted",
+        path, size(), getBytes(), getHitRate(), getHits(), getMisses(), getWrites(), getDropped(), getEvictions());
+  }
+}
@@ -0,0 +1,77 @@
+package edu.stanford.nlp.sempre.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe in-memory cache whose entries expire a fixed time after they
+ * were stored. Holds at most a given number of entries and evicts the least
+ * recently used one when full.
+ */
+public class TtlCache<K, V> {
+  private static class Timed<V> {
+    final V value;
+    final long expires;
+
+    Timed(V value, long expires) {
+      this.value = value;
+      this.expires = expires;
+    }
+  }
+
+  private final long ttlMillis;
+  private final LinkedHashMap<K, Timed<V>> entries;
+  private long hits = 0;
+  private long misses = 0;
+
+  /**
+   * @param capacity  maximal number of entries
+   * @param ttlMillis time to live of an entry in milliseconds
+   */
+  public TtlCache(final int capacity, long ttlMillis) {
+    this.ttlMillis = ttlMillis;
+    this.entries = new LinkedHashMap<K, Timed<V>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, Timed<V>> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * @return the cached value, or null if there is none or it expired
+   */
+  public synchronized V get(K key) {
+    Timed<V> entry = entries.get(key);
+    if (entry != null && entry.expires < System.currentTimeMillis()) {
+      entries.remove(key);
+      entry = null;
+    }
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.value;
+  }
+
+  public synchronized void put(K key, V value) {
+    entries.put(key, new Timed<>(value, System.currentTimeMillis() + ttlMillis));
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+}
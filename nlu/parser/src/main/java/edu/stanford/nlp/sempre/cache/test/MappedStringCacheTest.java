@@ -0,0 +1,97 @@
+package edu.stanford.nlp.sempre.cache.test;
+
+import edu.stanford.nlp.sempre.cache.MappedStringCache;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.testng.AssertJUnit.*;
+
+/**
+ * Test persistence, expiry and compaction of the memory-mapped cache.
+ */
+public class MappedStringCacheTest {
+  private static String createPath() throws IOException {
+    File file = File.createTempFile("MappedStringCacheTest", ".cache");
+    file.delete();
+    file.deleteOnExit();
+    new File(file.getPath() + ".tmp").deleteOnExit();
+    return file.getPath();
+  }
+
+  private static String xml(int i) {
+    StringBuilder buf = new StringBuilder("<sparql><results>");
+    for (int j = 0; j < 20; j++)
+      buf.append("<result><binding name=\"x\"><uri>http://dbpedia.org/resource/").append(i).append("</uri></binding></result>");
+    return buf.append("</results></sparql>").toString();
+  }
+
+  @Test(groups = "fs")
+  public void testPersistence() throws IOException {
+    String path = createPath();
+    MappedStringCache cache = MappedStringCache.open(path, 100, 0, 1 << 20);
+    assertSame(cache, MappedStringCache.open(path, 100, 0, 1 << 20));
+    for (int i = 0; i < 10; i++)
+      cache.put("query" + i, xml(i));
+    cache.put("query0", "EMPTY");
+    // Queued entries can be read before they are written
+    assertEquals(xml(3), cache.get("query3"));
+    assertNull(cache.get("unknown"));
+    cache.close();
+
+    // Values are deflated on disk
+    assertTrue(new File(path).length() < 10 * xml(0).length() / 2);
+
+    // Append a torn record, as left by a crash
+    try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+      file.seek(file.length());
+      file.writeInt(100);
+    }
+
+    cache = MappedStringCache.open(path, 100, 0, 1 << 20);
+    assertEquals(10, cache.size());
+    assertEquals("EMPTY", cache.get("query0"));
+    assertEquals(xml(9), cache.get("query9"));
+    assertNull(cache.get("query10"));
+    assertEquals(2, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(2.0 / 3, cache.getHitRate(), 1e-9);
+    cache.close();
+  }
+
+  @Test(groups = "fs")
+  public void testExpiry() throws IOException, InterruptedException {
+    String path = createPath();
+    MappedStringCache cache = MappedStringCache.open(path, 100, 1, 1 << 20);
+    cache.put("query", "result");
+    cache.flush();
+    assertEquals("result", cache.get("query"));
+    Thread.sleep(1100);
+    assertNull(cache.get("query"));
+    cache.close();
+
+    cache = MappedStringCache.open(path, 100, 1, 1 << 20);
+    assertEquals(0, cache.size());
+    cache.close();
+  }
+
+  @Test(groups = "fs")
+  public void testEviction() throws IOException {
+    String path = createPath();
+    MappedStringCache cache = MappedStringCache.open(path, 50, 0, 16 * 1024);
+    for (int i = 0; i < 500; i++) {
+      cache.put("query" + i, "result" + i);
+      cache.flush();
+    }
+    // Least recently used entries are evicted, the file is compacted
+    assertEquals(50, cache.size());
+    assertNull(cache.get("query0"));
+    assertEquals("result499", cache.get("query499"));
+    assertTrue(cache.getBytes() <= 16 * 1024);
+    assertEquals(450, cache.getEvictions());
+    cache.close();
+  }
+}
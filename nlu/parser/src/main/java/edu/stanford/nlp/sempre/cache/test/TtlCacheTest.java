@@ -0,0 +1,37 @@
+package edu.stanford.nlp.sempre.cache.test;
+
+import edu.stanford.nlp.sempre.cache.TtlCache;
+
+import org.testng.annotations.Test;
+
+import static org.testng.AssertJUnit.*;
+
+/**
+ * Test expiry and eviction of the in-memory TTL cache.
+ */
+public class TtlCacheTest {
+  @Test
+  public void testEviction() {
+    TtlCache<String, String> cache = new TtlCache<>(2, 60000);
+    cache.put("a", "1");
+    cache.put("b", "2");
+    assertEquals("1", cache.get("a"));
+    cache.put("c", "3");  // evicts b, the least recently used entry
+    assertNull(cache.get("b"));
+    assertEquals("1", cache.get("a"));
+    assertEquals("3", cache.get("c"));
+    assertEquals(2, cache.size());
+    assertEquals(3, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void testExpiry() throws InterruptedException {
+    TtlCache<String, String> cache = new TtlCache<>(10, 20);
+    cache.put("a", "1");
+    assertEquals("1", cache.get("a"));
+    Thread.sleep(50);
+    assertNull(cache.get("a"));
+    assertEquals(0, cache.size());
+  }
+}
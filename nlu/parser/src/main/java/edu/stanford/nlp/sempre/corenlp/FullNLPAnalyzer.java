@@ -16,8 +16,10 @@ import edu.stanford.nlp.semgraph.SemanticGraphEdge;
 import edu.stanford.nlp.sempre.roboy.config.ConfigManager;
 import edu.stanford.nlp.util.CoreMap;
 import edu.stanford.nlp.neural.rnn.RNNCoreAnnotations;
+import edu.stanford.nlp.sentiment.CollapseUnaryTransformer;
 import edu.stanford.nlp.sentiment.SentimentCoreAnnotations;
 import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeCoreAnnotations;
 
 import com.google.common.collect.Lists;
 import com.google.common.base.Joiner;
@@ -31,24 +33,40 @@ import java.util.*;
  * FullNLPAnalyzer uses Stanford CoreNLP pipeline to analyze an input string utterance
  * and return a FullInfo object
  *
+ * Annotation is staged: the cheap annotators needed for the language info run on every
+ * utterance, while relation extraction, the constituency parse and the sentiment analysis
+ * run on the same annotation only when the RelationInfo or GeneralInfo of the result is first
+ * read. Reading keywords or parse trees runs the parse alone, sentiment adds its annotator on top.
+ *
  * @author emlozin
  */
 public class FullNLPAnalyzer extends InfoAnalyzer {
     public static class Options {
-        @Option(gloss = "What CoreNLP annotators to run")
+        @Option(gloss = "What CoreNLP annotators to run on every utterance")
         public List<String> annotators = Lists.newArrayList(
-            "tokenize",
             "tokenize",
             "ssplit",
             "truecase",
             "pos",
             "lemma",
-            "ner",
-            "parse",
+            "ner");
+
+        @Option(gloss = "What CoreNLP annotators to run when relations are requested")
+        public List<String> relationAnnotators = Lists.newArrayList(
             "depparse",
             "natlog",
-            "openie",
+            "openie");
+
+        @Option(gloss = "What CoreNLP annotators to run when keywords or parse trees are requested")
+        public List<String> parseAnnotators = Lists.newArrayList(
+            "parse");
+
+        @Option(gloss = "What CoreNLP annotators to run after the parse when sentiment is requested")
+        public List<String> sentimentAnnotators = Lists.newArrayList(
             "sentiment");
+
+        @Option(gloss = "Run all annotators on every utterance instead of on demand")
+        public boolean eagerAnnotation = false;
     }
 
     public static Options opts = new Options();
@@ -71,20 +89,54 @@ public class FullNLPAnalyzer extends InfoAnalyzer {
     private static final Set<String> HAVE_VERBS = new HashSet<String>(Arrays.asList(HAVE_VERB_ARR));
     private static final String HAVE_VERB_TAG = "HAVE";
 
-    public static StanfordCoreNLP pipeline = null;
+    public static volatile StanfordCoreNLP pipeline = null;
+    public static StanfordCoreNLP relationPipeline = null;
+    public static StanfordCoreNLP parsePipeline = null;
+    public static StanfordCoreNLP sentimentPipeline = null;
     public static StanfordCoreNLP sentence = null;
     public static String keyword_tags = null;
+    private static final CollapseUnaryTransformer collapseUnary = new CollapseUnaryTransformer();
 
     public static void initModels() {
-        keyword_tags = String.join(" ", ConfigManager.KEYWORDS_TAGS);
         if (pipeline != null) return;
+        // Several conversations may preprocess concurrently, make sure the models are loaded only once
+        synchronized (FullNLPAnalyzer.class) {
+            if (pipeline != null) return;
+            keyword_tags = String.join(" ", ConfigManager.KEYWORDS_TAGS);
+            Properties props = new Properties();
+            props.setProperty("annotators", Joiner.on(',').join(opts.annotators));
+            props.setProperty("coref.algorithm", "neural");
+            //props.setProperty("openie.resolve_coref", "true");
+            props.setProperty("truecase.overwriteText", "true");
+            props.setProperty("ner.applyFineGrained", "false");
+            relationPipeline = createStagePipeline(opts.relationAnnotators);
+            parsePipeline = createStagePipeline(opts.parseAnnotators);
+            sentimentPipeline = createStagePipeline(opts.sentimentAnnotators);
+            pipeline = new StanfordCoreNLP(props);
+        }
+    }
+
+    // Stage pipelines continue an annotation produced by the main pipeline,
+    // so they must not check the requirements of their annotators themselves.
+    private static StanfordCoreNLP createStagePipeline(List<String> annotators) {
         Properties props = new Properties();
-        props.setProperty("annotators", Joiner.on(',').join(opts.annotators));
-        props.setProperty("coref.algorithm", "neural");
-        //props.setProperty("openie.resolve_coref", "true");
-        props.setProperty("truecase.overwriteText", "true");
-        props.setProperty("ner.applyFineGrained", "false");
-        pipeline = new StanfordCoreNLP(props);
+        props.setProperty("annotators", Joiner.on(',').join(annotators));
+        props.setProperty("parse.binaryTrees", "true");
+        return new StanfordCoreNLP(props, false);
+    }
+
+    // The dependency parse feeds LanguageInfo, so parser features using it need it up front.
+    private static boolean annotateEagerly() {
+        return opts.eagerAnnotation
+                || FeatureExtractor.containsDomain("dependencyParse")
+                || FeatureExtractor.containsDomain("fullDependencyParse");
+    }
+
+    private static void annotateStage(StanfordCoreNLP stage, Annotation annotation) {
+        // Relations, parse and sentiment may be requested from different threads
+        synchronized (annotation) {
+            stage.annotate(annotation);
+        }
     }
 
     // Stanford tokenizer doesn't break hyphens.
@@ -104,14 +156,36 @@ public class FullNLPAnalyzer extends InfoAnalyzer {
         // Break hyphens
         utterance = breakHyphens(utterance);
 
-        // Run Stanford CoreNLP
+        // Run the cheap part of Stanford CoreNLP
         initModels();
         Annotation annotation = pipeline.process(utterance);
 
+        // Defer the expensive parts until their results are read
+        RelationInfo relInfo = coreInfo.relInfo;
+        relInfo.setAnnotator(() -> {
+            annotateStage(relationPipeline, annotation);
+            relInfo.relations.putAll(getRel(annotation).relations);
+        });
+        GeneralInfo senInfo = coreInfo.senInfo;
+        senInfo.setParseAnnotator(() -> {
+            annotateStage(parsePipeline, annotation);
+            GeneralInfo result = getParse(annotation);
+            senInfo.keywords = result.keywords;
+            senInfo.parseTrees = result.parseTrees;
+        });
+        senInfo.setSentimentAnnotator(() -> {
+            annotateStage(sentimentPipeline, annotation);
+            GeneralInfo result = getSent(coreInfo.lanInfo, annotation);
+            senInfo.sentiment = result.sentiment;
+            senInfo.sentiment_type = result.sentiment_type;
+        });
+        if (annotateEagerly()) {
+            relInfo.ensureAnnotated();
+            senInfo.ensureAnnotated();
+        }
+
         // Get full info
         coreInfo.lanInfo = getLang(annotation);
-        coreInfo.relInfo = getRel(annotation);
-        coreInfo.senInfo = getSent(coreInfo.lanInfo, annotation);
         coreInfo.sentences = getSentences(annotation);
 
         return coreInfo;
@@ -209,13 +283,26 @@ public class FullNLPAnalyzer extends InfoAnalyzer {
         return relationInfo;
     }
 
+    public GeneralInfo getParse(Annotation annotation) {
+        GeneralInfo genInfo = new GeneralInfo();
+        for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+            // Same tree the sentiment annotator labels, so keywords do not depend on it
+            Tree tree = collapseUnary.transformTree(sentence.get(TreeCoreAnnotations.BinarizedTreeAnnotation.class));
+            genInfo.keywords = getKeywords(tree);
+//            LogInfoToggle.logs("Keywords extracted: %s", genInfo.keywords.toString());
+            // Share the constituency parse, so that later analyzers do not parse the sentence again
+            Tree parse = sentence.get(TreeCoreAnnotations.TreeAnnotation.class);
+            if (parse != null)
+                genInfo.parseTrees.add((parse.numChildren() == 1 ? parse.firstChild() : parse).toString());
+        }
+        return genInfo;
+    }
+
     public GeneralInfo getSent(LanguageInfo languageInfo, Annotation annotation) {
         GeneralInfo genInfo = new GeneralInfo();
         for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
             Tree tree = sentence.get(SentimentCoreAnnotations.SentimentAnnotatedTree.class);
 //            LogInfoToggle.logs("Dependency tree: %s", tree);
-            genInfo.keywords = getKeywords(tree);
-//            LogInfoToggle.logs("Keywords extracted: %s", genInfo.keywords.toString());
             genInfo.sentiment_type = RNNCoreAnnotations.getPredictedClass(tree);
             genInfo.sentiment = sentence.get(SentimentCoreAnnotations.SentimentClass.class);
             LogInfoToggle.logs("Sentiment extracted: %s", genInfo.sentiment);
@@ -264,9 +351,10 @@ public class FullNLPAnalyzer extends InfoAnalyzer {
                 LogInfoToggle.logs("nerTags: %s", langInfo.lanInfo.nerTags);
                 LogInfoToggle.logs("nerValues: %s", langInfo.lanInfo.nerValues);
                 LogInfoToggle.logs("dependencyChildren: %s", langInfo.lanInfo.dependencyChildren);
-                LogInfoToggle.logs("keywords: %s", langInfo.senInfo.keywords);
-                LogInfoToggle.logs("sentiment: %s", langInfo.senInfo.sentiment);
-                LogInfoToggle.logs("relations: %s", langInfo.relInfo.relations);
+                LogInfoToggle.logs("keywords: %s", langInfo.senInfo.getKeywords());
+                LogInfoToggle.logs("sentiment: %s", langInfo.senInfo.getSentiment());
+                LogInfoToggle.logs("parseTrees: %s", langInfo.senInfo.getParseTrees());
+                LogInfoToggle.logs("relations: %s", langInfo.relInfo.getRelations());
                 LogInfoToggle.end_track();
             } catch (IOException e) {
                 e.printStackTrace();
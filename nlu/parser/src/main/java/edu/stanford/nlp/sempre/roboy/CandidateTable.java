@@ -0,0 +1,210 @@
+package edu.stanford.nlp.sempre.roboy;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import edu.stanford.nlp.sempre.roboy.lexicons.word2vec.VectorStore;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Columnar view of the candidates for an underspecified term.
+ * Candidate records are parsed once, labels are tokenized once and their word
+ * vectors are looked up once, so scoring functions run as passes over arrays.
+ */
+public class CandidateTable {
+    private static final Gson gson = new Gson();                /**< Gson object */
+    private static final Type recordType
+            = new TypeToken<Map<String, String>>(){}.getType(); /**< Type of a candidate record */
+
+    public final String term;                                   /**< Underspecified term*/
+    public final UnderspecifiedInfo.TermType type;              /**< Underspecified term type*/
+    public final String[] uris;                                 /**< URI of each candidate*/
+    public final String[] labels;                               /**< Label of each candidate*/
+    public final String[][] tokens;                             /**< Tokenized label of each candidate*/
+    public final double[] refcounts;                            /**< Refcount of each candidate*/
+    public final double[] scores;                               /**< Accumulated score of each candidate*/
+
+    private final String[] candidates;                          /**< Candidate each row was parsed for */
+    private final String[] records;                             /**< Record each row was parsed from */
+
+    private VectorStore store;                                  /**< Store the vectors were looked up in */
+    private float[][][] vectors;                                /**< Vectors of the label tokens */
+
+    /**
+     * Parses the candidate records of a term.
+     * Scores already assigned to the candidates are taken over.
+     */
+    public CandidateTable(UnderspecifiedInfo info) {
+        this(info, null);
+    }
+
+    /**
+     * Parses the candidate records of a term, taking over the rows of a previous table
+     * whose candidate and record did not change.
+     */
+    private CandidateTable(UnderspecifiedInfo info, CandidateTable previous) {
+        if (info.candidatesInfo.size() != info.candidates.size())
+            throw new RuntimeException("Size mismatch in error retrieval");
+        int size = info.candidates.size();
+        this.term = info.term;
+        this.type = info.type;
+        this.uris = new String[size];
+        this.labels = new String[size];
+        this.tokens = new String[size][];
+        this.refcounts = new double[size];
+        this.scores = new double[size];
+        this.candidates = info.candidates.toArray(new String[size]);
+        this.records = info.candidatesInfo.toArray(new String[size]);
+        boolean scored = info.candidatesScores.size() == size;
+        for (int i = 0; i < size; i++) {
+            if (scored)
+                scores[i] = info.candidatesScores.get(i);
+            if (previous != null && previous.isRow(i, candidates[i], records[i])) {
+                uris[i] = previous.uris[i];
+                labels[i] = previous.labels[i];
+                tokens[i] = previous.tokens[i];
+                refcounts[i] = previous.refcounts[i];
+                continue;
+            }
+            Map<String, String> record = gson.fromJson(records[i], recordType);
+            String uri = record.get("URI");
+            String label = record.get("Label");
+            String refcount = record.get("Refcount");
+            uris[i] = uri != null ? uri : info.candidates.get(i);
+            labels[i] = label != null ? label : "";
+            tokens[i] = labels[i].split(" ");
+            refcounts[i] = refcount != null ? Double.valueOf(refcount) : 0.0;
+        }
+    }
+
+    private boolean isRow(int i, String candidate, String record) {
+        return i < size() && Objects.equals(candidates[i], candidate) && Objects.equals(records[i], record);
+    }
+
+    /**
+     * Brings the table up to date with the term information, after its candidates were
+     * rewritten or extended and its scores adjusted, e.g. by the lexicon generation.
+     * Only the records that changed are parsed again.
+     *
+     * @param info term information the table was created from
+     * @return this table if only the scores changed, otherwise a new table
+     */
+    public CandidateTable update(UnderspecifiedInfo info) {
+        boolean unchanged = info.candidates.size() == size() && info.candidatesInfo.size() == size();
+        for (int i = 0; unchanged && i < size(); i++)
+            unchanged = isRow(i, info.candidates.get(i), info.candidatesInfo.get(i));
+        if (!unchanged)
+            return new CandidateTable(info, this);
+        if (info.candidatesScores.size() == size())
+            for (int i = 0; i < size(); i++)
+                scores[i] = info.candidatesScores.get(i);
+        return this;
+    }
+
+    public int size() {
+        return uris.length;
+    }
+
+    /**
+     * Word vectors of the label tokens, looked up on first use.
+     *
+     * @param store vector store to look the tokens up in
+     * @return vectors per candidate and token, null for unknown tokens
+     */
+    public float[][][] getVectors(VectorStore store) {
+        if (this.vectors == null || this.store != store) {
+            float[][][] result = new float[size()][][];
+            for (int i = 0; i < result.length; i++)
+                result[i] = lookup(store, tokens[i]);
+            this.vectors = result;
+            this.store = store;
+        }
+        return this.vectors;
+    }
+
+    /**
+     * Adds a column of scores to the accumulated scores.
+     */
+    public void addScores(double[] column) {
+        if (column.length != scores.length)
+            throw new RuntimeException("Size mismatch in error retrieval");
+        for (int i = 0; i < scores.length; i++)
+            scores[i] += column[i];
+    }
+
+    /**
+     * @return index of the first candidate with the highest score, -1 if there are none
+     */
+    public int best() {
+        int best = -1;
+        for (int i = 0; i < scores.length; i++)
+            if (best < 0 || scores[i] > scores[best])
+                best = i;
+        return best;
+    }
+
+    /**
+     * @param best index of the best candidate
+     * @return highest score among all other candidates, NaN if there are none
+     */
+    public double runnerUp(int best) {
+        int second = -1;
+        for (int i = 0; i < scores.length; i++)
+            if (i != best && (second < 0 || scores[i] > scores[second]))
+                second = i;
+        return second < 0 ? Double.NaN : scores[second];
+    }
+
+    /**
+     * Stores the accumulated scores in the term information.
+     */
+    public void writeScores(UnderspecifiedInfo info) {
+        List<Double> result = new ArrayList<>(scores.length);
+        for (double score : scores)
+            result.add(score);
+        info.candidatesScores = result;
+    }
+
+    /**
+     * @param store  vector store, may be null while it is loading
+     * @param tokens tokens to look up
+     * @return vector of each token, null for unknown tokens
+     */
+    public static float[][] lookup(VectorStore store, String[] tokens) {
+        float[][] result = new float[tokens.length][];
+        if (store == null)
+            return result;
+        for (int t = 0; t < tokens.length; t++) {
+            float[] vector = new float[store.dimension()];
+            if (store.vector(tokens[t], vector))
+                result[t] = vector;
+        }
+        return result;
+    }
+
+    /**
+     * Sums up, over all query tokens, the best non-negative similarity to any candidate token.
+     * Unknown tokens do not contribute.
+     */
+    public static double match(float[][] query, float[][] candidate) {
+        double score = 0;
+        for (float[] q : query) {
+            if (q == null)
+                continue;
+            double max = 0;
+            for (float[] c : candidate) {
+                if (c == null)
+                    continue;
+                double similarity = VectorStore.cosine(q, c);
+                if (similarity > max)
+                    max = similarity;
+            }
+            score = score + max;
+        }
+        return score;
+    }
+}
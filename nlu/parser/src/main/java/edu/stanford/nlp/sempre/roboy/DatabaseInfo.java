@@ -34,12 +34,13 @@ public final class DatabaseInfo {
   }
 
   public static class Options {
-    public static String defaultDB; //"lib/fb_data/93.exec/schema2.ttl";
+    // Formula currently executed by this thread, derivations may be executed concurrently
+    private static final ThreadLocal<String> defaultDB = new ThreadLocal<>(); //"lib/fb_data/93.exec/schema2.ttl";
 
     public static void setDefault(String formula){
       //LogInfoToggle.logs("Default %s", formula);
-      defaultDB = formula;};
-    public static String getDefault(){return defaultDB;};
+      defaultDB.set(formula);};
+    public static String getDefault(){return defaultDB.get();};
   }
   public static Options opts = new Options();
 
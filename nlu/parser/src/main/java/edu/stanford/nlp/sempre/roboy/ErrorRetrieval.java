@@ -1,8 +1,7 @@
 package edu.stanford.nlp.sempre.roboy;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import edu.stanford.nlp.sempre.*;
+import edu.stanford.nlp.sempre.cache.TtlCache;
 import edu.stanford.nlp.sempre.roboy.config.ConfigManager;
 import edu.stanford.nlp.sempre.roboy.error.*;
 import edu.stanford.nlp.sempre.roboy.lexicons.word2vec.Word2vec;
@@ -11,26 +10,40 @@ import edu.stanford.nlp.sempre.roboy.utils.SparqlUtils;
 import fig.basic.LispTree;
 import edu.stanford.nlp.sempre.roboy.utils.logging.LogInfoToggle;
 
-import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Error retrieval class. Handles dealing with unknown terms error.
  * Provides scores for derivation and updates lexicon.
  *
+ * Candidates and descriptions are fetched concurrently. Each retriever and the description
+ * lookup have a bounded pool of their own, shared by all instances, so a slow endpoint cannot
+ * starve the others. Each call has to finish within ERROR_RETRIEVAL_TIMEOUT milliseconds. Late
+ * calls that have not started yet are cancelled, running ones are left out of the turn but still
+ * cache their results for ERROR_RETRIEVAL_CACHE_TTL seconds.
+ *
  * @author emlozin
  */
 public class ErrorRetrieval {
-    private Gson gson = new Gson();
     private Map<String,List<String>> follow_ups;    /**< List of follow up questions */
     private String utterance;                       /**< Currently processed user utterance */
     private ContextValue context;                   /**< Context Value storing history of a conversation */
     private List<Derivation> derivations;           /**< List of predicted derivations */
     private UnderspecifiedInfo underInfo;                   /**< Error solutions object */
+    private Map<UnderspecifiedInfo, CandidateTable> scoredTables
+            = new IdentityHashMap<>();                      /**< Scored candidates of each term */
 
     public  String dbpediaUrl = ConfigManager.DB_SPARQL;    /**< DBpedia SPARQL endpoint */
     private SparqlUtils sparqlUtil = new SparqlUtils();     /**< SPARQL helper */
 
+    // Concurrent remote calls by kind of lookup, shared by all instances
+    private static final Map<String, ExecutorService> retrievalPools = new ConcurrentHashMap<>();
+    private static final TtlCache<String, UnderspecifiedInfo> candidateCache = new TtlCache<>(
+            ConfigManager.ERROR_RETRIEVAL_CACHE_SIZE, 1000L * ConfigManager.ERROR_RETRIEVAL_CACHE_TTL);
+    private static final TtlCache<String, String> descriptionCache = new TtlCache<>(
+            ConfigManager.ERROR_RETRIEVAL_CACHE_SIZE, 1000L * ConfigManager.ERROR_RETRIEVAL_CACHE_TTL);
+
     // Postprocessing analyzers
     private Word2vec vec;                       /**< Word2vec object */
     private List<KnowledgeRetriever> helpers;   /**< List of error retrieval objects */
@@ -56,13 +69,9 @@ public class ErrorRetrieval {
         this.helpers = new ArrayList<>();
         this.helpers.add(new EntityRetriever());
         this.helpers.add(new MCGRetriever());
-        try {
-            this.vec = Word2vec.getInstance();
-            this.helpers.add(new Word2VecRetriever(this.vec));
-        }
-        catch(Exception e){
-            LogInfoToggle.logs("Exception in Word2Vec: "+e.getMessage());
-        }
+        // Word2Vec loads in the background and finds no candidates until it is ready
+        this.vec = Word2vec.getInstance();
+        this.helpers.add(new Word2VecRetriever(this.vec));
 
         // Add scoring functions
         this.scorers = new ArrayList<>();
@@ -91,6 +100,7 @@ public class ErrorRetrieval {
         this.context = context;
         this.derivations = derivations;
         this.underInfo = new UnderspecifiedInfo();
+        this.scoredTables.clear();
     }
 
     /**
@@ -110,6 +120,7 @@ public class ErrorRetrieval {
     public void updateExample(List<Derivation> derivations){
         this.derivations = derivations;
         this.underInfo = new UnderspecifiedInfo();
+        this.scoredTables.clear();
     }
 
     /**
@@ -170,17 +181,115 @@ public class ErrorRetrieval {
      * @return A list of candidates with information about them
      */
     public List<UnderspecifiedInfo> createCandidates(List<UnderspecifiedInfo> termList){
+        // Ask all helpers about all terms at once
+        List<List<Future<UnderspecifiedInfo>>> retrieved = new ArrayList<>();
         for (UnderspecifiedInfo term:termList) {
-            LogInfoToggle.begin_track("Analyzing term: %s", term.term);
+            List<Future<UnderspecifiedInfo>> termRetrieved = new ArrayList<>();
             for (KnowledgeRetriever helper : this.helpers)
+                termRetrieved.add(retrieve(helper, term));
+            retrieved.add(termRetrieved);
+        }
+
+        // Merge in the original order, skipping helpers that missed the deadline
+        long deadline = System.currentTimeMillis() + ConfigManager.ERROR_RETRIEVAL_TIMEOUT;
+        for (int i = 0; i < termList.size(); i++) {
+            UnderspecifiedInfo term = termList.get(i);
+            LogInfoToggle.begin_track("Analyzing term: %s", term.term);
+            for (int j = 0; j < this.helpers.size(); j++)
             {
-                term.addCandidates(helper.analyze(term));
+                UnderspecifiedInfo candidates = await(retrieved.get(i).get(j), deadline,
+                        this.helpers.get(j).getClass().getSimpleName());
+                if (candidates != null)
+                    term.addCandidates(candidates);
             }
             LogInfoToggle.end_track();
         }
         return termList;
     }
 
+    /**
+     * Function starting the candidate retrieval of a single helper, unless the result is cached.
+     * @param helper    error retrieval object
+     * @param term      underspecified term
+     * @return Future candidates
+     */
+    private Future<UnderspecifiedInfo> retrieve(KnowledgeRetriever helper, UnderspecifiedInfo term){
+        String key = helper.getClass().getName() + "|" + term.type + "|" + term.term;
+        UnderspecifiedInfo cached = candidateCache.get(key);
+        if (cached != null)
+            return CompletableFuture.completedFuture(cached);
+        return submit(helper.getClass().getSimpleName(), () -> {
+            UnderspecifiedInfo result = helper.analyze(term);
+            // Empty results may be caused by a failed request, so they are asked again next time
+            if (!result.candidates.isEmpty())
+                candidateCache.put(key, result);
+            return result;
+        });
+    }
+
+    /**
+     * Function starting the lookup of a description, unless it is cached.
+     * @param uri       URI of a candidate
+     * @return Future description, null if there is none
+     */
+    private Future<String> describe(String uri){
+        String cached = descriptionCache.get(uri);
+        if (cached != null)
+            return CompletableFuture.completedFuture(cached);
+        return submit("description", () -> {
+            String result = sparqlUtil.returnDescr(uri, dbpediaUrl);
+            if (result != null)
+                descriptionCache.put(uri, result);
+            return result;
+        });
+    }
+
+    /**
+     * Function starting a remote call on the pool of its kind.
+     * @param kind      name of the pool
+     * @param call      remote call
+     * @return Future result, failing with a RejectedExecutionException if the pool is saturated
+     */
+    private static <T> Future<T> submit(String kind, Callable<T> call){
+        ExecutorService pool = retrievalPools.computeIfAbsent(kind, k -> new ThreadPoolExecutor(
+                ConfigManager.ERROR_RETRIEVAL_THREADS, ConfigManager.ERROR_RETRIEVAL_THREADS,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, ConfigManager.ERROR_RETRIEVAL_QUEUE)),
+                (Runnable r) -> {
+                    Thread thread = new Thread(r, "error-retrieval-" + k);
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+        try {
+            return pool.submit(call);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    /**
+     * Function waiting for a concurrent call until the deadline.
+     * @param future    pending result
+     * @param deadline  time in milliseconds until which to wait
+     * @param source    name of the call for logging
+     * @return Result, null if the call failed or missed the deadline
+     */
+    private static <T> T await(Future<T> future, long deadline, String source){
+        try {
+            return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // A queued call is dropped, a running one goes on and caches its result for later turns
+            future.cancel(false);
+            LogInfoToggle.logs("Error retrieval: %s missed the deadline", source);
+        } catch (ExecutionException e) {
+            LogInfoToggle.logs("Error retrieval: %s failed: %s", source, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
     /**
      * Function scoring single derivation candidates
      * @param termList      list of underspecified terms
@@ -189,14 +298,28 @@ public class ErrorRetrieval {
     public List<UnderspecifiedInfo> createScores(List<UnderspecifiedInfo> termList){
         for (UnderspecifiedInfo term:termList) {
             LogInfoToggle.begin_track("Scoring term: %s", term.term);
+            CandidateTable table = new CandidateTable(term);
             for (ScoringFunction scorer : this.scorers)
             {
-                term.addScores(scorer.score(term, this.context));
+                table.addScores(scorer.score(table, this.context));
             }
+            table.writeScores(term);
+            this.scoredTables.put(term, table);
             LogInfoToggle.end_track();
         }
         return termList;
     }
+    /**
+     * Function returning the candidates of a term, reusing the table scored by createScores
+     *
+     * @param underInfo        current information about candidates
+     * @return Candidates with their current scores
+     */
+    private CandidateTable getTable(UnderspecifiedInfo underInfo){
+        CandidateTable scored = this.scoredTables.get(underInfo);
+        return scored != null ? scored.update(underInfo) : new CandidateTable(underInfo);
+    }
+
     /**
      * Function extracting best candidate and forming follow up question if needed
      *
@@ -204,26 +327,34 @@ public class ErrorRetrieval {
      * @return Best candidate
      */
     public String getBestCandidate(UnderspecifiedInfo underInfo){
-        // Sort all the scores
-        List<Double> sorted = new ArrayList<>();
-        sorted.addAll(underInfo.candidatesScores);
-        Collections.sort(sorted);
-        Collections.reverse(sorted);
-        if (sorted.isEmpty())
+        return getBestCandidate(underInfo, getTable(underInfo));
+    }
+
+    /**
+     * Function extracting best candidate and forming follow up question if needed
+     *
+     * @param underInfo        current information about candidates
+     * @param table            candidates of the term with their scores
+     * @return Best candidate
+     */
+    public String getBestCandidate(UnderspecifiedInfo underInfo, CandidateTable table){
+        // Find the two highest scores
+        int index = table.best();
+        if (index < 0)
             return null;
-        int index = underInfo.candidatesScores.indexOf(sorted.get(0));
         // Best candidate
         String result = underInfo.candidates.get(index);
 
-        if (sorted.get(0) < ConfigManager.FOLLOW_THRES || (sorted.size() > 1 && (sorted.get(1)/sorted.get(0)) > 0.8)) {
-            List<String> candidates = new ArrayList<>();
-            candidates.add(underInfo.candidatesInfo.get(index));
-            double current = sorted.get(0);
-            for (int i = 0; i < underInfo.candidatesScores.size(); i++){
-                if (underInfo.candidatesScores.get(i)/current > 0.8 && i!=index)
-                    candidates.add(underInfo.candidatesInfo.get(i));
+        double current = table.scores[index];
+        double second = table.runnerUp(index);
+        if (current < ConfigManager.FOLLOW_THRES || second/current > 0.8) {
+            List<Integer> candidates = new ArrayList<>();
+            candidates.add(index);
+            for (int i = 0; i < table.size(); i++){
+                if (table.scores[i]/current > 0.8 && i!=index)
+                    candidates.add(i);
             }
-            this.underInfo.followUps.addAll(formQuestion(underInfo.term,candidates));
+            this.underInfo.followUps.addAll(formQuestion(table,candidates));
         }
 //        if (ConfigManager.DEBUG > 0 && this.underInfo.followUps.isEmpty())
 //        {
@@ -235,17 +366,24 @@ public class ErrorRetrieval {
     /**
      * Function forming questions.
      *
-     * @param term          term that is underspecified
-     * @param candidate     list of potential candidates
+     * @param table         candidates for the term that is underspecified
+     * @param candidate     rows of potential candidates
      * @return Follow-up question
      */
-    public List<Map.Entry<String,String>> formQuestion(String term, List<String> candidate) {
+    public List<Map.Entry<String,String>> formQuestion(CandidateTable table, List<Integer> candidate) {
         List<Map.Entry<String,String>> result = new ArrayList<>();
-        for (String c:candidate) {
-            LogInfoToggle.logs(c);
-            Type type = new TypeToken<Map<String, String>>(){}.getType();
-            Map<String, String> c_map = this.gson.fromJson(c, type);
-            String desc = sparqlUtil.returnDescr(c_map.get("URI"),dbpediaUrl);
+        String term = table.term;
+        // Look up all descriptions at once
+        List<Future<String>> descriptions = new ArrayList<>();
+        for (int c:candidate) {
+            LogInfoToggle.logs("%s: %s", table.uris[c], table.labels[c]);
+            descriptions.add(describe(table.uris[c]));
+        }
+        long deadline = System.currentTimeMillis() + ConfigManager.ERROR_RETRIEVAL_TIMEOUT;
+        for (int i = 0; i < candidate.size(); i++) {
+            String uri = table.uris[candidate.get(i)];
+            String label = table.labels[candidate.get(i)];
+            String desc = await(descriptions.get(i), deadline, "Description of " + uri);
             if (desc!=null) {
                 if (desc.contains(".")) {
                     desc = desc.substring(0, desc.indexOf("."));
@@ -260,24 +398,24 @@ public class ErrorRetrieval {
                 int rnd = new Random().nextInt(this.follow_ups.get("label").size());
                 String question = String.format(this.follow_ups.get("label").get(rnd), term, desc);
                 Map.Entry<String, String> entry = new java.util.AbstractMap.SimpleEntry<String, String>
-                        (question, c_map.get("URI"));
+                        (question, uri);
                 result.add(entry);
             }
             else {
                 int rnd = new Random().nextInt(this.follow_ups.get("type").size());
                 String relType = new String();
-                if (c_map.get("URI").contains("type")){
+                if (uri.contains("type")){
                     relType = "type of thing";
                 }
-                else if (c_map.get("URI").contains("resource")){
+                else if (uri.contains("resource")){
                     relType = "individual thing";
                 }
                 else{
                     relType = "feature";
                 }
-                String question = String.format(this.follow_ups.get("type").get(rnd), term, c_map.get("Label"), relType);
+                String question = String.format(this.follow_ups.get("type").get(rnd), term, label, relType);
                 Map.Entry<String, String> entry = new java.util.AbstractMap.SimpleEntry<String, String>
-                        (String.format(question, term, c_map.get("Label")), c_map.get("URI"));
+                        (String.format(question, term, label), uri);
                 result.add(entry);
             }
         }
@@ -417,7 +555,7 @@ public class ErrorRetrieval {
             Map<String,String> replaces = new HashMap<>();
             for (UnderspecifiedInfo termInfo : missingTerms)
             {
-                replaces.put(termInfo.term,getBestCandidate(termInfo));
+                replaces.put(termInfo.term,getBestCandidate(termInfo,getTable(termInfo)));
             }
             if (ConfigManager.DEBUG > 1) {
                 for (String key : replaces.keySet()) {
@@ -5,6 +5,8 @@ import edu.stanford.nlp.sempre.cache.StringCache;
 import edu.stanford.nlp.sempre.cache.StringCacheUtils;
 
 import edu.stanford.nlp.sempre.roboy.config.ConfigManager;
+import edu.stanford.nlp.sempre.roboy.utils.SparqlUtils;
+import edu.stanford.nlp.sempre.roboy.utils.tracing.Tracer;
 import fig.basic.*; import edu.stanford.nlp.sempre.roboy.utils.logging.*;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -86,7 +88,9 @@ public class SparqlExecutor extends Executor {
 
   public SparqlExecutor() {
     this.dbInfo = DatabaseInfo.getSingleton();
-    this.query2xmlCache = StringCacheUtils.create(opts.cachePath);
+    // Without a cache file of its own, share the persistent cache of all SPARQL requests
+    StringCache cache = opts.cachePath == null ? SparqlUtils.getCache() : null;
+    this.query2xmlCache = cache != null ? cache : StringCacheUtils.create(opts.cachePath);
     opts.endpointUrl = ConfigManager.DB_SPARQL;
   }
 
@@ -103,9 +107,18 @@ public class SparqlExecutor extends Executor {
   // Make a request to the given SPARQL endpoint.
   // Return the XML.
   public ServerResponse makeRequest(String queryStr, String endpointUrl) {
+    try (Tracer.Span span = Tracer.start("sparql")) {
+      return request(queryStr, endpointUrl);
+    }
+  }
+
+  private ServerResponse request(String queryStr, String endpointUrl) {
     if (endpointUrl == null)
       throw new RuntimeException("No SPARQL endpoint url specified");
     try {
+      // Executions the parser no longer waits for are interrupted, give up on their requests
+      if (Thread.currentThread().isInterrupted())
+        return new ServerResponse(ErrorValue.timeout);
       String url = String.format("%s?query=%s&format=xml", endpointUrl, URLEncoder.encode(queryStr, "UTF-8"));
       URLConnection conn = new URL(url).openConnection();
       conn.setConnectTimeout(opts.connectTimeoutMs);
@@ -116,8 +129,13 @@ public class SparqlExecutor extends Executor {
       StringBuilder buf = new StringBuilder();
       BufferedReader reader = new BufferedReader(new InputStreamReader(in));
       String line;
-      while ((line = reader.readLine()) != null)
+      while ((line = reader.readLine()) != null) {
+        if (Thread.currentThread().isInterrupted()) {
+          reader.close();
+          return new ServerResponse(ErrorValue.timeout);
+        }
         buf.append(line);
+      }
 
       reader.close();
       // Check for blatant errors.
@@ -205,12 +223,17 @@ public class SparqlExecutor extends Executor {
       response.timeMs = watch.getCurrTimeLong();
       response.beginTrack = true;
 
-      if (useCache)
+      // Timeouts and overloaded servers may succeed next time
+      if (useCache && !isTransient(response.error))
         query2xmlCache.put(queryStr, response.error != null ? response.error.toString() : response.xml);
     }
     return response;
   }
 
+  private static boolean isTransient(ErrorValue error) {
+    return ErrorValue.timeout.equals(error) || ErrorValue.server408.equals(error) || ErrorValue.server500.equals(error);
+  }
+
   public static NodeList extractResultsFromXml(ServerResponse response) {
     return extractResultsFromXml(response.xml);
   }
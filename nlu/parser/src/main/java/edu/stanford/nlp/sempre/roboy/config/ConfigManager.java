@@ -33,13 +33,32 @@ public class ConfigManager {
     public static String DB_TYPES_FILE = "src/main/java/edu/stanford/nlp/sempre/roboy/data/database_names.json";
     public static String FOLLOW_FILE = "src/main/java/edu/stanford/nlp/sempre/roboy/data/follow_up_patterns.json";
     public static String RPQA_TRAINING_EXAMPLES = "resources_nlu/rpqa/dummy.examples";
+    public static String PARAMS_SNAPSHOT_FILE = "resources_nlu/roboy-parser.params";
+    public static String SPARQL_CACHE = "resources_nlu/sparql.cache";
 
     // Flags
     public static int DEBUG = 1;
 
     // Other parameters
     public static double W2V_THRES = 0.3;
+    public static String W2V_INDEX = "lsh";
+    public static int W2V_TOP_K = 20;
+    public static int W2V_LSH_TABLES = 16;
+    public static int W2V_LSH_BITS = 10;
     public static int CONTEXT_DEPTH = 3;
+    public static int ERROR_RETRIEVAL_THREADS = 4;
+    public static int ERROR_RETRIEVAL_QUEUE = 32;
+    public static int ERROR_RETRIEVAL_TIMEOUT = 3000;
+    public static int ERROR_RETRIEVAL_CACHE_TTL = 3600;
+    public static int ERROR_RETRIEVAL_CACHE_SIZE = 10000;
+    public static int HTTP_TIMEOUT = 5000;
+    public static int PARSER_EXECUTION_THREADS = 8;
+    public static int PARSER_EXECUTION_QUEUE = 512;
+    public static int PARSER_EXECUTION_TIMEOUT = 5000;
+    public static int PARSER_EXECUTION_TOP_K = 1;
+    public static int SPARQL_CACHE_SIZE = 100000;
+    public static int SPARQL_CACHE_TTL = 2592000;
+    public static int SPARQL_CACHE_MB = 512;
     public static double FOLLOW_THRES = 0.3;
     public static double LEXICON_THRES = 0.3;
     public static boolean WORD2VEC_GOOGLE = false;
@@ -97,12 +116,31 @@ public class ConfigManager {
             SCHEMA_FILE          = yamlConfig.getString("SCHEMA_FILE");
             FOLLOW_FILE          = yamlConfig.getString("FOLLOW_FILE");
             RPQA_TRAINING_EXAMPLES = yamlConfig.getString("RPQA_TRAINING_EXAMPLES");
+            PARAMS_SNAPSHOT_FILE = yamlConfig.getString("PARAMS_SNAPSHOT_FILE", PARAMS_SNAPSHOT_FILE);
+            SPARQL_CACHE         = yamlConfig.getString("SPARQL_CACHE", SPARQL_CACHE);
 
             DEBUG           = yamlConfig.getInt("DEBUG");
 
             WORD2VEC_GOOGLE       = yamlConfig.getBoolean("WORD2VEC_GOOGLE");
             W2V_THRES       = yamlConfig.getDouble("W2V_THRES");
+            W2V_INDEX       = yamlConfig.getString("W2V_INDEX", W2V_INDEX);
+            W2V_TOP_K       = yamlConfig.getInt("W2V_TOP_K", W2V_TOP_K);
+            W2V_LSH_TABLES  = yamlConfig.getInt("W2V_LSH_TABLES", W2V_LSH_TABLES);
+            W2V_LSH_BITS    = yamlConfig.getInt("W2V_LSH_BITS", W2V_LSH_BITS);
             CONTEXT_DEPTH     = yamlConfig.getInt("CONTEXT_DEPTH");
+            ERROR_RETRIEVAL_THREADS    = yamlConfig.getInt("ERROR_RETRIEVAL_THREADS", ERROR_RETRIEVAL_THREADS);
+            ERROR_RETRIEVAL_QUEUE      = yamlConfig.getInt("ERROR_RETRIEVAL_QUEUE", ERROR_RETRIEVAL_QUEUE);
+            ERROR_RETRIEVAL_TIMEOUT    = yamlConfig.getInt("ERROR_RETRIEVAL_TIMEOUT", ERROR_RETRIEVAL_TIMEOUT);
+            ERROR_RETRIEVAL_CACHE_TTL  = yamlConfig.getInt("ERROR_RETRIEVAL_CACHE_TTL", ERROR_RETRIEVAL_CACHE_TTL);
+            ERROR_RETRIEVAL_CACHE_SIZE = yamlConfig.getInt("ERROR_RETRIEVAL_CACHE_SIZE", ERROR_RETRIEVAL_CACHE_SIZE);
+            HTTP_TIMEOUT      = yamlConfig.getInt("HTTP_TIMEOUT", HTTP_TIMEOUT);
+            PARSER_EXECUTION_THREADS = yamlConfig.getInt("PARSER_EXECUTION_THREADS", PARSER_EXECUTION_THREADS);
+            PARSER_EXECUTION_QUEUE   = yamlConfig.getInt("PARSER_EXECUTION_QUEUE", PARSER_EXECUTION_QUEUE);
+            PARSER_EXECUTION_TIMEOUT = yamlConfig.getInt("PARSER_EXECUTION_TIMEOUT", PARSER_EXECUTION_TIMEOUT);
+            PARSER_EXECUTION_TOP_K   = yamlConfig.getInt("PARSER_EXECUTION_TOP_K", PARSER_EXECUTION_TOP_K);
+            SPARQL_CACHE_SIZE = yamlConfig.getInt("SPARQL_CACHE_SIZE", SPARQL_CACHE_SIZE);
+            SPARQL_CACHE_TTL  = yamlConfig.getInt("SPARQL_CACHE_TTL", SPARQL_CACHE_TTL);
+            SPARQL_CACHE_MB   = yamlConfig.getInt("SPARQL_CACHE_MB", SPARQL_CACHE_MB);
 
             DB_KEYWORDS     = yamlConfig.getStringArray("DB_KEYWORDS");
             MCG_KEYWORDS    = yamlConfig.getStringArray("MCG_KEYWORDS");
@@ -3,6 +3,7 @@ package edu.stanford.nlp.sempre.roboy.error;
 import edu.stanford.nlp.sempre.SimpleLexicon;
 import edu.stanford.nlp.sempre.roboy.UnderspecifiedInfo;
 import edu.stanford.nlp.sempre.roboy.config.ConfigManager;
+import edu.stanford.nlp.sempre.roboy.lexicons.word2vec.PhraseIndex;
 import edu.stanford.nlp.sempre.roboy.lexicons.word2vec.Word2vec;
 
 import java.io.PrintWriter;
@@ -29,6 +30,9 @@ public class Word2VecRetriever extends KnowledgeRetriever {
     public Word2VecRetriever(Word2vec vec){
         this.vec = vec;
         out = IOUtils.openOutAppendHard("./resources_nlu/error_test/w2vLexicon.txt");
+        // Index the lexicon once the word vectors are loaded instead of on the first lookup
+        SimpleLexicon lexicon = SimpleLexicon.getSingleton();
+        this.vec.indexWhenLoaded(lexicon.lookup_type(null), lexicon::getVersion);
     }
 
     /**
@@ -39,13 +43,13 @@ public class Word2VecRetriever extends KnowledgeRetriever {
     public UnderspecifiedInfo analyze(UnderspecifiedInfo underTerm) {
         String entity = underTerm.term;
         UnderspecifiedInfo result = new UnderspecifiedInfo(entity, underTerm.type);
-        List<String> known_words= new ArrayList<String>(SimpleLexicon.getSingleton().lookup_type(entity));
-        List<String> candidate = this.vec.getBest(entity,known_words);
-        for (String c: candidate){
+        Set<String> known_words = SimpleLexicon.getSingleton().lookup_type(entity);
+        List<PhraseIndex.Neighbour> candidate = this.vec.getNearest(entity, known_words, SimpleLexicon.getSingleton().getVersion());
+        for (PhraseIndex.Neighbour c: candidate){
             Map<String,String> record = new HashMap();
-            record.put("Label",c);
-            record.put("Refcount",Double.toString(this.vec.getSimilarity(entity,c)));
-            List<SimpleLexicon.Entry> entries = SimpleLexicon.getSingleton().lookup(c);
+            record.put("Label",c.phrase);
+            record.put("Refcount",Double.toString(c.similarity));
+            List<SimpleLexicon.Entry> entries = SimpleLexicon.getSingleton().lookup(c.phrase);
             for (SimpleLexicon.Entry entry:entries) {
                 record.put("URI",entry.formula.toString());
                 result.candidates.add(entry.formula.toString());
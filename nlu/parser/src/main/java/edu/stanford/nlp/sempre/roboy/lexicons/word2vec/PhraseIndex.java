@@ -0,0 +1,221 @@
+package edu.stanford.nlp.sempre.roboy.lexicons.word2vec;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Vector index over lexicon phrases for nearest-neighbour lookups with Word2Vec.
+ *
+ * Phrase vectors are normalized and kept in one row-major float matrix, so the
+ * cosine similarity is a plain dot product. Approximate queries use random hyperplane
+ * LSH: every table hashes a vector to the signs of its projections on a few hyperplanes,
+ * candidates are the phrases in the query bucket and in the buckets one bit away,
+ * and only those are scored exactly. Exact queries scan the whole matrix and serve as
+ * reference for the recall of the approximate ones.
+ */
+public class PhraseIndex {
+
+    /**
+     * Phrase found by a query, together with its cosine similarity to the query.
+     */
+    public static class Neighbour {
+        public final String phrase;
+        public final double similarity;
+
+        public Neighbour(String phrase, double similarity) {
+            this.phrase = phrase;
+            this.similarity = similarity;
+        }
+
+        @Override
+        public String toString() {
+            return phrase + ":" + similarity;
+        }
+    }
+
+    private final String[] phrases;           /**< Indexed phrases, row i of matrix belongs to phrases[i] */
+    private final float[] matrix;             /**< Normalized phrase vectors, row-major */
+    private final int dimension;              /**< Vector dimension */
+    private final int bits;                   /**< Hyperplanes per table */
+    private final float[][] hyperplanes;      /**< Per table bits x dimension hyperplanes, row-major */
+    private final List<Map<Integer, int[]>> tables = new ArrayList<>();  /**< Per table signature to rows */
+
+    /**
+     * Builds the index. Phrases without a vector are left out.
+     *
+     * @param phrases    phrases to index
+     * @param vectors    vector lookup, returns null for unknown phrases
+     * @param numTables  number of LSH tables, more tables increase recall and query time
+     * @param bits       hyperplanes per table (at most 30), more bits make buckets smaller
+     * @param seed       seed for the random hyperplanes
+     */
+    public PhraseIndex(Collection<String> phrases, Function<String, double[]> vectors,
+                       int numTables, int bits, long seed) {
+        if (bits < 1 || bits > 30)
+            throw new IllegalArgumentException("Number of LSH bits must be between 1 and 30: " + bits);
+
+        List<String> known = new ArrayList<>();
+        List<double[]> rows = new ArrayList<>();
+        for (String phrase : phrases) {
+            double[] vector = vectors.apply(phrase);
+            if (vector != null && norm(vector) > 0) {
+                known.add(phrase);
+                rows.add(vector);
+            }
+        }
+        this.phrases = known.toArray(new String[0]);
+        this.dimension = rows.isEmpty() ? 0 : rows.get(0).length;
+        this.bits = bits;
+        this.matrix = new float[this.phrases.length * dimension];
+        for (int i = 0; i < rows.size(); i++)
+            normalize(rows.get(i), matrix, i * dimension);
+
+        Random random = new Random(seed);
+        this.hyperplanes = new float[numTables][bits * dimension];
+        for (int t = 0; t < numTables; t++) {
+            for (int j = 0; j < hyperplanes[t].length; j++)
+                hyperplanes[t][j] = (float) random.nextGaussian();
+
+            Map<Integer, List<Integer>> buckets = new HashMap<>();
+            for (int i = 0; i < this.phrases.length; i++)
+                buckets.computeIfAbsent(signature(t, matrix, i * dimension), k -> new ArrayList<>()).add(i);
+            Map<Integer, int[]> table = new HashMap<>();
+            for (Map.Entry<Integer, List<Integer>> bucket : buckets.entrySet())
+                table.put(bucket.getKey(), bucket.getValue().stream().mapToInt(Integer::intValue).toArray());
+            tables.add(table);
+        }
+    }
+
+    public int size() {
+        return phrases.length;
+    }
+
+    /**
+     * Approximate top-k query.
+     *
+     * @param query      query vector, may be null
+     * @param threshold  only phrases with a similarity above the threshold are returned
+     * @param k          maximal number of results
+     * @return neighbours ordered by decreasing similarity
+     */
+    public List<Neighbour> nearest(double[] query, double threshold, int k) {
+        float[] q = normalizedQuery(query);
+        if (q == null)
+            return new ArrayList<>();
+
+        TopK top = new TopK(k);
+        BitSet seen = new BitSet(phrases.length);
+        for (int t = 0; t < tables.size(); t++) {
+            int signature = signature(t, q, 0);
+            score(tables.get(t).get(signature), q, threshold, seen, top);
+            // Multi-probe the buckets one hyperplane away
+            for (int b = 0; b < bits; b++)
+                score(tables.get(t).get(signature ^ (1 << b)), q, threshold, seen, top);
+        }
+        return top.sorted();
+    }
+
+    /**
+     * Exact top-k query, scanning all phrases.
+     *
+     * @param query      query vector, may be null
+     * @param threshold  only phrases with a similarity above the threshold are returned
+     * @param k          maximal number of results
+     * @return neighbours ordered by decreasing similarity
+     */
+    public List<Neighbour> nearestExact(double[] query, double threshold, int k) {
+        float[] q = normalizedQuery(query);
+        if (q == null)
+            return new ArrayList<>();
+
+        TopK top = new TopK(k);
+        for (int i = 0; i < phrases.length; i++) {
+            double similarity = dot(q, i * dimension);
+            if (similarity > threshold)
+                top.offer(i, similarity);
+        }
+        return top.sorted();
+    }
+
+    private void score(int[] rows, float[] q, double threshold, BitSet seen, TopK top) {
+        if (rows == null)
+            return;
+        for (int i : rows) {
+            if (seen.get(i))
+                continue;
+            seen.set(i);
+            double similarity = dot(q, i * dimension);
+            if (similarity > threshold)
+                top.offer(i, similarity);
+        }
+    }
+
+    private float[] normalizedQuery(double[] query) {
+        if (query == null || query.length != dimension || norm(query) == 0)
+            return null;
+        float[] q = new float[dimension];
+        normalize(query, q, 0);
+        return q;
+    }
+
+    private int signature(int table, float[] vector, int offset) {
+        float[] planes = hyperplanes[table];
+        int signature = 0;
+        for (int b = 0; b < bits; b++) {
+            double projection = 0;
+            for (int d = 0; d < dimension; d++)
+                projection += planes[b * dimension + d] * vector[offset + d];
+            if (projection >= 0)
+                signature |= 1 << b;
+        }
+        return signature;
+    }
+
+    private double dot(float[] q, int offset) {
+        double sum = 0;
+        for (int d = 0; d < dimension; d++)
+            sum += q[d] * matrix[offset + d];
+        return sum;
+    }
+
+    private static double norm(double[] vector) {
+        double sum = 0;
+        for (double v : vector)
+            sum += v * v;
+        return Math.sqrt(sum);
+    }
+
+    private static void normalize(double[] vector, float[] target, int offset) {
+        double norm = norm(vector);
+        for (int d = 0; d < vector.length; d++)
+            target[offset + d] = (float) (vector[d] / norm);
+    }
+
+    // Bounded min-heap keeping the k most similar rows
+    private class TopK {
+        private final int k;
+        private final PriorityQueue<Neighbour> heap =
+                new PriorityQueue<>(Comparator.comparingDouble((Neighbour n) -> n.similarity));
+
+        TopK(int k) {
+            this.k = k;
+        }
+
+        void offer(int row, double similarity) {
+            if (k <= 0)
+                return;
+            if (heap.size() < k) {
+                heap.add(new Neighbour(phrases[row], similarity));
+            } else if (heap.peek().similarity < similarity) {
+                heap.poll();
+                heap.add(new Neighbour(phrases[row], similarity));
+            }
+        }
+
+        List<Neighbour> sorted() {
+            List<Neighbour> result = new ArrayList<>(heap);
+            result.sort(Comparator.comparingDouble((Neighbour n) -> n.similarity).reversed());
+            return result;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package edu.stanford.nlp.sempre.roboy.lexicons.word2vec;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Read-only word vectors, memory-mapped from a compact binary file.
+ *
+ * The vectors live outside of the Java heap and the pages are shared by all processes
+ * mapping the same file, so opening a store is nearly instant. Lookups work on plain
+ * float arrays and do not allocate.
+ *
+ * File layout, all values big-endian:
+ * <pre>
+ *   int   magic, version, vocabulary size, dimension, hash table size
+ *   long  number of characters of all words
+ *   int[] hash table: row + 1 of the word in each slot, 0 for empty slots (linear probing)
+ *   int[] character offset of each word, followed by the total number of characters
+ *   char[] words, UTF-16
+ *   padding to 8 bytes
+ *   float[] vector norms
+ *   float[] vectors, row-major
+ * </pre>
+ */
+public class VectorStore {
+    public static final int MAGIC = 0x57325653;    // "W2VS"
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 28;
+
+    private final int size;                         /**< Vocabulary size */
+    private final int dimension;                    /**< Vector dimension */
+    private final IntBuffer table;                  /**< Hash table of rows */
+    private final IntBuffer offsets;                /**< Character offsets of the words */
+    private final CharBuffer words;                 /**< Characters of all words */
+    private final FloatBuffer norms;                /**< Norm of each vector */
+    private final FloatBuffer[] chunks;             /**< Vectors, split in mappings below 2GB */
+    private final int rowsPerChunk;                 /**< Rows in each chunk */
+
+    private VectorStore(FileChannel channel) throws IOException {
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION)
+            throw new IOException("Not a word vector store");
+        size = header.getInt();
+        dimension = header.getInt();
+        int tableSize = header.getInt();
+        long characters = header.getLong();
+
+        long vocabularyBytes = 4L * tableSize + 4L * (size + 1) + 2 * characters;
+        long normsOffset = align(HEADER_SIZE + vocabularyBytes);
+        ByteBuffer vocabulary = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, normsOffset + 4L * size - HEADER_SIZE);
+        table = slice(vocabulary, 0, 4 * tableSize).asIntBuffer();
+        offsets = slice(vocabulary, 4 * tableSize, 4 * (size + 1)).asIntBuffer();
+        words = slice(vocabulary, 4 * tableSize + 4 * (size + 1), (int) (2 * characters)).asCharBuffer();
+        norms = slice(vocabulary, (int) (normsOffset - HEADER_SIZE), 4 * size).asFloatBuffer();
+
+        long matrixOffset = normsOffset + 4L * size;
+        rowsPerChunk = Math.max(1, Integer.MAX_VALUE / (4 * Math.max(1, dimension)));
+        chunks = new FloatBuffer[(size + rowsPerChunk - 1) / rowsPerChunk];
+        for (int c = 0; c < chunks.length; c++) {
+            int rows = Math.min(rowsPerChunk, size - c * rowsPerChunk);
+            long offset = matrixOffset + 4L * dimension * c * rowsPerChunk;
+            chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, offset, 4L * dimension * rows).asFloatBuffer();
+        }
+    }
+
+    /**
+     * Maps a store file.
+     *
+     * @param path store file written by {@link #write}
+     * @return opened store
+     * @throws IOException if the file cannot be read or has a wrong format
+     */
+    public static VectorStore open(String path) throws IOException {
+        // The mappings stay valid after the channel is closed
+        try (RandomAccessFile file = new RandomAccessFile(path, "r"); FileChannel channel = file.getChannel()) {
+            return new VectorStore(channel);
+        }
+    }
+
+    /**
+     * Checks whether a file is a store of this version.
+     *
+     * @param path file to check
+     * @return true if the file starts with the store header
+     */
+    public static boolean isStore(String path) {
+        File file = new File(path);
+        if (!file.isFile() || file.length() < HEADER_SIZE)
+            return false;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes a store file.
+     * Other processes may have the file mapped, so the store is written to a temporary file
+     * next to it, forced to disk and then atomically moved in place.
+     *
+     * @param path      file to write
+     * @param vocabulary words to store, words without a vector are left out
+     * @param vectors   vector lookup, returns null for unknown words
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(String path, Collection<String> vocabulary, Function<String, double[]> vectors) throws IOException {
+        List<String> known = new ArrayList<>();
+        List<double[]> rows = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        int dimension = 0;
+        for (String word : vocabulary) {
+            double[] vector = vectors.apply(word);
+            if (vector == null || !seen.add(word))
+                continue;
+            if (rows.isEmpty())
+                dimension = vector.length;
+            else if (vector.length != dimension)
+                throw new IllegalArgumentException("Vector of " + word + " has dimension " + vector.length);
+            known.add(word);
+            rows.add(vector);
+        }
+
+        int tableSize = Integer.highestOneBit(Math.max(2, known.size() * 2) - 1) << 1;
+        int[] table = new int[tableSize];
+        long characters = 0;
+        for (int row = 0; row < known.size(); row++) {
+            int slot = slot(known.get(row), tableSize);
+            while (table[slot] != 0)
+                slot = (slot + 1) & (tableSize - 1);
+            table[slot] = row + 1;
+            characters += known.get(row).length();
+        }
+
+        Path target = Paths.get(path).toAbsolutePath();
+        Path tmp = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(known.size());
+                out.writeInt(dimension);
+                out.writeInt(tableSize);
+                out.writeLong(characters);
+                for (int slot : table)
+                    out.writeInt(slot);
+                int offset = 0;
+                for (String word : known) {
+                    out.writeInt(offset);
+                    offset += word.length();
+                }
+                out.writeInt(offset);
+                for (String word : known)
+                    out.writeChars(word);
+                long written = HEADER_SIZE + 4L * tableSize + 4L * (known.size() + 1) + 2 * characters;
+                for (long i = written; i < align(written); i++)
+                    out.writeByte(0);
+                for (double[] vector : rows) {
+                    double norm = 0;
+                    for (double v : vector)
+                        norm += v * v;
+                    out.writeFloat((float) Math.sqrt(norm));
+                }
+                for (double[] vector : rows)
+                    for (double v : vector)
+                        out.writeFloat((float) v);
+                out.flush();
+                file.getChannel().force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // Left over only if writing failed
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * @param word word to look up
+     * @return row of the word, -1 if it is unknown
+     */
+    public int row(String word) {
+        if (word == null || size == 0)
+            return -1;
+        int mask = table.capacity() - 1;
+        for (int slot = slot(word, table.capacity()); ; slot = (slot + 1) & mask) {
+            int row = table.get(slot) - 1;
+            if (row < 0)
+                return -1;
+            if (wordEquals(row, word))
+                return row;
+        }
+    }
+
+    public boolean hasWord(String word) {
+        return row(word) >= 0;
+    }
+
+    /**
+     * @param row row of a word
+     * @return the word stored in this row
+     */
+    public String word(int row) {
+        int start = offsets.get(row);
+        int end = offsets.get(row + 1);
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++)
+            chars[i - start] = words.get(i);
+        return new String(chars);
+    }
+
+    /**
+     * Copies the vector of a word.
+     *
+     * @param word word to look up
+     * @param out  array of length dimension receiving the vector
+     * @return false if the word is unknown, out is then unchanged
+     */
+    public boolean vector(String word, float[] out) {
+        int row = row(word);
+        if (row < 0)
+            return false;
+        FloatBuffer chunk = chunks[row / rowsPerChunk];
+        int offset = (row % rowsPerChunk) * dimension;
+        for (int d = 0; d < dimension; d++)
+            out[d] = chunk.get(offset + d);
+        return true;
+    }
+
+    /**
+     * @param word word to look up
+     * @return a copy of the vector of the word, null if it is unknown
+     */
+    public double[] getWordVector(String word) {
+        int row = row(word);
+        if (row < 0)
+            return null;
+        FloatBuffer chunk = chunks[row / rowsPerChunk];
+        int offset = (row % rowsPerChunk) * dimension;
+        double[] vector = new double[dimension];
+        for (int d = 0; d < dimension; d++)
+            vector[d] = chunk.get(offset + d);
+        return vector;
+    }
+
+    /**
+     * Averages the vectors of the known words.
+     *
+     * @param words words to average
+     * @param out   array of length dimension receiving the mean
+     * @return number of known words, out is all zeros if there are none
+     */
+    public int mean(Iterable<String> words, float[] out) {
+        Arrays.fill(out, 0, dimension, 0f);
+        int count = 0;
+        for (String word : words) {
+            int row = row(word);
+            if (row < 0)
+                continue;
+            FloatBuffer chunk = chunks[row / rowsPerChunk];
+            int offset = (row % rowsPerChunk) * dimension;
+            for (int d = 0; d < dimension; d++)
+                out[d] += chunk.get(offset + d);
+            count++;
+        }
+        if (count > 1)
+            for (int d = 0; d < dimension; d++)
+                out[d] /= count;
+        return count;
+    }
+
+    /**
+     * Cosine similarity of two words.
+     *
+     * @return similarity, NaN if one of the words is unknown
+     */
+    public double similarity(String first, String second) {
+        int a = row(first);
+        int b = row(second);
+        if (a < 0 || b < 0)
+            return Double.NaN;
+        return dot(a, b) / (norms.get(a) * norms.get(b));
+    }
+
+    /**
+     * Words closest to a word by cosine similarity, scanning the whole vocabulary.
+     *
+     * @param word   word to look up
+     * @param number number of words to return
+     * @return closest words other than the word itself, most similar first
+     */
+    public List<String> nearest(String word, int number) {
+        int query = row(word);
+        if (query < 0 || number <= 0)
+            return new ArrayList<>();
+        PriorityQueue<double[]> heap = new PriorityQueue<>(Comparator.comparingDouble((double[] e) -> e[1]));
+        for (int row = 0; row < size; row++) {
+            if (row == query)
+                continue;
+            double similarity = dot(query, row) / (norms.get(query) * norms.get(row));
+            if (heap.size() < number) {
+                heap.add(new double[] {row, similarity});
+            } else if (heap.peek()[1] < similarity) {
+                heap.poll();
+                heap.add(new double[] {row, similarity});
+            }
+        }
+        List<double[]> best = new ArrayList<>(heap);
+        best.sort(Comparator.comparingDouble((double[] e) -> e[1]).reversed());
+        List<String> result = new ArrayList<>();
+        for (double[] entry : best)
+            result.add(word((int) entry[0]));
+        return result;
+    }
+
+    /**
+     * Cosine similarity of two vectors of the same length.
+     *
+     * @return similarity, NaN if one of the vectors is zero
+     */
+    public static double cosine(float[] a, float[] b) {
+        double dot = 0, normA = 0, normB = 0;
+        for (int d = 0; d < a.length; d++) {
+            dot += a[d] * b[d];
+            normA += a[d] * a[d];
+            normB += b[d] * b[d];
+        }
+        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    private double dot(int a, int b) {
+        FloatBuffer chunkA = chunks[a / rowsPerChunk];
+        FloatBuffer chunkB = chunks[b / rowsPerChunk];
+        int offsetA = (a % rowsPerChunk) * dimension;
+        int offsetB = (b % rowsPerChunk) * dimension;
+        double sum = 0;
+        for (int d = 0; d < dimension; d++)
+            sum += chunkA.get(offsetA + d) * chunkB.get(offsetB + d);
+        return sum;
+    }
+
+    private boolean wordEquals(int row, String word) {
+        int start = offsets.get(row);
+        if (offsets.get(row + 1) - start != word.length())
+            return false;
+        for (int i = 0; i < word.length(); i++)
+            if (words.get(start + i) != word.charAt(i))
+                return false;
+        return true;
+    }
+
+    private static int slot(String word, int tableSize) {
+        int hash = word.hashCode();
+        hash ^= (hash >>> 16);
+        return hash & (tableSize - 1);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.limit(offset + length);
+        return duplicate.slice();
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+}
@@ -2,107 +2,250 @@ package edu.stanford.nlp.sempre.roboy.lexicons.word2vec;
 
 import edu.stanford.nlp.sempre.roboy.config.ConfigManager;
 import edu.stanford.nlp.sempre.roboy.utils.logging.LogInfoToggle;
-import org.deeplearning4j.models.embeddings.WeightLookupTable;
 import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
 import org.deeplearning4j.models.word2vec.Word2Vec;
-import org.nd4j.linalg.api.ndarray.INDArray;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntSupplier;
 
 
 /**
  * Neural net that processes text into word-vectors.
  *
+ * The trained model is converted once into a {@link VectorStore} next to the model file
+ * (same name, extension .vectors), which is memory-mapped on every later start.
+ * Loading happens in the background, see {@link #getInstance()}.
+ *
  * Adapted from org.deeplearning4j.examples.nlp.word2vec.Word2VecRawTextExample
  */
 public class Word2vec {
-    private final ToyDataGetter dataGetter;
-    private String modelPath;
-    private final Word2Vec vec;
-    private final WeightLookupTable weightLookupTable;
-    private final Iterator<INDArray> vectors;
+    private volatile VectorStore vec;
+    private final CompletableFuture<VectorStore> loading = new CompletableFuture<>();
     private double threshold;
-    private static Word2vec globalInstance;
+    private static volatile Word2vec globalInstance;
+    private PhraseIndex phraseIndex;
+    private Collection<String> indexedPhrases = null;
+    private int indexedVersion = -1;
 
 
+    /**
+     * Returns the shared instance. The first call starts loading the word vectors in the background.
+     * Until they are loaded, the instance works in degraded mode: there are no vectors,
+     * similarities are NaN and no candidates are found.
+     *
+     * @return shared instance
+     */
     public static Word2vec getInstance(){
-        if(globalInstance == null){
-            try {
-                globalInstance = new Word2vec();
-            } catch (Exception e) {
-                e.printStackTrace();
+        Word2vec instance = globalInstance;
+        if(instance == null){
+            synchronized (Word2vec.class) {
+                instance = globalInstance;
+                if (instance == null) {
+                    instance = new Word2vec();
+                    instance.startLoading();
+                    globalInstance = instance;
+                }
             }
         }
 
-        return globalInstance;
+        return instance;
+    }
+
+    /**
+     * Starts loading the word vectors in the background, unless this already happened.
+     */
+    public static void warmUp(){
+        getInstance();
+    }
+
+    /**
+     * @return true once the word vectors are loaded
+     */
+    public boolean isReady(){
+        return this.vec != null;
     }
 
-    public Word2Vec getModel(){
+    /**
+     * @return the word vectors, null while they are loading or if loading failed
+     */
+    public VectorStore getModel(){
         return this.vec;
     }
 
-    private Word2vec() throws Exception {
+    /**
+     * Waits until the word vectors are loaded.
+     *
+     * @return the word vectors, null if loading failed
+     */
+    public VectorStore awaitModel(){
+        try {
+            return loading.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private Word2vec() {
         threshold = ConfigManager.W2V_THRES;
+    }
 
+    private void startLoading() {
+        Thread loader = new Thread(() -> {
+            try {
+                this.vec = load();
+                LogInfoToggle.logs("Word2Vec loaded %d word vectors", this.vec.size());
+                loading.complete(this.vec);
+            } catch (Exception e) {
+                LogInfoToggle.errors("Exception in Word2Vec: %s", e.getMessage());
+                loading.completeExceptionally(e);
+            }
+        }, "word2vec-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private static VectorStore load() throws Exception {
         // Get all files paths
-        // LogInfoToggle.logs("Loading files...");
-        this.dataGetter = new ToyDataGetter(false);
-        // LogInfoToggle.logs("Loading files...");
-        this.dataGetter.ensureToyModelIsPresent();
-        // LogInfoToggle.logs("Loading files...");
-        this.modelPath = this.dataGetter.getToyModelFilePath();
+        ToyDataGetter dataGetter = new ToyDataGetter(false);
+        dataGetter.ensureToyModelIsPresent();
+        String modelPath = dataGetter.getToyModelFilePath();
 
         // Load model
-        // LogInfoToggle.logs("Loading models...");
-        File gModel = new File(modelPath);
-        this.vec = WordVectorSerializer.readWord2VecModel(gModel);
-
-        // Weight tables
-        // LogInfoToggle.logs("Weight tables...");
-        this.weightLookupTable = this.vec.lookupTable();
-        this.vectors = weightLookupTable.vectors();
-
-        LogInfoToggle.begin_track("Tests -> ");
-        LogInfoToggle.logs("Closest words: %s", this.getClosest("queen",10));
-        LogInfoToggle.logs("Closest word to female from : \"women\",\"queen\",\"elisabeth\" -> %s", this.getBest("female", Arrays.asList("women","queen","elisabeth")));
-        LogInfoToggle.logs("Closest word to swimming from : \"literature\",\"activity\",\"sports\" -> : %s",this.getBest("swimming", Arrays.asList("literature","activity","sports")));
-        LogInfoToggle.end_track();
+        String storePath = storePath(modelPath);
+        File store = new File(storePath);
+        if (!VectorStore.isStore(storePath) || store.lastModified() < new File(modelPath).lastModified())
+            convert(modelPath, storePath);
+        return VectorStore.open(storePath);
     }
 
     public void setThreshold(double t){
         threshold = t;
     }
 
+    /**
+     * Store file belonging to a model file.
+     *
+     * @param modelPath path of the DL4J or Google model
+     * @return path of the vector store
+     */
+    public static String storePath(String modelPath){
+        return modelPath.replaceFirst("(\\.txt|\\.bin|\\.bin\\.gz)$", "") + ".vectors";
+    }
+
+    /**
+     * Converts a model readable by DL4J into a vector store.
+     * The store is replaced atomically, so processes still mapping the old one are not affected.
+     *
+     * @param modelPath path of the DL4J or Google model
+     * @param storePath path of the store to write
+     * @throws IOException if the store cannot be written
+     */
+    public static void convert(String modelPath, String storePath) throws IOException {
+        LogInfoToggle.begin_track("Converting %s to %s", modelPath, storePath);
+        Word2Vec model = WordVectorSerializer.readWord2VecModel(new File(modelPath));
+        VectorStore.write(storePath, model.vocab().words(), model::getWordVector);
+        LogInfoToggle.end_track();
+    }
+
     public Collection<String> getClosest(String word, int number){
-        return this.vec.wordsNearest(word, number);
+        VectorStore vec = this.vec;
+        if (vec == null)
+            return new ArrayList<>();
+        return vec.nearest(word, number);
     }
 
     public double getSimilarity(String arg1, String arg2){
-        return this.vec.similarity(arg1, arg2);
+        VectorStore vec = this.vec;
+        if (vec == null)
+            return Double.NaN;
+        return vec.similarity(arg1, arg2);
     }
 
     public List<String> getBest(String arg1, List<String> list_words){
         List<String> best = new ArrayList<String>();
+        VectorStore vec = this.vec;
+        if (vec == null)
+            return best;
         for (String word: list_words){
-            if (threshold < this.vec.similarity(arg1, word)){
+            if (threshold < vec.similarity(arg1, word)){
                 best.add(word);
             }
         }
         return best;
     }
 
-    public INDArray getMatrix(String word){
-        return this.vec.getWordVectorMatrix(word);
+    /**
+     * Finds the phrases most similar to a word, above the threshold.
+     * Uses the approximate phrase index unless W2V_INDEX is set to "exact".
+     *
+     * @param word    word to look up
+     * @param phrases phrases to choose from, usually the lexicon keys
+     * @param version version of the phrases, changing whenever they are modified
+     * @return at most W2V_TOP_K phrases ordered by decreasing similarity, none while loading
+     */
+    public List<PhraseIndex.Neighbour> getNearest(String word, Collection<String> phrases, int version){
+        PhraseIndex index = getIndex(phrases, version);
+        if (index == null)
+            return new ArrayList<>();
+        double[] query = this.vec.getWordVector(word);
+        if ("exact".equals(ConfigManager.W2V_INDEX))
+            return index.nearestExact(query, threshold, ConfigManager.W2V_TOP_K);
+        return index.nearest(query, threshold, ConfigManager.W2V_TOP_K);
+    }
+
+    /**
+     * Builds the index over the given phrases in the background as soon as the word vectors are loaded,
+     * so that the first lookup does not wait for it.
+     *
+     * @param phrases phrases to index, usually the lexicon keys
+     * @param version current version of the phrases
+     */
+    public void indexWhenLoaded(Collection<String> phrases, IntSupplier version){
+        loading.thenRunAsync(() -> getIndex(phrases, version.getAsInt()));
+    }
+
+    /**
+     * Returns the index over the given phrases, built on first use.
+     * It is rebuilt for other phrases, or when their version changes, e.g. after the lexicon was extended.
+     *
+     * @param phrases phrases to index
+     * @param version version of the phrases, changing whenever they are modified
+     * @return phrase index, null while the word vectors are loading
+     */
+    public synchronized PhraseIndex getIndex(Collection<String> phrases, int version){
+        VectorStore vec = this.vec;
+        if (vec == null)
+            return null;
+        if (phraseIndex == null || indexedPhrases != phrases || indexedVersion != version) {
+            LogInfoToggle.begin_track("Building Word2Vec index over %d phrases", phrases.size());
+            phraseIndex = new PhraseIndex(phrases, vec::getWordVector,
+                    ConfigManager.W2V_LSH_TABLES, ConfigManager.W2V_LSH_BITS, 1);
+            indexedPhrases = phrases;
+            indexedVersion = version;
+            LogInfoToggle.logs("Indexed %d phrases with word vectors", phraseIndex.size());
+            LogInfoToggle.end_track();
+        }
+        return phraseIndex;
     }
 
     public double[] getWordVector(String word){
-        return this.vec.getWordVector(word);
+        VectorStore vec = this.vec;
+        if (vec == null)
+            return null;
+        return vec.getWordVector(word);
     }
 
     public static void main(String[] args) throws Exception {
         try{
-            Word2vec vec = new Word2vec();
+            Word2vec vec = Word2vec.getInstance();
+            vec.awaitModel();
             if (ConfigManager.DEBUG > 3) {
                 LogInfoToggle.logs("Tests -> ");
                 vec.setThreshold(0);
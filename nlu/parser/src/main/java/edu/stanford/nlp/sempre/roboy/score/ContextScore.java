@@ -1,9 +1,9 @@
 package edu.stanford.nlp.sempre.roboy.score;
 
-import com.google.gson.Gson;
 import edu.stanford.nlp.sempre.ContextValue;
-import edu.stanford.nlp.sempre.roboy.UnderspecifiedInfo;
+import edu.stanford.nlp.sempre.roboy.CandidateTable;
 import edu.stanford.nlp.sempre.roboy.config.ConfigManager;
+import edu.stanford.nlp.sempre.roboy.lexicons.word2vec.VectorStore;
 import edu.stanford.nlp.sempre.roboy.lexicons.word2vec.Word2vec;
 import edu.stanford.nlp.sempre.roboy.utils.logging.LogInfoToggle;
 
@@ -16,7 +16,6 @@ import java.util.*;
  */
 public class ContextScore extends ScoringFunction {
     public static Properties prop = new Properties();       /**< Read properties */
-    public static Gson gson = new Gson();                   /**< Gson object */
 
     private double weight;                                  /**< Weight of the score in general score*/
     private final Word2vec vec;                             /**< Word2Vec handler */
@@ -39,45 +38,33 @@ public class ContextScore extends ScoringFunction {
 
     /**
      * Scoring function.
-     * Takes UnderspecifiedInfo as well as ContextValue objects and calculates score of each
+     * Takes CandidateTable as well as ContextValue objects and calculates score of each
      * candidate for unknown terms.
      */
-    public UnderspecifiedInfo score(UnderspecifiedInfo info, ContextValue context){
-        UnderspecifiedInfo result = new UnderspecifiedInfo(info.term, info.type);
-        result.candidates = info.candidates;
-        result.candidatesInfo = info.candidatesInfo;
+    public double[] score(CandidateTable table, ContextValue context){
+        double[] result = new double[table.size()];
+        int depth = Math.min(context.exchanges.size(),this.depth);
+        // Without the model or any history no candidate fits the context
+        VectorStore store = this.vec.getModel();
+        if (store == null || depth == 0)
+            return result;
+        // Every step of the analysis looks at the keywords of the latest exchange
+        List<float[][]> keywords = new ArrayList<>();
+        for (String keyword: context.exchanges.get(context.exchanges.size() - 1).genInfo.getKeywords())
+            keywords.add(CandidateTable.lookup(store, keyword.split(" ")));
+        float[][][] tokensCand = table.getVectors(store);
         // Check for all candidates for checked unknown term
-        for (String canString: info.candidatesInfo){
-            Map<String, String> candidate = new HashMap<>();
-            candidate = this.gson.fromJson(canString, candidate.getClass());
+        for (int i = 0; i < result.length; i++){
             // Check similarity
-            int depth = Math.min(context.exchanges.size(),this.depth);
-            double score = 0, help, max, max2, max3;
-            String[] tokensTerm = candidate.get("Label").split(" ");
-            for (int i = 0; i < depth; i++) {
-                max3 = 0;
-                for (String keyword: context.exchanges.get(context.exchanges.size() - 1).genInfo.keywords) {
-                    String[] tokensCand = keyword.split(" ");
-                    max2 = 0;
-                    for (String tokenTerm : tokensCand) {
-                        max = 0;
-                        for (String tokenCand : tokensTerm) {
-                            help = this.vec.getSimilarity(tokenTerm, tokenCand);
-                            if (help > max) {
-                                max = help;
-                            }
-                        }
-                        max2 = max + max2;
-                    }
-                    max3 = max2 + max3;
-                }
-                score = score + max3;
-            }
+            double score = 0;
+            for (float[][] keyword: keywords)
+                score = score + CandidateTable.match(keyword, tokensCand[i]);
+            score = score * depth;
             if (Double.isNaN(score))
                 score = 0.0;
             if (ConfigManager.DEBUG > 4)
-                LogInfoToggle.logs("Context: %s -> %f", candidate.get("URI"), score);
-            result.candidatesScores.add(score*this.weight);
+                LogInfoToggle.logs("Context: %s -> %f", table.uris[i], score);
+            result[i] = score*this.weight;
         }
         return result;
     }
@@ -1,22 +1,17 @@
 package edu.stanford.nlp.sempre.roboy.score;
 
-import com.google.gson.Gson;
 import edu.stanford.nlp.sempre.ContextValue;
-import edu.stanford.nlp.sempre.roboy.UnderspecifiedInfo;
+import edu.stanford.nlp.sempre.roboy.CandidateTable;
 import edu.stanford.nlp.sempre.roboy.config.ConfigManager;
 import edu.stanford.nlp.sempre.roboy.lexicons.word2vec.Word2vec;
 import edu.stanford.nlp.sempre.roboy.utils.logging.LogInfoToggle;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * ProbabilityScore creates a score based on its probability among other candidates of the same group
  *
  * @author emlozin
  */
 public class ProbabilityScore extends ScoringFunction {
-    public static Gson gson = new Gson();               /**< Gson object */
 
     private double weight;                                  /**< Weight of the score in general score*/
 
@@ -35,21 +30,16 @@ public class ProbabilityScore extends ScoringFunction {
 
     /**
      * Scoring function.
-     * Takes UnderspecifiedInfo as well as ContextValue objects and calculates score of each
+     * Takes CandidateTable as well as ContextValue objects and calculates score of each
      * candidate for unknown terms.
      */
-    public UnderspecifiedInfo score(UnderspecifiedInfo info, ContextValue context){
-        UnderspecifiedInfo result = new UnderspecifiedInfo(info.term, info.type);
-        result.candidates = info.candidates;
-        result.candidatesInfo = info.candidatesInfo;
+    public double[] score(CandidateTable table, ContextValue context){
+        double[] result = new double[table.size()];
         // Check for all candidates for checked unknown term
-        for (String canString: info.candidatesInfo){
-            Map<String, String> candidate = new HashMap<>();
-            candidate = this.gson.fromJson(canString, candidate.getClass());
-            // Check similarity
+        for (int i = 0; i < result.length; i++){
             if (ConfigManager.DEBUG > 4)
-                LogInfoToggle.logs("Probability: %s -> %s", candidate.get("URI"), Double.valueOf(candidate.get("Refcount")));
-            result.candidatesScores.add(Double.valueOf(candidate.get("Refcount"))*this.weight);
+                LogInfoToggle.logs("Probability: %s -> %s", table.uris[i], table.refcounts[i]);
+            result[i] = table.refcounts[i]*this.weight;
         }
         return result;
     }
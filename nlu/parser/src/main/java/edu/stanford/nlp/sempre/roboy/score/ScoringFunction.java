@@ -1,7 +1,7 @@
 package edu.stanford.nlp.sempre.roboy.score;
 
 import edu.stanford.nlp.sempre.ContextValue;
-import edu.stanford.nlp.sempre.roboy.UnderspecifiedInfo;
+import edu.stanford.nlp.sempre.roboy.CandidateTable;
 
 /**
  * ScoringFunction takes a list of candidates for unknown terms and scores it to
@@ -12,8 +12,9 @@ import edu.stanford.nlp.sempre.roboy.UnderspecifiedInfo;
 public abstract class ScoringFunction {
     /**
      * Scoring function.
-     * Takes UnderspecifiedInfo as well as ContextValue objects and calculates score of each
+     * Takes CandidateTable as well as ContextValue objects and calculates score of each
      * candidate for unknown terms.
+     * @return Weighted score of each candidate, in the order of the table
      */
-    public abstract UnderspecifiedInfo score(UnderspecifiedInfo info, ContextValue context);
+    public abstract double[] score(CandidateTable table, ContextValue context);
 }
@@ -1,25 +1,17 @@
 package edu.stanford.nlp.sempre.roboy.score;
 
-import com.google.gson.Gson;
 import edu.stanford.nlp.sempre.ContextValue;
-import edu.stanford.nlp.sempre.roboy.UnderspecifiedInfo;
+import edu.stanford.nlp.sempre.roboy.CandidateTable;
 import edu.stanford.nlp.sempre.roboy.config.ConfigManager;
 import edu.stanford.nlp.sempre.roboy.lexicons.word2vec.Word2vec;
 import edu.stanford.nlp.sempre.roboy.utils.logging.LogInfoToggle;
 
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 /**
  * Word2VecScore creates a score based on word2vec similarity between labels
  *
  * @author emlozin
  */
 public class SimilarityScore extends ScoringFunction {
-    public static Gson gson = new Gson();               /**< Gson object */
-
     private double weight;                              /**< Weight of the score in general score*/
 
     /**
@@ -37,25 +29,24 @@ public class SimilarityScore extends ScoringFunction {
 
     /**
      * Scoring function.
-     * Takes UnderspecifiedInfo as well as ContextValue objects and calculates score of each
+     * Takes CandidateTable as well as ContextValue objects and calculates score of each
      * candidate for unknown terms.
      */
-    public UnderspecifiedInfo score(UnderspecifiedInfo info, ContextValue context){
-        UnderspecifiedInfo result = new UnderspecifiedInfo(info.term, info.type);
-        result.candidates = info.candidates;
-        result.candidatesInfo = info.candidatesInfo;
+    public double[] score(CandidateTable table, ContextValue context){
+        double[] result = new double[table.size()];
         // Check for all candidates for checked unknown term
-        for (String canString: info.candidatesInfo){
-            Map<String, String> candidate = new HashMap<>();
-            candidate = this.gson.fromJson(canString, candidate.getClass());
+        for (int i = 0; i < result.length; i++){
             // Check similarity
             double score = 0;
-            List<String> tokens = Arrays.asList(candidate.get("Label").toLowerCase().split(" "));
-            if (tokens.contains(result.term))
-                score = 1;
-            result.candidatesScores.add(score*this.weight);
+            for (String token: table.tokens[i]) {
+                if (token.toLowerCase().equals(table.term)) {
+                    score = 1;
+                    break;
+                }
+            }
+            result[i] = score*this.weight;
             if (ConfigManager.DEBUG > 4)
-                LogInfoToggle.logs("Similarity: %s -> %s", candidate.get("URI"), score);
+                LogInfoToggle.logs("Similarity: %s -> %s", table.uris[i], score);
         }
         return result;
     }
@@ -2,6 +2,7 @@ package edu.stanford.nlp.sempre.roboy.utils;
 
 import edu.stanford.nlp.sempre.*;
 import edu.stanford.nlp.sempre.roboy.DatabaseInfo;
+import edu.stanford.nlp.sempre.cache.MappedStringCache;
 import edu.stanford.nlp.sempre.cache.StringCache;
 import edu.stanford.nlp.sempre.cache.StringCacheUtils;
 
@@ -57,7 +58,31 @@ public class SparqlUtils {
     public static Gson gson = new Gson();
     public static XMLReader reader = new XMLReader();
 
+    private static MappedStringCache cache;             /**< Persistent cache of responses */
+    private static boolean cacheOpened = false;
+
+    /**
+     * Persistent cache of SPARQL responses, shared by all requests.
+     * @return The cache, null if it is disabled or cannot be opened
+     */
+    public static synchronized MappedStringCache getCache() {
+        if (!cacheOpened) {
+            cacheOpened = true;
+            if (ConfigManager.SPARQL_CACHE != null && !ConfigManager.SPARQL_CACHE.isEmpty()) {
+                try {
+                    cache = MappedStringCache.open(ConfigManager.SPARQL_CACHE, ConfigManager.SPARQL_CACHE_SIZE,
+                            ConfigManager.SPARQL_CACHE_TTL, 1024L * 1024 * ConfigManager.SPARQL_CACHE_MB);
+                } catch (RuntimeException e) {
+                    LogInfoToggle.errors("SPARQL cache %s unavailable: %s", ConfigManager.SPARQL_CACHE, e.getMessage());
+                }
+            }
+        }
+        return cache;
+    }
+
     public SparqlUtils() {
+        connectTimeoutMs = ConfigManager.HTTP_TIMEOUT;
+        readTimeoutMs = ConfigManager.HTTP_TIMEOUT;
         TrustManager[] trustAllCerts = new TrustManager[]{
             new X509TrustManager() {
                 public java.security.cert.X509Certificate[] getAcceptedIssuers() {return null;}
@@ -376,6 +401,14 @@ public class SparqlUtils {
         if (query == null)
             throw new RuntimeException("No SPARQL endpoint url specified");
 
+        // Only successful responses are cached
+        MappedStringCache cache = getCache();
+        if (cache != null) {
+            String cached = cache.get(query);
+            if (cached != null)
+                return new ServerResponse(cached);
+        }
+
         try {
             URLConnection conn = new URL(query).openConnection();
             conn.setConnectTimeout(connectTimeoutMs);
@@ -396,7 +429,9 @@ public class SparqlUtils {
             if (result.startsWith("<!DOCTYPE html>"))
                 return new ServerResponse(ErrorValue.badFormat);
 
-            return new ServerResponse(buf.toString());
+            if (cache != null)
+                cache.put(query, result);
+            return new ServerResponse(result);
         } catch (SocketTimeoutException e) {
             return new ServerResponse(ErrorValue.timeout);
         } catch (FileNotFoundException e) {
@@ -0,0 +1,124 @@
+package edu.stanford.nlp.sempre.roboy.utils.tracing;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds with a relative error below 1%.
+ *
+ * Buckets are laid out like in HdrHistogram: values below 256 ns have a bucket each, above
+ * that every power of two is split into 128 buckets of equal width, so a bucket is at most
+ * 1/128 (0.78%) of its values wide. Recording a value is an index computation and an atomic
+ * increment, so it can be done on every call of a hot path.
+ * Latencies above MAX_VALUE are counted as MAX_VALUE.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int MAX_BITS = 42;
+
+    /** Largest latency that is distinguished, about 73 minutes. */
+    public static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_BITS - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) (value >>> shift) - HALF_SUB_BUCKETS;
+    }
+
+    // Largest value counted in the bucket |index|
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Counts a latency.
+     * @param nanos latency in nanoseconds, negative values are ignored
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            return;
+        long value = Math.min(nanos, MAX_VALUE);
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return copy of the recorded latencies. Latencies recorded while copying may be missing.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.sum(), max.get());
+    }
+
+    /**
+     * Recorded latencies at one point in time.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax(TimeUnit unit) {
+            return unit.convert(max, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return mean latency in nanoseconds, 0 if nothing was recorded
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param percentile percentile between 0 and 100
+         * @return latency in nanoseconds that the given percentage of calls did not exceed, 0 if nothing was recorded
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return Math.min(highestValueOf(i), max);
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package edu.stanford.nlp.sempre.roboy.utils.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a traced stage of a dialog turn.
+ *
+ * Only touched through the static methods, so Tracer works on JVMs without flight recorder.
+ */
+@Name("roboy.Stage")
+@Label("Dialog Stage")
+@Category({"Roboy", "Dialog"})
+@Description("A stage of a dialog turn, e.g. an analyzer or a SPARQL request")
+final class StageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Conversation")
+    String conversation;
+
+    @Label("Turn")
+    long turn;
+
+    static Object begin(String stage, String conversation, long turn) {
+        StageEvent event = new StageEvent();
+        if (!event.isEnabled())
+            return null;
+        event.stage = stage;
+        event.conversation = conversation;
+        event.turn = turn;
+        event.begin();
+        return event;
+    }
+
+    static void end(Object begun) {
+        StageEvent event = (StageEvent) begun;
+        event.end();
+        if (event.shouldCommit())
+            event.commit();
+    }
+}
@@ -0,0 +1,161 @@
+package edu.stanford.nlp.sempre.roboy.utils.tracing;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the stages of dialog turns.
+ *
+ * Every span is recorded into the latency histogram of its stage, so percentiles per stage can
+ * be read at any time, and is emitted as a flight recorder event if a recording is running.
+ * Spans started on the thread of a turn carry the conversation and the number of that turn.
+ *
+ * Usage:
+ *   try (Tracer.Span span = Tracer.start("sparql")) {
+ *       ...
+ *   }
+ */
+public final class Tracer {
+    private Tracer() { }
+
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Turn> currentTurn = new ThreadLocal<>();
+    private static final AtomicLong turns = new AtomicLong();
+    private static final boolean flightRecorder = isFlightRecorderAvailable();
+
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * A span measuring one stage, ends when closed.
+     */
+    public static class Span implements AutoCloseable {
+        private final String stage;
+        private final long start;
+        private final Object event;
+        private boolean closed;
+
+        Span(String stage, String conversation, long turn) {
+            this.stage = stage;
+            this.event = flightRecorder ? StageEvent.begin(stage, conversation, turn) : null;
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * Ends the span and records its duration. Closing a span again has no effect.
+         */
+        @Override
+        public void close() {
+            if (closed)
+                return;
+            closed = true;
+            histogram(stage).record(System.nanoTime() - start);
+            if (event != null)
+                StageEvent.end(event);
+        }
+    }
+
+    /**
+     * A dialog turn, the spans started on its thread until it is closed belong to it.
+     */
+    public static final class Turn extends Span {
+        private final String conversation;
+        private final long number;
+        private final Turn enclosing;
+
+        private Turn(String conversation, long number) {
+            super("turn", conversation, number);
+            this.conversation = conversation;
+            this.number = number;
+            this.enclosing = currentTurn.get();
+            currentTurn.set(this);
+        }
+
+        public String getConversation() {
+            return conversation;
+        }
+
+        public long getNumber() {
+            return number;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            if (currentTurn.get() == this) {
+                if (enclosing == null)
+                    currentTurn.remove();
+                else
+                    currentTurn.set(enclosing);
+            }
+        }
+    }
+
+    /**
+     * Starts a span for a stage.
+     * @param stage name of the stage, spans with the same name share a histogram
+     */
+    public static Span start(String stage) {
+        return start(stage, currentTurn.get());
+    }
+
+    /**
+     * Starts a span for a stage of a turn that runs on another thread.
+     * @param stage name of the stage, spans with the same name share a histogram
+     * @param turn turn the stage belongs to, may be null
+     */
+    public static Span start(String stage, Turn turn) {
+        return turn == null ? new Span(stage, null, 0) : new Span(stage, turn.conversation, turn.number);
+    }
+
+    /**
+     * Starts a turn on the current thread. The turn is measured as the stage "turn".
+     * @param conversation id of the conversation the turn belongs to
+     */
+    public static Turn beginTurn(String conversation) {
+        return new Turn(conversation, turns.incrementAndGet());
+    }
+
+    /**
+     * @return the turn running on the current thread, null if there is none
+     */
+    public static Turn currentTurn() {
+        return currentTurn.get();
+    }
+
+    /**
+     * Records a duration that was measured without a span.
+     * @param stage name of the stage
+     * @param nanos duration in nanoseconds
+     */
+    public static void record(String stage, long nanos) {
+        histogram(stage).record(nanos);
+    }
+
+    /**
+     * @return the histogram of a stage, created on first use
+     */
+    public static LatencyHistogram histogram(String stage) {
+        LatencyHistogram histogram = histograms.get(stage);
+        return histogram != null ? histogram : histograms.computeIfAbsent(stage, s -> new LatencyHistogram());
+    }
+
+    /**
+     * @return latencies of all stages recorded so far, by stage name
+     */
+    public static SortedMap<String, LatencyHistogram.Snapshot> snapshot() {
+        SortedMap<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet())
+            snapshots.put(entry.getKey(), entry.getValue().snapshot());
+        return snapshots;
+    }
+}
@@ -0,0 +1,91 @@
+package edu.stanford.nlp.sempre.test;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import static org.testng.AssertJUnit.*;
+import edu.stanford.nlp.sempre.roboy.CandidateTable;
+import edu.stanford.nlp.sempre.roboy.UnderspecifiedInfo;
+
+/**
+ * Test parsing and ranking of candidates for underspecified terms.
+ */
+public class CandidateTableTest {
+
+  private static final double EPSILON = 1e-6;
+
+  private static UnderspecifiedInfo createInfo() {
+    UnderspecifiedInfo info = new UnderspecifiedInfo("obama", UnderspecifiedInfo.TermType.ENTITY);
+    info.candidates.addAll(Arrays.asList("dbr:Barack_Obama", "dbr:Michelle_Obama", "dbr:Obama"));
+    info.candidatesInfo.add("{\"URI\":\"dbr:Barack_Obama\",\"Label\":\"Barack Obama\",\"Refcount\":\"0.5\"}");
+    info.candidatesInfo.add("{\"URI\":\"dbr:Michelle_Obama\",\"Label\":\"Michelle Obama\",\"Refcount\":\"0.25\"}");
+    info.candidatesInfo.add("{\"URI\":\"dbr:Obama\",\"Label\":\"Obama\",\"Refcount\":\"1.0\"}");
+    return info;
+  }
+
+  @Test
+  public void parseTest() {
+    CandidateTable table = new CandidateTable(createInfo());
+    assertEquals(3, table.size());
+    assertEquals("dbr:Michelle_Obama", table.uris[1]);
+    assertEquals("Barack Obama", table.labels[0]);
+    assertEquals(Arrays.asList("Barack", "Obama"), Arrays.asList(table.tokens[0]));
+    assertEquals(0.25, table.refcounts[1], EPSILON);
+    assertEquals(0.0, table.scores[2], EPSILON);
+  }
+
+  @Test
+  public void rankingTest() {
+    UnderspecifiedInfo info = createInfo();
+    CandidateTable table = new CandidateTable(info);
+    assertEquals(0, table.best());
+    assertEquals(0.0, table.runnerUp(0), EPSILON);
+
+    table.addScores(table.refcounts);
+    table.addScores(new double[] {0.75, 0.0, 0.0});
+    assertEquals(0, table.best());
+    assertEquals(1.0, table.runnerUp(0), EPSILON);
+
+    // Scores are taken over by tables created later
+    table.writeScores(info);
+    assertEquals(Arrays.asList(1.25, 0.25, 1.0), info.candidatesScores);
+    assertEquals(1.25, new CandidateTable(info).scores[0], EPSILON);
+  }
+
+  @Test
+  public void updateTest() {
+    UnderspecifiedInfo info = createInfo();
+    CandidateTable table = new CandidateTable(info);
+    table.addScores(table.refcounts);
+    table.writeScores(info);
+
+    // Adjusted scores are taken over by the same table
+    info.candidatesScores.set(1, 2.0);
+    assertSame(table, table.update(info));
+    assertEquals(1, table.best());
+
+    // Rewritten and added candidates are parsed, the other rows are kept
+    info.candidates.set(2, "(rdf:type dbr:Obama)");
+    info.candidatesInfo.set(2, "{\"URI\":\"(rdf:type dbr:Obama)\",\"Label\":\"Obama\",\"Refcount\":\"1.0\"}");
+    info.candidates.add("!dbr:Obama");
+    info.candidatesInfo.add("{\"URI\":\"!dbr:Obama\",\"Label\":\"Obama\"}");
+    info.candidatesScores.add(3.0);
+    CandidateTable updated = table.update(info);
+    assertNotSame(table, updated);
+    assertEquals(4, updated.size());
+    assertSame(table.tokens[0], updated.tokens[0]);
+    assertEquals("(rdf:type dbr:Obama)", updated.uris[2]);
+    assertEquals("!dbr:Obama", updated.uris[3]);
+    assertEquals(2.0, updated.scores[1], EPSILON);
+    assertEquals(3, updated.best());
+  }
+
+  @Test
+  public void matchTest() {
+    float[][] query = {{1, 0}, null};
+    float[][] candidate = {{1, 1}, {-1, 0}, null};
+    assertEquals(Math.sqrt(0.5), CandidateTable.match(query, candidate), EPSILON);
+    assertTrue(Double.isNaN(new CandidateTable(new UnderspecifiedInfo()).runnerUp(-1)));
+  }
+}
@@ -0,0 +1,69 @@
+package edu.stanford.nlp.sempre.test;
+
+import java.util.*;
+
+import org.testng.annotations.Test;
+
+import static org.testng.AssertJUnit.*;
+import edu.stanford.nlp.sempre.FeatureDictionary;
+import edu.stanford.nlp.sempre.FeatureVector;
+import edu.stanford.nlp.sempre.Params;
+
+/**
+ * Test feature vectors over interned feature ids.
+ */
+public class FeatureVectorTest {
+
+  private static final double EPSILON = 1e-9;
+
+  @Test
+  public void internTest() {
+    int id = FeatureDictionary.indexOf("rule", "$ROOT -> $Intern");
+    assertEquals(id, FeatureDictionary.indexOf("rule :: $ROOT -> $Intern"));
+    assertEquals(id, FeatureDictionary.lookup("rule :: $ROOT -> $Intern"));
+    assertEquals("rule :: $ROOT -> $Intern", FeatureDictionary.get(id));
+    assertEquals(-1, FeatureDictionary.lookup("rule :: never added"));
+  }
+
+  @Test
+  public void dotProductTest() {
+    Params params = new Params();
+    Map<String, Double> weights = new HashMap<>();
+    weights.put("a :: x", 1.0);
+    weights.put("a :: y", 2.0);
+    weights.put("Dns_1", 3.0);
+    params.update(weights);
+
+    FeatureVector fv = new FeatureVector(2);
+    fv.add("a", "x");
+    fv.add("a", "y", 0.5);
+    fv.add("a", "unknown");
+    fv.addDenseFeature(1, 2.0);
+    double expected = params.getWeight("a :: x") + 0.5 * params.getWeight("a :: y") + 2.0 * params.getWeight("Dns_1");
+    assertEquals(expected, fv.dotProduct(params), EPSILON);
+
+    // Adding with a scale turns indicator features into general ones
+    FeatureVector sum = new FeatureVector(2);
+    sum.add(2, fv);
+    assertEquals(2 * expected, sum.dotProduct(params), EPSILON);
+    Map<String, Double> map = sum.toMap();
+    assertEquals(2.0, map.get("a :: x"), EPSILON);
+    assertEquals(1.0, map.get("a :: y"), EPSILON);
+    assertEquals(4.0, map.get("Dns_1"), EPSILON);
+
+    fv.clear();
+    assertEquals(0.0, fv.dotProduct(params), EPSILON);
+  }
+
+  @Test
+  public void paramsGrowTest() {
+    Params params = new Params();
+    Map<String, Double> gradient = new HashMap<>();
+    for (int i = 0; i < 3000; i++)
+      gradient.put("grow :: " + i, 1.0);
+    params.update(gradient);
+    assertEquals(3000, params.getWeights().size());
+    assertEquals(1.0, params.getWeight("grow :: 2999"), EPSILON);
+    assertEquals(1.0, params.copyParams().getWeight("grow :: 0"), EPSILON);
+  }
+}
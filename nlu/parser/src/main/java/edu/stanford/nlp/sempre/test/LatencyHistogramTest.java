@@ -0,0 +1,71 @@
+package edu.stanford.nlp.sempre.test;
+
+import edu.stanford.nlp.sempre.roboy.utils.tracing.LatencyHistogram;
+import edu.stanford.nlp.sempre.roboy.utils.tracing.Tracer;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.*;
+
+/**
+ * Test latency histograms and tracing spans.
+ */
+public class LatencyHistogramTest {
+
+  // Percentiles may be off by the width of a bucket, less than 1%
+  private static void assertClose(long expected, long actual) {
+    assertTrue(expected + " != " + actual, Math.abs(expected - actual) <= expected / 100 + 1);
+  }
+
+  @Test
+  public void percentileTest() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.snapshot().getPercentile(99));
+    for (int i = 1; i <= 1000; i++)
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+    histogram.record(-1);
+
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(1000, snapshot.getCount());
+    assertClose(TimeUnit.MILLISECONDS.toNanos(500), snapshot.getPercentile(50));
+    assertClose(TimeUnit.MILLISECONDS.toNanos(990), snapshot.getPercentile(99));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), snapshot.getPercentile(100));
+    assertEquals(1000, snapshot.getMax(TimeUnit.MILLISECONDS));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1) * 500.5, snapshot.getMean(), 1e-6);
+  }
+
+  @Test
+  public void relativeErrorTest() {
+    for (long value = 1; value < LatencyHistogram.MAX_VALUE; value = value * 3 + 7) {
+      LatencyHistogram histogram = new LatencyHistogram();
+      histogram.record(value);
+      // The maximum is exact, so the median is read from the bucket of the value
+      histogram.record(LatencyHistogram.MAX_VALUE);
+      long percentile = histogram.snapshot().getPercentile(50);
+      assertTrue(value + " != " + percentile, Math.abs(percentile - value) < value / 100.0 + 1);
+    }
+  }
+
+  @Test
+  public void smallAndLargeValuesTest() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(3);
+    histogram.record(Long.MAX_VALUE);
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(3, snapshot.getPercentile(50));
+    assertEquals(LatencyHistogram.MAX_VALUE, snapshot.getPercentile(100));
+  }
+
+  @Test
+  public void spanTest() {
+    try (Tracer.Turn turn = Tracer.beginTurn("test")) {
+      assertSame(turn, Tracer.currentTurn());
+      try (Tracer.Span span = Tracer.start("test.stage")) {
+        assertEquals("test", Tracer.currentTurn().getConversation());
+      }
+    }
+    assertNull(Tracer.currentTurn());
+    assertEquals(1, Tracer.snapshot().get("test.stage").getCount());
+  }
+}
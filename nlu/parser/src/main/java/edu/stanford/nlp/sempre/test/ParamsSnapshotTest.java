@@ -0,0 +1,50 @@
+package edu.stanford.nlp.sempre.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import org.testng.annotations.Test;
+
+import static org.testng.AssertJUnit.*;
+import edu.stanford.nlp.sempre.Params;
+
+/**
+ * Test writing and memory-mapping binary parameter snapshots.
+ */
+public class ParamsSnapshotTest {
+
+  private static final double EPSILON = 1e-9;
+
+  @Test
+  public void roundTripTest() throws IOException {
+    File file = File.createTempFile("params", ".snapshot");
+    file.deleteOnExit();
+
+    Params params = new Params();
+    Map<String, Double> gradient = new HashMap<>();
+    gradient.put("rule :: $ROOT -> $Entity", 0.5);
+    gradient.put("rule :: f\u00fc\u00dfe", -1.5);
+    params.update(gradient);
+    params.writeSnapshot(file.getPath(), 42L);
+
+    assertTrue(Params.isSnapshot(file.getPath()));
+    assertTrue(Params.isSnapshot(file.getPath(), 42L));
+    assertFalse(Params.isSnapshot(file.getPath(), 43L));
+
+    Params loaded = new Params();
+    loaded.read(file.getPath());
+    assertEquals(params.getWeights().size(), loaded.getWeights().size());
+    for (String feature : gradient.keySet())
+      assertEquals(params.getWeight(feature), loaded.getWeight(feature), EPSILON);
+  }
+
+  @Test
+  public void textParamsAreNoSnapshotTest() throws IOException {
+    File file = File.createTempFile("params", ".txt");
+    file.deleteOnExit();
+    Params params = new Params();
+    params.write(file.getPath());
+    assertFalse(Params.isSnapshot(file.getPath()));
+  }
+}
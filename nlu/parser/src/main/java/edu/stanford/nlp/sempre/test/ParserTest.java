@@ -5,9 +5,13 @@ import edu.stanford.nlp.sempre.roboy.utils.logging.LogInfoToggle;
 import org.testng.annotations.Test;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
 
 /**
  * Test parsers.
@@ -98,6 +102,95 @@ public class ParserTest {
     p = ArithmeticTest();
     p.test(new BeamParser(p.getParserSpec()));
   }
+  @Test public void checkConcurrentExecutionNumDerivations() {
+    Parser.opts.coarsePrune = false;
+    Parser.opts.executionThreads = 4;
+    try {
+      ParseTest p = ArithmeticTest();
+      p.test(new BeamParser(p.getParserSpec()));
+    } finally {
+      Parser.opts.executionThreads = 1;
+    }
+  }
+
+
+  // Blocks executions of formulas containing |slow| until they are interrupted
+  private static class BlockingExecutor extends Executor {
+    private final Executor executor = new JavaExecutor();
+    private final String slow;
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+
+    BlockingExecutor(String slow) {
+      this.slow = slow;
+    }
+
+    @Override
+    public Response execute(Formula formula, ContextValue context) {
+      if (formula.toString().contains(slow)) {
+        try {
+          Thread.sleep(10000);
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+          return new Response(ErrorValue.timeout);
+        }
+      }
+      return executor.execute(formula, context);
+    }
+  }
+
+  // Parses |utterance| at test time, executing the derivations on 4 threads
+  private static List<Derivation> parseConcurrently(Executor executor, Params params, String utterance) {
+    FeatureExtractor extractor = new FeatureExtractor(executor);
+    FeatureExtractor.opts.featureDomains.add("rule");
+    Parser parser = new BeamParser(new Parser.Spec(TestUtils.makeArithmeticGrammar(), extractor,
+        executor, new JavaExecutor(), new ExactValueEvaluator()));
+    Example ex = TestUtils.makeSimpleExample(utterance, null);
+    parser.parse(params, ex, false);
+    return ex.getPredDerivations();
+  }
+
+  @Test public void checkConcurrentExecutionDeadline() throws InterruptedException {
+    Parser.opts.coarsePrune = false;
+    Parser.opts.executionThreads = 4;
+    Parser.opts.executionTimeoutMs = 200;
+    try {
+      BlockingExecutor executor = new BlockingExecutor("*");
+      long start = System.currentTimeMillis();
+      List<Derivation> derivations = parseConcurrently(executor, new Params(), "2 and 3");
+      // The product misses the deadline and is dropped, the sum is kept
+      assertTrue(System.currentTimeMillis() - start < 5000);
+      assertEquals(1, derivations.size());
+      assertEquals("(number 5)", derivations.get(0).value.toString());
+      assertTrue(executor.interrupted.await(5, TimeUnit.SECONDS));
+    } finally {
+      Parser.opts.executionThreads = 1;
+      Parser.opts.executionTimeoutMs = 0;
+    }
+  }
+
+  @Test public void checkConcurrentExecutionTopK() throws InterruptedException {
+    Parser.opts.coarsePrune = false;
+    Parser.opts.executionThreads = 4;
+    Parser.opts.executeTopK = 1;
+    try {
+      Params params = new Params();
+      Map<String, Double> features = new HashMap<>();
+      features.put("rule :: $Operator -> and (ConstantFn (lambda y (lambda x (call + (var x) (var y)))))", 1.0);
+      features.put("rule :: $Operator -> and (ConstantFn (lambda y (lambda x (call * (var x) (var y)))))", -1.0);
+      params.update(features);
+      BlockingExecutor executor = new BlockingExecutor("*");
+      long start = System.currentTimeMillis();
+      List<Derivation> derivations = parseConcurrently(executor, params, "2 and 3");
+      // The best derivation has an answer, so the product is not waited for even without a deadline
+      assertTrue(System.currentTimeMillis() - start < 5000);
+      assertEquals(1, derivations.size());
+      assertEquals("(number 5)", derivations.get(0).value.toString());
+      assertTrue(executor.interrupted.await(5, TimeUnit.SECONDS));
+    } finally {
+      Parser.opts.executionThreads = 1;
+      Parser.opts.executeTopK = 0;
+    }
+  }
 
   @Test(groups = "reinforcement") public void checkReinforcementNumDerivations() {
     ParseTest p;
@@ -0,0 +1,65 @@
+package edu.stanford.nlp.sempre.test;
+
+import java.util.*;
+
+import org.testng.annotations.Test;
+
+import static org.testng.AssertJUnit.*;
+import edu.stanford.nlp.sempre.roboy.lexicons.word2vec.PhraseIndex;
+
+/**
+ * Test approximate and exact nearest-neighbour queries of the Word2Vec phrase index.
+ */
+public class PhraseIndexTest {
+
+  private static final int DIMENSION = 50;
+
+  private static Map<String, double[]> randomVectors(int size, Random random) {
+    Map<String, double[]> vectors = new LinkedHashMap<>();
+    for (int i = 0; i < size; i++) {
+      double[] vector = new double[DIMENSION];
+      for (int d = 0; d < DIMENSION; d++)
+        vector[d] = random.nextGaussian();
+      vectors.put("phrase" + i, vector);
+    }
+    return vectors;
+  }
+
+  @Test
+  public void exactQueryTest() {
+    Map<String, double[]> vectors = randomVectors(500, new Random(3));
+    List<String> phrases = new ArrayList<>(vectors.keySet());
+    phrases.add("unknown phrase");
+    PhraseIndex index = new PhraseIndex(phrases, vectors::get, 4, 8, 1);
+    assertEquals(500, index.size());
+
+    List<PhraseIndex.Neighbour> result = index.nearestExact(vectors.get("phrase7"), 0.1, 5);
+    assertEquals("phrase7", result.get(0).phrase);
+    assertEquals(1.0, result.get(0).similarity, 1e-5);
+    for (int i = 1; i < result.size(); i++) {
+      assertTrue(result.get(i).similarity > 0.1);
+      assertTrue(result.get(i - 1).similarity >= result.get(i).similarity);
+    }
+    assertTrue(index.nearestExact(null, 0.1, 5).isEmpty());
+  }
+
+  @Test
+  public void approximateRecallTest() {
+    Random random = new Random(5);
+    Map<String, double[]> vectors = randomVectors(2000, random);
+    PhraseIndex index = new PhraseIndex(vectors.keySet(), vectors::get, 16, 10, 1);
+
+    int found = 0;
+    for (int i = 0; i < 100; i++) {
+      // Slightly perturbed copy of an indexed phrase
+      double[] query = vectors.get("phrase" + i).clone();
+      for (int d = 0; d < DIMENSION; d++)
+        query[d] += 0.2 * random.nextGaussian();
+      List<PhraseIndex.Neighbour> exact = index.nearestExact(query, 0.3, 1);
+      List<PhraseIndex.Neighbour> approximate = index.nearest(query, 0.3, 1);
+      if (!approximate.isEmpty() && approximate.get(0).phrase.equals(exact.get(0).phrase))
+        found++;
+    }
+    assertTrue("Recall too low: " + found, found >= 90);
+  }
+}
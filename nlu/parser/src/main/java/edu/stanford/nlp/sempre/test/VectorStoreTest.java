@@ -0,0 +1,90 @@
+package edu.stanford.nlp.sempre.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import org.testng.annotations.Test;
+
+import static org.testng.AssertJUnit.*;
+import edu.stanford.nlp.sempre.roboy.lexicons.word2vec.VectorStore;
+
+/**
+ * Test writing and memory-mapping word vector stores.
+ */
+public class VectorStoreTest {
+
+  private static final double EPSILON = 1e-6;
+
+  private static VectorStore createStore(Map<String, double[]> vectors) throws IOException {
+    File file = File.createTempFile("words", ".vectors");
+    file.deleteOnExit();
+    VectorStore.write(file.getPath(), vectors.keySet(), vectors::get);
+    assertTrue(VectorStore.isStore(file.getPath()));
+    return VectorStore.open(file.getPath());
+  }
+
+  @Test
+  public void lookupTest() throws IOException {
+    Map<String, double[]> vectors = new LinkedHashMap<>();
+    Random random = new Random(1);
+    for (int i = 0; i < 1000; i++) {
+      double[] vector = new double[8];
+      for (int d = 0; d < vector.length; d++)
+        vector[d] = random.nextGaussian();
+      vectors.put("word" + i, vector);
+    }
+    VectorStore store = createStore(vectors);
+
+    assertEquals(1000, store.size());
+    assertEquals(8, store.dimension());
+    assertFalse(store.hasWord("unknown"));
+    assertEquals("word42", store.word(store.row("word42")));
+
+    float[] vector = new float[8];
+    assertTrue(store.vector("word7", vector));
+    for (int d = 0; d < vector.length; d++)
+      assertEquals(vectors.get("word7")[d], vector[d], EPSILON);
+    assertFalse(store.vector("unknown", vector));
+  }
+
+  @Test
+  public void similarityTest() throws IOException {
+    Map<String, double[]> vectors = new LinkedHashMap<>();
+    vectors.put("queen", new double[] {1, 0, 0});
+    vectors.put("king", new double[] {1, 1, 0});
+    vectors.put("apple", new double[] {0, 0, 1});
+    vectors.put("unknown", null);
+    VectorStore store = createStore(vectors);
+
+    assertEquals(3, store.size());
+    assertEquals(Math.sqrt(0.5), store.similarity("queen", "king"), EPSILON);
+    assertEquals(0.0, store.similarity("queen", "apple"), EPSILON);
+    assertTrue(Double.isNaN(store.similarity("queen", "unknown")));
+    assertEquals(Arrays.asList("king", "apple"), store.nearest("queen", 2));
+
+    float[] mean = new float[3];
+    assertEquals(2, store.mean(Arrays.asList("queen", "king", "unknown"), mean));
+    assertEquals(1.0, mean[0], EPSILON);
+    assertEquals(0.5, mean[1], EPSILON);
+    assertEquals(1.0, VectorStore.cosine(mean, mean), EPSILON);
+  }
+
+  @Test
+  public void rewriteTest() throws IOException {
+    File file = File.createTempFile("words", ".vectors");
+    file.deleteOnExit();
+    Map<String, double[]> vectors = new LinkedHashMap<>();
+    vectors.put("queen", new double[] {1, 0});
+    VectorStore.write(file.getPath(), vectors.keySet(), vectors::get);
+    VectorStore old = VectorStore.open(file.getPath());
+
+    // A store mapped before the file is replaced keeps its contents
+    vectors.put("king", new double[] {0, 1});
+    VectorStore.write(file.getPath(), vectors.keySet(), vectors::get);
+    assertEquals(1, old.size());
+    assertEquals(1.0, old.similarity("queen", "queen"), EPSILON);
+    assertEquals(2, VectorStore.open(file.getPath()).size());
+    assertEquals(1, file.getParentFile().listFiles((dir, name) -> name.startsWith(file.getName())).length);
+  }
+}